@@ -35,6 +35,7 @@ public class Player {
 
 	public final StringProperty playerName = new SimpleStringProperty();
 	public final IntegerProperty points = new SimpleIntegerProperty();
+	public final PongPlayerStatistics statistics = new PongPlayerStatistics();
 
 	/**
 	 * @param name
@@ -23,6 +23,12 @@ SOFTWARE.
  */
 package fko.pong_mvc;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
@@ -52,9 +58,54 @@ public class Pong extends Application {
 	public void start(Stage primaryStage) throws Exception {
 		
 		PongModel model = new PongModel();
+
+		// --rules=file plays with the rules of the file and changes them when the file is changed
+		final String rulesFile = getParameters().getNamed().get("rules");
+		if (rulesFile != null) {
+			try {
+				model.loadRules(Paths.get(rulesFile));
+			} catch (IOException e) {
+				criticalError("Rules could not be loaded: " + e.getMessage());
+			}
+		}
+
+		// --arena=players plays with a paddle per player on all four sides instead of the classic game
+		final String arenaPlayers = getParameters().getNamed().get("arena");
+		if (arenaPlayers != null) {
+			model.setArenaPlayers(Integer.parseInt(arenaPlayers));
+		}
+
+		// --bots=n starts a tournament of two human players and n AI players
+		final String bots = getParameters().getNamed().get("bots");
+		if (bots != null) {
+			model.setTournament(startTournament(Integer.parseInt(bots)));
+		}
+
+		// --spectators=port broadcasts the games to spectators connecting to the port
+		final String spectatorPort = getParameters().getNamed().get("spectators");
+		if (spectatorPort != null) {
+			try {
+				model.setSpectatorServer(new PongSpectatorServer(Integer.parseInt(spectatorPort), 
+						model.getRules()));
+			} catch (IOException e) {
+				criticalError("Spectator server could not be started: " + e.getMessage());
+			}
+		}
+
+		// --replay=seconds sets how much of a game is kept for the instant replay after a goal
+		final String replaySeconds = getParameters().getNamed().get("replay");
+		if (replaySeconds != null) {
+			model.setReplaySeconds(Double.parseDouble(replaySeconds));
+		}
+
 		PongController controller = new PongController(model);
 		PongView view = new PongView(model, controller);
 
+		// --renderer=dirty draws ball, paddles and particles into one image and only uploads changes
+		if ("dirty".equals(getParameters().getNamed().get("renderer"))) {
+			view.setDirtyRectRendering(true);
+		}
+
 		Scene scene = new Scene(view.asParent());
 
 		// let the view register its keyboard handler (can only be done after the scene has been set
@@ -66,15 +117,70 @@ public class Pong extends Application {
 		primaryStage.sizeToScene();
 		primaryStage.setScene(scene);
 		
+		// minimizing the window pauses the game and lets the model go idle
+		primaryStage.iconifiedProperty().addListener((obs, oldX, newX) -> controller.windowIconifiedAction(newX));
+
+		// --power-report=seconds prints CPU usage and wakeups in this interval
+		final String powerReport = getParameters().getNamed().get("power-report");
+		if (powerReport != null) {
+			new PongPowerReport(model, view, Double.parseDouble(powerReport)).start();
+		}
+
 		// closeAction - close through close action
 		primaryStage.setOnCloseRequest(event -> {
 			controller.close_action(event);
 			event.consume();
 		});
 		
+		// --startup-report=print prints the time from the start of the JVM to the first frame,
+		// --startup-report=exit also exits then (used by the startup benchmark and the CDS archive)
+		final String startupReport = getParameters().getNamed().get("startup-report");
+		if (startupReport != null) {
+			new AnimationTimer() {
+				@Override
+				public void handle(long now) {
+					stop();
+					System.out.println("first frame after " 
+							+ ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
+					if (startupReport.equals("exit")) exit();
+				}
+			}.start();
+		}
+
 		primaryStage.show();
 	}
 
+	/**
+	 * Starts a round-robin tournament in the background. Matches of the human players
+	 * are started with the T key. The ranking is printed when the tournament is finished.
+	 * @param bots number of AI players
+	 * @return the started tournament
+	 */
+	private static PongTournament startTournament(int bots) {
+		PongTournament tournament = new PongTournament(PongTournament.Format.ROUND_ROBIN, 
+				PongTournament.DEFAULT_POINTS_TO_WIN, System.nanoTime());
+		tournament.register(new Player("Player 1"));
+		tournament.register(new Player("Player 2"));
+		for (int i = 0; i < bots; i++) {
+			tournament.register(new PongAIPlayer("Bot-" + i, (i % 5 - 2) / 4.0, i % 2 == 0, 2.0 + i % 3));
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				tournament.run();
+				List<Player> ranking = tournament.getRating().getRanking();
+				for (int i = 0; i < ranking.size(); i++) {
+					System.out.printf("%3d. %-12s %7.1f%n", i + 1, ranking.get(i).playerName.get(), 
+							tournament.getRating().getRating(ranking.get(i)));
+				}
+			} catch (Exception e) {
+				criticalError("Tournament failed: " + e.getMessage());
+			}
+		}, "Tournament");
+		thread.setDaemon(true);
+		thread.start();
+		return tournament;
+	}
+
 	/**
 	 * Clean up and exit the application
 	 */
@@ -0,0 +1,128 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongAIPlayer - a computer player which moves its paddle towards the ball.
+ *
+ * <p>
+ * The player is configured by a few parameters which make different players play differently:<br>
+ * <code>predict</code> - if true the player calculates where the ball will reach its paddle (including
+ * bounces off the walls), otherwise it just follows the ball's current height.<br>
+ * <code>aimOffset</code> - where on its paddle the player tries to hit the ball (-1.0 top, 0.0 center,
+ * 1.0 bottom). Hitting off center angles the ball when the Angling Paddle option is on.<br>
+ * <code>deadZone</code> - the player does not move if the paddle is closer than this to its target.<br>
+ *
+ * <p>
+ * Subclasses can implement other strategies by overriding 
+ * <code>decide(double, double, double, double, double, double, double, double, double, boolean)</code>.
+ *
+ * @author Frank Kopp
+ */
+public class PongAIPlayer extends Player {
+
+	private final double aimOffset;
+	private final boolean predict;
+	private final double deadZone;
+
+	/**
+	 * Creates a predicting player aiming at the center of its paddle.
+	 * @param name
+	 */
+	public PongAIPlayer(String name) {
+		this(name, 0.0, true, PongModel.PADDLE_MOVE_STEPS);
+	}
+
+	/**
+	 * @param name
+	 * @param aimOffset where on its paddle the player tries to hit the ball (-1.0 to 1.0)
+	 * @param predict true if the player calculates where the ball will reach the paddle
+	 * @param deadZone distance to the target in which the paddle is not moved
+	 */
+	public PongAIPlayer(String name, double aimOffset, boolean predict, double deadZone) {
+		super(name);
+		this.aimOffset = aimOffset;
+		this.predict = predict;
+		this.deadZone = deadZone;
+	}
+
+	/**
+	 * Decides how to move the paddle in a headless match.
+	 * @param match
+	 * @param left true if this player plays the left paddle
+	 * @return -1 to move the paddle up, 1 to move it down, 0 to not move it
+	 */
+	public int decide(PongMatch match, boolean left) {
+		return decide(match.getBallCenterX(), match.getBallCenterY(), 
+				match.getSpeedX(), match.getSpeedY(),
+				left ? match.getLeftPaddleY() : match.getRightPaddleY(), match.getPaddleLength(),
+				left ? match.getLeftPaddleFront() : match.getRightPaddleFront(),
+				match.getPlayfieldHeight(), match.getBallSize(), left);
+	}
+
+	/**
+	 * Decides how to move the paddle.
+	 * @param ballX ball's center horizontal position
+	 * @param ballY ball's center vertical position
+	 * @param speedX ball's horizontal speed
+	 * @param speedY ball's vertical speed
+	 * @param paddleY paddle's vertical position (upper corner)
+	 * @param paddleLength
+	 * @param paddleFront horizontal position of the paddle's side facing the ball
+	 * @param playfieldHeight
+	 * @param ballSize
+	 * @param left true if this player plays the left paddle
+	 * @return -1 to move the paddle up, 1 to move it down, 0 to not move it
+	 */
+	public int decide(double ballX, double ballY, double speedX, double speedY, double paddleY, 
+			double paddleLength, double paddleFront, double playfieldHeight, double ballSize, 
+			boolean left) {
+
+		final boolean towards = left ? speedX < 0 : speedX > 0;
+
+		double target;
+		if (!towards) {
+			// wait in the middle
+			target = playfieldHeight / 2;
+		} else if (!predict) {
+			target = ballY;
+		} else {
+			// where will the ball reach the paddle - unfold the bounces off the walls
+			final double ticks = Math.max(0.0, (paddleFront - ballX) / speedX);
+			final double range = playfieldHeight - 2 * ballSize;
+			final double unfolded = ballY + speedY * ticks - ballSize;
+			double y = unfolded - 2 * range * Math.floor(unfolded / (2 * range));
+			if (y > range) y = 2 * range - y;
+			target = y + ballSize;
+		}
+
+		// the paddle center which makes the ball hit the paddle at aimOffset
+		final double desired = target - aimOffset * paddleLength / 2;
+		final double diff = desired - (paddleY + paddleLength / 2);
+		if (diff < -deadZone) return -1;
+		if (diff > deadZone) return 1;
+		return 0;
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * PongAnalytics - offline tool which aggregates the statistics of recorded matches.
+ *
+ * <p>
+ * Usage: <code>java fko.pong_mvc.PongAnalytics &lt;recording file or folder&gt;...</code><br>
+ * Folders are searched recursively for recordings (*.pongrec). The recordings are analyzed in parallel
+ * (one recording per task) and the statistics of all recordings are merged into one summary which is
+ * printed to standard out. Each recording is memory-mapped and replayed tick by tick so the memory
+ * needed does not depend on the size or the number of the recordings.
+ *
+ * @see fko.pong_mvc.PongRecording
+ * @see fko.pong_mvc.PongMatchStatistics
+ *
+ * @author Frank Kopp
+ */
+public class PongAnalytics {
+
+	/**
+	 * @param args recording files or folders
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: PongAnalytics <recording file or folder>...");
+			System.exit(1);
+		}
+
+		final List<Path> files = new ArrayList<>();
+		for (String arg : args) {
+			try (Stream<Path> paths = Files.walk(Paths.get(arg))) {
+				files.addAll(paths
+						.filter(p -> p.toString().endsWith(PongRecorder.FILE_EXTENSION))
+						.filter(Files::isRegularFile)
+						.collect(Collectors.toList()));
+			} catch (IOException e) {
+				Pong.minorError("Cannot read " + arg + ": " + e.getMessage());
+			}
+		}
+
+		final long start = System.nanoTime();
+		final PongMatchStatistics total = analyze(files);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.print(total.summary());
+		System.out.printf(Locale.US, "Analyzed %d recordings in %.2f s%n", files.size(), seconds);
+	}
+
+	/**
+	 * Analyzes all recordings in parallel and merges their statistics.
+	 * Recordings which cannot be read are reported and skipped.
+	 * @param files
+	 * @return the merged statistics of all recordings
+	 */
+	public static PongMatchStatistics analyze(List<Path> files) {
+		return files.parallelStream()
+				.collect(PongMatchStatistics::new,
+						(statistics, file) -> analyze(file, statistics),
+						PongMatchStatistics::merge);
+	}
+
+	/**
+	 * Replays one recording into the given statistics.
+	 * @param file
+	 * @param statistics
+	 */
+	public static void analyze(Path file, PongMatchStatistics statistics) {
+		final PongRecording recording;
+		try {
+			recording = PongRecording.open(file);
+		} catch (IOException e) {
+			Pong.minorError("Skipping " + file + ": " + e.getMessage());
+			return;
+		}
+
+		final double ticksPerSecond = recording.getConfig(PongRecorder.CONFIG_TICKS_PER_SECOND);
+		final double acceleration = recording.getConfig(PongRecorder.CONFIG_ACCELERATION);
+
+		statistics.startMatch();
+		try {
+			while (recording.next()) {
+				for (int i = 0; i < recording.getEventCount(); i++) {
+					switch (recording.getEventType(i)) {
+					case PongRecorder.TAG_PADDLE_LEFT:
+						statistics.onPaddleHit(true, recording.getEventValue(i));
+						break;
+					case PongRecorder.TAG_PADDLE_RIGHT:
+						statistics.onPaddleHit(false, recording.getEventValue(i));
+						break;
+					case PongRecorder.TAG_GOAL_LEFT:
+						statistics.onGoal(true);
+						break;
+					case PongRecorder.TAG_GOAL_RIGHT:
+						statistics.onGoal(false);
+						break;
+					case PongRecorder.TAG_EXTRA_GOAL_LEFT:
+						statistics.onExtraGoal(true);
+						break;
+					case PongRecorder.TAG_EXTRA_GOAL_RIGHT:
+						statistics.onExtraGoal(false);
+						break;
+					default:
+					}
+				}
+				// the game speeds up with every paddle hit
+				final double rate = Math.pow(acceleration, recording.getHitsSinceGoal());
+				statistics.onTick(1.0 / (ticksPerSecond * rate),
+						recording.getBallX(), recording.getBallY(),
+						recording.getLeftPaddleY(), recording.getRightPaddleY());
+			}
+		} catch (RuntimeException e) {
+			Pong.minorError("Corrupt recording " + file + ": " + e.getMessage());
+		}
+	}
+
+}
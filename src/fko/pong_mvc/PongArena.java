@@ -0,0 +1,636 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+/**
+ * PongArena - a pong arena with any number of goals, each guarded by a paddle, and any 
+ * number of balls. Runs headless or as the arena mode of {@link PongModel}.
+ *
+ * <p>
+ * The arena is the rectangular playfield of the rules. A goal is a segment of one of its four 
+ * sides - a whole side for a four player game or many short segments for party and bot 
+ * training arenas. The rest of the sides are walls. The paddle of a goal moves along the goal
+ * in front of it, at the distance and with the size and speed of the rules' paddles. Goals 
+ * belong to players - a player may guard several goals.
+ *
+ * <p>
+ * Paddles and balls are kept in arrays. For each side an index of buckets along the side lists 
+ * the goals there, so a ball near a side only looks at the one or two paddles at its position.
+ * Only the paddles with an input are moved - they are kept in a list which <code>setInput()</code>
+ * updates. The cost per tick therefore does not grow with the number of paddles, only with the 
+ * number of moving paddles (a few array operations each).
+ *
+ * <p>
+ * Scoring: a ball leaving through a goal counts as conceded for that goal and gives a point to 
+ * the player who hit it last - unless it was the goal's own player. The ball is served again 
+ * from the center in a random direction.<br>
+ * Like {@link PongMatch} the arena does not change the distance per tick after a paddle hit - 
+ * the acceleration of the rules only changes the time per tick, which all balls share here. 
+ * The serves use a seeded {@link PongRandom}.
+ *
+ * @author Frank Kopp
+ */
+public class PongArena {
+
+	/**
+	 * Sides of the arena
+	 */
+	public static final int TOP = 0;
+	public static final int RIGHT = 1;
+	public static final int BOTTOM = 2;
+	public static final int LEFT = 3;
+
+	/**
+	 * Events happening in a tick - see <code>getEvents()</code>
+	 */
+	public static final int EVENT_WALL = 1;
+	public static final int EVENT_HIT = 2;
+	public static final int EVENT_GOAL = 4;
+
+	// length of the buckets of the side index
+	private static final double BUCKET = 8.0;
+
+	// sides of the players of forPlayers() - the first two face each other like in the classic game
+	private static final int[] PLAYER_SIDES = { LEFT, RIGHT, TOP, BOTTOM };
+
+	// inward normal and tangent (direction of the coordinate along the side) of each side
+	private static final double[] NORMAL_X = { 0, -1, 0, 1 };
+	private static final double[] NORMAL_Y = { 1, 0, -1, 0 };
+	private static final double[] TANGENT_X = { 1, 0, 1, 0 };
+	private static final double[] TANGENT_Y = { 0, 1, 0, 1 };
+
+	private final PongRules rules;
+	private final PongRandom random;
+	private final double width;
+	private final double height;
+
+	// goals and their paddles - paddle position is the center along the side
+	private int goalCount = 0;
+	private int[] goalSide = new int[4];
+	private double[] goalStart = new double[4];
+	private double[] goalEnd = new double[4];
+	private int[] goalPlayer = new int[4];
+	private int[] conceded = new int[4];
+	private double[] paddlePos = new double[4];
+	private double[] paddleLength = new double[4];
+	// -1, 0 or 1 times the paddle step of the rules
+	private double[] paddleStep = new double[4];
+	// range of the paddle positions - the paddle stays in front of its goal
+	private double[] paddleMin = new double[4];
+	private double[] paddleMax = new double[4];
+	// goals whose paddle has an input and their index in this list - -1 if the paddle rests
+	private int[] moving = new int[4];
+	private int[] movingIndex = new int[4];
+	private int movingCount = 0;
+
+	// per side: goals sorted along the side and the first of them reaching into each bucket
+	private final int[][] sideGoals = new int[4][];
+	private final int[][] sideBuckets = new int[4][];
+	private boolean indexValid = false;
+
+	// players
+	private int[] points = new int[0];
+
+	// balls
+	private final int ballCount;
+	private final double[] ballX;
+	private final double[] ballY;
+	private final double[] ballVX;
+	private final double[] ballVY;
+	// goal of the paddle which hit the ball last - -1 if none since the serve
+	private final int[] lastHit;
+
+	private long tick = 0;
+	private int events = 0;
+	private int lastGoal = -1;
+	private int lastHitGoal = -1;
+
+	/**
+	 * Creates an arena without goals - add them with <code>addGoal()</code>. 
+	 * @param seed for the serves
+	 * @param rules sizes and speeds
+	 * @param balls number of balls in play
+	 */
+	public PongArena(long seed, PongRules rules, int balls) {
+		this.rules = rules;
+		this.random = new PongRandom(seed);
+		this.width = rules.getPlayfieldWidth();
+		this.height = rules.getPlayfieldHeight();
+		ballCount = balls;
+		ballX = new double[balls];
+		ballY = new double[balls];
+		ballVX = new double[balls];
+		ballVY = new double[balls];
+		lastHit = new int[balls];
+		for (int b = 0; b < balls; b++) serve(b);
+	}
+
+	/**
+	 * @param seed for the serves
+	 * @param rules sizes and speeds
+	 * @return an arena for four players - each side is a goal 
+	 */
+	public static PongArena fourPlayers(long seed, PongRules rules) {
+		final PongArena arena = new PongArena(seed, rules, 1);
+		for (int side = 0; side < 4; side++) arena.addGoal(side, 0, arena.getSideLength(side), side);
+		return arena;
+	}
+
+	/**
+	 * @param seed for the serves
+	 * @param rules sizes and speeds
+	 * @param players number of players - each guards one goal. The players take the left, right, 
+	 * top and bottom side in turn and share a side with equal goals when there are more than four. 
+	 * Sides without a player are walls.
+	 * @return an arena with one ball
+	 */
+	public static PongArena forPlayers(long seed, PongRules rules, int players) {
+		if (players < 1) throw new IllegalArgumentException("Arena needs a player");
+		final PongArena arena = new PongArena(seed, rules, 1);
+		for (int i = 0; i < PLAYER_SIDES.length && i < players; i++) {
+			final int side = PLAYER_SIDES[i];
+			// players i, i + 4, i + 8, ... share this side
+			final int n = (players - i + PLAYER_SIDES.length - 1) / PLAYER_SIDES.length;
+			final double length = arena.getSideLength(side) / n;
+			for (int k = 0; k < n; k++) {
+				arena.addGoal(side, k * length, (k + 1) * length, i + k * PLAYER_SIDES.length);
+			}
+		}
+		return arena;
+	}
+
+	/**
+	 * Adds a goal and its paddle.
+	 * @param side TOP, RIGHT, BOTTOM or LEFT
+	 * @param start position along the side (x for TOP and BOTTOM, y for LEFT and RIGHT)
+	 * @param end
+	 * @param player guarding the goal - from 0
+	 * @return number of the goal and its paddle
+	 * @throws IllegalArgumentException if the goal is outside of the side or overlaps another one
+	 */
+	public int addGoal(int side, double start, double end, int player) {
+		if (side < TOP || side > LEFT || start < 0 || end > getSideLength(side) || start >= end || player < 0) {
+			throw new IllegalArgumentException("Goal " + side + " " + start + "-" + end);
+		}
+		for (int g = 0; g < goalCount; g++) {
+			if (goalSide[g] == side && start < goalEnd[g] && end > goalStart[g]) {
+				throw new IllegalArgumentException("Goal " + start + "-" + end + " overlaps goal " + g);
+			}
+		}
+		if (goalCount == goalSide.length) {
+			final int capacity = goalCount * 2;
+			goalSide = Arrays.copyOf(goalSide, capacity);
+			goalStart = Arrays.copyOf(goalStart, capacity);
+			goalEnd = Arrays.copyOf(goalEnd, capacity);
+			goalPlayer = Arrays.copyOf(goalPlayer, capacity);
+			conceded = Arrays.copyOf(conceded, capacity);
+			paddlePos = Arrays.copyOf(paddlePos, capacity);
+			paddleLength = Arrays.copyOf(paddleLength, capacity);
+			paddleStep = Arrays.copyOf(paddleStep, capacity);
+			paddleMin = Arrays.copyOf(paddleMin, capacity);
+			paddleMax = Arrays.copyOf(paddleMax, capacity);
+			moving = Arrays.copyOf(moving, capacity);
+			movingIndex = Arrays.copyOf(movingIndex, capacity);
+		}
+		final int g = goalCount++;
+		goalSide[g] = side;
+		goalStart[g] = start;
+		goalEnd[g] = end;
+		goalPlayer[g] = player;
+		paddleLength[g] = Math.min(rules.getPaddleLength(), end - start);
+		paddlePos[g] = (start + end) / 2;
+		paddleMin[g] = start + paddleLength[g] / 2;
+		paddleMax[g] = end - paddleLength[g] / 2;
+		movingIndex[g] = -1;
+		if (player >= points.length) points = Arrays.copyOf(points, player + 1);
+		indexValid = false;
+		return g;
+	}
+
+	/**
+	 * Sorts the goals of each side and fills the buckets.
+	 */
+	private void buildIndex() {
+		for (int side = 0; side < 4; side++) {
+			int n = 0;
+			for (int g = 0; g < goalCount; g++) if (goalSide[g] == side) n++;
+			final int[] goals = new int[n];
+			n = 0;
+			for (int g = 0; g < goalCount; g++) if (goalSide[g] == side) goals[n++] = g;
+			// insertion sort by start - goals are added rarely
+			for (int i = 1; i < n; i++) {
+				final int g = goals[i];
+				int j = i - 1;
+				while (j >= 0 && goalStart[goals[j]] > goalStart[g]) {
+					goals[j + 1] = goals[j];
+					j--;
+				}
+				goals[j + 1] = g;
+			}
+			final int[] buckets = new int[(int) (getSideLength(side) / BUCKET) + 2];
+			int i = 0;
+			for (int k = 0; k < buckets.length; k++) {
+				while (i < n && goalEnd[goals[i]] <= k * BUCKET) i++;
+				buckets[k] = i;
+			}
+			sideGoals[side] = goals;
+			sideBuckets[side] = buckets;
+		}
+		indexValid = true;
+	}
+
+	/**
+	 * Advances the arena by one tick: moves the paddles according to their inputs, moves the balls
+	 * and handles collisions and goals.
+	 */
+	public void tick() {
+		if (!indexValid) buildIndex();
+		events = 0;
+		lastGoal = -1;
+		lastHitGoal = -1;
+		movePaddles();
+		for (int b = 0; b < ballCount; b++) {
+			ballX[b] += ballVX[b];
+			ballY[b] += ballVY[b];
+			for (int side = 0; side < 4; side++) collide(b, side);
+		}
+		tick++;
+	}
+
+	private void movePaddles() {
+		// no branches depending on the inputs - they change too often to be predicted
+		final double[] pos = paddlePos, min = paddleMin, max = paddleMax, step = paddleStep;
+		if (2 * movingCount > goalCount) {
+			// most paddles move - a pass over all of them is faster than the scattered list
+			for (int g = 0; g < goalCount; g++) {
+				double p = pos[g] + step[g];
+				p = p < min[g] ? min[g] : p;
+				pos[g] = p > max[g] ? max[g] : p;
+			}
+			return;
+		}
+		final int[] goals = moving;
+		for (int i = 0; i < movingCount; i++) {
+			final int g = goals[i];
+			double p = pos[g] + step[g];
+			p = p < min[g] ? min[g] : p;
+			pos[g] = p > max[g] ? max[g] : p;
+		}
+	}
+
+	/**
+	 * Paddles, goal and wall of one side for one ball.
+	 */
+	private void collide(int b, int side) {
+		final double r = rules.getBallSize();
+		// distance from the side and position along it
+		final double distance, along;
+		switch (side) {
+		case TOP: 	 distance = ballY[b]; along = ballX[b]; break;
+		case RIGHT:  distance = width - ballX[b]; along = ballY[b]; break;
+		case BOTTOM: distance = height - ballY[b]; along = ballX[b]; break;
+		default: 	 distance = ballX[b]; along = ballY[b]; break;
+		}
+		final double front = rules.getPaddleX() + rules.getPaddleWidth();
+		if (distance - r > front) return;
+		// speed towards the side
+		final double towards = -(ballVX[b] * NORMAL_X[side] + ballVY[b] * NORMAL_Y[side]);
+		if (towards <= 0) return;
+
+		final int[] goals = sideGoals[side];
+		final int[] buckets = sideBuckets[side];
+		int k = (int) ((along - r) / BUCKET);
+		if (k < 0) k = 0;
+		else if (k >= buckets.length) k = buckets.length - 1;
+
+		// paddles - only those reaching the ball's position
+		if (distance + r >= rules.getPaddleX()) {
+			for (int i = buckets[k]; i < goals.length && goalStart[goals[i]] < along + r; i++) {
+				final int g = goals[i];
+				final double half = paddleLength[g] / 2;
+				if (along + r <= paddlePos[g] - half || along - r >= paddlePos[g] + half) continue;
+				bounce(b, side, g, (along - paddlePos[g]) / half);
+				return;
+			}
+		}
+
+		// in front of a goal the ball leaves the arena - otherwise it bounces off the wall
+		for (int i = buckets[k]; i < goals.length && goalStart[goals[i]] <= along; i++) {
+			final int g = goals[i];
+			if (along < goalEnd[g]) {
+				if (distance + r < 0) goal(b, g);
+				return;
+			}
+		}
+		if (distance - r < 0) {
+			events |= EVENT_WALL;
+			ballVX[b] += 2 * towards * NORMAL_X[side];
+			ballVY[b] += 2 * towards * NORMAL_Y[side];
+		}
+	}
+
+	/**
+	 * Turns the ball away from the paddle - with the response curve of the rules like PongMatch.
+	 */
+	private void bounce(int b, int side, int g, double hitPos) {
+		events |= EVENT_HIT;
+		lastHit[b] = g;
+		lastHitGoal = g;
+		final PongResponseCurve curve = rules.getResponseCurve();
+		final double out = rules.getBallSpeed() * curve.getX(hitPos);
+		final double across = rules.getBallSpeed() * curve.getY(hitPos);
+		ballVX[b] = NORMAL_X[side] * out + TANGENT_X[side] * across;
+		ballVY[b] = NORMAL_Y[side] * out + TANGENT_Y[side] * across;
+	}
+
+	private void goal(int b, int g) {
+		events |= EVENT_GOAL;
+		lastGoal = g;
+		conceded[g]++;
+		final int scorer = lastHit[b];
+		if (scorer >= 0 && goalPlayer[scorer] != goalPlayer[g]) points[goalPlayer[scorer]]++;
+		serve(b);
+	}
+
+	/**
+	 * Serves a ball from the center diagonally into a random direction.
+	 */
+	private void serve(int b) {
+		final double increments = rules.getBallMoveIncrements();
+		ballX[b] = width / 2;
+		ballY[b] = height / 2;
+		ballVX[b] = random.nextBoolean() ? increments : -increments;
+		ballVY[b] = random.nextBoolean() ? increments : -increments;
+		lastHit[b] = -1;
+	}
+
+	/**
+	 * @param side
+	 * @return length of the side - width for TOP and BOTTOM, height for LEFT and RIGHT
+	 */
+	public double getSideLength(int side) {
+		return side == TOP || side == BOTTOM ? width : height;
+	}
+
+	/**
+	 * @param goal
+	 * @param input -1 to move the paddle towards the start of the goal, 0 none, 1 towards the end
+	 */
+	public void setInput(int goal, int input) {
+		final double step = Integer.signum(input) * rules.getPaddleMoveSteps();
+		paddleStep[goal] = step;
+		final int i = movingIndex[goal];
+		if (step != 0 && i < 0) {
+			moving[movingCount] = goal;
+			movingIndex[goal] = movingCount++;
+		} else if (step == 0 && i >= 0) {
+			// the last one takes the place of the resting paddle
+			final int last = moving[--movingCount];
+			moving[i] = last;
+			movingIndex[last] = i;
+			movingIndex[goal] = -1;
+		}
+	}
+
+	/**
+	 * @return number of goals and paddles
+	 */
+	public int getGoalCount() {
+		return goalCount;
+	}
+
+	/**
+	 * @param goal
+	 * @return side of the goal
+	 */
+	public int getGoalSide(int goal) {
+		return goalSide[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return start of the goal along its side
+	 */
+	public double getGoalStart(int goal) {
+		return goalStart[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return end of the goal along its side
+	 */
+	public double getGoalEnd(int goal) {
+		return goalEnd[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return player guarding the goal
+	 */
+	public int getGoalPlayer(int goal) {
+		return goalPlayer[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return horizontal center of the goal in the playfield
+	 */
+	public double getGoalCenterX(int goal) {
+		switch (goalSide[goal]) {
+		case LEFT:	return 0;
+		case RIGHT:	return width;
+		default:	return (goalStart[goal] + goalEnd[goal]) / 2;
+		}
+	}
+
+	/**
+	 * @param goal
+	 * @return vertical center of the goal in the playfield
+	 */
+	public double getGoalCenterY(int goal) {
+		switch (goalSide[goal]) {
+		case TOP:		return 0;
+		case BOTTOM:	return height;
+		default:		return (goalStart[goal] + goalEnd[goal]) / 2;
+		}
+	}
+
+	/**
+	 * @param goal
+	 * @return number of balls which went through the goal
+	 */
+	public int getConceded(int goal) {
+		return conceded[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return center of the goal's paddle along the side
+	 */
+	public double getPaddlePos(int goal) {
+		return paddlePos[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return left edge of the goal's paddle in the playfield
+	 */
+	public double getPaddleX(int goal) {
+		switch (goalSide[goal]) {
+		case LEFT:	return rules.getPaddleX();
+		case RIGHT:	return width - rules.getPaddleX() - rules.getPaddleWidth();
+		default:	return paddlePos[goal] - paddleLength[goal] / 2;
+		}
+	}
+
+	/**
+	 * @param goal
+	 * @return top edge of the goal's paddle in the playfield
+	 */
+	public double getPaddleY(int goal) {
+		switch (goalSide[goal]) {
+		case TOP:		return rules.getPaddleX();
+		case BOTTOM:	return height - rules.getPaddleX() - rules.getPaddleWidth();
+		default:		return paddlePos[goal] - paddleLength[goal] / 2;
+		}
+	}
+
+	/**
+	 * @param goal
+	 * @return horizontal size of the goal's paddle in the playfield
+	 */
+	public double getPaddleWidth(int goal) {
+		final int side = goalSide[goal];
+		return side == TOP || side == BOTTOM ? paddleLength[goal] : rules.getPaddleWidth();
+	}
+
+	/**
+	 * @param goal
+	 * @return vertical size of the goal's paddle in the playfield
+	 */
+	public double getPaddleHeight(int goal) {
+		final int side = goalSide[goal];
+		return side == TOP || side == BOTTOM ? rules.getPaddleWidth() : paddleLength[goal];
+	}
+
+	/**
+	 * @param goal
+	 * @return length of the goal's paddle - shorter than the rules' paddle for short goals
+	 */
+	public double getPaddleLength(int goal) {
+		return paddleLength[goal];
+	}
+
+	/**
+	 * @return number of players - the highest player of all goals + 1
+	 */
+	public int getPlayerCount() {
+		return points.length;
+	}
+
+	/**
+	 * @param player
+	 * @return points of the player
+	 */
+	public int getPoints(int player) {
+		return points[player];
+	}
+
+	/**
+	 * @return number of balls
+	 */
+	public int getBallCount() {
+		return ballCount;
+	}
+
+	/**
+	 * @param ball
+	 * @return horizontal center of the ball
+	 */
+	public double getBallX(int ball) {
+		return ballX[ball];
+	}
+
+	/**
+	 * @param ball
+	 * @return vertical center of the ball
+	 */
+	public double getBallY(int ball) {
+		return ballY[ball];
+	}
+
+	/**
+	 * @param ball
+	 * @return horizontal speed of the ball
+	 */
+	public double getBallSpeedX(int ball) {
+		return ballVX[ball];
+	}
+
+	/**
+	 * @param ball
+	 * @return vertical speed of the ball
+	 */
+	public double getBallSpeedY(int ball) {
+		return ballVY[ball];
+	}
+
+	/**
+	 * @return events of the last tick - EVENT_...
+	 */
+	public int getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return goal a ball went through in the last tick - -1 if none (the last one if several)
+	 */
+	public int getLastGoal() {
+		return lastGoal;
+	}
+
+	/**
+	 * @return goal whose paddle hit a ball in the last tick - -1 if none (the last one if several)
+	 */
+	public int getLastHit() {
+		return lastHitGoal;
+	}
+
+	/**
+	 * @return number of ticks played
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the rules of the arena
+	 */
+	public PongRules getRules() {
+		return rules;
+	}
+
+}
@@ -0,0 +1,218 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+/**
+ * PongBVH - a bounding volume hierarchy of axis aligned bounding boxes over the obstacles of a
+ * {@link PongLevel}.
+ *
+ * <p>
+ * The tree is stored in flat arrays. Node 0 is the root. An inner node has two children (left child
+ * <code>nodeLeft[n]</code>, right child <code>nodeLeft[n]+1</code>), a leaf has no children 
+ * (<code>nodeLeft[n] == -1</code>) and covers the obstacles <code>nodeStart[n]</code> to 
+ * <code>nodeStart[n]+nodeCount[n]-1</code> in the order given by <code>order</code>.<br>
+ * The tree is built top down by splitting the obstacles at the median of their centers along the
+ * longer side of the node's box. Finding the obstacles touched by a ball visits only the nodes whose
+ * boxes contain the ball - logarithmic in the number of obstacles for a ball touching few obstacles.
+ * The traversal uses a preallocated stack and does not allocate.
+ *
+ * @author Frank Kopp
+ */
+public class PongBVH {
+
+	// maximal number of obstacles in a leaf
+	static final int LEAF_SIZE = 4;
+
+	final int nodes;
+	final double[] nodeMinX;
+	final double[] nodeMinY;
+	final double[] nodeMaxX;
+	final double[] nodeMaxY;
+	final int[] nodeLeft;
+	final int[] nodeStart;
+	final int[] nodeCount;
+
+	// obstacle indices in leaf order
+	final int[] order;
+
+	// traversal stack - a balanced tree is never deeper than this
+	private final int[] stack = new int[128];
+
+	/**
+	 * Creates a BVH from the compiled arrays (see <code>PongLevel</code> cache).
+	 */
+	PongBVH(int nodes, double[] nodeMinX, double[] nodeMinY, double[] nodeMaxX, double[] nodeMaxY,
+			int[] nodeLeft, int[] nodeStart, int[] nodeCount, int[] order) {
+		this.nodes = nodes;
+		this.nodeMinX = nodeMinX;
+		this.nodeMinY = nodeMinY;
+		this.nodeMaxX = nodeMaxX;
+		this.nodeMaxY = nodeMaxY;
+		this.nodeLeft = nodeLeft;
+		this.nodeStart = nodeStart;
+		this.nodeCount = nodeCount;
+		this.order = order;
+	}
+
+	/**
+	 * Builds a BVH over boxes.
+	 * @param count number of boxes
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return the new BVH
+	 */
+	static PongBVH build(int count, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+		// a binary tree with leaves of at least one obstacle has less than 2*count nodes
+		final int capacity = Math.max(1, 2 * count);
+		final PongBVH bvh = new PongBVH(0, new double[capacity], new double[capacity], new double[capacity],
+				new double[capacity], new int[capacity], new int[capacity], new int[capacity], new int[count]);
+		// centers (doubled) of the obstacles to split by
+		final double[] centerX = new double[count];
+		final double[] centerY = new double[count];
+		for (int i = 0; i < count; i++) {
+			bvh.order[i] = i;
+			centerX[i] = minX[i] + maxX[i];
+			centerY[i] = minY[i] + maxY[i];
+		}
+		final int nodes = bvh.buildNode(0, 1, 0, count, minX, minY, maxX, maxY, centerX, centerY);
+		return new PongBVH(nodes, 
+				Arrays.copyOf(bvh.nodeMinX, nodes), Arrays.copyOf(bvh.nodeMinY, nodes), 
+				Arrays.copyOf(bvh.nodeMaxX, nodes), Arrays.copyOf(bvh.nodeMaxY, nodes),
+				Arrays.copyOf(bvh.nodeLeft, nodes), Arrays.copyOf(bvh.nodeStart, nodes), 
+				Arrays.copyOf(bvh.nodeCount, nodes), bvh.order);
+	}
+
+	/**
+	 * Builds node n over the obstacles order[start] to order[end-1].
+	 * @param n index of the node
+	 * @param next next free node index
+	 * @return next free node index after this subtree
+	 */
+	private int buildNode(int n, int next, int start, int end, double[] minX, double[] minY, 
+			double[] maxX, double[] maxY, double[] centerX, double[] centerY) {
+		double bMinX = Double.POSITIVE_INFINITY, bMinY = Double.POSITIVE_INFINITY;
+		double bMaxX = Double.NEGATIVE_INFINITY, bMaxY = Double.NEGATIVE_INFINITY;
+		for (int i = start; i < end; i++) {
+			final int o = order[i];
+			bMinX = Math.min(bMinX, minX[o]);
+			bMinY = Math.min(bMinY, minY[o]);
+			bMaxX = Math.max(bMaxX, maxX[o]);
+			bMaxY = Math.max(bMaxY, maxY[o]);
+		}
+		nodeMinX[n] = bMinX;
+		nodeMinY[n] = bMinY;
+		nodeMaxX[n] = bMaxX;
+		nodeMaxY[n] = bMaxY;
+
+		if (end - start <= LEAF_SIZE) {
+			nodeLeft[n] = -1;
+			nodeStart[n] = start;
+			nodeCount[n] = end - start;
+			return next;
+		}
+
+		// split at the median of the centers along the longer side
+		final int mid = (start + end) >>> 1;
+		select(bMaxX - bMinX >= bMaxY - bMinY ? centerX : centerY, start, end - 1, mid);
+
+		final int left = next;
+		nodeLeft[n] = left;
+		nodeStart[n] = start;
+		nodeCount[n] = 0;
+		next += 2;
+		next = buildNode(left, next, start, mid, minX, minY, maxX, maxY, centerX, centerY);
+		next = buildNode(left + 1, next, mid, end, minX, minY, maxX, maxY, centerX, centerY);
+		return next;
+	}
+
+	/**
+	 * Partially sorts order[lo..hi] by key so that order[k] is in its sorted place, all 
+	 * obstacles before it have smaller or equal keys and all after it larger or equal keys
+	 * (quickselect - linear on average).
+	 */
+	private void select(double[] key, int lo, int hi, int k) {
+		while (lo < hi) {
+			final double pivot = key[order[(lo + hi) >>> 1]];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (key[order[i]] < pivot) i++;
+				while (key[order[j]] > pivot) j--;
+				if (i <= j) {
+					final int t = order[i];
+					order[i] = order[j];
+					order[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) hi = j;
+			else if (k >= i) lo = i;
+			else return;
+		}
+	}
+
+	/**
+	 * Finds the first obstacle which overlaps with a ball.
+	 * @param level the level the BVH was built for
+	 * @param x ball center
+	 * @param y ball center
+	 * @param r ball radius
+	 * @return index of the obstacle or -1 if the ball touches none
+	 */
+	int findFirst(PongLevel level, double x, double y, double r) {
+		if (nodes == 0) return -1;
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			final int n = stack[--top];
+			// ball's bounding box outside of the node
+			if (x + r < nodeMinX[n] || x - r > nodeMaxX[n] || y + r < nodeMinY[n] || y - r > nodeMaxY[n]) {
+				continue;
+			}
+			final int left = nodeLeft[n];
+			if (left < 0) {
+				final int end = nodeStart[n] + nodeCount[n];
+				for (int i = nodeStart[n]; i < end; i++) {
+					if (level.overlaps(order[i], x, y, r)) return order[i];
+				}
+			} else {
+				stack[top++] = left;
+				stack[top++] = left + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of nodes
+	 */
+	public int getNodeCount() {
+		return nodes;
+	}
+
+}
@@ -0,0 +1,667 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * PongBallField - a headless simulation of many balls in a pong playfield.
+ *
+ * <p>
+ * Balls bounce off the top and bottom wall, off each other (elastic collision, mass proportional to
+ * the area) and off static round obstacles. A ball reaching the left or right side counts as a goal for
+ * the other side and bounces back into the field so the number of balls stays constant.<br>
+ * All balls and obstacles are stored in primitive arrays (structure of arrays).
+ *
+ * <p>
+ * Broadphase: the field is covered by a uniform grid with cells at least as large as the largest
+ * diameter. Every ball and obstacle is linked into the list of the cell containing its center
+ * (<code>cellHead</code>/<code>cellNext</code>/<code>cellPrev</code>). After moving, only balls which
+ * left their cell are unlinked and linked into the new cell. Two objects can only touch if their cells
+ * are neighbors, so each ball is only tested against the objects in its own cell and the four
+ * "forward" neighbor cells (east, south-west, south, south-east) which finds every pair exactly once.
+ * For a constant density of balls this is linear in the number of balls.<br>
+ * <code>stepNaive()</code> tests all pairs and is kept for comparison (see PongBallFieldBenchmark).
+ * <code>step(ForkJoinPool)</code> spreads the work over many threads with results independent of the
+ * number of threads (see PongShardedBenchmark).
+ *
+ * @author Frank Kopp
+ */
+public class PongBallField {
+
+	// added to the radius when looking for balls near a wall
+	private static final double WALL_SLACK = 1e-6;
+
+	private final double width;
+	private final double height;
+	private final int capacity;
+
+	// balls and obstacles - obstacles have inverse mass 0 and never move
+	private final double[] x;
+	private final double[] y;
+	private final double[] vx;
+	private final double[] vy;
+	private final double[] radius;
+	private final double[] invMass;
+	private int count = 0;
+
+	// uniform grid with a doubly linked list per cell
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	private final int[] cellHead;
+	private final int[] cellNext;
+	private final int[] cellPrev;
+	private final int[] cellOf;
+
+	// goals scored by the left side (index 0) and the right side (index 1)
+	private final long[] goals = new long[2];
+
+	// goals already added to the players' points by scoreGoals()
+	private long leftGoalsScored = 0;
+	private long rightGoalsScored = 0;
+
+	// number of collisions between objects
+	private long collisions = 0;
+
+	// use the split loops of integrateSoA() instead of integrate()
+	private boolean vectorized = true;
+
+	// parallel step: balls are moved in chunks, collisions are resolved in vertical strips of cells
+	private static final int CHUNK_SIZE = 1 << 14;
+	private static final int STRIP_COLUMNS = 4;
+	private final long[][] chunkGoals;
+	private final int[] newCell;
+	private final int[] newStrip;
+	private final int strips;
+	private final long[] stripCollisions;
+	// the balls of each strip in index order: stripBalls[stripStart[s]] to stripBalls[stripStart[s+1]-1]
+	private final int[] stripStart;
+	private final int[] stripBalls;
+
+	// the parallel step sorts the objects by strip and cell every SORT_INTERVAL steps so the balls of
+	// a strip are next to each other in memory
+	private static final int SORT_INTERVAL = 32;
+	private final int[] sortStart;
+	private final int[] sortTarget;
+	private final double[] sortDoubles;
+	private final int[] sortInts;
+	private long parallelSteps = 0;
+
+	/**
+	 * @param width of the field
+	 * @param height of the field
+	 * @param capacity maximal number of balls and obstacles
+	 * @param maxRadius largest radius of any ball or obstacle
+	 */
+	public PongBallField(double width, double height, int capacity, double maxRadius) {
+		this.width = width;
+		this.height = height;
+		this.capacity = capacity;
+		x = new double[capacity];
+		y = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		radius = new double[capacity];
+		invMass = new double[capacity];
+
+		cellSize = 2 * maxRadius;
+		columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		cellHead = new int[columns * rows];
+		Arrays.fill(cellHead, -1);
+		cellNext = new int[capacity];
+		cellPrev = new int[capacity];
+		cellOf = new int[capacity];
+
+		chunkGoals = new long[(capacity + CHUNK_SIZE - 1) / CHUNK_SIZE][2];
+		newCell = new int[capacity];
+		newStrip = new int[capacity];
+		strips = (columns + STRIP_COLUMNS - 1) / STRIP_COLUMNS;
+		stripCollisions = new long[strips];
+		stripStart = new int[strips + 1];
+		stripBalls = new int[capacity];
+		sortStart = new int[strips * rows * STRIP_COLUMNS + 1];
+		sortTarget = new int[capacity];
+		sortDoubles = new double[capacity];
+		sortInts = new int[capacity];
+	}
+
+	/**
+	 * Adds a ball.
+	 * @return index of the ball - changed by <code>step(ForkJoinPool)</code>
+	 */
+	public int addBall(double px, double py, double pvx, double pvy, double r) {
+		return add(px, py, pvx, pvy, r, 1.0 / (r * r));
+	}
+
+	/**
+	 * Adds a static round obstacle (bumper).
+	 * @return index of the obstacle - changed by <code>step(ForkJoinPool)</code>
+	 */
+	public int addObstacle(double px, double py, double r) {
+		return add(px, py, 0.0, 0.0, r, 0.0);
+	}
+
+	/**
+	 * Adds n balls with random positions and directions.
+	 * @param n number of balls
+	 * @param speed of each ball
+	 * @param r radius of each ball
+	 * @param random
+	 */
+	public void addRandomBalls(int n, double speed, double r, PongRandom random) {
+		for (int i = 0; i < n; i++) {
+			final double angle = random.nextDouble() * 2 * Math.PI;
+			addBall(r + random.nextDouble() * (width - 2 * r), r + random.nextDouble() * (height - 2 * r),
+					speed * Math.cos(angle), speed * Math.sin(angle), r);
+		}
+	}
+
+	private int add(double px, double py, double pvx, double pvy, double r, double im) {
+		if (count == capacity) throw new IllegalStateException("Ball field is full");
+		if (2 * r > cellSize) throw new IllegalArgumentException("Radius larger than maxRadius");
+		final int i = count++;
+		x[i] = px;
+		y[i] = py;
+		vx[i] = pvx;
+		vy[i] = pvy;
+		radius[i] = r;
+		invMass[i] = im;
+		link(i, cellIndex(px, py));
+		return i;
+	}
+
+	/**
+	 * Moves all balls one tick and resolves collisions using the grid.
+	 */
+	public void step() {
+		if (vectorized) integrateSoA(0, count, goals);
+		else integrate(0, count, goals);
+		updateGrid(0, count);
+		for (int i = 0; i < count; i++) {
+			collisions += collideWithNeighbors(i);
+		}
+	}
+
+	/**
+	 * Moves all balls one tick and resolves collisions by testing all pairs.
+	 * Produces the same results as <code>step()</code> only if the order of the collisions
+	 * does not matter - used as reference for the speed of the grid.
+	 */
+	public void stepNaive() {
+		integrate(0, count, goals);
+		updateGrid(0, count);
+		for (int i = 0; i < count; i++) {
+			for (int j = i + 1; j < count; j++) {
+				if (collide(i, j)) collisions++;
+			}
+		}
+	}
+
+	/**
+	 * Moves all balls one tick and resolves collisions using the grid with the threads of the pool.
+	 *
+	 * <p>
+	 * The result only depends on the field, never on the number of threads, but it differs from
+	 * <code>step()</code> as collisions are resolved in a different order:
+	 * <ul>
+	 * <li>The balls are moved in fixed chunks of indices. Each chunk counts its goals which are 
+	 * added up in chunk order.</li>
+	 * <li>The new cells are calculated in parallel, the lists of the cells are updated in index 
+	 * order like in <code>updateGrid()</code>.</li>
+	 * <li>Collisions are resolved in vertical strips of STRIP_COLUMNS cells. A ball only collides 
+	 * with balls in its own or a neighboring strip, so strips at least three apart never touch the 
+	 * same ball. All strips are processed in three rounds (strip index modulo 3) and the strips of 
+	 * one round run in parallel. Within a strip the balls are processed in index order. 
+	 * Collisions crossing strips are resolved by the strip of the first ball.</li>
+	 * </ul>
+	 * Every SORT_INTERVAL steps the objects are sorted in the order the strips visit them which
+	 * changes the indices of all balls and obstacles.
+	 * @param pool
+	 */
+	public void step(ForkJoinPool pool) {
+		if (parallelSteps++ % SORT_INTERVAL == 0) sortByStrip();
+
+		final int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		pool.invoke(new RangeTask(0, chunks, c -> {
+			final int start = c * CHUNK_SIZE;
+			final int end = Math.min(count, start + CHUNK_SIZE);
+			if (vectorized) integrateSoA(start, end, chunkGoals[c]);
+			else integrate(start, end, chunkGoals[c]);
+			for (int i = start; i < end; i++) {
+				final int cell = cellIndex(x[i], y[i]);
+				newCell[i] = cell;
+				newStrip[i] = (cell % columns) / STRIP_COLUMNS;
+			}
+		}));
+		for (int c = 0; c < chunks; c++) {
+			goals[0] += chunkGoals[c][0];
+			goals[1] += chunkGoals[c][1];
+			chunkGoals[c][0] = 0;
+			chunkGoals[c][1] = 0;
+		}
+
+		Arrays.fill(stripStart, 0);
+		for (int i = 0; i < count; i++) {
+			if (newCell[i] != cellOf[i]) {
+				unlink(i);
+				link(i, newCell[i]);
+			}
+			stripStart[newStrip[i] + 1]++;
+		}
+		for (int s = 1; s <= strips; s++) {
+			stripStart[s] += stripStart[s - 1];
+		}
+		for (int i = 0; i < count; i++) {
+			stripBalls[stripStart[newStrip[i]]++] = i;
+		}
+		// filling has moved each start to the start of the next strip
+		System.arraycopy(stripStart, 0, stripStart, 1, strips);
+		stripStart[0] = 0;
+
+		for (int round = 0; round < 3; round++) {
+			final int first = round;
+			pool.invoke(new RangeTask(0, (strips - first + 2) / 3, k -> collideStrip(first + 3 * k)));
+		}
+		for (int s = 0; s < strips; s++) {
+			collisions += stripCollisions[s];
+		}
+	}
+
+	/**
+	 * Resolves the collisions of all balls in a strip - in index order.
+	 */
+	private void collideStrip(int strip) {
+		long n = 0;
+		for (int k = stripStart[strip]; k < stripStart[strip + 1]; k++) {
+			n += collideWithNeighbors(stripBalls[k]);
+		}
+		stripCollisions[strip] = n;
+	}
+
+	/**
+	 * Sorts all objects by strip, row and column of their cell (stable counting sort) and
+	 * rebuilds the lists of the cells in index order.
+	 */
+	private void sortByStrip() {
+		Arrays.fill(sortStart, 0);
+		for (int i = 0; i < count; i++) {
+			sortStart[sortKey(cellOf[i]) + 1]++;
+		}
+		for (int k = 1; k < sortStart.length; k++) {
+			sortStart[k] += sortStart[k - 1];
+		}
+		for (int i = 0; i < count; i++) {
+			sortTarget[i] = sortStart[sortKey(cellOf[i])]++;
+		}
+		permute(x);
+		permute(y);
+		permute(vx);
+		permute(vy);
+		permute(radius);
+		permute(invMass);
+		for (int i = 0; i < count; i++) {
+			sortInts[sortTarget[i]] = cellOf[i];
+		}
+		Arrays.fill(cellHead, -1);
+		// linking inserts at the head so the lists end up in index order
+		for (int i = count - 1; i >= 0; i--) {
+			link(i, sortInts[i]);
+		}
+	}
+
+	private int sortKey(int cell) {
+		final int cx = cell % columns;
+		final int cy = cell / columns;
+		return ((cx / STRIP_COLUMNS) * rows + cy) * STRIP_COLUMNS + cx % STRIP_COLUMNS;
+	}
+
+	private void permute(double[] values) {
+		for (int i = 0; i < count; i++) {
+			sortDoubles[sortTarget[i]] = values[i];
+		}
+		System.arraycopy(sortDoubles, 0, values, 0, count);
+	}
+
+	/**
+	 * Runs a task for each index in a range by splitting the range in halves.
+	 */
+	private static final class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final IntConsumer body;
+
+		RangeTask(int from, int to, IntConsumer body) {
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from) body.accept(from);
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+		}
+	}
+
+	/**
+	 * Moves the balls from index start to end-1 and bounces them off the walls.
+	 * Goals are added to goals[0] (left side) and goals[1] (right side).
+	 */
+	void integrate(int start, int end, long[] goals) {
+		for (int i = start; i < end; i++) {
+			if (invMass[i] == 0.0) continue;
+			x[i] += vx[i];
+			y[i] += vy[i];
+			final double r = radius[i];
+			if (y[i] < r) {
+				y[i] = 2 * r - y[i];
+				vy[i] = -vy[i];
+			} else if (y[i] > height - r) {
+				y[i] = 2 * (height - r) - y[i];
+				vy[i] = -vy[i];
+			}
+			if (x[i] < r) {
+				x[i] = 2 * r - x[i];
+				vx[i] = -vx[i];
+				goals[1]++;
+			} else if (x[i] > width - r) {
+				x[i] = 2 * (width - r) - x[i];
+				vx[i] = -vx[i];
+				goals[0]++;
+			}
+		}
+	}
+
+	/**
+	 * Same as <code>integrate()</code> with identical results, but split into loops the JIT can
+	 * compile to SIMD instructions.<br>
+	 * The first loop moves all objects - obstacles have no velocity so adding it does not change 
+	 * them. It has no branches and no dependencies between iterations and is vectorized by 
+	 * HotSpot's superword optimization. The second loop only compares without short circuits and
+	 * is well predicted as balls rarely touch a wall. Only the few balls found there take the 
+	 * reflection code of <code>integrate()</code>.
+	 */
+	void integrateSoA(int start, int end, long[] goals) {
+		final double[] x = this.x, y = this.y, vx = this.vx, vy = this.vy, radius = this.radius;
+		for (int i = start; i < end; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+		}
+		// one compare per axis against the distance from the center - the slack makes sure no ball
+		// is missed because of rounding, reflect() checks again exactly
+		final double cx = width / 2, cy = height / 2;
+		for (int i = start; i < end; i++) {
+			final double r = radius[i] + WALL_SLACK;
+			if ((Math.abs(x[i] - cx) > cx - r) | (Math.abs(y[i] - cy) > cy - r)) reflect(i, goals);
+		}
+	}
+
+	private void reflect(int i, long[] goals) {
+		if (invMass[i] == 0.0) return;
+		final double r = radius[i];
+		if (y[i] < r) {
+			y[i] = 2 * r - y[i];
+			vy[i] = -vy[i];
+		} else if (y[i] > height - r) {
+			y[i] = 2 * (height - r) - y[i];
+			vy[i] = -vy[i];
+		}
+		if (x[i] < r) {
+			x[i] = 2 * r - x[i];
+			vx[i] = -vx[i];
+			goals[1]++;
+		} else if (x[i] > width - r) {
+			x[i] = 2 * (width - r) - x[i];
+			vx[i] = -vx[i];
+			goals[0]++;
+		}
+	}
+
+	/**
+	 * Relinks the balls from index start to end-1 which have left their cell.
+	 */
+	void updateGrid(int start, int end) {
+		for (int i = start; i < end; i++) {
+			final int cell = cellIndex(x[i], y[i]);
+			if (cell != cellOf[i]) {
+				unlink(i);
+				link(i, cell);
+			}
+		}
+	}
+
+	/**
+	 * Tests object i against all objects in its cell which come after it in the cell's list and 
+	 * against all objects in the forward neighbor cells.
+	 * @return number of collisions
+	 */
+	int collideWithNeighbors(int i) {
+		final int cell = cellOf[i];
+		final int cx = cell % columns;
+		final int cy = cell / columns;
+		int n = 0;
+		for (int j = cellNext[i]; j >= 0; j = cellNext[j]) {
+			if (collide(i, j)) n++;
+		}
+		if (cx + 1 < columns) n += collideWithCell(i, cell + 1);
+		if (cy + 1 < rows) {
+			if (cx > 0) n += collideWithCell(i, cell + columns - 1);
+			n += collideWithCell(i, cell + columns);
+			if (cx + 1 < columns) n += collideWithCell(i, cell + columns + 1);
+		}
+		return n;
+	}
+
+	private int collideWithCell(int i, int cell) {
+		int n = 0;
+		for (int j = cellHead[cell]; j >= 0; j = cellNext[j]) {
+			if (collide(i, j)) n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Elastic collision of two objects if they overlap and move towards each other.
+	 * @return true if the objects have collided
+	 */
+	boolean collide(int i, int j) {
+		final double imi = invMass[i];
+		final double imj = invMass[j];
+		final double imSum = imi + imj;
+		if (imSum == 0.0) return false; // two obstacles
+
+		final double dx = x[j] - x[i];
+		final double dy = y[j] - y[i];
+		final double minDist = radius[i] + radius[j];
+		final double dist2 = dx * dx + dy * dy;
+		if (dist2 >= minDist * minDist || dist2 == 0.0) return false;
+
+		final double dist = Math.sqrt(dist2);
+		final double nx = dx / dist;
+		final double ny = dy / dist;
+
+		// separate the objects so they do not stick together
+		final double push = (minDist - dist) / imSum;
+		x[i] -= nx * push * imi;
+		y[i] -= ny * push * imi;
+		x[j] += nx * push * imj;
+		y[j] += ny * push * imj;
+
+		// relative speed along the normal - only if they move towards each other
+		final double vn = (vx[j] - vx[i]) * nx + (vy[j] - vy[i]) * ny;
+		if (vn >= 0.0) return false;
+		final double impulse = -2.0 * vn / imSum;
+		vx[i] -= impulse * imi * nx;
+		vy[i] -= impulse * imi * ny;
+		vx[j] += impulse * imj * nx;
+		vy[j] += impulse * imj * ny;
+		return true;
+	}
+
+	private int cellIndex(double px, double py) {
+		int cx = (int) (px / cellSize);
+		int cy = (int) (py / cellSize);
+		if (cx < 0) cx = 0; else if (cx >= columns) cx = columns - 1;
+		if (cy < 0) cy = 0; else if (cy >= rows) cy = rows - 1;
+		return cy * columns + cx;
+	}
+
+	private void link(int i, int cell) {
+		final int head = cellHead[cell];
+		cellNext[i] = head;
+		cellPrev[i] = -1;
+		if (head >= 0) cellPrev[head] = i;
+		cellHead[cell] = i;
+		cellOf[i] = cell;
+	}
+
+	private void unlink(int i) {
+		final int prev = cellPrev[i];
+		final int next = cellNext[i];
+		if (prev >= 0) cellNext[prev] = next;
+		else cellHead[cellOf[i]] = next;
+		if (next >= 0) cellPrev[next] = prev;
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return number of balls and obstacles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public double getX(int i) {
+		return x[i];
+	}
+
+	public double getY(int i) {
+		return y[i];
+	}
+
+	public double getVX(int i) {
+		return vx[i];
+	}
+
+	public double getVY(int i) {
+		return vy[i];
+	}
+
+	public double getRadius(int i) {
+		return radius[i];
+	}
+
+	/**
+	 * @param i
+	 * @return true if the object is a static obstacle
+	 */
+	public boolean isObstacle(int i) {
+		return invMass[i] == 0.0;
+	}
+
+	/**
+	 * @return goals scored by the left side (balls reaching the right side)
+	 */
+	public long getLeftGoals() {
+		return goals[0];
+	}
+
+	/**
+	 * @return goals scored by the right side (balls reaching the left side)
+	 */
+	public long getRightGoals() {
+		return goals[1];
+	}
+
+	/**
+	 * Adds the goals scored since the last call to the points of the players.
+	 * Has to be called on the thread owning the players (the JavaFX thread if they are shown).
+	 * @param left player on the left side
+	 * @param right player on the right side
+	 */
+	public void scoreGoals(Player left, Player right) {
+		left.points.set(left.points.get() + (int) (goals[0] - leftGoalsScored));
+		right.points.set(right.points.get() + (int) (goals[1] - rightGoalsScored));
+		leftGoalsScored = goals[0];
+		rightGoalsScored = goals[1];
+	}
+
+	/**
+	 * @return number of collisions between objects so far
+	 */
+	public long getCollisions() {
+		return collisions;
+	}
+
+	/**
+	 * @param vectorized true to move the balls with the SIMD friendly loops (default), false for
+	 * the simple loop
+	 */
+	public void setVectorized(boolean vectorized) {
+		this.vectorized = vectorized;
+	}
+
+	/**
+	 * @return true if the balls are moved with the SIMD friendly loops
+	 */
+	public boolean isVectorized() {
+		return vectorized;
+	}
+
+	/**
+	 * Moves all balls one tick without resolving collisions between them.
+	 */
+	public void move() {
+		if (vectorized) integrateSoA(0, count, goals);
+		else integrate(0, count, goals);
+	}
+
+	/**
+	 * @return the field width
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the field height
+	 */
+	public double getHeight() {
+		return height;
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PongCheckpoint - continuously saves all matches of a {@link PongMatchArena} into a memory-mapped
+ * file so a game server can resume them after a crash.
+ *
+ * <p>
+ * The tick loop calls <code>step()</code> after each tick of the matches. Every step copies the 
+ * next few slots of the arena into the file, so the cost of a checkpoint is spread evenly over the 
+ * ticks and the loop never stops for it. A slot is copied between two ticks of its match and is 
+ * therefore always a consistent state of the match - with points, serve and position of the 
+ * random generator.<br>
+ * Each slot has two records in the file which are written alternately. A record holds the slot,
+ * the round of the checkpoint it was written in and a checksum of both. If the process dies while 
+ * a record is written the checksum does not match and the other record - one round older - is 
+ * used. Writes to the mapped file survive a crash of the process as they are in the page cache 
+ * of the operating system. <code>force()</code> writes them to the disk against a crash of the 
+ * system.
+ *
+ * <p>
+ * File layout (native byte order):
+ * <pre>
+ * header    magic(4) version(4) capacity(4) slot bytes(4) padding up to HEADER_BYTES
+ * slot i    record 0, record 1
+ * record    slot(SLOT_BYTES) round(8) checksum(8)
+ * </pre>
+ *
+ * @author Frank Kopp
+ */
+public class PongCheckpoint implements AutoCloseable {
+
+	public static final int DEFAULT_SLOTS_PER_STEP = 1024;
+
+	private static final int MAGIC = 0x50434B50; // "PCKP"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+	private static final int RECORD_BYTES = PongMatchArena.SLOT_BYTES + 16;
+
+	private final PongMatchArena arena;
+	private final FileChannel channel;
+	private final MappedByteBuffer file;
+	private final int slotsPerStep;
+
+	// next slot to copy and the number of the current round through all slots
+	private int nextSlot = 0;
+	private long round = 1;
+
+	// statistics
+	private long steps = 0;
+	private long stepNanos = 0;
+	private long maxStepNanos = 0;
+
+	/**
+	 * Opens or creates the checkpoint file for the arena. Records already in the file are 
+	 * invalidated and all slots of the arena are saved - restore an existing checkpoint first.
+	 * @param path of the checkpoint file
+	 * @param arena to save
+	 * @param slotsPerStep slots copied in each step - all slots are saved every capacity/slotsPerStep steps
+	 * @throws IOException
+	 */
+	public PongCheckpoint(Path path, PongMatchArena arena, int slotsPerStep) throws IOException {
+		this.arena = arena;
+		this.slotsPerStep = slotsPerStep;
+		final long size = fileSize(arena.getCapacity());
+		if (size > Integer.MAX_VALUE) throw new IOException("Arena too large for one checkpoint file");
+		if (path.getParent() != null) Files.createDirectories(path.getParent());
+		channel = FileChannel.open(path, 
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() > size) channel.truncate(size);
+		file = channel.map(MapMode.READ_WRITE, 0, size);
+		file.order(ByteOrder.nativeOrder());
+		// records of an older checkpoint must not be restored with this arena - neither for slots 
+		// above the top, which are never written, nor for slots of an arena with another capacity
+		for (int slot = 0; slot < arena.getCapacity(); slot++) {
+			file.putLong(recordOffset(slot, 0) + PongMatchArena.SLOT_BYTES, 0);
+			file.putLong(recordOffset(slot, 1) + PongMatchArena.SLOT_BYTES, 0);
+		}
+		file.putInt(0, MAGIC);
+		file.putInt(4, VERSION);
+		file.putInt(8, arena.getCapacity());
+		file.putInt(12, PongMatchArena.SLOT_BYTES);
+		saveAll();
+	}
+
+	/**
+	 * Copies the next slots of the arena into the file. Called by the tick loop after each tick.
+	 */
+	public void step() {
+		final long start = System.nanoTime();
+		// slots above the top have never been used and need no copy
+		final int top = arena.getTop();
+		for (int n = 0; n < slotsPerStep && top > 0; n++) {
+			if (nextSlot >= top) {
+				nextSlot = 0;
+				round++;
+			}
+			save(nextSlot++);
+		}
+		final long nanos = System.nanoTime() - start;
+		steps++;
+		stepNanos += nanos;
+		maxStepNanos = Math.max(maxStepNanos, nanos);
+	}
+
+	/**
+	 * Copies all slots into the file - e.g. before a planned shutdown.
+	 */
+	public void saveAll() {
+		for (int slot = 0; slot < arena.getTop(); slot++) save(slot);
+		nextSlot = 0;
+		round++;
+	}
+
+	/**
+	 * Writes all changes of the file to the disk.
+	 */
+	public void force() {
+		file.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void save(int slot) {
+		// alternate the records - the other one keeps the last round
+		final int offset = recordOffset(slot, (int) (round & 1));
+		// invalidate the record before it is overwritten
+		file.putLong(offset + PongMatchArena.SLOT_BYTES, 0);
+		arena.writeSlot(slot, file, offset);
+		file.putLong(offset + PongMatchArena.SLOT_BYTES, round);
+		file.putLong(offset + PongMatchArena.SLOT_BYTES + 8, checksum(file, offset));
+	}
+
+	/**
+	 * Reads the newest valid record of each slot from a checkpoint file into a new arena.
+	 * @param path of the checkpoint file
+	 * @return the arena with all matches of the checkpoint
+	 * @throws IOException if the file can not be read or is no checkpoint
+	 */
+	public static PongMatchArena restore(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final MappedByteBuffer file = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			file.order(ByteOrder.nativeOrder());
+			if (channel.size() < HEADER_BYTES || file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+					|| file.getInt(12) != PongMatchArena.SLOT_BYTES) {
+				throw new IOException("Not a checkpoint file: " + path);
+			}
+			final int capacity = file.getInt(8);
+			if (channel.size() < fileSize(capacity)) throw new IOException("Checkpoint file truncated: " + path);
+			final PongMatchArena arena = new PongMatchArena(capacity);
+			for (int slot = 0; slot < capacity; slot++) {
+				final long round0 = validRound(file, slot, 0);
+				final long round1 = validRound(file, slot, 1);
+				if (round0 == 0 && round1 == 0) continue;
+				arena.readSlot(slot, file, recordOffset(slot, round0 > round1 ? 0 : 1));
+			}
+			arena.rebuild();
+			return arena;
+		}
+	}
+
+	/**
+	 * @return the round of the record - 0 if it has never been written or is damaged
+	 */
+	private static long validRound(MappedByteBuffer file, int slot, int record) {
+		final int offset = recordOffset(slot, record);
+		final long round = file.getLong(offset + PongMatchArena.SLOT_BYTES);
+		if (round == 0 || file.getLong(offset + PongMatchArena.SLOT_BYTES + 8) != checksum(file, offset)) return 0;
+		return round;
+	}
+
+	/**
+	 * FNV-1a style hash over the slot and the round - 8 bytes at a time.
+	 */
+	private static long checksum(MappedByteBuffer file, int offset) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < PongMatchArena.SLOT_BYTES + 8; i += 8) {
+			hash = (hash ^ file.getLong(offset + i)) * 0x100000001B3L;
+			hash ^= hash >>> 29;
+		}
+		return hash;
+	}
+
+	private static int recordOffset(int slot, int record) {
+		return HEADER_BYTES + (slot * 2 + record) * RECORD_BYTES;
+	}
+
+	private static long fileSize(int capacity) {
+		return HEADER_BYTES + 2L * capacity * RECORD_BYTES;
+	}
+
+	/**
+	 * @return number of steps done
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return nano seconds of all steps
+	 */
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+	/**
+	 * @return nano seconds of the slowest step
+	 */
+	public long getMaxStepNanos() {
+		return maxStepNanos;
+	}
+
+	/**
+	 * @return number of the current round through all slots
+	 */
+	public long getRound() {
+		return round;
+	}
+
+}
@@ -23,7 +23,6 @@ SOFTWARE.
  */
 package fko.pong_mvc;
 
-import javafx.beans.property.DoubleProperty;
 import javafx.event.EventType;
 import javafx.scene.Cursor;
 import javafx.scene.input.KeyEvent;
@@ -76,6 +75,38 @@ public class PongController {
 		model.setAnglePaddleOption(!model.getAnglePaddleOption());
 	}
 
+	public void tournamentMatchAction() {
+		model.startTournamentMatch();
+	}
+
+	public void nextLevelAction() {
+		model.nextLevel();
+	}
+
+	public void recordOptionAction() {
+		model.setRecordOption(!model.getRecordOption());
+	}
+
+	public void powerUpOptionAction() {
+		model.setPowerUpOption(!model.getPowerUpOption());
+	}
+
+	public void replayOptionAction() {
+		model.setReplayOption(!model.getReplayOption());
+	}
+
+	public void slowMotionOptionAction() {
+		model.setSlowMotionOption(!model.getSlowMotionOption());
+	}
+
+	public void pointerOptionAction() {
+		model.setPointerOption(!model.getPointerOption());
+	}
+
+	public void skipReplayAction() {
+		model.skipReplay();
+	}
+
 	public void onLeftPaddleUpAction(boolean b) {
 		if (b) model.setLeftPaddleUp(true);
 		else model.setLeftPaddleUp(false);
@@ -97,14 +128,23 @@ public class PongController {
 	}
 
 	public void handleKeyboardPressedEvents(KeyEvent event) {
+		if (handleArenaKey(event, true)) return;
 		switch (event.getCode()) {
 		// game control
 		case SPACE: 	startGameAction(); break;
 		case ESCAPE:	stopGameAction(); break;
 		case P: 		pauseGameAction(); break;
+		case T: 		tournamentMatchAction(); break;
+		case L: 		nextLevelAction(); break;
+		case R: 		skipReplayAction(); break;
 		// options control
 		case DIGIT1: soundOnOptionAction(); break;
 		case DIGIT2: anglePaddleOptionAction(); break;
+		case DIGIT3: recordOptionAction(); break;
+		case DIGIT4: powerUpOptionAction(); break;
+		case DIGIT5: replayOptionAction(); break;
+		case DIGIT6: slowMotionOptionAction(); break;
+		case DIGIT7: pointerOptionAction(); break;
 		// paddle control
 		case Q: 		onLeftPaddleUpAction(true); break;
 		case A:		onLeftPaddleDownAction(true); break;
@@ -115,6 +155,7 @@ public class PongController {
 	}
 
 	public void handleKeyboardReleasedEvents(KeyEvent event) {
+		if (handleArenaKey(event, false)) return;
 		switch (event.getCode()) {
 		case Q: 		onLeftPaddleUpAction(false); break;
 		case A:		onLeftPaddleDownAction(false); break;
@@ -124,15 +165,54 @@ public class PongController {
 		}
 	}
 
+	/**
+	 * Paddle keys of the arena mode - Q/A and UP/DOWN for the players on the left and right side as 
+	 * in the classic game, Z/X and LEFT/RIGHT for the players at the top and bottom.
+	 * @param event
+	 * @param pressed
+	 * @return true if the key has been handled
+	 */
+	private boolean handleArenaKey(KeyEvent event, boolean pressed) {
+		if (model.getArena() == null) return false;
+		switch (event.getCode()) {
+		case Q: 		model.setArenaKey(0, -1, pressed); return true;
+		case A:		model.setArenaKey(0, 1, pressed); return true;
+		case UP:	 	model.setArenaKey(1, -1, pressed); return true;
+		case DOWN:  model.setArenaKey(1, 1, pressed); return true;
+		case Z: 		model.setArenaKey(2, -1, pressed); return true;
+		case X:		model.setArenaKey(2, 1, pressed); return true;
+		case LEFT: 	model.setArenaKey(3, -1, pressed); return true;
+		case RIGHT: model.setArenaKey(3, 1, pressed); return true;
+		default:		return false;
+		}
+	}
+
 	public void handleMouseEventsLeftPaddle(MouseEvent event) {
-		handlePaddleMouseEvent(event, model.getLeftPaddleYProperty());
+		handlePaddleMouseEvent(event, true);
 	}
 
 	public void handleMouseEventsRightPaddle(MouseEvent event) {
-		handlePaddleMouseEvent(event, model.getRightPaddleYProperty());
+		handlePaddleMouseEvent(event, false);
 	}
 
-	private void handlePaddleMouseEvent(MouseEvent event, DoubleProperty paddleYProperty) {
+	/**
+	 * Mouse events anywhere on the playfield - control the paddles when the pointer option is on.
+	 * @param event
+	 */
+	public void handleMouseEventsPlayfield(MouseEvent event) {
+		final EventType<? extends MouseEvent> eventType = event.getEventType();
+		if (eventType.equals(MouseEvent.MOUSE_PRESSED)) {
+			model.pointerPressed(event.getX(), event.getY());
+		} else if (eventType.equals(MouseEvent.MOUSE_DRAGGED)) {
+			model.pointerMoved(event.getY());
+		} else if (eventType.equals(MouseEvent.MOUSE_RELEASED)) {
+			model.pointerReleased();
+		}
+	}
+
+	private void handlePaddleMouseEvent(MouseEvent event, boolean left) {
+		// the playfield handles the mouse when the pointer option is on
+		if (model.getPointerOption()) return;
 		final Rectangle source = (Rectangle) event.getSource();
 		final EventType<? extends MouseEvent> eventType = event.getEventType();
 
@@ -145,7 +225,7 @@ public class PongController {
 		} else if (eventType.equals(MouseEvent.MOUSE_DRAGGED) ) {
 			double dragY = event.getSceneY() - _initialDragAnchor;
 			// don't leave area
-			if (paddleYProperty.equals(model.getLeftPaddleYProperty())) {
+			if (left) {
 				model.setLeftPaddleY(initialY + dragY);
 			} else {
 				model.setRightPaddleY(initialY + dragY);
@@ -155,7 +235,12 @@ public class PongController {
 		}
 	}
 
+	public void windowIconifiedAction(boolean iconified) {
+		model.setWindowIconified(iconified);
+	}
+
 	public void close_action(WindowEvent event) {
+		model.close();
 		Pong.exit();		
 	}
 
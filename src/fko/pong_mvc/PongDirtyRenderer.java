@@ -0,0 +1,368 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+/**
+ * PongDirtyRenderer - draws the ball, the paddles and a layer of small moving things (particles,
+ * extra game objects) into a persistent pixel buffer and only repaints and uploads the regions 
+ * which have changed since the last frame.
+ *
+ * <p>
+ * The ball and the paddles are sprites - a circle or a rectangle with a color. A sprite which 
+ * has not changed since the last frame costs nothing. For a changed sprite the old and the new 
+ * rectangle are dirty. The layer is described by the bounding box of everything in it - the old
+ * and the new box are dirty. Each frame:
+ * <pre>
+ * beginFrame()                set the sprites and the bounding box of the layer
+ * prepare()                   clears all dirty rectangles - returns the pixels
+ *                             the caller draws the layer into the pixels
+ * finish()                    draws all sprites touching a dirty rectangle
+ *                             the caller uploads the dirty rectangles
+ * </pre>
+ * The buffer is transparent where nothing is drawn so it can be shown above other nodes. If the
+ * dirty rectangles cover more than half of the buffer or there are too many the whole buffer is
+ * dirty. With <code>setFullRedraw(true)</code> every frame clears and uploads the whole buffer
+ * like a renderer without dirty rectangles - for comparison.
+ *
+ * @author Frank Kopp
+ */
+public class PongDirtyRenderer {
+
+	public static final int BALL = 0;
+	public static final int LEFT_PADDLE = 1;
+	public static final int RIGHT_PADDLE = 2;
+	private static final int SPRITES = 3;
+
+	private static final int MAX_DIRTY = 16;
+
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+	private boolean fullRedraw = false;
+	private boolean firstFrame = true;
+
+	// sprites - bounding rectangle (x0, y0, x1, y1 exclusive) of the current and the last frame
+	private final double[] spriteX = new double[SPRITES];
+	private final double[] spriteY = new double[SPRITES];
+	private final double[] spriteW = new double[SPRITES];
+	private final double[] spriteH = new double[SPRITES];
+	private final boolean[] spriteCircle = new boolean[SPRITES];
+	private final int[] spriteColor = new int[SPRITES];
+	private final int[] spriteRect = new int[SPRITES * 4];
+	private final int[] lastSpriteRect = new int[SPRITES * 4];
+	private final boolean[] spriteChanged = new boolean[SPRITES];
+	private final long[] lastSpriteKey = new long[SPRITES * 3];
+
+	// bounding box of the layer in this and the last frame - empty if x0 >= x1
+	private final int[] layerRect = new int[4];
+	private final int[] lastLayerRect = new int[4];
+
+	// dirty rectangles of the frame (x0, y0, x1, y1 exclusive)
+	private final int[] dirty = new int[MAX_DIRTY * 4];
+	private int dirtyCount = 0;
+
+	// statistics - pixels cleared or uploaded
+	private long clearedPixels = 0;
+	private long uploadedPixels = 0;
+
+	/**
+	 * @param width of the buffer
+	 * @param height of the buffer
+	 */
+	public PongDirtyRenderer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
+	}
+
+	/**
+	 * Starts a frame - the layer is empty until <code>setLayerBounds()</code> is called.
+	 */
+	public void beginFrame() {
+		System.arraycopy(layerRect, 0, lastLayerRect, 0, 4);
+		layerRect[0] = layerRect[1] = layerRect[2] = layerRect[3] = 0;
+		dirtyCount = 0;
+	}
+
+	/**
+	 * @param sprite BALL, LEFT_PADDLE or RIGHT_PADDLE
+	 * @param x left
+	 * @param y top
+	 * @param w
+	 * @param h
+	 * @param argb
+	 */
+	public void setRect(int sprite, double x, double y, double w, double h, int argb) {
+		setSprite(sprite, false, x, y, w, h, argb);
+	}
+
+	/**
+	 * @param sprite BALL, LEFT_PADDLE or RIGHT_PADDLE
+	 * @param cx center
+	 * @param cy center
+	 * @param r radius
+	 * @param argb
+	 */
+	public void setCircle(int sprite, double cx, double cy, double r, int argb) {
+		setSprite(sprite, true, cx, cy, r, r, argb);
+	}
+
+	/**
+	 * Sets the bounding box of everything the caller will draw between <code>prepare()</code> and
+	 * <code>finish()</code>.
+	 * @param x0 left
+	 * @param y0 top
+	 * @param x1 right (exclusive)
+	 * @param y1 bottom (exclusive)
+	 */
+	public void setLayerBounds(int x0, int y0, int x1, int y1) {
+		layerRect[0] = Math.max(0, x0);
+		layerRect[1] = Math.max(0, y0);
+		layerRect[2] = Math.min(width, x1);
+		layerRect[3] = Math.min(height, y1);
+	}
+
+	/**
+	 * Collects and clears the dirty rectangles.
+	 * @return the pixels to draw the layer into
+	 */
+	public int[] prepare() {
+		if (fullRedraw || firstFrame) {
+			addDirty(0, 0, width, height);
+		} else {
+			for (int s = 0; s < SPRITES; s++) {
+				if (!spriteChanged[s]) continue;
+				addDirty(lastSpriteRect, s * 4);
+				addDirty(spriteRect, s * 4);
+			}
+			addDirty(lastLayerRect, 0);
+			addDirty(layerRect, 0);
+			// many or large rectangles - one full rectangle is cheaper
+			long area = 0;
+			for (int i = 0; i < dirtyCount; i++) area += area(dirty, i * 4);
+			if (area > (long) width * height / 2) {
+				dirtyCount = 0;
+				addDirty(0, 0, width, height);
+			}
+		}
+		firstFrame = false;
+		for (int i = 0; i < dirtyCount; i++) {
+			final int d = i * 4;
+			for (int y = dirty[d + 1]; y < dirty[d + 3]; y++) {
+				Arrays.fill(pixels, y * width + dirty[d], y * width + dirty[d + 2], 0);
+			}
+			clearedPixels += area(dirty, d);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Draws all sprites touching a dirty rectangle - on top of the layer.
+	 * @return number of dirty rectangles to upload
+	 */
+	public int finish() {
+		for (int s = 0; s < SPRITES; s++) {
+			final int r = s * 4;
+			if (spriteRect[r] >= spriteRect[r + 2]) continue;
+			for (int i = 0; i < dirtyCount; i++) {
+				if (intersects(spriteRect, r, dirty, i * 4)) {
+					drawSprite(s);
+					break;
+				}
+			}
+			System.arraycopy(spriteRect, r, lastSpriteRect, r, 4);
+		}
+		for (int i = 0; i < dirtyCount; i++) uploadedPixels += area(dirty, i * 4);
+		return dirtyCount;
+	}
+
+	private void setSprite(int sprite, boolean circle, double x, double y, double w, double h, int argb) {
+		// a sprite is unchanged if it is drawn at the same pixels with the same color
+		final long key0 = circle ? Double.doubleToLongBits(x) ^ 1 : Double.doubleToLongBits(x);
+		final long key1 = Double.doubleToLongBits(y) * 31 + Double.doubleToLongBits(w);
+		final long key2 = Double.doubleToLongBits(h) * 31 + argb;
+		final int k = sprite * 3;
+		spriteChanged[sprite] = key0 != lastSpriteKey[k] || key1 != lastSpriteKey[k + 1] || key2 != lastSpriteKey[k + 2];
+		lastSpriteKey[k] = key0;
+		lastSpriteKey[k + 1] = key1;
+		lastSpriteKey[k + 2] = key2;
+		spriteCircle[sprite] = circle;
+		spriteX[sprite] = x;
+		spriteY[sprite] = y;
+		spriteW[sprite] = w;
+		spriteH[sprite] = h;
+		spriteColor[sprite] = argb;
+		final int r = sprite * 4;
+		if (circle) {
+			spriteRect[r] = Math.max(0, (int) Math.floor(x - w));
+			spriteRect[r + 1] = Math.max(0, (int) Math.floor(y - w));
+			spriteRect[r + 2] = Math.min(width, (int) Math.ceil(x + w) + 1);
+			spriteRect[r + 3] = Math.min(height, (int) Math.ceil(y + w) + 1);
+		} else {
+			spriteRect[r] = Math.max(0, (int) Math.floor(x));
+			spriteRect[r + 1] = Math.max(0, (int) Math.floor(y));
+			spriteRect[r + 2] = Math.min(width, (int) Math.ceil(x + w));
+			spriteRect[r + 3] = Math.min(height, (int) Math.ceil(y + h));
+		}
+	}
+
+	private void drawSprite(int s) {
+		final int r = s * 4;
+		final int argb = spriteColor[s];
+		if (!spriteCircle[s]) {
+			for (int y = spriteRect[r + 1]; y < spriteRect[r + 3]; y++) {
+				Arrays.fill(pixels, y * width + spriteRect[r], y * width + spriteRect[r + 2], argb);
+			}
+			return;
+		}
+		final double cx = spriteX[s], cy = spriteY[s], radius = spriteW[s];
+		final double r2 = radius * radius;
+		for (int y = spriteRect[r + 1]; y < spriteRect[r + 3]; y++) {
+			final double dy = y + 0.5 - cy;
+			if (dy * dy > r2) continue;
+			final double dx = Math.sqrt(r2 - dy * dy);
+			final int x0 = Math.max(spriteRect[r], (int) Math.round(cx - dx));
+			final int x1 = Math.min(spriteRect[r + 2], (int) Math.round(cx + dx));
+			if (x0 < x1) Arrays.fill(pixels, y * width + x0, y * width + x1, argb);
+		}
+	}
+
+	private void addDirty(int[] rect, int r) {
+		addDirty(rect[r], rect[r + 1], rect[r + 2], rect[r + 3]);
+	}
+
+	private void addDirty(int x0, int y0, int x1, int y1) {
+		if (x0 >= x1 || y0 >= y1) return;
+		// merge into a rectangle it overlaps with
+		for (int i = 0; i < dirtyCount; i++) {
+			final int d = i * 4;
+			if (x0 <= dirty[d + 2] && x1 >= dirty[d] && y0 <= dirty[d + 3] && y1 >= dirty[d + 1]) {
+				dirty[d] = Math.min(dirty[d], x0);
+				dirty[d + 1] = Math.min(dirty[d + 1], y0);
+				dirty[d + 2] = Math.max(dirty[d + 2], x1);
+				dirty[d + 3] = Math.max(dirty[d + 3], y1);
+				return;
+			}
+		}
+		if (dirtyCount == MAX_DIRTY) {
+			// too many - everything is dirty
+			dirtyCount = 1;
+			dirty[0] = 0;
+			dirty[1] = 0;
+			dirty[2] = width;
+			dirty[3] = height;
+			return;
+		}
+		final int d = dirtyCount++ * 4;
+		dirty[d] = x0;
+		dirty[d + 1] = y0;
+		dirty[d + 2] = x1;
+		dirty[d + 3] = y1;
+	}
+
+	private static boolean intersects(int[] a, int i, int[] b, int j) {
+		return a[i] < b[j + 2] && a[i + 2] > b[j] && a[i + 1] < b[j + 3] && a[i + 3] > b[j + 1];
+	}
+
+	private static long area(int[] rect, int r) {
+		return (long) (rect[r + 2] - rect[r]) * (rect[r + 3] - rect[r + 1]);
+	}
+
+	/**
+	 * @param fullRedraw true to clear and upload the whole buffer every frame
+	 */
+	public void setFullRedraw(boolean fullRedraw) {
+		this.fullRedraw = fullRedraw;
+	}
+
+	/**
+	 * @return width of the buffer
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return height of the buffer
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the pixels of the buffer - ARGB, row by row
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * @param i index of dirty rectangle - 0 to finish()-1
+	 * @return left
+	 */
+	public int getDirtyX(int i) {
+		return dirty[i * 4];
+	}
+
+	/**
+	 * @param i index of dirty rectangle - 0 to finish()-1
+	 * @return top
+	 */
+	public int getDirtyY(int i) {
+		return dirty[i * 4 + 1];
+	}
+
+	/**
+	 * @param i index of dirty rectangle - 0 to finish()-1
+	 * @return width
+	 */
+	public int getDirtyWidth(int i) {
+		return dirty[i * 4 + 2] - dirty[i * 4];
+	}
+
+	/**
+	 * @param i index of dirty rectangle - 0 to finish()-1
+	 * @return height
+	 */
+	public int getDirtyHeight(int i) {
+		return dirty[i * 4 + 3] - dirty[i * 4 + 1];
+	}
+
+	/**
+	 * @return pixels cleared since the renderer was created
+	 */
+	public long getClearedPixels() {
+		return clearedPixels;
+	}
+
+	/**
+	 * @return pixels of all dirty rectangles since the renderer was created
+	 */
+	public long getUploadedPixels() {
+		return uploadedPixels;
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PongEloRating - Elo ratings of players which are updated after every match.
+ *
+ * <p>
+ * Updates are synchronized so results of matches running in parallel can be added as soon as they
+ * are finished.
+ *
+ * @author Frank Kopp
+ */
+public class PongEloRating {
+
+	public static final double INITIAL_RATING = 1500.0;
+	public static final double DEFAULT_K = 32.0;
+
+	private final double k;
+	private final Map<Player, Double> ratings = new HashMap<>();
+
+	/**
+	 * Creates ratings with the default k factor.
+	 */
+	public PongEloRating() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * @param k maximal change of a rating by one match
+	 */
+	public PongEloRating(double k) {
+		this.k = k;
+	}
+
+	/**
+	 * Updates the ratings of both players with the result of a match.
+	 * @param left
+	 * @param right
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	public synchronized void update(Player left, Player right, int leftPoints, int rightPoints) {
+		final double leftRating = getRating(left);
+		final double rightRating = getRating(right);
+		final double expected = 1.0 / (1.0 + Math.pow(10.0, (rightRating - leftRating) / 400.0));
+		final double score = leftPoints > rightPoints ? 1.0 : leftPoints < rightPoints ? 0.0 : 0.5;
+		final double change = k * (score - expected);
+		ratings.put(left, leftRating + change);
+		ratings.put(right, rightRating - change);
+	}
+
+	/**
+	 * @param player
+	 * @return the player's rating - INITIAL_RATING if the player has not played yet
+	 */
+	public synchronized double getRating(Player player) {
+		return ratings.getOrDefault(player, INITIAL_RATING);
+	}
+
+	/**
+	 * @return all rated players sorted by rating, best first
+	 */
+	public synchronized List<Player> getRanking() {
+		List<Player> list = new ArrayList<>(ratings.keySet());
+		list.sort((a, b) -> Double.compare(ratings.get(b), ratings.get(a)));
+		return list;
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongEventBus - the simulation publishes typed game events into a pre-allocated ring buffer which
+ * is read by any number of consumers (sound, statistics, recorder, effects, score) at their own pace.
+ *
+ * <p>
+ * Events are stored in primitive arrays (one slot per event) and handed to the consumers' 
+ * {@link Handler} as primitive arguments, so publishing and dispatching never allocate.<br>
+ * There is one producer - the game loop. Each consumer has its own cursor and reads all events 
+ * published since its last <code>poll()</code>. A consumer falling behind by more than the capacity 
+ * of the ring loses the oldest events, which are counted as dropped - the producer never waits for 
+ * a slow consumer.<br>
+ * The bus is not thread-safe - the producer and all consumers have to run on the same thread (the 
+ * JavaFX thread in the game). A handler may publish events itself; a slot overwritten by it before 
+ * the slot has been delivered is counted as dropped instead of delivered.
+ *
+ * @author Frank Kopp
+ */
+public class PongEventBus {
+
+	// event types
+	/** ball hit the top or bottom wall or an obstacle - x, y of the hit */
+	public static final int WALL_HIT = 0;
+	/** ball hit a paddle - left paddle or right, x, y of the hit, value is the hit position (-1 to 1) */
+	public static final int PADDLE_HIT = 1;
+	/** ball left the playfield - left is true if the left player scored, x, y where it left */
+	public static final int GOAL = 2;
+	/** ball is served - left is true if served from the left, x, y of the ball, value is the y speed */
+	public static final int SERVE = 3;
+	/** an extra ball or power-up bounced off something - x, y of the hit */
+	public static final int BOUNCE = 4;
+	/** an extra ball left the playfield - like GOAL */
+	public static final int EXTRA_GOAL = 5;
+	/** a power-up was caught - left paddle or right, value is the kind of power-up */
+	public static final int PICKUP = 6;
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Receives the events of a consumer.
+	 */
+	public interface Handler {
+		/**
+		 * @param type of the event
+		 * @param left side of the event
+		 * @param x position of the event
+		 * @param y position of the event
+		 * @param value depending on the type
+		 */
+		void onEvent(int type, boolean left, double x, double y, double value);
+	}
+
+	/**
+	 * Reads the events of the bus and hands them to its handler.
+	 */
+	public final class Consumer {
+		private final Handler handler;
+		private long cursor;
+		private long dropped = 0;
+
+		private Consumer(Handler handler) {
+			this.handler = handler;
+			this.cursor = published;
+		}
+
+		/**
+		 * Hands all events published since the last call to the handler.
+		 * @return number of events delivered
+		 */
+		public int poll() {
+			final long end = published;
+			if (end - cursor > capacity) {
+				dropped += end - capacity - cursor;
+				cursor = end - capacity;
+			}
+			int n = 0;
+			while (cursor < end) {
+				final int slot = (int) cursor & mask;
+				final int t = type[slot];
+				final boolean l = left[slot];
+				final double px = x[slot];
+				final double py = y[slot];
+				final double v = value[slot];
+				// a handler might have overwritten the slot since the poll started
+				final long oldest = published - capacity + 1;
+				if (cursor < oldest) {
+					dropped += oldest - cursor;
+					cursor = oldest;
+					continue;
+				}
+				cursor++;
+				handler.onEvent(t, l, px, py, v);
+				n++;
+			}
+			return n;
+		}
+
+		/**
+		 * Skips all events published so far.
+		 */
+		public void skip() {
+			cursor = published;
+		}
+
+		/**
+		 * @return number of events lost because this consumer has been too slow
+		 */
+		public long getDropped() {
+			return dropped;
+		}
+	}
+
+	private final int capacity;
+	private final int mask;
+
+	// the events - event n is stored in slot n & mask
+	private final int[] type;
+	private final boolean[] left;
+	private final double[] x;
+	private final double[] y;
+	private final double[] value;
+
+	// number of events published so far
+	private long published = 0;
+
+	/**
+	 * @param capacity number of events kept for slow consumers - rounded up to a power of two
+	 */
+	public PongEventBus(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		this.mask = this.capacity - 1;
+		type = new int[this.capacity];
+		left = new boolean[this.capacity];
+		x = new double[this.capacity];
+		y = new double[this.capacity];
+		value = new double[this.capacity];
+	}
+
+	/**
+	 * Publishes an event. Only called by the game loop.
+	 * @param t type of the event
+	 * @param l side of the event
+	 * @param px position of the event
+	 * @param py position of the event
+	 * @param v value depending on the type
+	 */
+	public void publish(int t, boolean l, double px, double py, double v) {
+		final long sequence = published;
+		final int slot = (int) sequence & mask;
+		type[slot] = t;
+		left[slot] = l;
+		x[slot] = px;
+		y[slot] = py;
+		value[slot] = v;
+		published = sequence + 1;
+	}
+
+	/**
+	 * Creates a new consumer which receives all events published from now on.
+	 * @param handler
+	 * @return the consumer - has to be polled to receive the events
+	 */
+	public Consumer subscribe(Handler handler) {
+		return new Consumer(handler);
+	}
+
+	/**
+	 * @return number of events published so far
+	 */
+	public long getPublished() {
+		return published;
+	}
+
+	/**
+	 * @return number of events kept in the ring
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
@@ -0,0 +1,191 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * PongHudAtlas - the digits and fixed labels of the HUD rasterized once with a font into one
+ * pixel array, so scores and status texts can be drawn by copying pixels instead of shaping 
+ * and laying out text.
+ *
+ * <p>
+ * All glyphs are rendered with a JavaFX Text snapshot when the atlas is created (on the JavaFX
+ * thread) and stored side by side in one ARGB int array of the same height. Digits are padded to
+ * the width of the widest digit so numbers do not jump when they change. Drawing a number or a
+ * label copies rows of pixels into a target pixel array and never allocates.
+ *
+ * <p>
+ * Part of the MVC view - used by the {@link PongPlayfield}.
+ *
+ * @author Frank Kopp
+ */
+public class PongHudAtlas {
+
+	private final int height;
+	private final int digitWidth;
+	private final int[] pixels;
+	private final int atlasWidth;
+
+	// position and width of each entry - digits 0 to 9 followed by the labels
+	private final int[] entryX;
+	private final int[] entryWidth;
+	private final String[] labels;
+
+	/**
+	 * Rasterizes the digits and the labels. Has to be called on the JavaFX thread.
+	 * @param font
+	 * @param color
+	 * @param labels fixed texts which can be drawn by their index
+	 */
+	public PongHudAtlas(Font font, Color color, String... labels) {
+		this.labels = labels.clone();
+		final int entries = 10 + labels.length;
+		final WritableImage[] images = new WritableImage[entries];
+		final SnapshotParameters parameters = new SnapshotParameters();
+		parameters.setFill(Color.TRANSPARENT);
+		int maxHeight = 0;
+		int maxDigitWidth = 0;
+		for (int i = 0; i < entries; i++) {
+			final Text text = new Text(i < 10 ? Integer.toString(i) : labels[i - 10]);
+			text.setFont(font);
+			text.setFill(color);
+			images[i] = text.snapshot(parameters, null);
+			maxHeight = Math.max(maxHeight, (int) images[i].getHeight());
+			if (i < 10) maxDigitWidth = Math.max(maxDigitWidth, (int) images[i].getWidth());
+		}
+		height = maxHeight;
+		digitWidth = maxDigitWidth;
+
+		entryX = new int[entries];
+		entryWidth = new int[entries];
+		int x = 0;
+		for (int i = 0; i < entries; i++) {
+			entryX[i] = x;
+			entryWidth[i] = i < 10 ? digitWidth : (int) images[i].getWidth();
+			x += entryWidth[i];
+		}
+		atlasWidth = x;
+		pixels = new int[atlasWidth * height];
+
+		// copy each snapshot into the atlas - digits centered in their cell
+		for (int i = 0; i < entries; i++) {
+			final PixelReader reader = images[i].getPixelReader();
+			final int w = (int) images[i].getWidth();
+			final int h = (int) images[i].getHeight();
+			final int left = entryX[i] + (entryWidth[i] - w) / 2;
+			for (int y = 0; y < h; y++) {
+				for (int px = 0; px < w; px++) {
+					pixels[y * atlasWidth + left + px] = reader.getArgb(px, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws a number with its left edge at x.
+	 * @param value not negative
+	 * @param dst target pixels
+	 * @param dstWidth width of a row of the target
+	 * @param x
+	 * @param y top of the number
+	 * @return width drawn
+	 */
+	public int drawNumber(int value, int[] dst, int dstWidth, int x, int y) {
+		int digits = 1;
+		for (int v = value / 10; v > 0; v /= 10) digits++;
+		// from the last digit to the first
+		int v = value;
+		for (int d = digits - 1; d >= 0; d--) {
+			blit(v % 10, dst, dstWidth, x + d * digitWidth, y);
+			v /= 10;
+		}
+		return digits * digitWidth;
+	}
+
+	/**
+	 * Draws a label with its left edge at x.
+	 * @param index of the label as given when the atlas was created
+	 * @param dst target pixels
+	 * @param dstWidth width of a row of the target
+	 * @param x
+	 * @param y top of the label
+	 * @return width drawn
+	 */
+	public int drawLabel(int index, int[] dst, int dstWidth, int x, int y) {
+		blit(10 + index, dst, dstWidth, x, y);
+		return entryWidth[10 + index];
+	}
+
+	/**
+	 * Clears a rectangle of the target to transparent.
+	 */
+	public static void clear(int[] dst, int dstWidth, int x, int y, int width, int height) {
+		for (int row = y; row < y + height; row++) {
+			Arrays.fill(dst, row * dstWidth + x, row * dstWidth + x + width, 0);
+		}
+	}
+
+	private void blit(int entry, int[] dst, int dstWidth, int x, int y) {
+		final int width = Math.min(entryWidth[entry], dstWidth - x);
+		if (width <= 0 || x < 0) return;
+		final int rows = Math.min(height, dst.length / dstWidth - y);
+		for (int row = 0; row < rows; row++) {
+			System.arraycopy(pixels, row * atlasWidth + entryX[entry], dst, (y + row) * dstWidth + x, width);
+		}
+	}
+
+	/**
+	 * @param label
+	 * @return index of the label - -1 if it is not in the atlas
+	 */
+	public int indexOf(String label) {
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i].equals(label)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return height of all digits and labels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return width of each digit
+	 */
+	public int getDigitWidth() {
+		return digitWidth;
+	}
+
+}
@@ -0,0 +1,491 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * PongLevel - a layout of static obstacles in the playfield.
+ *
+ * <p>
+ * Levels are described in text files (<code>*.level</code>) with one obstacle per line:
+ * <pre>
+ * # comment
+ * name    Bumpers
+ * wall    x y width height     (a rectangle - walls, goal mouths, ...)
+ * bumper  x y radius           (a circle)
+ * </pre>
+ * When a level is loaded its obstacles are compiled into a bounding volume hierarchy 
+ * ({@link PongBVH}) so the collision test of the ball only looks at the obstacles near the ball.<br>
+ * The compiled level is cached in a binary file (<code>~/.pong/cache</code>) named after the level and the
+ * checksum of its text. A cached level is memory-mapped and copied into the arrays in bulk so even
+ * large levels load fast. A changed level text gets a new checksum and is compiled again.
+ *
+ * <p>
+ * The bundled levels are in <code>/levels</code> on the classpath and listed in 
+ * <code>/levels/index.txt</code>.
+ *
+ * @author Frank Kopp
+ */
+public class PongLevel {
+
+	public static final String LEVEL_FOLDER = "/levels/";
+	public static final String LEVEL_EXTENSION = ".level";
+
+	public static final byte WALL = 0;
+	public static final byte BUMPER = 1;
+
+	private static final Path CACHE_FOLDER = Paths.get(System.getProperty("user.home"), ".pong", "cache");
+	private static final int CACHE_MAGIC = 0x4C564C43; // "LVLC"
+	private static final int CACHE_VERSION = 1;
+
+	private final String name;
+	private final int count;
+
+	// obstacles - walls: minX, minY, maxX, maxY - bumpers: x, y, radius, radius
+	private final byte[] type;
+	private final double[] a;
+	private final double[] b;
+	private final double[] c;
+	private final double[] d;
+
+	private final PongBVH bvh;
+
+	// result of the last collision test - see collide()
+	private double hitNormalX;
+	private double hitNormalY;
+	private double hitDepth;
+
+	private PongLevel(String name, int count, byte[] type, double[] a, double[] b, double[] c, double[] d, 
+			PongBVH bvh) {
+		this.name = name;
+		this.count = count;
+		this.type = type;
+		this.a = a;
+		this.b = b;
+		this.c = c;
+		this.d = d;
+		this.bvh = bvh;
+	}
+
+	/**
+	 * @return the names of the bundled levels
+	 */
+	public static List<String> getBundledLevels() {
+		List<String> names = new ArrayList<>();
+		try (InputStream in = Pong.class.getResourceAsStream(LEVEL_FOLDER + "index.txt")) {
+			if (in == null) return names;
+			for (String line : new String(readAll(in), StandardCharsets.UTF_8).split("\\R")) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) names.add(line);
+			}
+		} catch (IOException e) {
+			Pong.minorError("Level index cannot be read: " + e.getMessage());
+		}
+		return names;
+	}
+
+	/**
+	 * Loads a bundled level - from the cache if it has been compiled before.
+	 * @param levelName name of the level (file name without extension)
+	 * @return the level
+	 * @throws IOException if the level does not exist or has errors
+	 */
+	public static PongLevel loadBundled(String levelName) throws IOException {
+		try (InputStream in = Pong.class.getResourceAsStream(LEVEL_FOLDER + levelName + LEVEL_EXTENSION)) {
+			if (in == null) throw new IOException("Level not found: " + levelName);
+			return load(levelName, readAll(in));
+		}
+	}
+
+	/**
+	 * Loads a level file - from the cache if it has been compiled before.
+	 * @param file
+	 * @return the level
+	 * @throws IOException if the level cannot be read or has errors
+	 */
+	public static PongLevel load(Path file) throws IOException {
+		String fileName = file.getFileName().toString();
+		if (fileName.endsWith(LEVEL_EXTENSION)) {
+			fileName = fileName.substring(0, fileName.length() - LEVEL_EXTENSION.length());
+		}
+		return load(fileName, Files.readAllBytes(file));
+	}
+
+	private static PongLevel load(String levelName, byte[] source) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(source);
+		final Path cacheFile = CACHE_FOLDER.resolve(
+				String.format("%s-%08x.levelc", levelName.replaceAll("[^\\w-]", "_"), crc.getValue()));
+		if (Files.exists(cacheFile)) {
+			try {
+				return readCompiled(cacheFile);
+			} catch (IOException | RuntimeException e) {
+				Pong.minorError("Ignoring broken level cache " + cacheFile + ": " + e);
+			}
+		}
+		final PongLevel level = parse(levelName, new String(source, StandardCharsets.UTF_8));
+		try {
+			level.writeCompiled(cacheFile);
+		} catch (IOException e) {
+			Pong.minorError("Level cache cannot be written: " + e.getMessage());
+		}
+		return level;
+	}
+
+	/**
+	 * Parses a level text and builds the BVH.
+	 * @param defaultName used if the text has no name line
+	 * @param text
+	 * @return the level
+	 * @throws IOException if the text has errors
+	 */
+	public static PongLevel parse(String defaultName, String text) throws IOException {
+		String name = defaultName;
+		int count = 0;
+		byte[] type = new byte[16];
+		double[] a = new double[16], b = new double[16], c = new double[16], d = new double[16];
+
+		final String[] lines = text.split("\\R");
+		for (int lineNo = 0; lineNo < lines.length; lineNo++) {
+			final String line = lines[lineNo].trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			final String[] tokens = line.split("\\s+");
+			try {
+				switch (tokens[0].toLowerCase(Locale.ROOT)) {
+				case "name":
+					name = line.substring(tokens[0].length()).trim();
+					break;
+				case "wall":
+				case "bumper":
+					if (count == type.length) {
+						type = Arrays.copyOf(type, count * 2);
+						a = Arrays.copyOf(a, count * 2);
+						b = Arrays.copyOf(b, count * 2);
+						c = Arrays.copyOf(c, count * 2);
+						d = Arrays.copyOf(d, count * 2);
+					}
+					if (tokens[0].equalsIgnoreCase("wall")) {
+						final double x = Double.parseDouble(tokens[1]);
+						final double y = Double.parseDouble(tokens[2]);
+						type[count] = WALL;
+						a[count] = x;
+						b[count] = y;
+						c[count] = x + Double.parseDouble(tokens[3]);
+						d[count] = y + Double.parseDouble(tokens[4]);
+					} else {
+						type[count] = BUMPER;
+						a[count] = Double.parseDouble(tokens[1]);
+						b[count] = Double.parseDouble(tokens[2]);
+						c[count] = Double.parseDouble(tokens[3]);
+						d[count] = c[count];
+					}
+					count++;
+					break;
+				default:
+					throw new IOException("Unknown obstacle '" + tokens[0] + "'");
+				}
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Level " + defaultName + " line " + (lineNo + 1) + ": " + line);
+			} catch (IOException e) {
+				throw new IOException("Level " + defaultName + " line " + (lineNo + 1) + ": " + e.getMessage());
+			}
+		}
+
+		// bounding boxes of all obstacles for the BVH
+		final double[] minX = new double[count], minY = new double[count];
+		final double[] maxX = new double[count], maxY = new double[count];
+		for (int i = 0; i < count; i++) {
+			if (type[i] == WALL) {
+				minX[i] = a[i];
+				minY[i] = b[i];
+				maxX[i] = c[i];
+				maxY[i] = d[i];
+			} else {
+				minX[i] = a[i] - c[i];
+				minY[i] = b[i] - c[i];
+				maxX[i] = a[i] + c[i];
+				maxY[i] = b[i] + c[i];
+			}
+		}
+		return new PongLevel(name, count, Arrays.copyOf(type, count), Arrays.copyOf(a, count), 
+				Arrays.copyOf(b, count), Arrays.copyOf(c, count), Arrays.copyOf(d, count), 
+				PongBVH.build(count, minX, minY, maxX, maxY));
+	}
+
+	/**
+	 * Tests if a ball overlaps with an obstacle. If so the normal pointing from the obstacle towards the
+	 * ball and the depth of the overlap are available with <code>getHitNormalX()</code>, 
+	 * <code>getHitNormalY()</code> and <code>getHitDepth()</code>. Not thread safe.
+	 * @param x ball center
+	 * @param y ball center
+	 * @param r ball radius
+	 * @return true if the ball overlaps with an obstacle
+	 */
+	public boolean collide(double x, double y, double r) {
+		final int i = bvh.findFirst(this, x, y, r);
+		if (i < 0) return false;
+		if (type[i] == BUMPER) {
+			final double dx = x - a[i];
+			final double dy = y - b[i];
+			final double dist = Math.sqrt(dx * dx + dy * dy);
+			if (dist == 0.0) {
+				hitNormalX = 0.0;
+				hitNormalY = -1.0;
+			} else {
+				hitNormalX = dx / dist;
+				hitNormalY = dy / dist;
+			}
+			hitDepth = r + c[i] - dist;
+			return true;
+		}
+		// closest point of the wall to the ball's center
+		final double px = Math.max(a[i], Math.min(x, c[i]));
+		final double py = Math.max(b[i], Math.min(y, d[i]));
+		final double dx = x - px;
+		final double dy = y - py;
+		final double dist = Math.sqrt(dx * dx + dy * dy);
+		if (dist > 0.0) {
+			hitNormalX = dx / dist;
+			hitNormalY = dy / dist;
+			hitDepth = r - dist;
+		} else {
+			// center inside the wall - push out along the side closest to the center
+			final double left = x - a[i], right = c[i] - x, top = y - b[i], bottom = d[i] - y;
+			final double min = Math.min(Math.min(left, right), Math.min(top, bottom));
+			hitNormalX = min == left ? -1.0 : min == right ? 1.0 : 0.0;
+			hitNormalY = hitNormalX != 0.0 ? 0.0 : min == top ? -1.0 : 1.0;
+			hitDepth = min + r;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the ball overlaps with obstacle i
+	 */
+	boolean overlaps(int i, double x, double y, double r) {
+		if (type[i] == BUMPER) {
+			final double dx = x - a[i];
+			final double dy = y - b[i];
+			final double rr = r + c[i];
+			return dx * dx + dy * dy < rr * rr;
+		}
+		final double dx = x - Math.max(a[i], Math.min(x, c[i]));
+		final double dy = y - Math.max(b[i], Math.min(y, d[i]));
+		return dx * dx + dy * dy < r * r;
+	}
+
+	/**
+	 * Writes the compiled level into a cache file.
+	 * @param file
+	 * @throws IOException
+	 */
+	private void writeCompiled(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final int nodes = bvh.nodes;
+		final int size = 4 * 4 + 4 + nameBytes.length + count * (1 + 4 * 8 + 4) + nodes * (4 * 8 + 3 * 4);
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putInt(count).putInt(nodes);
+		buffer.putInt(nameBytes.length).put(nameBytes);
+		buffer.put(type);
+		for (double[] array : new double[][] { a, b, c, d }) {
+			buffer.asDoubleBuffer().put(array);
+			buffer.position(buffer.position() + 8 * count);
+		}
+		buffer.asIntBuffer().put(bvh.order);
+		buffer.position(buffer.position() + 4 * count);
+		for (double[] array : new double[][] { bvh.nodeMinX, bvh.nodeMinY, bvh.nodeMaxX, bvh.nodeMaxY }) {
+			buffer.asDoubleBuffer().put(array);
+			buffer.position(buffer.position() + 8 * nodes);
+		}
+		for (int[] array : new int[][] { bvh.nodeLeft, bvh.nodeStart, bvh.nodeCount }) {
+			buffer.asIntBuffer().put(array);
+			buffer.position(buffer.position() + 4 * nodes);
+		}
+		buffer.flip();
+		// write to a temporary file first so a broken cache file is never seen
+		final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) channel.write(buffer);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a compiled level from a cache file.
+	 * @param file
+	 * @return the level
+	 * @throws IOException
+	 */
+	private static PongLevel readCompiled(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION) {
+				throw new IOException("Not a compiled level");
+			}
+			final int count = buffer.getInt();
+			final int nodes = buffer.getInt();
+			final byte[] nameBytes = new byte[buffer.getInt()];
+			buffer.get(nameBytes);
+			final byte[] type = new byte[count];
+			buffer.get(type);
+			final double[][] obstacles = new double[4][count];
+			for (double[] array : obstacles) {
+				buffer.asDoubleBuffer().get(array);
+				buffer.position(buffer.position() + 8 * count);
+			}
+			final int[] order = new int[count];
+			buffer.asIntBuffer().get(order);
+			buffer.position(buffer.position() + 4 * count);
+			final double[][] boxes = new double[4][nodes];
+			for (double[] array : boxes) {
+				buffer.asDoubleBuffer().get(array);
+				buffer.position(buffer.position() + 8 * nodes);
+			}
+			final int[][] tree = new int[3][nodes];
+			for (int[] array : tree) {
+				buffer.asIntBuffer().get(array);
+				buffer.position(buffer.position() + 4 * nodes);
+			}
+			final PongBVH bvh = new PongBVH(nodes, boxes[0], boxes[1], boxes[2], boxes[3], 
+					tree[0], tree[1], tree[2], order);
+			return new PongLevel(new String(nameBytes, StandardCharsets.UTF_8), count, type,
+					obstacles[0], obstacles[1], obstacles[2], obstacles[3], bvh);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int n;
+		while ((n = in.read(chunk)) > 0) out.write(chunk, 0, n);
+		return out.toByteArray();
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return the level's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of obstacles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param i index of obstacle
+	 * @return WALL or BUMPER
+	 */
+	public byte getType(int i) {
+		return type[i];
+	}
+
+	/**
+	 * @param i index of obstacle
+	 * @return wall: left side - bumper: center x
+	 */
+	public double getA(int i) {
+		return a[i];
+	}
+
+	/**
+	 * @param i index of obstacle
+	 * @return wall: top side - bumper: center y
+	 */
+	public double getB(int i) {
+		return b[i];
+	}
+
+	/**
+	 * @param i index of obstacle
+	 * @return wall: right side - bumper: radius
+	 */
+	public double getC(int i) {
+		return c[i];
+	}
+
+	/**
+	 * @param i index of obstacle
+	 * @return wall: bottom side - bumper: radius
+	 */
+	public double getD(int i) {
+		return d[i];
+	}
+
+	/**
+	 * @return x of the normal of the last collision
+	 */
+	public double getHitNormalX() {
+		return hitNormalX;
+	}
+
+	/**
+	 * @return y of the normal of the last collision
+	 */
+	public double getHitNormalY() {
+		return hitNormalY;
+	}
+
+	/**
+	 * @return depth of the overlap of the last collision
+	 */
+	public double getHitDepth() {
+		return hitDepth;
+	}
+
+	/**
+	 * @return the BVH of the obstacles
+	 */
+	public PongBVH getBVH() {
+		return bvh;
+	}
+
+}
@@ -0,0 +1,494 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PongMatch - a headless pong match without any JavaFX dependencies.
+ *
+ * <p>
+ * The match implements the same rules as {@link PongModel} but keeps its state in plain fields and is
+ * advanced by calling <code>tick()</code> instead of being driven by JavaFX timelines. One tick moves
+ * the paddles and the ball once - like one cycle of both timelines of the model. The acceleration of the
+ * model after each paddle hit changes the rate of the timelines and not the distance per tick, so
+ * it does not change the outcome of a headless match. It is only needed to convert ticks into time
+ * (see <code>getTickDuration()</code>).<br>
+ * The serves use a seeded {@link PongRandom} so a match with the same seed and the same paddle inputs
+ * always plays the same.
+ *
+ * <p>
+ * The complete state can be saved into a fixed number of bytes and restored again, e.g. to roll 
+ * back a match when an input of a remote player arrives late (see {@link PongRollback}).
+ *
+ * <p>
+ * Used to run matches of AI players as fast as possible, e.g. in tournaments.
+ *
+ * @author Frank Kopp
+ */
+public class PongMatch {
+
+	/**
+	 * Events happening in a tick - see <code>getEvents()</code>
+	 */
+	public static final int EVENT_WALL = 1;
+	public static final int EVENT_LEFT_HIT = 2;
+	public static final int EVENT_RIGHT_HIT = 4;
+	public static final int EVENT_GOAL_LEFT = 8;
+	public static final int EVENT_GOAL_RIGHT = 16;
+
+	/**
+	 * Number of bytes of a snapshot - see <code>saveState()</code>
+	 */
+	public static final int STATE_BYTES = 120;
+
+	// configuration - the geometry is copied from the rules
+	private PongRules rules;
+	private double playfieldWidth;
+	private double playfieldHeight;
+	private double ballSize;
+	private double paddleLength;
+	private double paddleWidth;
+	private double leftPaddleX;
+	private double rightPaddleX;
+	private boolean anglePaddle = true;
+
+	private final PongRandom random;
+
+	// state
+	private long tick = 0;
+	private double ballCenterX;
+	private double ballCenterY;
+	private double speedX;
+	private double speedY;
+	private double leftPaddleY;
+	private double rightPaddleY;
+	private int leftPoints = 0;
+	private int rightPoints = 0;
+	private int hitsSinceGoal = 0;
+	private double tickDuration;
+
+	// input: -1 up, 0 none, 1 down
+	private int leftInput = 0;
+	private int rightInput = 0;
+
+	// what happened in the last tick
+	private int events = 0;
+	private double lastHitPos = 0.0;
+
+	/**
+	 * Creates a match and serves the first ball.
+	 * @param seed for the serves
+	 */
+	public PongMatch(long seed) {
+		this(seed, PongRules.DEFAULT);
+	}
+
+	/**
+	 * Creates a match with the given rules and serves the first ball.
+	 * @param seed for the serves
+	 * @param rules
+	 */
+	public PongMatch(long seed, PongRules rules) {
+		random = new PongRandom(seed);
+		setRules(rules);
+		reset(seed);
+	}
+
+	/**
+	 * Changes the rules between two ticks. A ball or paddle outside of a smaller playfield is 
+	 * moved back in. The speed of the ball changes with the next hit or serve.
+	 * @param rules
+	 */
+	public void setRules(PongRules rules) {
+		this.rules = rules;
+		playfieldWidth = rules.getPlayfieldWidth();
+		playfieldHeight = rules.getPlayfieldHeight();
+		ballSize = rules.getBallSize();
+		paddleLength = rules.getPaddleLength();
+		paddleWidth = rules.getPaddleWidth();
+		leftPaddleX = rules.getPaddleX();
+		rightPaddleX = playfieldWidth - rules.getPaddleX() - paddleWidth;
+		leftPaddleY = Math.max(0, Math.min(leftPaddleY, playfieldHeight - paddleLength));
+		rightPaddleY = Math.max(0, Math.min(rightPaddleY, playfieldHeight - paddleLength));
+		ballCenterX = Math.min(ballCenterX, playfieldWidth);
+		ballCenterY = Math.min(ballCenterY, playfieldHeight);
+	}
+
+	/**
+	 * @return the rules of the match
+	 */
+	public PongRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Starts a new match with the given seed and serves the first ball. Inputs and the
+	 * angle paddle option are kept.
+	 * @param seed for the serves
+	 */
+	public void reset(long seed) {
+		random.setSeed(seed);
+		tick = 0;
+		leftPoints = 0;
+		rightPoints = 0;
+		hitsSinceGoal = 0;
+		tickDuration = 1.0 / rules.getBallTicksPerSecond();
+		events = 0;
+		lastHitPos = 0.0;
+		leftPaddleY = playfieldHeight / 2 - paddleLength / 2;
+		rightPaddleY = playfieldHeight / 2 - paddleLength / 2;
+		// same order of random numbers as PongModel.startGame()
+		if (random.nextBoolean()) {
+			ballCenterX = ballSize;
+			speedX = rules.getBallMoveIncrements();
+		} else {
+			ballCenterX = playfieldWidth - ballSize;
+			speedX = -rules.getBallMoveIncrements();
+		}
+		ballCenterY = random.nextDouble() * playfieldHeight;
+		speedY = rules.getBallMoveIncrements() * (random.nextBoolean() ? 1 : -1);
+	}
+
+	/**
+	 * Advances the match by one tick: moves the paddles according to the inputs, moves the ball and
+	 * handles collisions and goals.
+	 */
+	public void tick() {
+		events = 0;
+		movePaddles();
+		ballCenterX += speedX;
+		ballCenterY += speedY;
+		checkCollision();
+		tick++;
+	}
+
+	private void movePaddles() {
+		final double step = rules.getPaddleMoveSteps();
+		if (leftInput < 0 && leftPaddleY > 0.0) {
+			leftPaddleY -= step;
+		}
+		if (leftInput > 0 && leftPaddleY + paddleLength < playfieldHeight) {
+			leftPaddleY += step;
+		}
+		if (rightInput < 0 && rightPaddleY > 0.0) {
+			rightPaddleY -= step;
+		}
+		if (rightInput > 0 && rightPaddleY + paddleLength < playfieldHeight) {
+			rightPaddleY += step;
+		}
+	}
+
+	/**
+	 * Same as <code>PongModel.checkCollision()</code>
+	 */
+	private void checkCollision() {
+		final double xMin = ballCenterX - ballSize;
+		final double xMax = ballCenterX + ballSize;
+		final double yMin = ballCenterY - ballSize;
+		final double yMax = ballCenterY + ballSize;
+
+		// hit top or bottom wall
+		if (yMin < 0 || yMax > playfieldHeight) {
+			events |= EVENT_WALL;
+			speedY = -speedY;
+		}
+
+		// hit left or right wall
+		if (xMax < 0 || xMin > playfieldWidth) {
+			goal(xMin >= 0);
+		}
+
+		// hit on a paddle - left
+		if (speedX < 0
+				&& ballCenterX - ballSize <= leftPaddleX + paddleWidth
+				&& ballCenterY + ballSize > leftPaddleY
+				&& ballCenterY - ballSize < leftPaddleY + paddleLength) {
+			events |= EVENT_LEFT_HIT;
+			paddleHit(leftPaddleY);
+		} // hit on a paddle - right
+		else if (speedX > 0
+				&& ballCenterX + ballSize >= rightPaddleX
+				&& ballCenterY + ballSize > rightPaddleY
+				&& ballCenterY - ballSize < rightPaddleY + paddleLength) {
+			events |= EVENT_RIGHT_HIT;
+			paddleHit(rightPaddleY);
+		}
+	}
+
+	private void paddleHit(double paddleY) {
+		hitsSinceGoal++;
+		tickDuration /= rules.getAcceleration();
+		// center = 0.0, top=-1-0, bottom=+1.0
+		lastHitPos = 2.0 * (((ballCenterY - paddleY) / paddleLength) - 0.5);
+		if (anglePaddle) {
+			final PongResponseCurve curve = rules.getResponseCurve();
+			speedY = rules.getBallSpeed() * curve.getY(lastHitPos);
+			speedX = -Math.signum(speedX) * rules.getBallSpeed() * curve.getX(lastHitPos);
+		} else {
+			speedX = -speedX;
+		}
+	}
+
+	private void goal(boolean leftScored) {
+		hitsSinceGoal = 0;
+		tickDuration = 1.0 / rules.getBallTicksPerSecond();
+		if (leftScored) {
+			events |= EVENT_GOAL_LEFT;
+			ballCenterX = ballSize;
+			speedX = rules.getBallMoveIncrements();
+			leftPoints++;
+		} else {
+			events |= EVENT_GOAL_RIGHT;
+			ballCenterX = playfieldWidth - ballSize;
+			speedX = -rules.getBallMoveIncrements();
+			rightPoints++;
+		}
+		ballCenterY = random.nextDouble() * playfieldHeight;
+		speedY = rules.getBallMoveIncrements() * (random.nextBoolean() ? 1 : -1);
+	}
+
+	/**
+	 * Saves the complete state of the match (including the random generator and the inputs).
+	 * Uses absolute puts - the position of the buffer is not changed.
+	 * @param buffer
+	 * @param offset where to write STATE_BYTES bytes
+	 */
+	public void saveState(ByteBuffer buffer, int offset) {
+		buffer.putLong(offset, tick);
+		buffer.putDouble(offset + 8, ballCenterX);
+		buffer.putDouble(offset + 16, ballCenterY);
+		buffer.putDouble(offset + 24, speedX);
+		buffer.putDouble(offset + 32, speedY);
+		buffer.putDouble(offset + 40, leftPaddleY);
+		buffer.putDouble(offset + 48, rightPaddleY);
+		buffer.putDouble(offset + 56, tickDuration);
+		buffer.putDouble(offset + 64, lastHitPos);
+		buffer.putLong(offset + 72, random.getSeed());
+		buffer.putLong(offset + 80, random.getState());
+		buffer.putInt(offset + 88, leftPoints);
+		buffer.putInt(offset + 92, rightPoints);
+		buffer.putInt(offset + 96, hitsSinceGoal);
+		buffer.putInt(offset + 100, leftInput);
+		buffer.putInt(offset + 104, rightInput);
+		buffer.putInt(offset + 108, events);
+		buffer.putInt(offset + 112, anglePaddle ? 1 : 0);
+	}
+
+	/**
+	 * Restores a state saved with <code>saveState()</code>.
+	 * @param buffer
+	 * @param offset where the state has been written
+	 */
+	public void loadState(ByteBuffer buffer, int offset) {
+		tick = buffer.getLong(offset);
+		ballCenterX = buffer.getDouble(offset + 8);
+		ballCenterY = buffer.getDouble(offset + 16);
+		speedX = buffer.getDouble(offset + 24);
+		speedY = buffer.getDouble(offset + 32);
+		leftPaddleY = buffer.getDouble(offset + 40);
+		rightPaddleY = buffer.getDouble(offset + 48);
+		tickDuration = buffer.getDouble(offset + 56);
+		lastHitPos = buffer.getDouble(offset + 64);
+		random.setSeed(buffer.getLong(offset + 72));
+		random.setState(buffer.getLong(offset + 80));
+		leftPoints = buffer.getInt(offset + 88);
+		rightPoints = buffer.getInt(offset + 92);
+		hitsSinceGoal = buffer.getInt(offset + 96);
+		leftInput = buffer.getInt(offset + 100);
+		rightInput = buffer.getInt(offset + 104);
+		events = buffer.getInt(offset + 108);
+		anglePaddle = buffer.getInt(offset + 112) != 0;
+	}
+
+	/* ************************************************************
+	 * GETTER / SETTER
+	 * ************************************************************/
+
+	/**
+	 * Copies the visible state of the match - a headless match is always running.
+	 * @param state receives the state
+	 */
+	public void getState(PongState state) {
+		state.tick = tick;
+		state.ballX = ballCenterX;
+		state.ballY = ballCenterY;
+		state.speedX = speedX;
+		state.speedY = speedY;
+		state.leftPaddleY = leftPaddleY;
+		state.rightPaddleY = rightPaddleY;
+		state.leftPoints = leftPoints;
+		state.rightPoints = rightPoints;
+		state.paused = false;
+		state.running = true;
+	}
+
+	/**
+	 * @param input -1 to move the left paddle up, 1 to move it down, 0 to stop
+	 */
+	public void setLeftInput(int input) {
+		leftInput = input;
+	}
+
+	/**
+	 * @param input -1 to move the right paddle up, 1 to move it down, 0 to stop
+	 */
+	public void setRightInput(int input) {
+		rightInput = input;
+	}
+
+	/**
+	 * @param anglePaddle same as the Angling Paddle option of the model
+	 */
+	public void setAnglePaddle(boolean anglePaddle) {
+		this.anglePaddle = anglePaddle;
+	}
+
+	/**
+	 * @return number of ticks played
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return duration of the last tick in seconds if played in the UI (which speeds up after each hit)
+	 */
+	public double getTickDuration() {
+		return tickDuration;
+	}
+
+	/**
+	 * @return the events of the last tick as bits (EVENT_*)
+	 */
+	public int getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return hit position of the last paddle hit (-1.0 top to 1.0 bottom)
+	 */
+	public double getLastHitPos() {
+		return lastHitPos;
+	}
+
+	/**
+	 * @return ball's center horizontal position
+	 */
+	public double getBallCenterX() {
+		return ballCenterX;
+	}
+
+	/**
+	 * @return ball's center vertical position
+	 */
+	public double getBallCenterY() {
+		return ballCenterY;
+	}
+
+	/**
+	 * @return the ball's speed in horizontal direction per tick
+	 */
+	public double getSpeedX() {
+		return speedX;
+	}
+
+	/**
+	 * @return the ball's speed in vertical direction per tick
+	 */
+	public double getSpeedY() {
+		return speedY;
+	}
+
+	/**
+	 * @return the left paddle's vertical position (upper corner)
+	 */
+	public double getLeftPaddleY() {
+		return leftPaddleY;
+	}
+
+	/**
+	 * @return the right paddle's vertical position (upper corner)
+	 */
+	public double getRightPaddleY() {
+		return rightPaddleY;
+	}
+
+	/**
+	 * @return points of the left player
+	 */
+	public int getLeftPoints() {
+		return leftPoints;
+	}
+
+	/**
+	 * @return points of the right player
+	 */
+	public int getRightPoints() {
+		return rightPoints;
+	}
+
+	/**
+	 * @return the playfield width
+	 */
+	public double getPlayfieldWidth() {
+		return playfieldWidth;
+	}
+
+	/**
+	 * @return the playfield height
+	 */
+	public double getPlayfieldHeight() {
+		return playfieldHeight;
+	}
+
+	/**
+	 * @return the ball size (radius)
+	 */
+	public double getBallSize() {
+		return ballSize;
+	}
+
+	/**
+	 * @return the length of the paddles
+	 */
+	public double getPaddleLength() {
+		return paddleLength;
+	}
+
+	/**
+	 * @return horizontal position of the left paddle's inner side
+	 */
+	public double getLeftPaddleFront() {
+		return leftPaddleX + paddleWidth;
+	}
+
+	/**
+	 * @return horizontal position of the right paddle's inner side
+	 */
+	public double getRightPaddleFront() {
+		return rightPaddleX;
+	}
+
+}
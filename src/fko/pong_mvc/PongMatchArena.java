@@ -0,0 +1,244 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * PongMatchArena - stores the state of many headless matches off-heap for a game server.
+ *
+ * <p>
+ * Each match is a fixed size slot of SLOT_BYTES in one direct ByteBuffer which is allocated when
+ * the arena is created. A match therefore costs no objects on the heap - the garbage collector
+ * only sees the arena, no matter how many matches are running. The slot holds the state written
+ * by <code>PongMatch.saveState()</code> followed by the slot's status and the link of the
+ * free-list.<br>
+ * Freed slots are kept in a free-list linked through the slots themselves and are reused first.
+ * Slots which have never been used are taken from the end of the used area.
+ *
+ * <p>
+ * The matches are played with one {@link PongMatch} as flyweight: <code>load()</code> copies a
+ * slot into it, <code>store()</code> copies it back. <code>tick()</code> does both around one
+ * tick of the match. An arena is not thread safe - use one arena per thread.
+ *
+ * @author Frank Kopp
+ */
+public class PongMatchArena {
+
+	// state, status and free-list link - padded to two cache lines
+	public static final int SLOT_BYTES = 128;
+
+	// offsets behind the state of the match
+	private static final int STATUS_OFFSET = PongMatch.STATE_BYTES;
+	private static final int NEXT_FREE_OFFSET = PongMatch.STATE_BYTES + 4;
+
+	private static final int FREE = 0;
+	private static final int USED = 0x504F4E47; // "PONG"
+	private static final int NONE = -1;
+
+	private final int capacity;
+	private final ByteBuffer slots;
+	private final PongMatch flyweight = new PongMatch(0);
+
+	// first free slot and number of slots ever used
+	private int freeHead = NONE;
+	private int top = 0;
+	private int size = 0;
+
+	/**
+	 * @param capacity maximal number of matches
+	 */
+	public PongMatchArena(int capacity) {
+		if (capacity < 1 || capacity > Integer.MAX_VALUE / SLOT_BYTES) {
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		}
+		this.capacity = capacity;
+		// native order - the slots never leave the process and need no byte swapping
+		this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Starts a new match in a free slot.
+	 * @param seed for the serves of the match
+	 * @return the slot of the match - NONE (-1) if the arena is full
+	 */
+	public int allocate(long seed) {
+		final int slot;
+		if (freeHead != NONE) {
+			slot = freeHead;
+			freeHead = slots.getInt(slot * SLOT_BYTES + NEXT_FREE_OFFSET);
+		} else if (top < capacity) {
+			slot = top++;
+		} else {
+			return NONE;
+		}
+		flyweight.reset(seed);
+		flyweight.setLeftInput(0);
+		flyweight.setRightInput(0);
+		flyweight.setAnglePaddle(true);
+		flyweight.saveState(slots, slot * SLOT_BYTES);
+		slots.putInt(slot * SLOT_BYTES + STATUS_OFFSET, USED);
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Ends the match in the slot and makes the slot available again.
+	 * @param slot
+	 */
+	public void free(int slot) {
+		check(slot);
+		final int offset = slot * SLOT_BYTES;
+		slots.putInt(offset + STATUS_OFFSET, FREE);
+		slots.putInt(offset + NEXT_FREE_OFFSET, freeHead);
+		freeHead = slot;
+		size--;
+	}
+
+	/**
+	 * Plays one tick of the match in the slot.
+	 * @param slot
+	 * @param leftInput -1 up, 0 none, 1 down
+	 * @param rightInput -1 up, 0 none, 1 down
+	 * @return the events of the tick (PongMatch.EVENT_...)
+	 */
+	public int tick(int slot, int leftInput, int rightInput) {
+		final PongMatch match = load(slot);
+		match.setLeftInput(leftInput);
+		match.setRightInput(rightInput);
+		match.tick();
+		store(slot);
+		return match.getEvents();
+	}
+
+	/**
+	 * Copies the match in the slot into the flyweight. The flyweight is valid until the next call
+	 * to any method of the arena.
+	 * @param slot
+	 * @return the flyweight holding the match
+	 */
+	public PongMatch load(int slot) {
+		check(slot);
+		flyweight.loadState(slots, slot * SLOT_BYTES);
+		return flyweight;
+	}
+
+	/**
+	 * Copies the flyweight back into the slot - after it has been changed.
+	 * @param slot
+	 */
+	public void store(int slot) {
+		check(slot);
+		flyweight.saveState(slots, slot * SLOT_BYTES);
+	}
+
+	/**
+	 * Copies the raw slot (state and status) - e.g. into a checkpoint.
+	 * @param slot any slot below the capacity
+	 * @param dst
+	 * @param offset where to write SLOT_BYTES bytes
+	 */
+	public void writeSlot(int slot, ByteBuffer dst, int offset) {
+		final int from = slot * SLOT_BYTES;
+		for (int i = 0; i < SLOT_BYTES; i += 8) {
+			dst.putLong(offset + i, slots.getLong(from + i));
+		}
+	}
+
+	/**
+	 * Overwrites the raw slot with a copy made by <code>writeSlot()</code>. After all slots have 
+	 * been read <code>rebuild()</code> has to be called.
+	 * @param slot any slot below the capacity
+	 * @param src
+	 * @param offset where SLOT_BYTES bytes have been written
+	 */
+	public void readSlot(int slot, ByteBuffer src, int offset) {
+		final int to = slot * SLOT_BYTES;
+		for (int i = 0; i < SLOT_BYTES; i += 8) {
+			slots.putLong(to + i, src.getLong(offset + i));
+		}
+	}
+
+	/**
+	 * Rebuilds the number of matches and the free-list from the status of all slots.
+	 */
+	public void rebuild() {
+		top = 0;
+		size = 0;
+		freeHead = NONE;
+		for (int slot = capacity - 1; slot >= 0; slot--) {
+			final int offset = slot * SLOT_BYTES;
+			if (slots.getInt(offset + STATUS_OFFSET) == USED) {
+				if (top == 0) top = slot + 1;
+				size++;
+			} else if (top > 0) {
+				slots.putInt(offset + STATUS_OFFSET, FREE);
+				slots.putInt(offset + NEXT_FREE_OFFSET, freeHead);
+				freeHead = slot;
+			}
+		}
+	}
+
+	/**
+	 * @param slot
+	 * @return true if the slot holds a match
+	 */
+	public boolean isAllocated(int slot) {
+		return slot >= 0 && slot < top && slots.getInt(slot * SLOT_BYTES + STATUS_OFFSET) == USED;
+	}
+
+	private void check(int slot) {
+		if (!isAllocated(slot)) throw new IllegalArgumentException("No match in slot " + slot);
+	}
+
+	/**
+	 * @return number of slots ever used - all matches are in slots below
+	 */
+	public int getTop() {
+		return top;
+	}
+
+	/**
+	 * @return maximal number of matches
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of matches
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return off-heap bytes of the arena
+	 */
+	public long getMemoryBytes() {
+		return (long) capacity * SLOT_BYTES;
+	}
+
+}
@@ -0,0 +1,326 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongMatchStatistics - collects statistics of one or many matches.
+ *
+ * <p>
+ * The statistics are fed with the same information a recording contains - the positions at the end
+ * of every tick and the events (wall, paddle hit, goal) happening in a tick. They can therefore be
+ * collected live by the model or offline from recordings (see {@link PongAnalytics}).<br>
+ * The statistics of the two players are kept in {@link PongPlayerStatistics} objects which are usually
+ * owned by the players.<br>
+ * All values use constant memory regardless of the length or number of the matches.
+ *
+ * @author Frank Kopp
+ */
+public class PongMatchStatistics {
+
+	private final PongPlayerStatistics left;
+	private final PongPlayerStatistics right;
+
+	// number of matches, ticks and time played
+	private long matches = 0;
+	private long ticks = 0;
+	private double seconds = 0.0;
+
+	// rally length in paddle hits
+	private long rallies = 0;
+	private long rallyHits = 0;
+	private int rallyMax = 0;
+	private int currentRally = 0;
+
+	// ball speed in pixel per second
+	private double maxBallSpeed = 0.0;
+
+	// last positions - NaN when unknown (start and after goals)
+	private double lastBallX = Double.NaN;
+	private double lastBallY = Double.NaN;
+	private double lastLeftY = Double.NaN;
+	private double lastRightY = Double.NaN;
+
+	// horizontal direction of the ball and start of the reaction time measurement (-1 if not measuring)
+	private int direction = 0;
+	private double leftReactionStart = -1.0;
+	private double rightReactionStart = -1.0;
+
+	/**
+	 * Creates statistics with new player statistics.
+	 */
+	public PongMatchStatistics() {
+		this(new PongPlayerStatistics(), new PongPlayerStatistics());
+	}
+
+	/**
+	 * Creates statistics which feed into the given player statistics.
+	 * @param left
+	 * @param right
+	 */
+	public PongMatchStatistics(PongPlayerStatistics left, PongPlayerStatistics right) {
+		this.left = left;
+		this.right = right;
+	}
+
+	/**
+	 * Starts a new match. Values of previous matches are kept.
+	 */
+	public void startMatch() {
+		matches++;
+		currentRally = 0;
+		resetTracking();
+	}
+
+	/**
+	 * Resets all values including the player statistics.
+	 */
+	public void reset() {
+		matches = 0;
+		ticks = 0;
+		seconds = 0.0;
+		rallies = 0;
+		rallyHits = 0;
+		rallyMax = 0;
+		currentRally = 0;
+		maxBallSpeed = 0.0;
+		left.reset();
+		right.reset();
+		resetTracking();
+	}
+
+	/**
+	 * The ball has hit a paddle.
+	 * @param leftPaddle true for the left paddle
+	 * @param hitPos position where the ball hit the paddle (-1.0 top to 1.0 bottom)
+	 */
+	public void onPaddleHit(boolean leftPaddle, double hitPos) {
+		(leftPaddle ? left : right).addHit(hitPos);
+		currentRally++;
+	}
+
+	/**
+	 * A player has scored. Ends the current rally.
+	 * @param leftScored true if the left player scored
+	 */
+	public void onGoal(boolean leftScored) {
+		if (leftScored) {
+			left.addGoal();
+			right.addGoalConceded();
+		} else {
+			right.addGoal();
+			left.addGoalConceded();
+		}
+		rallies++;
+		rallyHits += currentRally;
+		rallyMax = Math.max(rallyMax, currentRally);
+		currentRally = 0;
+		// the ball is served again - positions jump and the direction is new
+		lastBallX = Double.NaN;
+		lastBallY = Double.NaN;
+		direction = 0;
+		leftReactionStart = -1.0;
+		rightReactionStart = -1.0;
+	}
+
+	/**
+	 * A player has scored with an extra ball. The rally of the ball goes on.
+	 * @param leftScored true if the left player scored
+	 */
+	public void onExtraGoal(boolean leftScored) {
+		if (leftScored) {
+			left.addGoal();
+			right.addGoalConceded();
+		} else {
+			right.addGoal();
+			left.addGoalConceded();
+		}
+	}
+
+	/**
+	 * End of a tick with the positions at the end of the tick.
+	 * @param duration of the tick in seconds
+	 * @param ballX
+	 * @param ballY
+	 * @param leftY
+	 * @param rightY
+	 */
+	public void onTick(double duration, double ballX, double ballY, double leftY, double rightY) {
+		ticks++;
+		seconds += duration;
+
+		// paddles
+		if (!Double.isNaN(lastLeftY)) {
+			final double moved = Math.abs(leftY - lastLeftY);
+			left.addPaddleTravel(moved);
+			if (moved > 0.0 && leftReactionStart >= 0.0) {
+				left.addReaction(seconds - leftReactionStart);
+				leftReactionStart = -1.0;
+			}
+		}
+		if (!Double.isNaN(lastRightY)) {
+			final double moved = Math.abs(rightY - lastRightY);
+			right.addPaddleTravel(moved);
+			if (moved > 0.0 && rightReactionStart >= 0.0) {
+				right.addReaction(seconds - rightReactionStart);
+				rightReactionStart = -1.0;
+			}
+		}
+
+		// ball
+		if (!Double.isNaN(lastBallX)) {
+			final double dx = ballX - lastBallX;
+			final double dy = ballY - lastBallY;
+			if (duration > 0.0) {
+				maxBallSpeed = Math.max(maxBallSpeed, Math.sqrt(dx * dx + dy * dy) / duration);
+			}
+			// ball turned towards one player - start measuring this player's reaction
+			final int newDirection = dx < 0 ? -1 : dx > 0 ? 1 : direction;
+			if (newDirection != direction) {
+				if (newDirection < 0) {
+					leftReactionStart = seconds;
+					rightReactionStart = -1.0;
+				} else {
+					rightReactionStart = seconds;
+					leftReactionStart = -1.0;
+				}
+				direction = newDirection;
+			}
+		}
+
+		lastBallX = ballX;
+		lastBallY = ballY;
+		lastLeftY = leftY;
+		lastRightY = rightY;
+	}
+
+	/**
+	 * Adds the values of another statistic (including its player statistics) to this one.
+	 * @param other
+	 */
+	public void merge(PongMatchStatistics other) {
+		matches += other.matches;
+		ticks += other.ticks;
+		seconds += other.seconds;
+		rallies += other.rallies;
+		rallyHits += other.rallyHits;
+		rallyMax = Math.max(rallyMax, other.rallyMax);
+		maxBallSpeed = Math.max(maxBallSpeed, other.maxBallSpeed);
+		left.merge(other.left);
+		right.merge(other.right);
+	}
+
+	private void resetTracking() {
+		lastBallX = Double.NaN;
+		lastBallY = Double.NaN;
+		lastLeftY = Double.NaN;
+		lastRightY = Double.NaN;
+		direction = 0;
+		leftReactionStart = -1.0;
+		rightReactionStart = -1.0;
+	}
+
+	/**
+	 * @return a multi line summary of the statistics
+	 */
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.US, "Matches %d  ticks %d  time played %.1f s%n", matches, ticks, seconds));
+		sb.append(String.format(Locale.US, "Rallies %d  mean length %.2f hits  longest %d hits%n",
+				rallies, getRallyMean(), rallyMax));
+		sb.append(String.format(Locale.US, "Max ball speed %.1f px/s%n", maxBallSpeed));
+		sb.append("Left player").append(String.format("%n")).append(left.summary());
+		sb.append("Right player").append(String.format("%n")).append(right.summary());
+		return sb.toString();
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return statistics of the left player
+	 */
+	public PongPlayerStatistics getLeft() {
+		return left;
+	}
+
+	/**
+	 * @return statistics of the right player
+	 */
+	public PongPlayerStatistics getRight() {
+		return right;
+	}
+
+	/**
+	 * @return number of matches
+	 */
+	public long getMatches() {
+		return matches;
+	}
+
+	/**
+	 * @return number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return time played in seconds
+	 */
+	public double getSeconds() {
+		return seconds;
+	}
+
+	/**
+	 * @return number of finished rallies
+	 */
+	public long getRallies() {
+		return rallies;
+	}
+
+	/**
+	 * @return mean rally length in paddle hits
+	 */
+	public double getRallyMean() {
+		return rallies > 0 ? (double) rallyHits / rallies : 0.0;
+	}
+
+	/**
+	 * @return longest rally in paddle hits
+	 */
+	public int getRallyMax() {
+		return rallyMax;
+	}
+
+	/**
+	 * @return maximal ball speed in pixel per second
+	 */
+	public double getMaxBallSpeed() {
+		return maxBallSpeed;
+	}
+
+}
@@ -23,13 +23,28 @@ SOFTWARE.
  */
 package fko.pong_mvc;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
 import fko.pong_mvc.PongSounds.Clips;
+import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.util.Duration;
 
 /**
@@ -43,6 +58,8 @@ import javafx.util.Duration;
  * paddle.<br>
  * The balls is accelerated every time it hits a paddle to make the game faster until the next goal. Then 
  * the speed is reset.<br>
+ * In the arena mode more players play with a paddle each on all four sides - the paddles, the ball and the 
+ * points are then those of a {@link PongArena}.<br>
  * The ball bouncing of paddles may use different mechanics. The most simple one being just to change the 
  * horizontal direction. Advanced mechanics allow the paddle to influence the direction of the ball as it
  * bounces off.<br>
@@ -54,26 +71,113 @@ import javafx.util.Duration;
  */
 public class PongModel {
 
-	private static final double 	INITIAL_PLAYFIELD_HEIGHT = 400.0;
-	private static final double 	INITIAL_PLAYFIELD_WIDTH = 600.0; 
+	static final double 	INITIAL_PLAYFIELD_HEIGHT = 400.0;
+	static final double 	INITIAL_PLAYFIELD_WIDTH = 600.0; 
+
+	static final double 	PADDLE_MOVE_STEPS = 2.0;
+	static final double 	BALL_MOVE_INCREMENTS = 2.0;
+	static final double 	BALL_SPEED = Math.sqrt(2 * BALL_MOVE_INCREMENTS * BALL_MOVE_INCREMENTS);
+	static final double 	MAX_ANGLE_DEGREE = 60.0;
+
+	static final double 	INITIAL_BALL_SIZE = 5.0;
+	static final double 	INITIAL_PADDLE_LENGTH = 60.0;
+	static final double 	INITIAL_PADDLE_WIDTH = 10.0;
+	static final double 	INITIAL_PADDLE_X = 10.0;
+
+	static final double 	INITIAL_BALL_SPEED = 60.0;
+	static final double 	INITIAL_PADDLE_SPEED = 60.0;
+	static final double 	ACCELARATION = 1.1; // factor
+
+	// power-ups - a new one is launched from the center every interval (ticks)
+	static final int 		POWERUP_MULTIBALL = 0;
+	static final int 		POWERUP_EXTRA_PADDLE = 1;
+	static final int 		POWERUP_INTERVAL = 600;
+	static final double 	POWERUP_SIZE = 16.0;
+	static final double 	EXTRA_PADDLE_LIFETIME = 900.0;
+
+	// instant replay after a goal - speed of the slow motion replay
+	static final double 	REPLAY_SLOW_MOTION = 0.4;
 
-	private static final double 	PADDLE_MOVE_STEPS = 2.0;
-	private static final double 	BALL_MOVE_INCREMENTS = 2.0;
-	private static final double 	BALL_SPEED = Math.sqrt(2 * BALL_MOVE_INCREMENTS * BALL_MOVE_INCREMENTS);
-	private static final double 	MAX_ANGLE_DEGREE = 60.0;
+	// where match recordings are stored
+	private static final Path		RECORDING_FOLDER = 
+			Paths.get(System.getProperty("user.home"), ".pong", "recordings");
 
-	private static final double 	INITIAL_BALL_SIZE = 5.0;
-	private static final double 	INITIAL_PADDLE_LENGTH = 60.0;
-	private static final double 	INITIAL_PADDLE_WIDTH = 10.0;
-	private static final double 	INITIAL_PADDLE_X = 10.0;
+	// where player profiles are stored
+	private static final Path		PROFILE_FOLDER = 
+			Paths.get(System.getProperty("user.home"), ".pong", "profiles");
 
-	private static final double 	INITIAL_BALL_SPEED = 60.0;
-	private static final double 	INITIAL_PADDLE_SPEED = 60.0;
-	private static final double 	ACCELARATION = 1.1; // factor
+	// sizes, speeds and the bounce of the ball - may be changed between two ticks
+	private PongRules rules = PongRules.DEFAULT;
+	// reloads the rules file when it changes - null if the default rules are used
+	private PongRulesWatcher rulesWatcher = null;
 
 	// sounds
 	private PongSounds sounds = new PongSounds();
 
+	// random generator for the serves - seeded for each game so recordings can be reproduced
+	private PongRandom random = new PongRandom();
+
+	// records the current game if the record option is on - null otherwise
+	private PongRecorder recorder = null;
+
+	// profiles and leaderboard of all players - results are stored when a game is stopped
+	// opened with the first use so the start of the game does not wait for it
+	private PongProfileStore profiles = null;
+
+	// tournament whose matches with human players are played in the UI - null if none
+	private PongTournament tournament = null;
+	private PongTournament.Match tournamentMatch = null;
+
+	// AI players controlling a paddle in a tournament match - null for human players
+	private PongAIPlayer leftAI = null;
+	private PongAIPlayer rightAI = null;
+
+	// statistics of the current game - feeds into the players' statistics
+	private PongMatchStatistics statistics = new PongMatchStatistics();
+
+	// broadcasts the game to spectators - null if not started
+	private PongSpectatorServer spectators = null;
+	private final PongState spectatorState = new PongState();
+
+	// visual effects - trail of the ball and sparks on collisions
+	private PongParticles particles = new PongParticles(PongParticles.DEFAULT_CAPACITY);
+
+	// game events published by the simulation and the consumers reading them - polled every tick
+	// in this order so the recorder sees the events of a tick before the tick itself
+	private PongEventBus events = new PongEventBus(PongEventBus.DEFAULT_CAPACITY);
+	private PongEventBus.Consumer recorderEvents = events.subscribe(this::recordEvent);
+	private PongEventBus.Consumer statisticsEvents = events.subscribe(this::countEvent);
+	private PongEventBus.Consumer soundEvents = events.subscribe(this::playEvent);
+	private PongEventBus.Consumer effectEvents = events.subscribe(this::showEvent);
+	private PongEventBus.Consumer scoreEvents = events.subscribe(this::scoreEvent);
+
+	// additional game objects (extra balls, extra paddles, power-ups) and the systems updating them
+	private PongWorld world = new PongWorld();
+	private PongSystems systems = new PongSystems(world, new PongSystems.Listener() {
+		@Override
+		public void onBounce(double x, double y) {
+			events.publish(PongEventBus.BOUNCE, false, x, y, 0);
+		}
+		@Override
+		public void onPickup(int kind, boolean left) {
+			events.publish(PongEventBus.PICKUP, left, 0, 0, kind);
+			applyPowerUp(kind, left);
+		}
+		@Override
+		public void onScore(boolean left, double x, double y) {
+			events.publish(PongEventBus.EXTRA_GOAL, left, x, y, 0);
+		}
+	});
+	private int powerUpTimer = 0;
+
+	// the last seconds of the game for the instant replay after a goal
+	private double replaySeconds = PongReplay.DEFAULT_SECONDS;
+	private PongReplay replay = createReplay();
+	// positions after the goal which are restored when the replay has ended
+	private final PongState replayServe = new PongState();
+	private final PongState replayState = new PongState();
+	private BooleanProperty replaying = new SimpleBooleanProperty(false);
+
 	// configuration of game objects
 	private DoubleProperty playfieldWidth = new SimpleDoubleProperty(INITIAL_PLAYFIELD_WIDTH);
 	private DoubleProperty playfieldHeight = new SimpleDoubleProperty(INITIAL_PLAYFIELD_HEIGHT);
@@ -94,13 +198,30 @@ public class PongModel {
 	private DoubleProperty rightPaddleLength = new SimpleDoubleProperty(INITIAL_PADDLE_LENGTH);
 	private DoubleProperty rightPaddleX = new SimpleDoubleProperty();
 	private DoubleProperty rightPaddleY = new SimpleDoubleProperty();
+	private DoubleProperty paddleWidth = new SimpleDoubleProperty(INITIAL_PADDLE_WIDTH);
 
 	// the current actions applied to move paddles - is used in the paddleMovementTimeline
 	private BooleanProperty leftPaddleUp = new SimpleBooleanProperty(false);
 	private BooleanProperty leftPaddleDown = new SimpleBooleanProperty(false);
 	private BooleanProperty rightPaddleUp = new SimpleBooleanProperty(false);
 	private BooleanProperty rightPaddleDown = new SimpleBooleanProperty(false);
+
+	// mouse control of the paddles - samples are applied once per tick of the paddleMovementTimeline
+	private final PongPointer leftPointer = new PongPointer();
+	private final PongPointer rightPointer = new PongPointer();
+	private boolean pointing = false;
 	
+	// static obstacles in the playfield - null for an empty playfield
+	private ObjectProperty<PongLevel> level = new SimpleObjectProperty<>(null);
+	private int levelIndex = -1;
+
+	// arena mode - the paddles of all players are the goals of the arena, null for the classic game
+	private PongArena arena = null;
+	// keys held by each player of the arena - bit 0 towards the start of its goal, bit 1 towards the end
+	private int[] arenaKeys = new int[0];
+	// counts the changes of the points in the arena mode - the view redraws the points when it changes
+	private IntegerProperty arenaPointChanges = new SimpleIntegerProperty(0);
+
 	// points per player
 	private Player playerLeft = new Player("Left");
 	private Player playerRight = new Player("Right");
@@ -109,13 +230,30 @@ public class PongModel {
 	private BooleanProperty gamePaused = new SimpleBooleanProperty(false);
 	private BooleanProperty gameRunning = new SimpleBooleanProperty(false);
 
+	// power saving - no timeline runs while idle
+	private BooleanProperty idle = new SimpleBooleanProperty(false);
+	private boolean windowIconified = false;
+	// number of animation frames handled by the model - read by the power report
+	private volatile long timelineFrames = 0;
+	// copy of the idle property - read by the power report
+	private volatile boolean idleFlag = false;
+
+	// number of ball movements in the current game
+	private long tick = 0;
+
 	// Options
 	private BooleanProperty soundOnOption 	 = new SimpleBooleanProperty(true);
 	private BooleanProperty anglePaddleOption = new SimpleBooleanProperty(true);
+	private BooleanProperty recordOption = new SimpleBooleanProperty(false);
+	private BooleanProperty powerUpOption = new SimpleBooleanProperty(false);
+	private BooleanProperty replayOption = new SimpleBooleanProperty(false);
+	private BooleanProperty slowMotionOption = new SimpleBooleanProperty(false);
+	private BooleanProperty pointerOption = new SimpleBooleanProperty(false);
 
 	// animations
 	private Timeline ballMovementTimeline = new Timeline();;
 	private Timeline paddleMovementTimeline = new Timeline();
+	private Timeline replayTimeline = new Timeline();
 
 	/**
 	 * Holds all relevant information for a pong game and does all relevant calculations.
@@ -123,8 +261,8 @@ public class PongModel {
 	public PongModel() {
 		
 		// initial paddle positions
-		leftPaddleX.set(INITIAL_PADDLE_X);
-		rightPaddleX.bind(playfieldWidth.subtract(INITIAL_PADDLE_X).subtract(INITIAL_PADDLE_WIDTH));
+		leftPaddleX.set(rules.getPaddleX());
+		rightPaddleX.bind(playfieldWidth.subtract(rules.getPaddleX()).subtract(rules.getPaddleWidth()));
 		leftPaddleY.set(playfieldHeight.get()/2 - leftPaddleLength.get()/2);
 		rightPaddleY.set(playfieldHeight.get()/2 - rightPaddleLength.get()/2);
 		
@@ -137,6 +275,21 @@ public class PongModel {
 			if (soundOnOption.get()) sounds.soundOn();
 			else sounds.soundOff();
 		});
+
+		// stop a running recording when the record option is turned off
+		recordOption.addListener((obs, oldX, newX) -> {
+			if (!recordOption.get()) stopRecording();
+		});
+
+		// let go of the paddles when mouse control is turned off
+		pointerOption.addListener((obs, oldX, newX) -> {
+			if (!pointerOption.get()) pointerReleased();
+		});
+
+		// remove all power-ups, extra balls and paddles when the power-up option is turned off
+		powerUpOption.addListener((obs, oldX, newX) -> {
+			if (!powerUpOption.get()) world.clear();
+		});
 		
 		// initial options
 		soundOnOption.set(false);
@@ -144,16 +297,24 @@ public class PongModel {
 		
 		// start the paddle movements
 		paddleMovementTimeline.setCycleCount(Timeline.INDEFINITE);
-		KeyFrame movePaddle = 
-				new KeyFrame(Duration.seconds(1/INITIAL_PADDLE_SPEED), e -> { movePaddles();	});
-		paddleMovementTimeline.getKeyFrames().add(movePaddle);
-		paddleMovementTimeline.play();
+		setKeyFrame(paddleMovementTimeline, rules.getPaddleTicksPerSecond(), e -> { movePaddles(); });
+
+		// the paddle movements only run while a game is played or a paddle key is pressed
+		leftPaddleUp.addListener((obs, oldX, newX) -> updateIdle());
+		leftPaddleDown.addListener((obs, oldX, newX) -> updateIdle());
+		rightPaddleUp.addListener((obs, oldX, newX) -> updateIdle());
+		rightPaddleDown.addListener((obs, oldX, newX) -> updateIdle());
+		gameRunning.addListener((obs, oldX, newX) -> updateIdle());
+		gamePaused.addListener((obs, oldX, newX) -> updateIdle());
+		updateIdle();
 		
 		// prepare ball movements (will be start in startGame())
 		ballMovementTimeline.setCycleCount(Timeline.INDEFINITE);
-		KeyFrame moveBall = 
-				new KeyFrame(Duration.seconds(1/INITIAL_BALL_SPEED), e -> {	moveBall();	});
-		ballMovementTimeline.getKeyFrames().add(moveBall);
+		setKeyFrame(ballMovementTimeline, rules.getBallTicksPerSecond(), e -> { moveBall(); });
+
+		// prepare the instant replay (will be started after a goal)
+		replayTimeline.setCycleCount(Timeline.INDEFINITE);
+		setKeyFrame(replayTimeline, rules.getBallTicksPerSecond(), e -> { replayFrame(); });
 		
 		// new players
 		playerLeft = new Player("Left");
@@ -175,20 +336,47 @@ public class PongModel {
 		playerLeft.points.set(0);
 		playerRight.points.set(0);
 
+		// new statistics for this game - players keep their statistics over all games
+		statistics = new PongMatchStatistics(playerLeft.statistics, playerRight.statistics);
+		statistics.startMatch();
+
+		// new seed for each game
+		random.setSeed(System.nanoTime());
+		tick = 0;
+
+		if (arena != null) {
+			newArena();
+			skipEvents();
+			ballMovementTimeline.play();
+			gamePaused.set(false);
+			gameRunning.set(true);
+			return;
+		}
+
 		// choose randomly from which side to start
-		if (Math.random() < 0.5) {
+		if (random.nextBoolean()) {
 			ballCenterX.setValue(0.0+ballSize.get());	
-			speedX.set(BALL_MOVE_INCREMENTS);
+			speedX.set(rules.getBallMoveIncrements());
 		} else {
 			ballCenterX.setValue(playfieldWidth.get()-ballSize.get());
-			speedX.set(-BALL_MOVE_INCREMENTS);
+			speedX.set(-rules.getBallMoveIncrements());
 		}
 		
 		// random height (y) to start from
-		ballCenterY.setValue(Math.random() * playfieldHeight.get());
+		ballCenterY.setValue(random.nextDouble() * playfieldHeight.get());
 		
 		// random direction to shoot the ball at the start
-		speedY.set(BALL_MOVE_INCREMENTS * (Math.random() < 0.5 ? 1 : -1));
+		speedY.set(rules.getBallMoveIncrements() * (random.nextBoolean() ? 1 : -1));
+
+		// record the game
+		if (recordOption.get()) startRecording();
+
+		// the replay shows the rally from the serve
+		replay.clear();
+
+		// events of the last game are not of interest anymore
+		skipEvents();
+		events.publish(PongEventBus.SERVE, speedX.get() > 0, ballCenterX.get(), ballCenterY.get(), speedY.get());
 
 		// start the ball movements
 		ballMovementTimeline.play();
@@ -203,10 +391,82 @@ public class PongModel {
 	 * Stops the game. Ignored if game not running.
 	 */
 	public void stopGame() {
+		// store the result of a game which has been played
+		if (gameRunning.get() && playerLeft.points.get() + playerRight.points.get() > 0) {
+			getProfiles().recordResult(playerLeft.playerName.get(), playerLeft.points.get(), 
+					playerRight.playerName.get(), playerRight.points.get());
+		}
+		// end a tournament match
+		if (tournamentMatch != null) {
+			tournament.reportResult(tournamentMatch, playerLeft.points.get(), playerRight.points.get());
+			tournamentMatch = null;
+			leftAI = null;
+			rightAI = null;
+			setLeftPaddleUp(false);
+			setLeftPaddleDown(false);
+			setRightPaddleUp(false);
+			setRightPaddleDown(false);
+			playerLeft.playerName.set("Left");
+			playerRight.playerName.set("Right");
+		}
 		ballMovementTimeline.stop(); // stops ball movements
+		stopReplay();
+		replay.clear();
+		particles.clear();
+		world.clear();
+		powerUpTimer = 0;
+		stopRecording();
 		// game stopped
 		gamePaused.set(false);
 		gameRunning.set(false);
+		publishState();
+	}
+
+	/**
+	 * Starts the next match of the tournament which has to be played in the UI. 
+	 * Ignored if there is no tournament, no such match or a game is running.
+	 */
+	public void startTournamentMatch() {
+		if (tournament == null || arena != null || gameRunning.get()) return;
+		final PongTournament.Match match = tournament.nextUIMatch();
+		if (match == null) return;
+		tournamentMatch = match;
+		playerLeft.playerName.set(match.getLeft().playerName.get());
+		playerRight.playerName.set(match.getRight().playerName.get());
+		leftAI = match.getLeft() instanceof PongAIPlayer ? (PongAIPlayer) match.getLeft() : null;
+		rightAI = match.getRight() instanceof PongAIPlayer ? (PongAIPlayer) match.getRight() : null;
+		startGame();
+	}
+
+	/**
+	 * Selects the next of the bundled levels. After the last level the playfield is empty again.
+	 */
+	public void nextLevel() {
+		final List<String> names = PongLevel.getBundledLevels();
+		levelIndex++;
+		if (levelIndex >= names.size()) {
+			levelIndex = -1;
+			level.set(null);
+			return;
+		}
+		try {
+			level.set(PongLevel.loadBundled(names.get(levelIndex)));
+		} catch (IOException e) {
+			Pong.criticalError("Level could not be loaded: " + e.getMessage());
+			levelIndex = -1;
+			level.set(null);
+		}
+	}
+
+	/**
+	 * Stops a running game and releases all resources (files, threads).
+	 * Called when the application is closed.
+	 */
+	public void close() {
+		stopGame();
+		if (profiles != null) profiles.close();
+		if (spectators != null) spectators.close();
+		if (rulesWatcher != null) rulesWatcher.close();
 	}
 
 	/**
@@ -216,6 +476,7 @@ public class PongModel {
 		if (gameRunning.get() && gamePaused.get()) return;
 		gamePaused.set(true);
 		ballMovementTimeline.stop(); // stops ball movements
+		replayTimeline.pause();
 	}
 
 	/**
@@ -224,38 +485,341 @@ public class PongModel {
 	public void resumeGame() {
 		if (gameRunning.get() && !gamePaused.get()) return;
 		gamePaused.set(false);
-		ballMovementTimeline.play(); // (re-)starts ball movements
+		if (replaying.get()) replayTimeline.play(); // continues the replay
+		else ballMovementTimeline.play(); // (re-)starts ball movements
+	}
+
+	/**
+	 * Ends a running replay and serves the ball. Ignored if no replay is running.
+	 */
+	public void skipReplay() {
+		if (!replaying.get()) return;
+		stopReplay();
+		if (!gamePaused.get()) ballMovementTimeline.play();
+	}
+
+	/**
+	 * Replaces the key frame of a timeline. A running timeline is stopped and started again 
+	 * as it only picks up new key frames when started. A paused timeline is stopped - play() 
+	 * continues it as well.
+	 * @param timeline
+	 * @param perSecond number of frames per second
+	 * @param onFinished action of each frame
+	 */
+	private static void setKeyFrame(Timeline timeline, double perSecond, EventHandler<ActionEvent> onFinished) {
+		final boolean running = timeline.getStatus() == Animation.Status.RUNNING;
+		timeline.stop();
+		timeline.getKeyFrames().setAll(new KeyFrame(Duration.seconds(1 / perSecond), onFinished));
+		if (running) timeline.play();
+	}
+
+	/**
+	 * Loads the rules from a file and loads them again whenever the file changes.
+	 * Has to be called before the view is created as the size of the playfield is 
+	 * only taken from the file here.
+	 * @param file
+	 * @throws IOException if the rules cannot be read or have errors
+	 */
+	public void loadRules(Path file) throws IOException {
+		final PongRules loaded = PongRules.load(file);
+		setRules(loaded);
+		if (rulesWatcher != null) rulesWatcher.close();
+		// the watcher thread hands the rules over to the JavaFX thread - between two ticks
+		rulesWatcher = new PongRulesWatcher(file, loaded, 
+				newRules -> Platform.runLater(() -> changeRules(newRules)));
+	}
+
+	/**
+	 * Changes the rules of a running session. The playfield keeps its size as the view 
+	 * cannot change its size. Rules which do not fit the current playfield are not used.
+	 * @param newRules
+	 */
+	private void changeRules(PongRules newRules) {
+		if (newRules.getPlayfieldWidth() != playfieldWidth.get() 
+				|| newRules.getPlayfieldHeight() != playfieldHeight.get()) {
+			Pong.minorError("Rules: playfield size is changed with the next start");
+			try {
+				newRules = newRules.withPlayfield(playfieldWidth.get(), playfieldHeight.get());
+			} catch (IllegalArgumentException e) {
+				Pong.minorError("Rules not changed: " + e.getMessage());
+				return;
+			}
+		}
+		setRules(newRules);
+	}
+
+	/**
+	 * Replaces the rules - must be called on the JavaFX thread, which runs all ticks. Sizes change 
+	 * at once, the ball gets its new speed with the next hit or serve. The instant replay starts empty
+	 * if the playfield size or the tick rate changes. In the arena mode the arena is rebuilt with the 
+	 * new rules and its points start at zero, as a running arena cannot change its sizes.
+	 * @param newRules
+	 */
+	public void setRules(PongRules newRules) {
+		final PongRules old = rules;
+		rules = newRules;
+		playfieldWidth.set(newRules.getPlayfieldWidth());
+		playfieldHeight.set(newRules.getPlayfieldHeight());
+		ballSize.set(newRules.getBallSize());
+		leftPaddleLength.set(newRules.getPaddleLength());
+		rightPaddleLength.set(newRules.getPaddleLength());
+		leftPaddleX.set(newRules.getPaddleX());
+		paddleWidth.set(newRules.getPaddleWidth());
+		systems.setResponseCurve(newRules.getResponseCurve());
+		rightPaddleX.bind(playfieldWidth.subtract(newRules.getPaddleX()).subtract(newRules.getPaddleWidth()));
+		setLeftPaddleY(leftPaddleY.get());
+		setRightPaddleY(rightPaddleY.get());
+		// the arena keeps its rules - a new one collides with the new sizes
+		if (arena != null) newArena();
+		if (old.getPlayfieldWidth() != newRules.getPlayfieldWidth() 
+				|| old.getPlayfieldHeight() != newRules.getPlayfieldHeight()
+				|| old.getBallTicksPerSecond() != newRules.getBallTicksPerSecond()) {
+			// a larger playfield is stored with less precision, another tick rate needs another capacity
+			replay = createReplay();
+		}
+		if (old.getPaddleTicksPerSecond() != newRules.getPaddleTicksPerSecond()) {
+			setKeyFrame(paddleMovementTimeline, newRules.getPaddleTicksPerSecond(), e -> { movePaddles(); });
+		}
+		if (old.getBallTicksPerSecond() != newRules.getBallTicksPerSecond()) {
+			setKeyFrame(ballMovementTimeline, newRules.getBallTicksPerSecond(), e -> { moveBall(); });
+			setKeyFrame(replayTimeline, newRules.getBallTicksPerSecond(), e -> { replayFrame(); });
+		}
+	}
+
+	/**
+	 * @return the current rules
+	 */
+	public PongRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Called when the window is minimized or restored. A running game is paused when the window is
+	 * minimized and the model becomes idle.
+	 * @param iconified
+	 */
+	public void setWindowIconified(boolean iconified) {
+		windowIconified = iconified;
+		if (iconified && gameRunning.get() && !gamePaused.get()) pauseGame();
+		updateIdle();
+	}
+
+	/**
+	 * Starts the paddle movements when a game is played or a paddle is moved by a key and stops them 
+	 * otherwise. Without any running timeline JavaFX has no animation to pulse for. 
+	 */
+	private void updateIdle() {
+		final boolean playing = gameRunning.get() && !gamePaused.get();
+		final boolean keyPressed = leftPaddleUp.get() || leftPaddleDown.get() 
+				|| rightPaddleUp.get() || rightPaddleDown.get();
+		pointing = leftPointer.isActive() || rightPointer.isActive();
+		final boolean active = !windowIconified && (playing || keyPressed || pointing);
+		if (active) paddleMovementTimeline.play();
+		else paddleMovementTimeline.stop();
+		idleFlag = !active;
+		idle.set(!active);
+	}
+
+	/**
+	 * Starts recording the game into a new file in the recording folder.
+	 */
+	private void startRecording() {
+		stopRecording();
+		final String name = "match-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		final double[] config = new double[PongRecorder.CONFIG_SIZE];
+		config[PongRecorder.CONFIG_PLAYFIELD_WIDTH] = playfieldWidth.get();
+		config[PongRecorder.CONFIG_PLAYFIELD_HEIGHT] = playfieldHeight.get();
+		config[PongRecorder.CONFIG_PADDLE_WIDTH] = rules.getPaddleWidth();
+		config[PongRecorder.CONFIG_LEFT_PADDLE_LENGTH] = leftPaddleLength.get();
+		config[PongRecorder.CONFIG_RIGHT_PADDLE_LENGTH] = rightPaddleLength.get();
+		config[PongRecorder.CONFIG_BALL_SIZE] = ballSize.get();
+		config[PongRecorder.CONFIG_BALL_MOVE_INCREMENTS] = rules.getBallMoveIncrements();
+		config[PongRecorder.CONFIG_PADDLE_MOVE_STEPS] = rules.getPaddleMoveSteps();
+		config[PongRecorder.CONFIG_MAX_ANGLE_DEGREE] = rules.getMaxAngleDegree();
+		config[PongRecorder.CONFIG_ACCELERATION] = rules.getAcceleration();
+		config[PongRecorder.CONFIG_TICKS_PER_SECOND] = rules.getBallTicksPerSecond();
+		try {
+			recorder = new PongRecorder(RECORDING_FOLDER.resolve(name + PongRecorder.FILE_EXTENSION),
+					random.getSeed(), config, PongRecorder.DEFAULT_KEYFRAME_INTERVAL);
+		} catch (IOException e) {
+			Pong.criticalError("Recording could not be started: " + e.getMessage());
+			recorder = null;
+		}
+	}
+
+	/**
+	 * Stops a running recording and closes the file. Ignored if not recording.
+	 */
+	private void stopRecording() {
+		if (recorder == null) return;
+		recorder.close();
+		recorder = null;
 	}
 
 	/**
 	 * Called by the <code>paddleMovementTimeline<code> animation event to move the paddles.
 	 */
 	private void movePaddles() {
-		if (leftPaddleUp.get() 
+		timelineFrames++;
+		// the paddles are moved by the replay or by the arena
+		if (replaying.get() || arena != null) return;
+		// AI players in tournament matches
+		if (leftAI != null) {
+			final int move = leftAI.decide(ballCenterX.get(), ballCenterY.get(), speedX.get(), speedY.get(),
+					leftPaddleY.get(), leftPaddleLength.get(), leftPaddleX.get() + rules.getPaddleWidth(), 
+					playfieldHeight.get(), ballSize.get(), true);
+			leftPaddleUp.set(move < 0);
+			leftPaddleDown.set(move > 0);
+		}
+		if (rightAI != null) {
+			final int move = rightAI.decide(ballCenterX.get(), ballCenterY.get(), speedX.get(), speedY.get(),
+					rightPaddleY.get(), rightPaddleLength.get(), rightPaddleX.get(), 
+					playfieldHeight.get(), ballSize.get(), false);
+			rightPaddleUp.set(move < 0);
+			rightPaddleDown.set(move > 0);
+		}
+		// a paddle following the mouse moves at most as fast as with the keys
+		final boolean leftPointing = leftAI == null && leftPointer.isActive();
+		final boolean rightPointing = rightAI == null && rightPointer.isActive();
+		if (leftPointing) {
+			leftPaddleY.set(leftPointer.step(leftPaddleY.get(), leftPaddleLength.get(), 
+					rules.getPaddleMoveSteps(), playfieldHeight.get()));
+		}
+		if (rightPointing) {
+			rightPaddleY.set(rightPointer.step(rightPaddleY.get(), rightPaddleLength.get(), 
+					rules.getPaddleMoveSteps(), playfieldHeight.get()));
+		}
+		if (!leftPointing && leftPaddleUp.get() 
 				&& leftPaddleY.get() > 0.0) {
-			leftPaddleY.setValue(leftPaddleY.getValue() - PADDLE_MOVE_STEPS);
+			leftPaddleY.setValue(leftPaddleY.getValue() - rules.getPaddleMoveSteps());
 		}
-		if (leftPaddleDown.get()  
+		if (!leftPointing && leftPaddleDown.get()  
 				&& leftPaddleY.get() + leftPaddleLength.get() < playfieldHeight.get()) {
-			leftPaddleY.set(leftPaddleY.get() + PADDLE_MOVE_STEPS);
+			leftPaddleY.set(leftPaddleY.get() + rules.getPaddleMoveSteps());
 		}
-		if (rightPaddleUp.get()
+		if (!rightPointing && rightPaddleUp.get()
 				&& rightPaddleY.get() > 0.0) {
-			rightPaddleY.set(rightPaddleY.get() - PADDLE_MOVE_STEPS);
+			rightPaddleY.set(rightPaddleY.get() - rules.getPaddleMoveSteps());
 		}
-		if (rightPaddleDown.get()
+		if (!rightPointing && rightPaddleDown.get()
 				&& rightPaddleY.get() + rightPaddleLength.get() < playfieldHeight.get()) {
-			rightPaddleY.set(rightPaddleY.get() + PADDLE_MOVE_STEPS);
+			rightPaddleY.set(rightPaddleY.get() + rules.getPaddleMoveSteps());
 		}
+		// the paddles have reached the mouse after it was released
+		if (pointing && !leftPointer.isActive() && !rightPointer.isActive()) updateIdle();
+	}
+
+	/**
+	 * Captures the mouse for the paddle on the half of the playfield which was clicked. The 
+	 * paddle follows the mouse anywhere on the playfield until the button is released. 
+	 * Ignored if the pointer option is off.
+	 * @param x of the mouse in the playfield
+	 * @param y of the mouse in the playfield
+	 */
+	public void pointerPressed(double x, double y) {
+		if (!pointerOption.get() || replaying.get() || arena != null) return;
+		if (x < playfieldWidth.get() / 2) leftPointer.capture(y);
+		else rightPointer.capture(y);
+		updateIdle();
+	}
+
+	/**
+	 * Stores the latest position of a captured mouse. Only the last sample before a tick is used 
+	 * so this is cheap for any number of mouse events.
+	 * @param y of the mouse in the playfield
+	 */
+	public void pointerMoved(double y) {
+		leftPointer.sample(y);
+		rightPointer.sample(y);
+	}
+
+	/**
+	 * Releases the mouse - the paddle still moves to its last position.
+	 */
+	public void pointerReleased() {
+		leftPointer.release();
+		rightPointer.release();
 	}
 
 	/**
 	 * Called by the <code>ballMovementTimeline</code> animation event to move the ball.
 	 */
 	private void moveBall() {
+		timelineFrames++;
+		tick++;
+		if (arena != null) {
+			moveArena();
+			return;
+		}
 		ballCenterX.setValue(ballCenterX.get() + speedX.get());
 		ballCenterY.setValue(ballCenterY.get() + speedY.get());
+		replay.record(ballCenterX.get(), ballCenterY.get(), leftPaddleY.get(), rightPaddleY.get());
+		particles.emitTrail(ballCenterX.get(), ballCenterY.get());
 		checkCollision();
+		if (powerUpOption.get()) updateWorld();
+		dispatchEvents();
+		particles.update();
+		statistics.onTick(1.0 / (rules.getBallTicksPerSecond() * ballMovementTimeline.getRate()),
+				ballCenterX.get(), ballCenterY.get(), leftPaddleY.get(), rightPaddleY.get());
+		if (recorder != null) {
+			recorder.recordTick(ballCenterX.get(), ballCenterY.get(), leftPaddleY.get(), rightPaddleY.get(),
+					playerLeft.points.get(), playerRight.points.get());
+		}
+		publishState();
+	}
+
+	/**
+	 * One tick of the arena mode - the arena moves the paddles and the ball, counts the points and 
+	 * serves the ball after a goal. Only sounds and effects are taken from its events.
+	 */
+	private void moveArena() {
+		arena.tick();
+		ballCenterX.set(arena.getBallX(0));
+		ballCenterY.set(arena.getBallY(0));
+		particles.emitTrail(ballCenterX.get(), ballCenterY.get());
+		final int arenaEvents = arena.getEvents();
+		if ((arenaEvents & PongArena.EVENT_WALL) != 0) {
+			events.publish(PongEventBus.WALL_HIT, false, ballCenterX.get(), ballCenterY.get(), 0);
+		}
+		if ((arenaEvents & PongArena.EVENT_HIT) != 0) {
+			final int g = arena.getLastHit();
+			final int side = arena.getGoalSide(g);
+			events.publish(PongEventBus.PADDLE_HIT, side == PongArena.LEFT || side == PongArena.TOP, 
+					arena.getPaddleX(g) + arena.getPaddleWidth(g) / 2, 
+					arena.getPaddleY(g) + arena.getPaddleHeight(g) / 2, 0);
+		}
+		if ((arenaEvents & PongArena.EVENT_GOAL) != 0) {
+			final int g = arena.getLastGoal();
+			events.publish(PongEventBus.GOAL, false, arena.getGoalCenterX(g), arena.getGoalCenterY(g), 0);
+			arenaPointChanges.set(arenaPointChanges.get() + 1);
+		}
+		dispatchEvents();
+		particles.update();
+	}
+
+	/**
+	 * Moves the paddles of a player of the arena mode while a key is held. Ignored in the classic game.
+	 * @param player
+	 * @param direction -1 towards the start of its goal (up or left), 1 towards the end (down or right)
+	 * @param pressed
+	 */
+	public void setArenaKey(int player, int direction, boolean pressed) {
+		if (arena == null || player >= arenaKeys.length) return;
+		final int bit = direction < 0 ? 1 : 2;
+		arenaKeys[player] = pressed ? arenaKeys[player] | bit : arenaKeys[player] & ~bit;
+		applyArenaKeys(player);
+	}
+
+	/**
+	 * Sets the input of all goals of the player from its keys.
+	 * @param player
+	 */
+	private void applyArenaKeys(int player) {
+		final int keys = arenaKeys[player];
+		final int input = (keys >> 1) - (keys & 1);
+		for (int g = 0; g < arena.getGoalCount(); g++) {
+			if (arena.getGoalPlayer(g) == player) arena.setInput(g, input);
+		}
 	}
 
 	/**
@@ -271,24 +835,44 @@ public class PongModel {
 
 		// hit top or bottom wall
 		if (yMin < 0 || yMax > playfieldHeight.get()) {
-			sounds.playClip(Clips.WALL);
+			events.publish(PongEventBus.WALL_HIT, false, ballCenterX.get(), yMin < 0 ? 0 : playfieldHeight.get(), 0);
 			speedY.set(speedY.get() * -1);
 		}
+
+		// hit an obstacle of the level - bounce off its surface
+		final PongLevel obstacles = level.get();
+		if (obstacles != null && obstacles.collide(ballCenterX.get(), ballCenterY.get(), ballSize.get())) {
+			final double nx = obstacles.getHitNormalX();
+			final double ny = obstacles.getHitNormalY();
+			final double vn = speedX.get() * nx + speedY.get() * ny;
+			// only if moving into the obstacle
+			if (vn < 0) {
+				events.publish(PongEventBus.WALL_HIT, false, ballCenterX.get() - nx * ballSize.get(), 
+						ballCenterY.get() - ny * ballSize.get(), 0);
+				speedX.set(speedX.get() - 2 * vn * nx);
+				speedY.set(speedY.get() - 2 * vn * ny);
+			}
+			// move the ball out of the obstacle
+			ballCenterX.set(ballCenterX.get() + nx * obstacles.getHitDepth());
+			ballCenterY.set(ballCenterY.get() + ny * obstacles.getHitDepth());
+		}
 		
-		// hit left or right wall
+		// hit left or right wall - the score is handled by scoreEvent() which also serves the ball again
 		if (xMax < 0 || xMin > playfieldWidth.get()) {
-			sounds.playClip(Clips.GOAL);
-			//speedX.set(speedX.get() * -1);
-			goal(xMin < 0 ? playerRight : playerLeft);
+			events.publish(PongEventBus.GOAL, xMin >= 0, xMin < 0 ? 0 : playfieldWidth.get(), ballCenterY.get(), 0);
+			// stop the ball until it is served again
+			ballMovementTimeline.pause();
+			return;
 		}
 
 		// hit on a paddle - left
 		if (speedX.get() < 0 // moving left
-				&& (ballCenterX.get()-ballSize.get()) <= (leftPaddleX.get()+INITIAL_PADDLE_WIDTH) 
+				&& (ballCenterX.get()-ballSize.get()) <= (leftPaddleX.get()+rules.getPaddleWidth()) 
 				&& (ballCenterY.get()+ballSize.get() > leftPaddleY.get())
 				&& (ballCenterY.get()-ballSize.get() < leftPaddleY.get()+leftPaddleLength.get())) {
 
-			sounds.playClip(Clips.LEFT);
+			events.publish(PongEventBus.PADDLE_HIT, true, leftPaddleX.get()+rules.getPaddleWidth(), ballCenterY.get(), 
+					calculateHitPos(leftPaddleY));
 			
 			updateBallSpeedAfterPaddleHit();
 
@@ -305,7 +889,8 @@ public class PongModel {
 				&& (ballCenterY.get()+ballSize.get() > rightPaddleY.get())
 				&& (ballCenterY.get()-ballSize.get() < rightPaddleY.get()+leftPaddleLength.get())) {
 
-			sounds.playClip(Clips.RIGHT);
+			events.publish(PongEventBus.PADDLE_HIT, false, rightPaddleX.get(), ballCenterY.get(), 
+					calculateHitPos(rightPaddleY));
 			
 			updateBallSpeedAfterPaddleHit();
 
@@ -319,12 +904,77 @@ public class PongModel {
 		} 
 	}
 
+	/**
+	 * Launches power-ups and runs the systems on the extra game objects for one tick.
+	 */
+	private void updateWorld() {
+		if (++powerUpTimer >= POWERUP_INTERVAL) {
+			powerUpTimer = 0;
+			final int powerUp = world.create(PongWorld.POWER_UP);
+			final PongWorld.Archetype a = world.getArchetypeOf(powerUp);
+			final int row = world.getRow(powerUp);
+			a.x[row] = playfieldWidth.get() / 2;
+			a.y[row] = random.nextDouble() * playfieldHeight.get();
+			a.vx[row] = random.nextBoolean() ? 1.0 : -1.0;
+			a.vy[row] = 0.0;
+			a.w[row] = POWERUP_SIZE;
+			a.h[row] = POWERUP_SIZE;
+			a.kind[row] = random.nextBoolean() ? POWERUP_MULTIBALL : POWERUP_EXTRA_PADDLE;
+		}
+		systems.move();
+		systems.collide(playfieldHeight.get(), level.get(), rules.getPaddleWidth(), 
+				leftPaddleX.get(), leftPaddleY.get(), leftPaddleLength.get(), 
+				rightPaddleX.get(), rightPaddleY.get(), rightPaddleLength.get());
+		systems.score(playfieldWidth.get());
+		systems.age();
+	}
+
+	/**
+	 * Gives the player who caught a power-up its effect.
+	 * @param kind of power-up
+	 * @param left true if caught by the left player
+	 */
+	private void applyPowerUp(int kind, boolean left) {
+		switch (kind) {
+		case POWERUP_MULTIBALL: {
+			// an extra ball shot from the paddle towards the opponent
+			final int ball = world.create(PongWorld.EXTRA_BALL);
+			final PongWorld.Archetype a = world.getArchetypeOf(ball);
+			final int row = world.getRow(ball);
+			final DoubleProperty paddleY = left ? leftPaddleY : rightPaddleY;
+			final double length = left ? leftPaddleLength.get() : rightPaddleLength.get();
+			a.x[row] = left ? leftPaddleX.get() + rules.getPaddleWidth() + 2 * rules.getBallSize() 
+					: rightPaddleX.get() - 2 * rules.getBallSize();
+			a.y[row] = paddleY.get() + length / 2;
+			a.vx[row] = left ? rules.getBallMoveIncrements() : -rules.getBallMoveIncrements();
+			a.vy[row] = rules.getBallMoveIncrements() * (random.nextBoolean() ? 1 : -1);
+			a.w[row] = rules.getBallSize();
+			a.h[row] = rules.getBallSize();
+			break;
+		}
+		case POWERUP_EXTRA_PADDLE: {
+			// an extra paddle in the middle of the player's half for a while
+			final int paddle = world.create(PongWorld.EXTRA_PADDLE);
+			final PongWorld.Archetype a = world.getArchetypeOf(paddle);
+			final int row = world.getRow(paddle);
+			a.x[row] = playfieldWidth.get() * (left ? 0.25 : 0.75);
+			a.y[row] = playfieldHeight.get() / 2;
+			a.w[row] = rules.getPaddleWidth();
+			a.h[row] = rules.getPaddleLength();
+			a.side[row] = left ? 0 : 1;
+			a.life[row] = EXTRA_PADDLE_LIFETIME;
+			break;
+		}
+		default:
+		}
+	}
+
 	/**
 	 * Accelerate ball and paddles after each hit on paddle
 	 */
 	private void updateBallSpeedAfterPaddleHit() {
-		ballMovementTimeline.setRate(ballMovementTimeline.getRate()*ACCELARATION);
-		paddleMovementTimeline.setRate(paddleMovementTimeline.getRate()*ACCELARATION);
+		ballMovementTimeline.setRate(ballMovementTimeline.getRate()*rules.getAcceleration());
+		paddleMovementTimeline.setRate(paddleMovementTimeline.getRate()*rules.getAcceleration());
 	}
 
 	/**
@@ -335,12 +985,13 @@ public class PongModel {
 	private void newVector(DoubleProperty paddle) {
 
 		double hitPos = calculateHitPos(paddle);
-		double newAngleRAD = Math.toRadians(MAX_ANGLE_DEGREE * hitPos); // influence of the hit position
+		// direction depending on the hit position - looked up in the rules' response curve
+		final PongResponseCurve curve = rules.getResponseCurve();
 
 		// adapt speeds for constant total speed
-		speedY.set(BALL_SPEED * Math.sin(newAngleRAD)); // new Y speed
+		speedY.set(rules.getBallSpeed() * curve.getY(hitPos)); // new Y speed
 		speedX.set(-Math.signum(speedX.get()) // turn direction
-				* Math.abs(BALL_SPEED * Math.cos(newAngleRAD))); // new X speed
+				* rules.getBallSpeed() * curve.getX(hitPos)); // new X speed
 		
 	}
 
@@ -365,7 +1016,7 @@ public class PongModel {
 	}
 
 	/**
-	 * Increases score for the player who scored and resets the ball to the scorer's side. 
+	 * Resets the ball to the scorer's side and serves it again. 
 	 * @param playerScored
 	 */
 	private void goal(Player playerScored) {
@@ -379,19 +1030,23 @@ public class PongModel {
 		// start from either side of the board
 		if (playerScored.equals(playerLeft)) {
 			ballCenterX.setValue(0.0+ballSize.get());	
-			speedX.set(BALL_MOVE_INCREMENTS);
-			playerLeft.points.set(playerLeft.points.get()+1);
+			speedX.set(rules.getBallMoveIncrements());
 		} else {
 			ballCenterX.setValue(playfieldWidth.get()-ballSize.get());
-			speedX.set(-BALL_MOVE_INCREMENTS);
-			playerRight.points.set(playerRight.points.get()+1);
+			speedX.set(-rules.getBallMoveIncrements());
 		}
 		
 		// random y
-		ballCenterY.setValue(Math.random() * playfieldHeight.get());
+		ballCenterY.setValue(random.nextDouble() * playfieldHeight.get());
 		
 		// random direction
-		speedY.set(BALL_MOVE_INCREMENTS * (Math.random() < 0.5 ? 1 : -1));
+		speedY.set(rules.getBallMoveIncrements() * (random.nextBoolean() ? 1 : -1));
+		events.publish(PongEventBus.SERVE, speedX.get() > 0, ballCenterX.get(), ballCenterY.get(), speedY.get());
+
+		// show the rally which led to the goal - the ball is served when the replay has ended
+		final boolean replayStarted = replayOption.get() && startReplay();
+		replay.startRally();
+		if (replayStarted) return;
 
 		// short break
 		try { Thread.sleep(500);
@@ -401,6 +1056,159 @@ public class PongModel {
 		ballMovementTimeline.play();
 	}
 
+	/**
+	 * Starts the replay of the last rally. The positions after the goal are kept and restored
+	 * when the replay has ended.
+	 * @return false if there is nothing to replay
+	 */
+	private boolean startReplay() {
+		if (!replay.startPlayback()) return false;
+		getState(replayServe);
+		replaying.set(true);
+		replayTimeline.play();
+		return true;
+	}
+
+	/**
+	 * Called by the <code>replayTimeline</code> animation event to show the next frame of the replay.
+	 * Serves the ball when the replay has ended.
+	 */
+	private void replayFrame() {
+		timelineFrames++;
+		if (replay.next(slowMotionOption.get() ? REPLAY_SLOW_MOTION : 1.0, replayState)) {
+			ballCenterX.set(replayState.ballX);
+			ballCenterY.set(replayState.ballY);
+			leftPaddleY.set(replayState.leftPaddleY);
+			rightPaddleY.set(replayState.rightPaddleY);
+			return;
+		}
+		stopReplay();
+		ballMovementTimeline.play();
+	}
+
+	/**
+	 * Stops a running replay and restores the positions after the goal. Ignored if no replay is running.
+	 */
+	private void stopReplay() {
+		if (!replaying.get()) return;
+		replayTimeline.stop();
+		replay.stopPlayback();
+		ballCenterX.set(replayServe.ballX);
+		ballCenterY.set(replayServe.ballY);
+		leftPaddleY.set(replayServe.leftPaddleY);
+		rightPaddleY.set(replayServe.rightPaddleY);
+		replaying.set(false);
+	}
+
+	/**
+	 * Sends the current state to the spectators if there is a spectator server.
+	 */
+	private void publishState() {
+		if (spectators == null) return;
+		getState(spectatorState);
+		spectators.publish(spectatorState);
+	}
+
+	/**
+	 * Hands the events of the current tick to all consumers.
+	 */
+	private void dispatchEvents() {
+		recorderEvents.poll();
+		statisticsEvents.poll();
+		soundEvents.poll();
+		effectEvents.poll();
+		scoreEvents.poll();
+	}
+
+	/**
+	 * Drops all events not yet read by the consumers.
+	 */
+	private void skipEvents() {
+		recorderEvents.skip();
+		statisticsEvents.skip();
+		soundEvents.skip();
+		effectEvents.skip();
+		scoreEvents.skip();
+	}
+
+	/**
+	 * Consumer writing the events of the ball into the recording.
+	 */
+	private void recordEvent(int type, boolean left, double x, double y, double value) {
+		if (recorder == null) return;
+		switch (type) {
+		case PongEventBus.WALL_HIT: 	recorder.recordWall(); break;
+		case PongEventBus.PADDLE_HIT: 	recorder.recordPaddleHit(left, value); break;
+		case PongEventBus.GOAL: 		recorder.recordGoal(left); break;
+		case PongEventBus.EXTRA_GOAL: 	recorder.recordExtraGoal(left); break;
+		default:
+		}
+	}
+
+	/**
+	 * Consumer feeding the statistics of the game.
+	 */
+	private void countEvent(int type, boolean left, double x, double y, double value) {
+		// the arena counts its points itself
+		if (arena != null) return;
+		switch (type) {
+		case PongEventBus.PADDLE_HIT: 	statistics.onPaddleHit(left, value); break;
+		case PongEventBus.GOAL: 		statistics.onGoal(left); break;
+		case PongEventBus.EXTRA_GOAL: 	statistics.onExtraGoal(left); break;
+		default:
+		}
+	}
+
+	/**
+	 * Consumer playing the sounds.
+	 */
+	private void playEvent(int type, boolean left, double x, double y, double value) {
+		switch (type) {
+		case PongEventBus.WALL_HIT: 
+		case PongEventBus.BOUNCE: 		sounds.playClip(Clips.WALL); break;
+		case PongEventBus.PADDLE_HIT: 
+		case PongEventBus.PICKUP: 		sounds.playClip(left ? Clips.LEFT : Clips.RIGHT); break;
+		case PongEventBus.GOAL: 
+		case PongEventBus.EXTRA_GOAL: 	sounds.playClip(Clips.GOAL); break;
+		default:
+		}
+	}
+
+	/**
+	 * Consumer emitting the particle effects.
+	 */
+	private void showEvent(int type, boolean left, double x, double y, double value) {
+		switch (type) {
+		case PongEventBus.WALL_HIT: 
+		case PongEventBus.BOUNCE: 		particles.emitSparks(x, y, 8, 1.5); break;
+		case PongEventBus.PADDLE_HIT: 	particles.emitSparks(x, y, 16, 2.5); break;
+		case PongEventBus.GOAL: 		particles.emitGoal(x, y, 200, 4.0); break;
+		case PongEventBus.EXTRA_GOAL: 	particles.emitGoal(x, y, 100, 3.0); break;
+		default:
+		}
+	}
+
+	/**
+	 * Consumer increasing the points of the players. After a goal of the ball or an extra ball the match 
+	 * ends if it is a tournament match and a player has reached the points to win, otherwise the ball is 
+	 * served again after a goal of the ball.
+	 */
+	private void scoreEvent(int type, boolean left, double x, double y, double value) {
+		if (type != PongEventBus.GOAL && type != PongEventBus.EXTRA_GOAL) return;
+		// the arena counts its points itself, a stopped match counts no later goals of the same tick
+		if (arena != null || !gameRunning.get()) return;
+		final Player player = left ? playerLeft : playerRight;
+		player.points.set(player.points.get() + 1);
+
+		// a tournament match ends when a player has reached the points to win
+		if (tournamentMatch != null 
+				&& Math.max(playerLeft.points.get(), playerRight.points.get()) >= tournament.getPointsToWin()) {
+			stopGame();
+			return;
+		}
+		if (type == PongEventBus.GOAL) goal(player);
+	}
+
 	/* ************************************************************
 	 * GETTER / SETTER
 	 * 
@@ -877,11 +1685,281 @@ public class PongModel {
 		this.anglePaddleOption.set(anglePaddleOption);
 	}
 
+	/**
+	 * @return the level property - the level is null for an empty playfield
+	 */
+	public ObjectProperty<PongLevel> getLevelProperty() {
+		return level;
+	}
+
+	/**
+	 * @return the current level or null for an empty playfield
+	 */
+	public PongLevel getLevel() {
+		return level.get();
+	}
+
+	/**
+	 * @return the recordOption property
+	 */
+	public BooleanProperty getRecordOptionProperty() {
+		return recordOption;
+	}
+
+	/**
+	 * @return the recordOption
+	 */
+	public boolean getRecordOption() {
+		return recordOption.get();
+	}
+
+	/**
+	 * @param recordOption the recordOption to set
+	 */
+	public void setRecordOption(boolean recordOption) {
+		this.recordOption.set(recordOption);
+	}
+
+	/**
+	 * Copies the visible state of the game.
+	 * @param state receives the state
+	 */
+	public void getState(PongState state) {
+		state.tick = tick;
+		state.ballX = ballCenterX.get();
+		state.ballY = ballCenterY.get();
+		state.speedX = speedX.get();
+		state.speedY = speedY.get();
+		state.leftPaddleY = leftPaddleY.get();
+		state.rightPaddleY = rightPaddleY.get();
+		state.leftPoints = playerLeft.points.get();
+		state.rightPoints = playerRight.points.get();
+		state.paused = gamePaused.get();
+		state.running = gameRunning.get();
+	}
+
+	/**
+	 * @return the powerUpOption property
+	 */
+	public BooleanProperty getPowerUpOptionProperty() {
+		return powerUpOption;
+	}
+
+	/**
+	 * @return the powerUpOption
+	 */
+	public boolean getPowerUpOption() {
+		return powerUpOption.get();
+	}
+
+	/**
+	 * @param powerUpOption the powerUpOption to set
+	 */
+	public void setPowerUpOption(boolean powerUpOption) {
+		this.powerUpOption.set(powerUpOption);
+	}
+
+	/**
+	 * @return the replayOption property
+	 */
+	public BooleanProperty getReplayOptionProperty() {
+		return replayOption;
+	}
+
+	/**
+	 * @return the replayOption
+	 */
+	public boolean getReplayOption() {
+		return replayOption.get();
+	}
+
+	/**
+	 * @param replayOption the replayOption to set
+	 */
+	public void setReplayOption(boolean replayOption) {
+		this.replayOption.set(replayOption);
+	}
+
+	/**
+	 * @return the slowMotionOption property
+	 */
+	public BooleanProperty getSlowMotionOptionProperty() {
+		return slowMotionOption;
+	}
+
+	/**
+	 * @return the slowMotionOption
+	 */
+	public boolean getSlowMotionOption() {
+		return slowMotionOption.get();
+	}
+
+	/**
+	 * @param slowMotionOption the slowMotionOption to set
+	 */
+	public void setSlowMotionOption(boolean slowMotionOption) {
+		this.slowMotionOption.set(slowMotionOption);
+	}
+
+	/**
+	 * @return the pointerOption property
+	 */
+	public BooleanProperty getPointerOptionProperty() {
+		return pointerOption;
+	}
+
+	/**
+	 * @return the pointerOption
+	 */
+	public boolean getPointerOption() {
+		return pointerOption.get();
+	}
+
+	/**
+	 * @param pointerOption the pointerOption to set
+	 */
+	public void setPointerOption(boolean pointerOption) {
+		this.pointerOption.set(pointerOption);
+	}
+
+	/**
+	 * @return the property which is true while a replay is shown
+	 */
+	public BooleanProperty getReplayingProperty() {
+		return replaying;
+	}
+
+	/**
+	 * @param seconds of the game kept for the instant replay - ignored while a game is running
+	 */
+	public void setReplaySeconds(double seconds) {
+		if (gameRunning.get()) return;
+		replaySeconds = seconds;
+		replay = createReplay();
+	}
+
+	/**
+	 * @return an empty replay keeping the configured seconds at the tick rate of the current rules
+	 */
+	private PongReplay createReplay() {
+		return new PongReplay(replaySeconds, rules.getBallTicksPerSecond(), rules.getPlayfieldWidth(), 
+				rules.getPlayfieldHeight());
+	}
+
+	/**
+	 * @return the property which is true while no timeline of the model is running
+	 */
+	public BooleanProperty getIdleProperty() {
+		return idle;
+	}
+
+	/**
+	 * @return true while no timeline of the model is running - may be called from any thread
+	 */
+	public boolean isIdle() {
+		return idleFlag;
+	}
+
+	/**
+	 * @return number of animation frames handled by the model since it was created
+	 */
+	public long getTimelineFrames() {
+		return timelineFrames;
+	}
+
+	/**
+	 * @return the extra balls, paddles and power-ups of the game
+	 */
+	public PongWorld getWorld() {
+		return world;
+	}
+
+	/**
+	 * @param spectators server broadcasting the game - closed when the model is closed
+	 */
+	public void setSpectatorServer(PongSpectatorServer spectators) {
+		this.spectators = spectators;
+	}
+
+	/**
+	 * @param tournament whose matches with human players are to be played in the UI
+	 */
+	public void setTournament(PongTournament tournament) {
+		this.tournament = tournament;
+	}
+
+	/**
+	 * @return the store of player profiles and leaderboard - opened with the first call
+	 */
+	public PongProfileStore getProfiles() {
+		if (profiles == null) profiles = new PongProfileStore(PROFILE_FOLDER);
+		return profiles;
+	}
+
+	/**
+	 * @return the statistics of the current or last game
+	 */
+	public PongMatchStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the particle pool for the visual effects
+	 */
+	public PongParticles getParticles() {
+		return particles;
+	}
+
+	/**
+	 * Plays an arena with the given number of players instead of the classic game. Has to be called 
+	 * before the view is created. Ignored while a game is running.
+	 * @param players 1 to 4 play with the keys, more share the sides - 0 for the classic game
+	 */
+	public void setArenaPlayers(int players) {
+		if (gameRunning.get()) return;
+		arenaKeys = new int[Math.max(players, 0)];
+		arena = null;
+		if (players > 0) newArena();
+	}
+
+	/**
+	 * Replaces the arena by a new one with the current rules and the ball in its center. The players 
+	 * keep their keys, the points start at zero.
+	 */
+	private void newArena() {
+		arena = PongArena.forPlayers(random.getSeed(), rules, arenaKeys.length);
+		for (int player = 0; player < arenaKeys.length; player++) applyArenaKeys(player);
+		arenaPointChanges.set(arenaPointChanges.get() + 1);
+		ballCenterX.set(arena.getBallX(0));
+		ballCenterY.set(arena.getBallY(0));
+	}
+
+	/**
+	 * @return the arena of the arena mode - a new one for each game. null for the classic game.
+	 */
+	public PongArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * @return property counting the changes of the points in the arena mode
+	 */
+	public IntegerProperty getArenaPointChangesProperty() {
+		return arenaPointChanges;
+	}
+
 	/**
 	 * @return the width of both of the paddles
 	 */
 	public double getPaddleWidth() {
-		return INITIAL_PADDLE_WIDTH;
+		return paddleWidth.get();
+	}
+
+	/**
+	 * @return paddle width property - changes with the rules
+	 */
+	public DoubleProperty getPaddleWidthProperty() {
+		return paddleWidth;
 	}
 
 }
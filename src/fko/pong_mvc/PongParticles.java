@@ -0,0 +1,256 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongParticles - a fixed capacity pool of particles for the visual effects of the game
+ * (ball trail, sparks when the ball hits a wall or a paddle, bursts on a goal).
+ *
+ * <p>
+ * All particles are stored in primitive arrays (one array per attribute) which are allocated once
+ * when the pool is created. Spawning, updating and removing particles never allocates any objects
+ * so the effects do not cause any garbage collection during a game. Dead particles are removed by
+ * moving the last live particle into their slot which keeps the live particles dense at the start
+ * of the arrays.<br>
+ * If the pool is full new particles are silently dropped.<br>
+ *
+ * <p>
+ * The pool is part of the MVC model. It is updated in the game loop of the model and read by the
+ * view which draws all live particles in one batch.
+ *
+ * @see fko.pong_mvc.PongPlayfield
+ *
+ * @author Frank Kopp
+ */
+public class PongParticles {
+
+	// default number of particles the pool can hold
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * All available kinds of particles - the view uses the kind to choose the color
+	 */
+	public static final int TRAIL = 0;
+	public static final int SPARK = 1;
+	public static final int GOAL  = 2;
+
+	// life time of the different kinds in ticks
+	private static final float TRAIL_LIFE = 12f;
+	private static final float SPARK_LIFE = 30f;
+	private static final float GOAL_LIFE  = 60f;
+
+	// slows down moving particles a little bit each tick
+	private static final float DRAG = 0.96f;
+
+	private final int capacity;
+
+	// particle attributes - index i in all arrays describes particle i
+	private final float[] x;
+	private final float[] y;
+	private final float[] vx;
+	private final float[] vy;
+	private final float[] life;
+	private final float[] maxLife;
+	private final byte[]  kind;
+
+	// number of live particles - these are always at index 0 to count-1
+	private int count = 0;
+
+	// state of a simple xorshift random generator - avoids the synchronization of Math.random()
+	private int seed = 0x2545F491;
+
+	/**
+	 * Creates a particle pool with the given capacity.
+	 * @param capacity maximal number of live particles
+	 */
+	public PongParticles(int capacity) {
+		this.capacity = capacity;
+		x = new float[capacity];
+		y = new float[capacity];
+		vx = new float[capacity];
+		vy = new float[capacity];
+		life = new float[capacity];
+		maxLife = new float[capacity];
+		kind = new byte[capacity];
+	}
+
+	/**
+	 * Leaves a non moving particle at the given position. Called every tick with the ball's position
+	 * to draw a trail behind the ball.
+	 * @param px
+	 * @param py
+	 */
+	public void emitTrail(double px, double py) {
+		add(TRAIL, (float) px, (float) py, 0f, 0f, TRAIL_LIFE);
+	}
+
+	/**
+	 * Emits a number of sparks flying into random directions from the given position.
+	 * Used when the ball hits a wall or a paddle.
+	 * @param px
+	 * @param py
+	 * @param number of sparks
+	 * @param speed maximal speed of the sparks
+	 */
+	public void emitSparks(double px, double py, int number, double speed) {
+		emit(SPARK, px, py, number, speed, SPARK_LIFE);
+	}
+
+	/**
+	 * Emits a burst of particles from the given position. Used when a goal has been scored.
+	 * @param px
+	 * @param py
+	 * @param number of particles
+	 * @param speed maximal speed of the particles
+	 */
+	public void emitGoal(double px, double py, int number, double speed) {
+		emit(GOAL, px, py, number, speed, GOAL_LIFE);
+	}
+
+	/**
+	 * Moves all live particles one tick and removes the ones which have reached the end of
+	 * their life.
+	 */
+	public void update() {
+		int i = 0;
+		while (i < count) {
+			life[i] -= 1f;
+			if (life[i] <= 0f) {
+				// move last particle into this slot and check this slot again
+				remove(i);
+				continue;
+			}
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] *= DRAG;
+			vy[i] *= DRAG;
+			i++;
+		}
+	}
+
+	/**
+	 * Removes all particles.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	private void emit(int k, double px, double py, int number, double speed, float lifeTime) {
+		for (int n = 0; n < number; n++) {
+			// random direction and speed - the speed is in [speed/4, speed)
+			final float angle = nextFloat() * (float) (2 * Math.PI);
+			final float v = (float) speed * (0.25f + 0.75f * nextFloat());
+			// vary the life time a bit so the particles do not vanish all at once
+			final float l = lifeTime * (0.5f + 0.5f * nextFloat());
+			add(k, (float) px, (float) py, v * (float) Math.cos(angle), v * (float) Math.sin(angle), l);
+		}
+	}
+
+	private void add(int k, float px, float py, float pvx, float pvy, float lifeTime) {
+		// pool is full - drop the particle
+		if (count == capacity) return;
+		final int i = count++;
+		x[i] = px;
+		y[i] = py;
+		vx[i] = pvx;
+		vy[i] = pvy;
+		life[i] = lifeTime;
+		maxLife[i] = lifeTime;
+		kind[i] = (byte) k;
+	}
+
+	private void remove(int i) {
+		final int last = --count;
+		x[i] = x[last];
+		y[i] = y[last];
+		vx[i] = vx[last];
+		vy[i] = vy[last];
+		life[i] = life[last];
+		maxLife[i] = maxLife[last];
+		kind[i] = kind[last];
+	}
+
+	/**
+	 * @return a random float in [0, 1)
+	 */
+	private float nextFloat() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return (seed >>> 8) * 0x1.0p-24f;
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 *
+	 * The view reads the particles by index - 0 to getCount()-1
+	 * ************************************************************/
+
+	/**
+	 * @return the number of live particles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the maximal number of live particles
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param i index of particle
+	 * @return horizontal position of the particle
+	 */
+	public float getX(int i) {
+		return x[i];
+	}
+
+	/**
+	 * @param i index of particle
+	 * @return vertical position of the particle
+	 */
+	public float getY(int i) {
+		return y[i];
+	}
+
+	/**
+	 * @param i index of particle
+	 * @return the kind of the particle (TRAIL, SPARK, GOAL)
+	 */
+	public int getKind(int i) {
+		return kind[i];
+	}
+
+	/**
+	 * @param i index of particle
+	 * @return remaining life of the particle - 1.0 when new, 0.0 when dead
+	 */
+	public float getFade(int i) {
+		return life[i] / maxLife[i];
+	}
+
+}
@@ -0,0 +1,252 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * PongPlayerStatistics - statistics about the play of one player.
+ *
+ * <p>
+ * All values are accumulated in a streaming fashion with constant memory (counts, sums, running mean
+ * and variance with Welford's algorithm, a fixed histogram) so a player's statistics can be collected
+ * over any number of matches. Two statistics can be merged which allows to collect them in parallel
+ * and combine them afterwards.<br>
+ *
+ * @see fko.pong_mvc.PongMatchStatistics
+ *
+ * @author Frank Kopp
+ */
+public class PongPlayerStatistics {
+
+	// number of bins of the hit position histogram (hit positions are in -1.0 to 1.0)
+	public static final int HISTOGRAM_BINS = 10;
+
+	// points scored and conceded
+	private long goals = 0;
+	private long goalsConceded = 0;
+
+	// paddle hits and where the ball hit the paddle
+	private long hits = 0;
+	private double hitPosMean = 0.0;
+	private double hitPosM2 = 0.0;
+	private final long[] hitPosHistogram = new long[HISTOGRAM_BINS];
+
+	// distance the paddle has moved
+	private double paddleTravel = 0.0;
+
+	// time from the ball turning towards the player to the first paddle movement in seconds
+	private long reactions = 0;
+	private double reactionMean = 0.0;
+	private double reactionM2 = 0.0;
+	private double reactionMin = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Resets all values.
+	 */
+	public void reset() {
+		goals = 0;
+		goalsConceded = 0;
+		hits = 0;
+		hitPosMean = 0.0;
+		hitPosM2 = 0.0;
+		Arrays.fill(hitPosHistogram, 0);
+		paddleTravel = 0.0;
+		reactions = 0;
+		reactionMean = 0.0;
+		reactionM2 = 0.0;
+		reactionMin = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param hitPos position where the ball hit the paddle (-1.0 top to 1.0 bottom)
+	 */
+	public void addHit(double hitPos) {
+		hits++;
+		final double delta = hitPos - hitPosMean;
+		hitPosMean += delta / hits;
+		hitPosM2 += delta * (hitPos - hitPosMean);
+		int bin = (int) ((hitPos + 1.0) / 2.0 * HISTOGRAM_BINS);
+		hitPosHistogram[Math.max(0, Math.min(HISTOGRAM_BINS - 1, bin))]++;
+	}
+
+	/**
+	 * @param seconds time from the ball turning towards the player to the first paddle movement
+	 */
+	public void addReaction(double seconds) {
+		reactions++;
+		final double delta = seconds - reactionMean;
+		reactionMean += delta / reactions;
+		reactionM2 += delta * (seconds - reactionMean);
+		reactionMin = Math.min(reactionMin, seconds);
+	}
+
+	/**
+	 * @param distance the paddle has moved
+	 */
+	public void addPaddleTravel(double distance) {
+		paddleTravel += distance;
+	}
+
+	/**
+	 * The player scored.
+	 */
+	public void addGoal() {
+		goals++;
+	}
+
+	/**
+	 * The opponent scored.
+	 */
+	public void addGoalConceded() {
+		goalsConceded++;
+	}
+
+	/**
+	 * Adds the values of another statistic to this one.
+	 * @param other
+	 */
+	public void merge(PongPlayerStatistics other) {
+		goals += other.goals;
+		goalsConceded += other.goalsConceded;
+		// combine mean and variance (Chan et al.)
+		if (other.hits > 0) {
+			final long n = hits + other.hits;
+			final double delta = other.hitPosMean - hitPosMean;
+			hitPosM2 += other.hitPosM2 + delta * delta * hits * other.hits / n;
+			hitPosMean += delta * other.hits / n;
+			hits = n;
+		}
+		for (int i = 0; i < HISTOGRAM_BINS; i++) hitPosHistogram[i] += other.hitPosHistogram[i];
+		paddleTravel += other.paddleTravel;
+		if (other.reactions > 0) {
+			final long n = reactions + other.reactions;
+			final double delta = other.reactionMean - reactionMean;
+			reactionM2 += other.reactionM2 + delta * delta * reactions * other.reactions / n;
+			reactionMean += delta * other.reactions / n;
+			reactions = n;
+		}
+		reactionMin = Math.min(reactionMin, other.reactionMin);
+	}
+
+	/**
+	 * @return a multi line summary of the statistics
+	 */
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.US, "  goals %d  conceded %d%n", goals, goalsConceded));
+		sb.append(String.format(Locale.US, "  paddle hits %d  hit pos mean %.3f  std dev %.3f%n",
+				hits, getHitPosMean(), getHitPosStdDev()));
+		sb.append("  hit pos histogram (top to bottom) ").append(Arrays.toString(hitPosHistogram))
+		.append(String.format("%n"));
+		sb.append(String.format(Locale.US, "  paddle travel %.0f px%n", paddleTravel));
+		sb.append(String.format(Locale.US, "  reactions %d  mean %.3f s  std dev %.3f s  min %.3f s%n",
+				reactions, getReactionMean(), getReactionStdDev(), reactions > 0 ? reactionMin : 0.0));
+		return sb.toString();
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return points scored
+	 */
+	public long getGoals() {
+		return goals;
+	}
+
+	/**
+	 * @return points conceded
+	 */
+	public long getGoalsConceded() {
+		return goalsConceded;
+	}
+
+	/**
+	 * @return number of paddle hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return mean hit position
+	 */
+	public double getHitPosMean() {
+		return hitPosMean;
+	}
+
+	/**
+	 * @return standard deviation of the hit positions
+	 */
+	public double getHitPosStdDev() {
+		return hits > 1 ? Math.sqrt(hitPosM2 / (hits - 1)) : 0.0;
+	}
+
+	/**
+	 * @param bin 0 to HISTOGRAM_BINS-1 (top to bottom of the paddle)
+	 * @return number of hits in this part of the paddle
+	 */
+	public long getHitPosHistogram(int bin) {
+		return hitPosHistogram[bin];
+	}
+
+	/**
+	 * @return total distance the paddle has moved
+	 */
+	public double getPaddleTravel() {
+		return paddleTravel;
+	}
+
+	/**
+	 * @return number of measured reactions
+	 */
+	public long getReactions() {
+		return reactions;
+	}
+
+	/**
+	 * @return mean reaction time in seconds
+	 */
+	public double getReactionMean() {
+		return reactionMean;
+	}
+
+	/**
+	 * @return standard deviation of the reaction times in seconds
+	 */
+	public double getReactionStdDev() {
+		return reactions > 1 ? Math.sqrt(reactionM2 / (reactions - 1)) : 0.0;
+	}
+
+	/**
+	 * @return fastest reaction in seconds - infinite if there was none
+	 */
+	public double getReactionMin() {
+		return reactionMin;
+	}
+
+}
@@ -23,10 +23,21 @@ SOFTWARE.
  */
 package fko.pong_mvc;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import fko.pong_mvc.PongWorld.Archetype;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Cursor;
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.CornerRadii;
@@ -58,13 +69,59 @@ public class PongPlayfield extends Pane {
 	private Rectangle _leftPaddle;
 	private Rectangle _rightPaddle;
 	private Circle _ball;
+	// paddles of the arena mode - one per goal, null in the classic game
+	private Rectangle[] _arenaPaddles;
+
+	// obstacles of the current level
+	private final Group _level = new Group();
+
+	// particle effects are drawn into a pixel buffer which is copied to the image once per frame
+	private WritableImage _particleImage;
+	private int[] _particlePixels;
+	private AnimationTimer _particleTimer;
+	// number of frames drawn - read by the power report
+	private volatile long _renderedFrames = 0;
+	// draws ball, paddles and particles and only uploads the changed regions - null if off
+	private PongDirtyRenderer _dirtyRenderer;
+	private static final int BALL_ARGB = 0xFFFFFFFF;
+	private static final int PADDLE_ARGB = 0xFFFFFFFF;
+	private static final int[] PARTICLE_COLORS = {
+			0xFFFFFFFF, // TRAIL
+			0xFFFFD040, // SPARK
+			0xFFFF4020  // GOAL
+	};
 
 	// helper for dragging of paddles
 	protected double _initialTranslateY;
 	protected double _initialDragAnchor;
 
-	// text to display options which can be turned on and off
-	private StringProperty _optionsTextString = new SimpleStringProperty("Options: ");
+	// font of the score and the replay text - looked up in the background
+	private static final String SCORE_FONT_FAMILY = "OCR A Std";
+	private static final double SCORE_FONT_SIZE = 40.0;
+
+	// score strip at the top of the playfield
+	private static final int SCORE_TOP = 10;
+	private static final int SCORE_HEIGHT = 64;
+	private static final int SCORE_OFFSET_FROM_MIDDLE = 150;
+	private static final int SCORE_MAX_DIGITS = 6;
+	private PongHudAtlas _scoreAtlas;
+	private WritableImage _scoreImage;
+	private int[] _scorePixels;
+
+	// labels of the options display - two lines drawn from an atlas
+	private static final String[] OPTION_NAMES = {
+			"Sound (1) ", "Angling Paddle (2) ", "Record (3) ", "Power-Ups (4) ",
+			"Replay (5) ", "Slow Motion (6) ", "Mouse (7) ", "Level (L) " 
+	};
+	private static final int OPTIONS_PER_LINE = 4;
+	private static final String OPTIONS_LABEL = "Options: ";
+	private static final String ON_LABEL = "ON  ";
+	private static final String OFF_LABEL = "OFF  ";
+	private static final String NO_LEVEL_LABEL = "None  ";
+	private int _optionsWidth;
+	private PongHudAtlas _optionsAtlas;
+	private WritableImage _optionsImage;
+	private int[] _optionsPixels;
 
 	/**
 	 * Creates a Playfield Pane to display the current state of the Pong model.
@@ -91,24 +148,272 @@ public class PongPlayfield extends Pane {
 		// observe model values
 		model.getSoundOnOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
 		model.getAnglePaddleOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
-		this.view.optionsText.textProperty().bind(_optionsTextString);
+		model.getRecordOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
+		model.getPowerUpOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
+		model.getReplayOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
+		model.getSlowMotionOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
+		model.getPointerOptionProperty().addListener((obs, oldX, newX) -> updateOptions());
+		model.getLevelProperty().addListener((obs, oldX, newX) -> {
+			updateLevel();
+			updateOptions();
+		});
+		addOptions();
+
+		// mouse control anywhere on the playfield - see pointer option
+		this.setOnMousePressed(event -> controller.handleMouseEventsPlayfield(event));
+		this.setOnMouseDragged(event -> controller.handleMouseEventsPlayfield(event));
+		this.setOnMouseReleased(event -> controller.handleMouseEventsPlayfield(event));
 
+		this.getChildren().add(_level);
+		updateLevel();
+		addParticles();
 		addBall();
 		addPaddles();
+		if (model.getArena() != null) addArenaPaddles();
 		addScore();
+		addReplayText();
 
 		// initial update to options 
 		updateOptions();
 	}
 
 	/**
-	 * Updates the text showing which options are active
+	 * Creates the atlas with all labels of the options display and the image the view shows.
+	 * Level names are rasterized for all bundled levels.
+	 */
+	private void addOptions() {
+		final List<String> levels = PongLevel.getBundledLevels();
+		final String[] labels = new String[OPTION_NAMES.length + 4 + levels.size()];
+		int i = 0;
+		for (String name : OPTION_NAMES) labels[i++] = name;
+		labels[i++] = OPTIONS_LABEL;
+		labels[i++] = ON_LABEL;
+		labels[i++] = OFF_LABEL;
+		labels[i++] = NO_LEVEL_LABEL;
+		for (String level : levels) labels[i++] = level + "  ";
+		_optionsAtlas = new PongHudAtlas(Font.getDefault(), Color.BLACK, labels);
+		final int height = 2 * _optionsAtlas.getHeight();
+		_optionsWidth = (int) model.getPlayfieldWidth();
+		_optionsImage = new WritableImage(_optionsWidth, height);
+		_optionsPixels = new int[_optionsWidth * height];
+		view.optionsImage.setImage(_optionsImage);
+	}
+
+	/**
+	 * Draws the labels showing which options are active
 	 */
 	private void updateOptions() {
-		StringBuilder sb = new StringBuilder("Options: ");
-		sb.append("Sound (1) ").append(model.getSoundOnOption() ? "ON" : "OFF").append("  ");
-		sb.append("Angling Paddle (2) ").append(model.getAnglePaddleOption() ? "ON" : "OFF").append("  ");
-		_optionsTextString.set(sb.toString());
+		final boolean[] on = {
+				model.getSoundOnOption(), model.getAnglePaddleOption(), model.getRecordOption(), 
+				model.getPowerUpOption(), model.getReplayOption(), model.getSlowMotionOption(),
+				model.getPointerOption()
+		};
+		final PongHudAtlas atlas = _optionsAtlas;
+		final int lineHeight = atlas.getHeight();
+		Arrays.fill(_optionsPixels, 0);
+		int x = atlas.drawLabel(atlas.indexOf(OPTIONS_LABEL), _optionsPixels, _optionsWidth, 0, 0);
+		final int indent = x;
+		int y = 0;
+		for (int i = 0; i < OPTION_NAMES.length; i++) {
+			if (i == OPTIONS_PER_LINE) {
+				x = indent;
+				y = lineHeight;
+			}
+			x += atlas.drawLabel(i, _optionsPixels, _optionsWidth, x, y);
+			final int value;
+			if (i < on.length) {
+				value = atlas.indexOf(on[i] ? ON_LABEL : OFF_LABEL);
+			} else {
+				value = atlas.indexOf(model.getLevel() == null ? NO_LEVEL_LABEL : model.getLevel().getName() + "  ");
+			}
+			if (value >= 0) x += atlas.drawLabel(value, _optionsPixels, _optionsWidth, x, y);
+		}
+		_optionsImage.getPixelWriter().setPixels(0, 0, _optionsWidth, (int) _optionsImage.getHeight(), 
+				PixelFormat.getIntArgbInstance(), _optionsPixels, 0, _optionsWidth);
+	}
+
+	/**
+	 * Replaces the shapes of the obstacles with the ones of the model's current level.
+	 */
+	private void updateLevel() {
+		_level.getChildren().clear();
+		final PongLevel level = model.getLevel();
+		if (level == null) return;
+		for (int i = 0; i < level.getCount(); i++) {
+			if (level.getType(i) == PongLevel.BUMPER) {
+				_level.getChildren().add(new Circle(level.getA(i), level.getB(i), level.getC(i), Color.GRAY));
+			} else {
+				Rectangle wall = new Rectangle(level.getA(i), level.getB(i), 
+						level.getC(i) - level.getA(i), level.getD(i) - level.getB(i));
+				wall.setFill(Color.GRAY);
+				_level.getChildren().add(wall);
+			}
+		}
+	}
+
+	/**
+	 * Adds the layer for the particle effects to the screen.<br>
+	 * All particles are plotted into a pixel array which is copied to the image in one go
+	 * every frame. The costs per particle is therefore only setting a few ints. 
+	 */
+	private void addParticles() {
+		final int width = (int) model.getPlayfieldWidth();
+		final int height = (int) model.getPlayfieldHeight();
+		_particleImage = new WritableImage(width, height);
+		_particlePixels = new int[width * height];
+		this.getChildren().add(new ImageView(_particleImage));
+
+		_particleTimer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				drawParticles(width, height);
+			}
+		};
+		// no redraws while the model is idle - the last frame stays visible
+		model.getIdleProperty().addListener((obs, oldX, newX) -> {
+			if (newX) {
+				drawParticles(width, height);
+				_particleTimer.stop();
+			} else {
+				_particleTimer.start();
+			}
+		});
+		if (!model.isIdle()) _particleTimer.start();
+	}
+
+	/**
+	 * Draws all live particles of the model as 2x2 pixel squares fading out with their life time
+	 * and the extra game objects of the model's world on top.
+	 * @param width
+	 * @param height
+	 */
+	private void drawParticles(int width, int height) {
+		_renderedFrames++;
+		if (_arenaPaddles != null) updateArenaPaddles();
+		if (_dirtyRenderer != null) {
+			drawDirty(width, height);
+			return;
+		}
+		final int[] pixels = _particlePixels;
+		Arrays.fill(pixels, 0);
+		plotParticles(pixels, width, height);
+		// extra balls, paddles and power-ups
+		PongSystems.render(model.getWorld(), pixels, width, height);
+		_particleImage.getPixelWriter()
+		.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+	}
+
+	/**
+	 * Draws ball, paddles, particles and the world with the dirty rectangle renderer and uploads
+	 * only the rectangles which have changed.
+	 * @param width
+	 * @param height
+	 */
+	private void drawDirty(int width, int height) {
+		final PongDirtyRenderer renderer = _dirtyRenderer;
+		renderer.beginFrame();
+		renderer.setCircle(PongDirtyRenderer.BALL, 
+				model.getBallCenterX(), model.getBallCenterY(), model.getBallSize(), BALL_ARGB);
+		renderer.setRect(PongDirtyRenderer.LEFT_PADDLE, model.getLeftPaddleX(), model.getLeftPaddleY(), 
+				model.getPaddleWidth(), model.getLeftPaddleLength(), PADDLE_ARGB);
+		renderer.setRect(PongDirtyRenderer.RIGHT_PADDLE, model.getRightPaddleX(), model.getRightPaddleY(), 
+				model.getPaddleWidth(), model.getRightPaddleLength(), PADDLE_ARGB);
+		setLayerBounds(renderer);
+		final int[] pixels = renderer.prepare();
+		plotParticles(pixels, width, height);
+		PongSystems.render(model.getWorld(), pixels, width, height);
+		final int n = renderer.finish();
+		final PixelWriter writer = _particleImage.getPixelWriter();
+		for (int i = 0; i < n; i++) {
+			final int x = renderer.getDirtyX(i);
+			final int y = renderer.getDirtyY(i);
+			writer.setPixels(x, y, renderer.getDirtyWidth(i), renderer.getDirtyHeight(i), 
+					PixelFormat.getIntArgbInstance(), pixels, y * width + x, width);
+		}
+	}
+
+	/**
+	 * Sets the bounding box of all particles and all entities of the world.
+	 * @param renderer
+	 */
+	private void setLayerBounds(PongDirtyRenderer renderer) {
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+		double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+		final PongParticles particles = model.getParticles();
+		for (int i = 0; i < particles.getCount(); i++) {
+			final double px = particles.getX(i), py = particles.getY(i);
+			if (px < x0) x0 = px;
+			if (py < y0) y0 = py;
+			if (px + 2 > x1) x1 = px + 2;
+			if (py + 2 > y1) y1 = py + 2;
+		}
+		for (Archetype a : model.getWorld().getArchetypes()) {
+			if (!a.has(PongWorld.POSITION | PongWorld.SIZE)) continue;
+			for (int i = 0; i < a.getCount(); i++) {
+				// balls use w as radius, all others are centered - the larger half extent covers both
+				final double e = Math.max(a.w[i], a.h[i]);
+				if (a.x[i] - e < x0) x0 = a.x[i] - e;
+				if (a.y[i] - e < y0) y0 = a.y[i] - e;
+				if (a.x[i] + e > x1) x1 = a.x[i] + e;
+				if (a.y[i] + e > y1) y1 = a.y[i] + e;
+			}
+		}
+		if (x0 < x1) {
+			renderer.setLayerBounds((int) Math.floor(x0) - 1, (int) Math.floor(y0) - 1, 
+					(int) Math.ceil(x1) + 1, (int) Math.ceil(y1) + 1);
+		}
+	}
+
+	/**
+	 * Plots all live particles as 2x2 pixel squares fading out with their life time.
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 */
+	private void plotParticles(int[] pixels, int width, int height) {
+		final PongParticles particles = model.getParticles();
+		for (int i = 0; i < particles.getCount(); i++) {
+			final int px = (int) particles.getX(i);
+			final int py = (int) particles.getY(i);
+			if (px < 0 || py < 0 || px >= width - 1 || py >= height - 1) continue;
+			// fade out by reducing alpha
+			final int alpha = (int) (particles.getFade(i) * 255f);
+			final int argb = (alpha << 24) | (PARTICLE_COLORS[particles.getKind(i)] & 0x00FFFFFF);
+			final int offset = py * width + px;
+			pixels[offset] = argb;
+			pixels[offset + 1] = argb;
+			pixels[offset + width] = argb;
+			pixels[offset + width + 1] = argb;
+		}
+	}
+
+	/**
+	 * Switches between the scene graph nodes and the dirty rectangle renderer for ball and paddles.
+	 * The paddle nodes stay in the scene fully transparent so they can still be dragged. 
+	 * @param on
+	 */
+	public void setDirtyRectRendering(boolean on) {
+		if (on && _arenaPaddles != null) {
+			Pong.minorError("Dirty rectangle rendering is not available in the arena mode");
+			return;
+		}
+		if (on && _dirtyRenderer == null) {
+			_dirtyRenderer = new PongDirtyRenderer((int) _particleImage.getWidth(), (int) _particleImage.getHeight());
+		} else if (!on) {
+			_dirtyRenderer = null;
+		}
+		_ball.setVisible(!on);
+		_leftPaddle.setOpacity(on ? 0.0 : 1.0);
+		_rightPaddle.setOpacity(on ? 0.0 : 1.0);
+		// the renderer owns the image now - start with a full frame
+		drawParticles((int) _particleImage.getWidth(), (int) _particleImage.getHeight());
+	}
+
+	/**
+	 * @return number of frames drawn since the playfield was created
+	 */
+	public long getRenderedFrames() {
+		return _renderedFrames;
 	}
 
 	/**
@@ -129,6 +434,7 @@ public class PongPlayfield extends Pane {
 
 		_leftPaddle = new Rectangle(model.getPaddleWidth(), model.getLeftPaddleLength(), Color.WHITE);
 		_leftPaddle.heightProperty().bind(model.getLeftPaddleLengthProperty());
+		_leftPaddle.widthProperty().bind(model.getPaddleWidthProperty());
 		_leftPaddle.xProperty().bind(model.getLeftPaddleXProperty());
 		_leftPaddle.yProperty().bind(model.getLeftPaddleYProperty());
 		_leftPaddle.setCursor(Cursor.OPEN_HAND);
@@ -139,6 +445,7 @@ public class PongPlayfield extends Pane {
 
 		_rightPaddle = new Rectangle(model.getPaddleWidth(), model.getRightPaddleLength(), Color.WHITE);
 		_rightPaddle.heightProperty().bind(model.getRightPaddleLengthProperty());
+		_rightPaddle.widthProperty().bind(model.getPaddleWidthProperty());
 		_rightPaddle.xProperty().bind(model.getRightPaddleXProperty());
 		_rightPaddle.yProperty().bind(model.getRightPaddleYProperty());
 		_rightPaddle.setCursor(Cursor.OPEN_HAND);
@@ -149,42 +456,118 @@ public class PongPlayfield extends Pane {
 	}
 
 	/**
-	 * Adds the display of the score for each player.
+	 * Replaces the two paddles with one paddle per goal of the arena. Their positions are taken from 
+	 * the arena each frame - the arena keeps them in arrays and has no properties to bind to.
+	 */
+	private void addArenaPaddles() {
+		_leftPaddle.setVisible(false);
+		_rightPaddle.setVisible(false);
+		_arenaPaddles = new Rectangle[model.getArena().getGoalCount()];
+		for (int g = 0; g < _arenaPaddles.length; g++) {
+			_arenaPaddles[g] = new Rectangle(0, 0, Color.WHITE);
+			this.getChildren().add(_arenaPaddles[g]);
+		}
+		updateArenaPaddles();
+	}
+
+	/**
+	 * Moves the paddle nodes of the arena mode to the paddles of the model's current arena.
+	 */
+	private void updateArenaPaddles() {
+		final PongArena arena = model.getArena();
+		for (int g = 0; g < _arenaPaddles.length && g < arena.getGoalCount(); g++) {
+			final Rectangle paddle = _arenaPaddles[g];
+			paddle.setX(arena.getPaddleX(g));
+			paddle.setY(arena.getPaddleY(g));
+			paddle.setWidth(arena.getPaddleWidth(g));
+			paddle.setHeight(arena.getPaddleHeight(g));
+		}
+	}
+
+	/**
+	 * Adds the display of the score for each player.<br>
+	 * The scores are drawn from the digits of an atlas into a pixel strip whenever the points 
+	 * change - no text layout is involved.
 	 */
 	private void addScore() {
-		// create Text for each score 
-		Text leftScore = new Text();
-		Text rightScore = new Text();
-		
-		// add them to pane
-		this.getChildren().add(leftScore);
-		this.getChildren().add(rightScore);
-
-		// positioning helpers
-		final double middle = model.getPlayfieldWidth() / 2;
-		final int offsetFromMiddle = 150;
-
-		// layout helpers
-		final Font font = Font.font("OCR A Std", FontWeight.BOLD, FontPosture.REGULAR, 40.0);
-		final int locationY = 50;
-		final Color color = Color.WHITE;
-
-		// left
-		leftScore.setFont(font);
-		leftScore.setY(locationY);
-		leftScore.setFill(color);
-		// right
-		rightScore.setFont(font);
-		rightScore.setY(locationY);
-		rightScore.setFill(color);
-
-		// position score text
-		leftScore.setX(middle - offsetFromMiddle - 15);
-		rightScore.setX(middle + offsetFromMiddle);
-
-		// bind text to score property
-		leftScore.textProperty().bind(model.getPlayerLeft().points.asString());
-		rightScore.textProperty().bind(model.getPlayerRight().points.asString());
+		final int width = (int) model.getPlayfieldWidth();
+		// the default font until the score font has been loaded
+		_scoreAtlas = new PongHudAtlas(Font.font(SCORE_FONT_SIZE), Color.WHITE);
+		_scoreImage = new WritableImage(width, SCORE_HEIGHT);
+		_scorePixels = new int[width * SCORE_HEIGHT];
+		final ImageView scoreView = new ImageView(_scoreImage);
+		scoreView.setY(SCORE_TOP);
+		this.getChildren().add(scoreView);
+
+		// redraw when the points change
+		model.getPlayerLeft().points.addListener((obs, oldX, newX) -> drawScore());
+		model.getPlayerRight().points.addListener((obs, oldX, newX) -> drawScore());
+		model.getArenaPointChangesProperty().addListener((obs, oldX, newX) -> drawScore());
+		drawScore();
+
+		loadScoreFontLater(SCORE_FONT_SIZE, font -> {
+			_scoreAtlas = new PongHudAtlas(font, Color.WHITE);
+			drawScore();
+		});
+	}
+
+	/**
+	 * Draws the points of both players into the score strip - in the arena mode the points of all 
+	 * players evenly spread over the strip.
+	 */
+	private void drawScore() {
+		final int width = (int) _scoreImage.getWidth();
+		final PongArena arena = model.getArena();
+		if (arena != null) {
+			PongHudAtlas.clear(_scorePixels, width, 0, 0, width, SCORE_HEIGHT);
+			final int players = arena.getPlayerCount();
+			for (int p = 0; p < players; p++) {
+				final int x = width * (p + 1) / (players + 1) - _scoreAtlas.getDigitWidth() / 2;
+				_scoreAtlas.drawNumber(arena.getPoints(p), _scorePixels, width, Math.max(0, x), 0);
+			}
+			_scoreImage.getPixelWriter()
+			.setPixels(0, 0, width, SCORE_HEIGHT, PixelFormat.getIntArgbInstance(), _scorePixels, 0, width);
+			return;
+		}
+		final int middle = width / 2;
+		final int maxWidth = SCORE_MAX_DIGITS * _scoreAtlas.getDigitWidth();
+		final int leftX = middle - SCORE_OFFSET_FROM_MIDDLE - 15;
+		final int rightX = middle + SCORE_OFFSET_FROM_MIDDLE;
+		PongHudAtlas.clear(_scorePixels, width, leftX, 0, Math.min(maxWidth, width - leftX), SCORE_HEIGHT);
+		PongHudAtlas.clear(_scorePixels, width, rightX, 0, Math.min(maxWidth, width - rightX), SCORE_HEIGHT);
+		_scoreAtlas.drawNumber(model.getPlayerLeft().points.get(), _scorePixels, width, leftX, 0);
+		_scoreAtlas.drawNumber(model.getPlayerRight().points.get(), _scorePixels, width, rightX, 0);
+		_scoreImage.getPixelWriter()
+		.setPixels(0, 0, width, SCORE_HEIGHT, PixelFormat.getIntArgbInstance(), _scorePixels, 0, width);
+	}
+
+	/**
+	 * Adds a text which is shown while the model shows a replay.
+	 */
+	private void addReplayText() {
+		Text replayText = new Text("REPLAY (R to skip)");
+		replayText.setFont(Font.font(20.0));
+		loadScoreFontLater(20.0, font -> replayText.setFont(font));
+		replayText.setFill(Color.YELLOW);
+		replayText.setX(model.getPlayfieldWidth() / 2 - 100);
+		replayText.setY(model.getPlayfieldHeight() - 20);
+		replayText.visibleProperty().bind(model.getReplayingProperty());
+		this.getChildren().add(replayText);
+	}
+
+	/**
+	 * Looks up the score font on a background thread and hands it to the JavaFX thread when found. 
+	 * The lookup may scan all installed fonts and would otherwise delay the first frame.
+	 * @param size
+	 * @param onLoaded called on the JavaFX thread with the font
+	 */
+	private void loadScoreFontLater(double size, Consumer<Font> onLoaded) {
+		final Thread thread = new Thread(() -> {
+			final Font font = Font.font(SCORE_FONT_FAMILY, FontWeight.BOLD, FontPosture.REGULAR, size);
+			Platform.runLater(() -> onLoaded.accept(font));
+		}, "FontLoader");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 
@@ -0,0 +1,125 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongPointer - mouse control of one paddle.
+ *
+ * <p>
+ * Mice report their position up to 8000 times a second, far more often than the paddles move. 
+ * Each event only stores its sample, the latest one wins. Once per tick of the paddle movement
+ * the paddle moves towards the latest sample by at most the same step the keys move it. Mouse
+ * play therefore follows the same physics as keyboard play and the cost per tick does not depend
+ * on how often the mouse reports.
+ *
+ * @author Frank Kopp
+ */
+public class PongPointer {
+
+	private boolean captured = false;
+	// the paddle has not reached the latest sample yet
+	private boolean pending = false;
+	// latest sample - the wanted center of the paddle
+	private double target = 0.0;
+
+	// statistics
+	private long samples = 0;
+	private long ticks = 0;
+
+	/**
+	 * Starts following the pointer - e.g. when the mouse button is pressed.
+	 * @param y of the pointer
+	 */
+	public void capture(double y) {
+		captured = true;
+		sample(y);
+	}
+
+	/**
+	 * Stores the latest position of the pointer. Ignored if not captured.
+	 * @param y of the pointer
+	 */
+	public void sample(double y) {
+		if (!captured) return;
+		target = y;
+		pending = true;
+		samples++;
+	}
+
+	/**
+	 * Stops following the pointer. The paddle still moves to the last sample.
+	 */
+	public void release() {
+		captured = false;
+	}
+
+	/**
+	 * Moves the paddle towards the latest sample - called once per tick.
+	 * @param paddleY top of the paddle
+	 * @param paddleLength
+	 * @param maxStep largest movement per tick
+	 * @param playfieldHeight
+	 * @return new top of the paddle
+	 */
+	public double step(double paddleY, double paddleLength, double maxStep, double playfieldHeight) {
+		ticks++;
+		double wanted = target - paddleLength / 2;
+		if (wanted < 0) wanted = 0;
+		else if (wanted + paddleLength > playfieldHeight) wanted = playfieldHeight - paddleLength;
+		final double delta = wanted - paddleY;
+		if (delta > maxStep) return paddleY + maxStep;
+		if (delta < -maxStep) return paddleY - maxStep;
+		pending = captured;
+		return wanted;
+	}
+
+	/**
+	 * @return true while the pointer is captured or the paddle has not reached the last sample 
+	 */
+	public boolean isActive() {
+		return captured || pending;
+	}
+
+	/**
+	 * @return true while the pointer is captured
+	 */
+	public boolean isCaptured() {
+		return captured;
+	}
+
+	/**
+	 * @return number of samples stored since creation
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return number of ticks moving the paddle since creation
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+}
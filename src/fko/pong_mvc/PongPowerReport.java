@@ -0,0 +1,99 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Locale;
+
+/**
+ * PongPowerReport - prints the CPU usage of the process and the wakeups of the game in regular 
+ * intervals to measure the power use, e.g. of an idle game on a laptop or a kiosk.
+ *
+ * <p>
+ * Wakeups are the animation frames handled by the model's timelines and the frames drawn by the
+ * playfield. Both should drop to zero while the model is idle. Runs on its own daemon thread and
+ * only reads counters - it does not wake up the JavaFX thread itself.
+ *
+ * @author Frank Kopp
+ */
+public class PongPowerReport extends Thread {
+
+	private final PongModel model;
+	private final PongView view;
+	private final long intervalMillis;
+
+	/**
+	 * @param model
+	 * @param view
+	 * @param intervalSeconds between two reports
+	 */
+	public PongPowerReport(PongModel model, PongView view, double intervalSeconds) {
+		super("PowerReport");
+		this.model = model;
+		this.view = view;
+		this.intervalMillis = Math.max(100, (long) (intervalSeconds * 1000));
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		long lastTime = System.nanoTime();
+		long lastCpu = processCpuTime();
+		long lastModelFrames = model.getTimelineFrames();
+		long lastRenderedFrames = view.getRenderedFrames();
+		while (true) {
+			try {
+				Thread.sleep(intervalMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			final long time = System.nanoTime();
+			final long cpu = processCpuTime();
+			final long modelFrames = model.getTimelineFrames();
+			final long renderedFrames = view.getRenderedFrames();
+			final double seconds = (time - lastTime) / 1e9;
+			System.out.printf(Locale.US, "%s CPU %5.1f%%  model frames %6.1f/s  drawn frames %6.1f/s%n",
+					model.isIdle() ? "idle  " : "active",
+					cpu < 0 ? Double.NaN : 100.0 * (cpu - lastCpu) / (time - lastTime),
+					(modelFrames - lastModelFrames) / seconds, (renderedFrames - lastRenderedFrames) / seconds);
+			lastTime = time;
+			lastCpu = cpu;
+			lastModelFrames = modelFrames;
+			lastRenderedFrames = renderedFrames;
+		}
+	}
+
+	/**
+	 * @return CPU time of the process in nano seconds - -1 if not available
+	 */
+	private static long processCpuTime() {
+		final OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+		if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongProfile - the long term record of a player: games, wins, points and when the player
+ * played last.
+ *
+ * <p>
+ * Profiles are immutable. Adding a game result creates a new profile so profiles can be handed to
+ * other threads (e.g. the view showing a leaderboard) without any locking.
+ *
+ * @see fko.pong_mvc.PongProfileStore
+ *
+ * @author Frank Kopp
+ */
+public final class PongProfile {
+
+	private final String name;
+	private final int games;
+	private final int wins;
+	private final int losses;
+	private final long pointsScored;
+	private final long pointsConceded;
+	private final int bestScore;
+	private final long lastPlayed;
+
+	/**
+	 * Creates a new profile without any games.
+	 * @param name
+	 */
+	public PongProfile(String name) {
+		this(name, 0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * @param name
+	 * @param games
+	 * @param wins
+	 * @param losses
+	 * @param pointsScored
+	 * @param pointsConceded
+	 * @param bestScore
+	 * @param lastPlayed time in milliseconds since epoch
+	 */
+	public PongProfile(String name, int games, int wins, int losses, long pointsScored, 
+			long pointsConceded, int bestScore, long lastPlayed) {
+		this.name = name;
+		this.games = games;
+		this.wins = wins;
+		this.losses = losses;
+		this.pointsScored = pointsScored;
+		this.pointsConceded = pointsConceded;
+		this.bestScore = bestScore;
+		this.lastPlayed = lastPlayed;
+	}
+
+	/**
+	 * @param scored points of this player
+	 * @param conceded points of the opponent
+	 * @param time of the game in milliseconds since epoch
+	 * @return a new profile with the result of the game added
+	 */
+	public PongProfile withResult(int scored, int conceded, long time) {
+		return new PongProfile(name, games + 1, 
+				wins + (scored > conceded ? 1 : 0), 
+				losses + (scored < conceded ? 1 : 0),
+				pointsScored + scored, 
+				pointsConceded + conceded, 
+				Math.max(bestScore, scored), 
+				Math.max(lastPlayed, time));
+	}
+
+	/**
+	 * @return the player's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of games played
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * @return number of games won
+	 */
+	public int getWins() {
+		return wins;
+	}
+
+	/**
+	 * @return number of games lost
+	 */
+	public int getLosses() {
+		return losses;
+	}
+
+	/**
+	 * @return all points scored
+	 */
+	public long getPointsScored() {
+		return pointsScored;
+	}
+
+	/**
+	 * @return all points conceded
+	 */
+	public long getPointsConceded() {
+		return pointsConceded;
+	}
+
+	/**
+	 * @return highest score in one game
+	 */
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * @return time of the last game in milliseconds since epoch
+	 */
+	public long getLastPlayed() {
+		return lastPlayed;
+	}
+
+	@Override
+	public String toString() {
+		return name + " games=" + games + " wins=" + wins + " losses=" + losses 
+				+ " points=" + pointsScored + ":" + pointsConceded + " best=" + bestScore;
+	}
+
+}
@@ -0,0 +1,372 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * PongProfileStore - stores the profiles of all players (see {@link PongProfile}) and the
+ * leaderboard on disk.
+ *
+ * <p>
+ * Every game result is appended to a log file (<code>profiles.log</code>) and forced to disk before it
+ * is applied to the in-memory index of profiles. When the log has grown beyond a threshold it is
+ * compacted: all profiles are written to a new snapshot file (<code>profiles.snapshot</code>) which
+ * atomically replaces the old one and the log is truncated. On startup the snapshot is loaded and
+ * the log entries newer than the snapshot are replayed. Both files are memory-mapped for loading.
+ *
+ * <p>
+ * Crash safety: each log entry has a sequence number, its length and a CRC32. A torn entry at the end
+ * of the log is detected and cut off when loading. The snapshot stores the sequence number of the last
+ * log entry it contains so a crash between replacing the snapshot and truncating the log does not
+ * apply any result twice.
+ *
+ * <p>
+ * All file operations (loading, appending, compacting) run in order on one background thread so
+ * recording a result never blocks the caller (usually the JavaFX thread). Readers of the profiles
+ * see the in-memory index which is updated by the background thread.
+ *
+ * @author Frank Kopp
+ */
+public class PongProfileStore {
+
+	public static final String LOG_FILE = "profiles.log";
+	public static final String SNAPSHOT_FILE = "profiles.snapshot";
+
+	// compact the log when it is larger than this
+	public static final long DEFAULT_COMPACT_THRESHOLD = 1 << 20;
+
+	private static final int SNAPSHOT_MAGIC = 0x50524F46; // "PROF"
+	private static final int SNAPSHOT_VERSION = 1;
+
+	// length and crc in front of each log entry
+	private static final int ENTRY_HEADER_SIZE = 8;
+	private static final int MAX_NAME_BYTES = 1024;
+
+	private final Path snapshotFile;
+	private final Path logFile;
+	private final long compactThreshold;
+
+	// all profiles by name - written only by the background thread
+	private final Map<String, PongProfile> profiles = new ConcurrentHashMap<>();
+
+	// runs all file operations in order
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "PongProfileStore");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// these are only used by the background thread
+	private FileChannel log;
+	private long lastSequence = 0;
+	private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + 32 + 2 * MAX_NAME_BYTES);
+	private final CRC32 crc = new CRC32();
+
+	private volatile boolean loaded = false;
+
+	/**
+	 * Opens the store in the given folder and starts loading the profiles in the background.
+	 * @param folder
+	 */
+	public PongProfileStore(Path folder) {
+		this(folder, DEFAULT_COMPACT_THRESHOLD);
+	}
+
+	/**
+	 * Opens the store in the given folder and starts loading the profiles in the background.
+	 * @param folder
+	 * @param compactThreshold size of the log in bytes which triggers a compaction
+	 */
+	public PongProfileStore(Path folder, long compactThreshold) {
+		this.snapshotFile = folder.resolve(SNAPSHOT_FILE);
+		this.logFile = folder.resolve(LOG_FILE);
+		this.compactThreshold = compactThreshold;
+		executor.execute(() -> {
+			try {
+				Files.createDirectories(folder);
+				load();
+			} catch (IOException e) {
+				Pong.criticalError("Profiles could not be loaded: " + e.getMessage());
+			}
+			loaded = true;
+		});
+	}
+
+	/**
+	 * Records the result of a game for both players. Returns immediately - the result is
+	 * written and applied to the profiles in the background.
+	 * @param leftName
+	 * @param leftPoints
+	 * @param rightName
+	 * @param rightPoints
+	 */
+	public void recordResult(String leftName, int leftPoints, String rightName, int rightPoints) {
+		final long time = System.currentTimeMillis();
+		executor.execute(() -> {
+			try {
+				append(lastSequence + 1, time, leftName, leftPoints, rightName, rightPoints);
+			} catch (IOException e) {
+				Pong.criticalError("Result could not be stored: " + e.getMessage());
+				return;
+			}
+			if (log != null) {
+				try {
+					if (log.size() > compactThreshold) compact();
+				} catch (IOException e) {
+					Pong.criticalError("Profiles could not be compacted: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param name
+	 * @return the profile of the player or null if unknown
+	 */
+	public PongProfile getProfile(String name) {
+		return profiles.get(name);
+	}
+
+	/**
+	 * @param n maximal number of entries
+	 * @return the best players sorted by wins, then points difference
+	 */
+	public List<PongProfile> getLeaderboard(int n) {
+		List<PongProfile> list = new ArrayList<>(profiles.values());
+		list.sort(Comparator.comparingInt(PongProfile::getWins)
+				.thenComparingLong(p -> p.getPointsScored() - p.getPointsConceded())
+				.reversed());
+		return list.size() > n ? new ArrayList<>(list.subList(0, n)) : list;
+	}
+
+	/**
+	 * @return true when the profiles have been loaded from disk
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Writes all pending results and closes the files. Waits at most a few seconds.
+	 */
+	public void close() {
+		executor.execute(() -> {
+			try {
+				if (log != null) log.close();
+			} catch (IOException e) {
+				Pong.minorError("Profile log could not be closed: " + e.getMessage());
+			}
+		});
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Loads the snapshot and replays the log.
+	 * @throws IOException
+	 */
+	private void load() throws IOException {
+		long snapshotSequence = 0;
+		if (Files.exists(snapshotFile)) {
+			snapshotSequence = loadSnapshot();
+		}
+		lastSequence = snapshotSequence;
+
+		log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, 
+				StandardOpenOption.WRITE);
+		final long size = log.size();
+		long valid = 0;
+		if (size > 0) {
+			// read, not map: a mapped file cannot be truncated on Windows
+			final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+			while (buffer.hasRemaining() && log.read(buffer) >= 0) {
+				// read the whole log
+			}
+			buffer.flip();
+			while (buffer.remaining() >= ENTRY_HEADER_SIZE) {
+				final int start = buffer.position();
+				final int length = buffer.getInt();
+				final int checksum = buffer.getInt();
+				if (length <= 0 || length > buffer.remaining()) break;
+				crc.reset();
+				final ByteBuffer payload = (ByteBuffer) buffer.slice().limit(length);
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) break;
+				final long sequence = buffer.getLong();
+				final long time = buffer.getLong();
+				final String leftName = getString(buffer);
+				final int leftPoints = buffer.getInt();
+				final String rightName = getString(buffer);
+				final int rightPoints = buffer.getInt();
+				buffer.position(start + ENTRY_HEADER_SIZE + length);
+				// entries up to the snapshot's sequence are already in the snapshot
+				if (sequence > lastSequence) {
+					apply(time, leftName, leftPoints, rightName, rightPoints);
+					lastSequence = sequence;
+				}
+				valid = buffer.position();
+			}
+		}
+		// cut off a torn entry from a crash
+		if (valid < size) {
+			Pong.minorError("Profile log truncated from " + size + " to " + valid + " bytes");
+			log.truncate(valid);
+			log.force(true);
+		}
+		log.position(valid);
+	}
+
+	/**
+	 * @return the sequence number of the last log entry contained in the snapshot
+	 * @throws IOException
+	 */
+	private long loadSnapshot() throws IOException {
+		try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+				throw new IOException("Not a profile snapshot: " + snapshotFile);
+			}
+			final long sequence = buffer.getLong();
+			final int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				final String name = getString(buffer);
+				profiles.put(name, new PongProfile(name, buffer.getInt(), buffer.getInt(), buffer.getInt(),
+						buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getLong()));
+			}
+			return sequence;
+		}
+	}
+
+	/**
+	 * Appends a result to the log, forces it to disk and applies it to the profiles.
+	 * @throws IOException
+	 */
+	private void append(long sequence, long time, String leftName, int leftPoints, String rightName, 
+			int rightPoints) throws IOException {
+		if (log == null) throw new IOException("Profile log is not open");
+		final ByteBuffer buffer = entryBuffer;
+		buffer.clear();
+		buffer.position(ENTRY_HEADER_SIZE);
+		buffer.putLong(sequence);
+		buffer.putLong(time);
+		putString(buffer, leftName);
+		buffer.putInt(leftPoints);
+		putString(buffer, rightName);
+		buffer.putInt(rightPoints);
+		final int length = buffer.position() - ENTRY_HEADER_SIZE;
+		crc.reset();
+		crc.update(buffer.array(), ENTRY_HEADER_SIZE, length);
+		buffer.putInt(0, length);
+		buffer.putInt(4, (int) crc.getValue());
+		buffer.flip();
+		while (buffer.hasRemaining()) log.write(buffer);
+		log.force(false);
+		lastSequence = sequence;
+		apply(time, leftName, leftPoints, rightName, rightPoints);
+	}
+
+	/**
+	 * Writes all profiles into a new snapshot, replaces the old snapshot and truncates the log.
+	 * @throws IOException
+	 */
+	private void compact() throws IOException {
+		final Path tmpFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			buffer.putInt(SNAPSHOT_MAGIC);
+			buffer.putInt(SNAPSHOT_VERSION);
+			buffer.putLong(lastSequence);
+			buffer.putInt(profiles.size());
+			for (PongProfile p : profiles.values()) {
+				if (buffer.remaining() < 2 * MAX_NAME_BYTES) {
+					buffer.flip();
+					while (buffer.hasRemaining()) channel.write(buffer);
+					buffer.clear();
+				}
+				putString(buffer, p.getName());
+				buffer.putInt(p.getGames());
+				buffer.putInt(p.getWins());
+				buffer.putInt(p.getLosses());
+				buffer.putLong(p.getPointsScored());
+				buffer.putLong(p.getPointsConceded());
+				buffer.putInt(p.getBestScore());
+				buffer.putLong(p.getLastPlayed());
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) channel.write(buffer);
+			channel.force(true);
+		}
+		Files.move(tmpFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		// the snapshot now contains all entries of the log
+		log.truncate(0);
+		log.force(true);
+		log.position(0);
+	}
+
+	private void apply(long time, String leftName, int leftPoints, String rightName, int rightPoints) {
+		profiles.put(leftName, profiles.getOrDefault(leftName, new PongProfile(leftName))
+				.withResult(leftPoints, rightPoints, time));
+		profiles.put(rightName, profiles.getOrDefault(rightName, new PongProfile(rightName))
+				.withResult(rightPoints, leftPoints, time));
+	}
+
+	private static void putString(ByteBuffer buffer, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		final int length = Math.min(bytes.length, MAX_NAME_BYTES);
+		buffer.putShort((short) length);
+		buffer.put(bytes, 0, length);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		final int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
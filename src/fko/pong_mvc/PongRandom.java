@@ -0,0 +1,110 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongRandom - a small and fast random generator (SplitMix64) with a seed and a state which can be
+ * read and set.
+ *
+ * <p>
+ * The game uses this instead of <code>Math.random()</code> so a game can be reproduced from its
+ * seed (e.g. for recordings) and the position of the generator can be saved and restored.<br>
+ *
+ * @author Frank Kopp
+ */
+public class PongRandom {
+
+	private long seed;
+	private long state;
+
+	/**
+	 * Creates a random generator with a seed based on the current time.
+	 */
+	public PongRandom() {
+		this(System.nanoTime());
+	}
+
+	/**
+	 * Creates a random generator with the given seed.
+	 * @param seed
+	 */
+	public PongRandom(long seed) {
+		setSeed(seed);
+	}
+
+	/**
+	 * Restarts the generator with the given seed.
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.state = seed;
+	}
+
+	/**
+	 * @return the seed the generator has been started with
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return the current position of the generator
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * @param state the position of the generator to continue from
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return next random long
+	 */
+	public long nextLong() {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return next random double in [0, 1)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return next random boolean
+	 */
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+}
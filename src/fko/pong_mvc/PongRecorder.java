@@ -0,0 +1,324 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * PongRecorder - records a match into a compact binary file which can be played back with
+ * {@link PongRecording}.
+ *
+ * <p>
+ * File format (all numbers little endian):
+ * <pre>
+ * header     MAGIC(int) VERSION(int) seed(long) keyframeInterval(int) CONFIG_SIZE(int) config(double...)
+ * records    per tick: the events of the tick followed by either a keyframe or a delta record
+ *            TAG_KEYFRAME tick(varlong) ballX ballY leftPaddleY rightPaddleY(zigzag varints)
+ *                         leftPoints rightPoints hitsSinceGoal(varints)
+ *            TAG_DELTA    ballX ballY leftPaddleY rightPaddleY (zigzag varint deltas to the last tick)
+ *            TAG_WALL
+ *            TAG_PADDLE_LEFT, TAG_PADDLE_RIGHT hitPos(zigzag varint)
+ *            TAG_GOAL_LEFT, TAG_GOAL_RIGHT (player left/right scored)
+ *            TAG_EXTRA_GOAL_LEFT, TAG_EXTRA_GOAL_RIGHT (player left/right scored with an extra ball)
+ * index      TAG_END count(varint) count x (tick(varlong) offset(varlong))
+ * trailer    indexOffset(long) tickCount(long) END_MAGIC(int)
+ * </pre>
+ * Positions are quantized to 1/16 of a pixel, hit positions to 1/16384. A keyframe is written every
+ * <code>keyframeInterval</code> ticks and the index points to the start of the first event of the
+ * keyframe's tick so a player can start decoding at any keyframe.<br>
+ *
+ * <p>
+ * Records are collected in a direct buffer and written to the file when the buffer is full so
+ * recording a tick only costs a few bytes copied into the buffer.<br>
+ * I/O errors are reported through <code>Pong.criticalError()</code> and stop the recording but never
+ * the game.
+ *
+ * @author Frank Kopp
+ */
+public class PongRecorder {
+
+	public static final int MAGIC = 0x504F4E47; // "PONG"
+	public static final int END_MAGIC = 0x454E4421; // "END!"
+	public static final int VERSION = 2;
+
+	public static final String FILE_EXTENSION = ".pongrec";
+
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+	// record tags
+	public static final int TAG_END = 0;
+	public static final int TAG_KEYFRAME = 1;
+	public static final int TAG_DELTA = 2;
+	public static final int TAG_WALL = 16;
+	public static final int TAG_PADDLE_LEFT = 17;
+	public static final int TAG_PADDLE_RIGHT = 18;
+	public static final int TAG_GOAL_LEFT = 19;
+	public static final int TAG_GOAL_RIGHT = 20;
+	public static final int TAG_EXTRA_GOAL_LEFT = 21;
+	public static final int TAG_EXTRA_GOAL_RIGHT = 22;
+
+	// quantization
+	static final double POSITION_SCALE = 16.0;
+	static final double HITPOS_SCALE = 16384.0;
+
+	// index of the configuration values in the header
+	public static final int CONFIG_PLAYFIELD_WIDTH = 0;
+	public static final int CONFIG_PLAYFIELD_HEIGHT = 1;
+	public static final int CONFIG_PADDLE_WIDTH = 2;
+	public static final int CONFIG_LEFT_PADDLE_LENGTH = 3;
+	public static final int CONFIG_RIGHT_PADDLE_LENGTH = 4;
+	public static final int CONFIG_BALL_SIZE = 5;
+	public static final int CONFIG_BALL_MOVE_INCREMENTS = 6;
+	public static final int CONFIG_PADDLE_MOVE_STEPS = 7;
+	public static final int CONFIG_MAX_ANGLE_DEGREE = 8;
+	public static final int CONFIG_ACCELERATION = 9;
+	public static final int CONFIG_TICKS_PER_SECOND = 10;
+	public static final int CONFIG_SIZE = 11;
+
+	// space which must be left in the buffer before writing a record
+	private static final int MAX_RECORD_SIZE = 64;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	private final int keyframeInterval;
+
+	// keyframe index - grows when full
+	private long[] keyTicks = new long[64];
+	private long[] keyOffsets = new long[64];
+	private int keyCount = 0;
+
+	// bytes already written to the channel
+	private long written = 0;
+	// file offset of the first record of the current tick
+	private long tickStart;
+
+	// last recorded (quantized) state
+	private long tick = 0;
+	private int ballX, ballY, leftY, rightY;
+	private int hitsSinceGoal = 0;
+
+	private boolean failed = false;
+
+	/**
+	 * Creates a new recording file and writes the header.
+	 *
+	 * @param file the file to write - will be overwritten if it exists
+	 * @param seed the seed of the random generator of the match
+	 * @param config configuration values of the match - see CONFIG_*
+	 * @param keyframeInterval number of ticks between keyframes
+	 * @throws IOException
+	 */
+	public PongRecorder(Path file, long seed, double[] config, int keyframeInterval) throws IOException {
+		if (config.length != CONFIG_SIZE) {
+			throw new IllegalArgumentException("config must have "+CONFIG_SIZE+" values");
+		}
+		this.keyframeInterval = keyframeInterval;
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(seed);
+		buffer.putInt(keyframeInterval);
+		buffer.putInt(CONFIG_SIZE);
+		for (double d : config) buffer.putDouble(d);
+		tickStart = buffer.position();
+	}
+
+	/**
+	 * Records that the ball has hit a wall in the current tick.
+	 */
+	public void recordWall() {
+		if (!ensureSpace()) return;
+		buffer.put((byte) TAG_WALL);
+	}
+
+	/**
+	 * Records that the ball has hit a paddle in the current tick.
+	 * @param left true for the left paddle
+	 * @param hitPos position where the ball hit the paddle (-1.0 top to 1.0 bottom)
+	 */
+	public void recordPaddleHit(boolean left, double hitPos) {
+		if (!ensureSpace()) return;
+		buffer.put((byte) (left ? TAG_PADDLE_LEFT : TAG_PADDLE_RIGHT));
+		putZigZag((int) Math.round(hitPos * HITPOS_SCALE));
+		hitsSinceGoal++;
+	}
+
+	/**
+	 * Records that a player scored in the current tick.
+	 * @param left true if the left player scored
+	 */
+	public void recordGoal(boolean left) {
+		if (!ensureSpace()) return;
+		buffer.put((byte) (left ? TAG_GOAL_LEFT : TAG_GOAL_RIGHT));
+		hitsSinceGoal = 0;
+	}
+
+	/**
+	 * Records that a player scored with an extra ball in the current tick. The ball keeps its speed.
+	 * @param left true if the left player scored
+	 */
+	public void recordExtraGoal(boolean left) {
+		if (!ensureSpace()) return;
+		buffer.put((byte) (left ? TAG_EXTRA_GOAL_LEFT : TAG_EXTRA_GOAL_RIGHT));
+	}
+
+	/**
+	 * Finishes the current tick with the positions at the end of the tick.
+	 *
+	 * @param bx ball center x
+	 * @param by ball center y
+	 * @param ly left paddle y
+	 * @param ry right paddle y
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	public void recordTick(double bx, double by, double ly, double ry, int leftPoints, int rightPoints) {
+		if (!ensureSpace()) return;
+		final int qbx = quantize(bx);
+		final int qby = quantize(by);
+		final int qly = quantize(ly);
+		final int qry = quantize(ry);
+		if (tick % keyframeInterval == 0) {
+			addKeyframe(tick, tickStart);
+			buffer.put((byte) TAG_KEYFRAME);
+			putVarLong(tick);
+			putZigZag(qbx);
+			putZigZag(qby);
+			putZigZag(qly);
+			putZigZag(qry);
+			putVarLong(leftPoints);
+			putVarLong(rightPoints);
+			putVarLong(hitsSinceGoal);
+		} else {
+			buffer.put((byte) TAG_DELTA);
+			putZigZag(qbx - ballX);
+			putZigZag(qby - ballY);
+			putZigZag(qly - leftY);
+			putZigZag(qry - rightY);
+		}
+		ballX = qbx;
+		ballY = qby;
+		leftY = qly;
+		rightY = qry;
+		tick++;
+		tickStart = written + buffer.position();
+	}
+
+	/**
+	 * Writes the keyframe index and closes the file.
+	 */
+	public void close() {
+		if (failed) return;
+		try {
+			flush();
+			final long indexOffset = written;
+			buffer.put((byte) TAG_END);
+			putVarLong(keyCount);
+			for (int i = 0; i < keyCount; i++) {
+				if (buffer.remaining() < MAX_RECORD_SIZE) flush();
+				putVarLong(keyTicks[i]);
+				putVarLong(keyOffsets[i]);
+			}
+			if (buffer.remaining() < MAX_RECORD_SIZE) flush();
+			buffer.putLong(indexOffset);
+			buffer.putLong(tick);
+			buffer.putInt(END_MAGIC);
+			flush();
+			channel.close();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * @return number of recorded ticks
+	 */
+	public long getTickCount() {
+		return tick;
+	}
+
+	private void addKeyframe(long t, long offset) {
+		if (keyCount == keyTicks.length) {
+			keyTicks = Arrays.copyOf(keyTicks, keyCount * 2);
+			keyOffsets = Arrays.copyOf(keyOffsets, keyCount * 2);
+		}
+		keyTicks[keyCount] = t;
+		keyOffsets[keyCount] = offset;
+		keyCount++;
+	}
+
+	private boolean ensureSpace() {
+		if (failed) return false;
+		if (buffer.remaining() >= MAX_RECORD_SIZE) return true;
+		try {
+			flush();
+			return true;
+		} catch (IOException e) {
+			fail(e);
+			return false;
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void fail(IOException e) {
+		failed = true;
+		Pong.criticalError("Recording failed: " + e.getMessage());
+		try {
+			channel.close();
+		} catch (IOException e1) { /* ignore */ }
+	}
+
+	private void putZigZag(int value) {
+		putVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+	}
+
+	private void putVarLong(long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static int quantize(double position) {
+		return (int) Math.round(position * POSITION_SCALE);
+	}
+
+}
@@ -0,0 +1,402 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static fko.pong_mvc.PongRecorder.*;
+
+/**
+ * PongRecording - plays back a match recorded by {@link PongRecorder}.
+ *
+ * <p>
+ * The file is memory-mapped and never read into the heap as a whole. Only the keyframe index is
+ * loaded when the recording is opened. To jump to any tick the playback starts at the nearest keyframe
+ * before the tick and decodes the following delta records - this is at most
+ * <code>keyframeInterval</code> small records regardless of the length of the recording.<br>
+ * If the recording has not been closed properly (no index) the index is rebuilt by scanning the file.
+ *
+ * <p>
+ * Usage:
+ * <pre>
+ * PongRecording rec = PongRecording.open(path);
+ * rec.seek(1000);
+ * while (rec.next()) { rec.getBallX(); ... rec.getEventCount(); ... }
+ * </pre>
+ * Recordings are limited to 2 GB (one mapping).
+ *
+ * @author Frank Kopp
+ */
+public class PongRecording {
+
+	// maximal number of events in one tick which are kept
+	private static final int MAX_EVENTS = 8;
+
+	private final MappedByteBuffer buffer;
+	private final long seed;
+	private final int keyframeInterval;
+	private final double[] config;
+	private final int dataStart;
+	private int dataEnd;
+
+	// keyframe index
+	private long[] keyTicks;
+	private long[] keyOffsets;
+	private int keyCount;
+	private long tickCount;
+
+	// decoded state of the current tick
+	private long tick = -1;
+	private int ballX, ballY, leftY, rightY;
+	private int leftPoints, rightPoints;
+	private int hitsSinceGoal;
+
+	// events of the current tick
+	private int eventCount = 0;
+	private final int[] eventTags = new int[MAX_EVENTS];
+	private final double[] eventValues = new double[MAX_EVENTS];
+
+	/**
+	 * Opens and memory-maps a recording.
+	 * @param file
+	 * @return the opened recording positioned before the first tick
+	 * @throws IOException if the file cannot be read or is not a recording
+	 */
+	public static PongRecording open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Recording too large: " + file);
+			}
+			// the mapping stays valid after closing the channel
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return new PongRecording(buffer, file);
+		}
+	}
+
+	private PongRecording(MappedByteBuffer buffer, Path file) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < 24 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a pong recording: " + file);
+		}
+		final int version = buffer.getInt();
+		// version 2 only added the extra goal tags
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported recording version " + version + ": " + file);
+		}
+		seed = buffer.getLong();
+		keyframeInterval = buffer.getInt();
+		config = new double[buffer.getInt()];
+		for (int i = 0; i < config.length; i++) config[i] = buffer.getDouble();
+		dataStart = buffer.position();
+		if (!readIndex()) scanIndex();
+		buffer.position(dataStart);
+	}
+
+	/**
+	 * Reads the index from the end of the file.
+	 * @return false if the file has no valid index
+	 */
+	private boolean readIndex() {
+		final int limit = buffer.limit();
+		if (limit - dataStart < 20 || buffer.getInt(limit - 4) != END_MAGIC) return false;
+		final long indexOffset = buffer.getLong(limit - 20);
+		if (indexOffset < dataStart || indexOffset >= limit - 20) return false;
+		tickCount = buffer.getLong(limit - 12);
+		dataEnd = (int) indexOffset;
+		buffer.position(dataEnd);
+		if (buffer.get() != TAG_END) return false;
+		keyCount = (int) getVarLong();
+		keyTicks = new long[keyCount];
+		keyOffsets = new long[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keyTicks[i] = getVarLong();
+			keyOffsets[i] = getVarLong();
+		}
+		return true;
+	}
+
+	/**
+	 * Rebuilds the index of a recording which has not been closed by decoding all records.
+	 * An incomplete last record is ignored.
+	 */
+	private void scanIndex() {
+		dataEnd = buffer.limit();
+		keyTicks = new long[64];
+		keyOffsets = new long[64];
+		keyCount = 0;
+		tickCount = 0;
+		buffer.position(dataStart);
+		int lastComplete = dataStart;
+		try {
+			while (true) {
+				final int start = buffer.position();
+				if (!next()) break;
+				if (tick % keyframeInterval == 0) {
+					if (keyCount == keyTicks.length) {
+						keyTicks = Arrays.copyOf(keyTicks, keyCount * 2);
+						keyOffsets = Arrays.copyOf(keyOffsets, keyCount * 2);
+					}
+					keyTicks[keyCount] = tick;
+					keyOffsets[keyCount] = start;
+					keyCount++;
+				}
+				tickCount = tick + 1;
+				lastComplete = buffer.position();
+			}
+		} catch (RuntimeException e) {
+			// truncated record at the end of the file
+		}
+		// ignore everything after the last complete tick
+		dataEnd = lastComplete;
+		tick = -1;
+	}
+
+	/**
+	 * Decodes the next tick.
+	 * @return false if there are no more ticks
+	 */
+	public boolean next() {
+		eventCount = 0;
+		while (buffer.position() < dataEnd) {
+			final int tag = buffer.get();
+			switch (tag) {
+			case TAG_KEYFRAME:
+				tick = getVarLong();
+				ballX = getZigZag();
+				ballY = getZigZag();
+				leftY = getZigZag();
+				rightY = getZigZag();
+				leftPoints = (int) getVarLong();
+				rightPoints = (int) getVarLong();
+				hitsSinceGoal = (int) getVarLong();
+				return true;
+			case TAG_DELTA:
+				tick++;
+				ballX += getZigZag();
+				ballY += getZigZag();
+				leftY += getZigZag();
+				rightY += getZigZag();
+				return true;
+			case TAG_WALL:
+				addEvent(tag, 0.0);
+				break;
+			case TAG_PADDLE_LEFT:
+			case TAG_PADDLE_RIGHT:
+				hitsSinceGoal++;
+				addEvent(tag, getZigZag() / HITPOS_SCALE);
+				break;
+			case TAG_GOAL_LEFT:
+				leftPoints++;
+				hitsSinceGoal = 0;
+				addEvent(tag, 0.0);
+				break;
+			case TAG_GOAL_RIGHT:
+				rightPoints++;
+				hitsSinceGoal = 0;
+				addEvent(tag, 0.0);
+				break;
+			case TAG_EXTRA_GOAL_LEFT:
+				leftPoints++;
+				addEvent(tag, 0.0);
+				break;
+			case TAG_EXTRA_GOAL_RIGHT:
+				rightPoints++;
+				addEvent(tag, 0.0);
+				break;
+			default:
+				throw new IllegalStateException("Corrupt recording - unknown tag " + tag);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Positions the playback at the given tick. The next call to <code>next()</code>
+	 * will decode the tick after it.
+	 * @param target tick to seek to
+	 * @return false if the tick is not in the recording
+	 */
+	public boolean seek(long target) {
+		if (target < 0 || target >= tickCount || keyCount == 0) return false;
+		// continue decoding if the target is close ahead
+		if (target < tick || target - tick > keyframeInterval) {
+			int k = Arrays.binarySearch(keyTicks, 0, keyCount, target);
+			if (k < 0) k = -k - 2;
+			buffer.position((int) keyOffsets[k]);
+			tick = -1;
+		}
+		while (tick < target) {
+			if (!next()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Positions the playback before the first tick.
+	 */
+	public void rewind() {
+		buffer.position(dataStart);
+		tick = -1;
+		eventCount = 0;
+	}
+
+	private void addEvent(int tag, double value) {
+		if (eventCount == MAX_EVENTS) return;
+		eventTags[eventCount] = tag;
+		eventValues[eventCount] = value;
+		eventCount++;
+	}
+
+	private int getZigZag() {
+		final int v = (int) getVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private long getVarLong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return the seed of the random generator of the match
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @param index one of PongRecorder.CONFIG_*
+	 * @return the configuration value of the match
+	 */
+	public double getConfig(int index) {
+		return config[index];
+	}
+
+	/**
+	 * @return number of ticks in the recording
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * @return the current tick - -1 before the first tick
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return ball center x of the current tick
+	 */
+	public double getBallX() {
+		return ballX / POSITION_SCALE;
+	}
+
+	/**
+	 * @return ball center y of the current tick
+	 */
+	public double getBallY() {
+		return ballY / POSITION_SCALE;
+	}
+
+	/**
+	 * @return left paddle y of the current tick
+	 */
+	public double getLeftPaddleY() {
+		return leftY / POSITION_SCALE;
+	}
+
+	/**
+	 * @return right paddle y of the current tick
+	 */
+	public double getRightPaddleY() {
+		return rightY / POSITION_SCALE;
+	}
+
+	/**
+	 * @return points of the left player after the current tick
+	 */
+	public int getLeftPoints() {
+		return leftPoints;
+	}
+
+	/**
+	 * @return points of the right player after the current tick
+	 */
+	public int getRightPoints() {
+		return rightPoints;
+	}
+
+	/**
+	 * @return number of paddle hits since the last goal - the ball's speed factor is
+	 * ACCELERATION to the power of this
+	 */
+	public int getHitsSinceGoal() {
+		return hitsSinceGoal;
+	}
+
+	/**
+	 * @return number of events in the current tick
+	 */
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * @param i index of the event
+	 * @return the event's tag (PongRecorder.TAG_WALL, TAG_PADDLE_LEFT, ...)
+	 */
+	public int getEventType(int i) {
+		return eventTags[i];
+	}
+
+	/**
+	 * @param i index of the event
+	 * @return the hit position for paddle events - 0.0 otherwise
+	 */
+	public double getEventValue(int i) {
+		return eventValues[i];
+	}
+
+}
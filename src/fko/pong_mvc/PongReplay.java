@@ -0,0 +1,241 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongReplay - keeps the last seconds of a game to show the rally which led to a goal again.
+ *
+ * <p>
+ * Every tick the positions of the ball and the paddles are stored as four shorts (in 1/32 pixels,
+ * coarser for playfields larger than 960 pixels) into a circular buffer which is allocated once - recording never allocates and old ticks are
+ * simply overwritten. The memory used is therefore fixed by the number of seconds kept:
+ * 8 bytes per tick, about 5 KB for 10 seconds at 60 ticks per second.
+ *
+ * <p>
+ * <code>startRally()</code> marks the serve. After a goal <code>startPlayback()</code> selects
+ * the ticks from the serve (or the oldest tick kept) to the goal and <code>next()</code> plays
+ * them back. With a step smaller than 1.0 the playback is in slow motion and the positions are
+ * interpolated between the recorded ticks.
+ *
+ * @author Frank Kopp
+ */
+public class PongReplay {
+
+	public static final double DEFAULT_SECONDS = 10.0;
+
+	// stored values per tick: ball x, ball y, left paddle y, right paddle y
+	public static final int VALUES_PER_TICK = 4;
+	public static final int BYTES_PER_TICK = VALUES_PER_TICK * Short.BYTES;
+
+	// positions are stored in 1/32 pixels - a short then covers -1024 to 1024 pixels
+	private static final double MAX_SCALE = 32.0;
+	// margin around the playfield for positions (the ball leaves the field on a goal)
+	private static final double POSITION_MARGIN = 64.0;
+
+	// units per pixel - smaller than MAX_SCALE if the playfield does not fit into a short
+	private final double scale;
+	private final double maxPosition;
+
+	private final int capacity;
+	private final short[] ticks;
+
+	// number of ticks recorded - tick n is stored at n % capacity
+	private long recorded = 0;
+	// index in ticks where the next tick is stored
+	private int writeIndex = 0;
+	// first tick of the current rally
+	private long rallyStart = 0;
+
+	// playback range and position
+	private long playStart = 0;
+	private long playEnd = 0;
+	private double cursor = 0;
+	private boolean playing = false;
+
+	/**
+	 * Creates a replay buffer for the given time and the default playfield.
+	 * @param seconds to keep
+	 * @param ticksPerSecond of the game
+	 */
+	public PongReplay(double seconds, double ticksPerSecond) {
+		this((int) Math.ceil(seconds * ticksPerSecond));
+	}
+
+	/**
+	 * Creates a replay buffer for the given time and playfield.
+	 * @param seconds to keep
+	 * @param ticksPerSecond of the game
+	 * @param width of the playfield
+	 * @param height of the playfield
+	 */
+	public PongReplay(double seconds, double ticksPerSecond, double width, double height) {
+		this((int) Math.ceil(seconds * ticksPerSecond), width, height);
+	}
+
+	/**
+	 * @param capacity number of ticks to keep
+	 */
+	public PongReplay(int capacity) {
+		this(capacity, PongModel.INITIAL_PLAYFIELD_WIDTH, PongModel.INITIAL_PLAYFIELD_HEIGHT);
+	}
+
+	/**
+	 * @param capacity number of ticks to keep
+	 * @param width of the playfield
+	 * @param height of the playfield
+	 */
+	public PongReplay(int capacity, double width, double height) {
+		if (capacity < 2) throw new IllegalArgumentException("Replay needs at least 2 ticks");
+		this.capacity = capacity;
+		// the largest position has to fit into a short
+		this.scale = Math.min(MAX_SCALE, Short.MAX_VALUE / (Math.max(width, height) + POSITION_MARGIN));
+		this.maxPosition = Short.MAX_VALUE / scale;
+		this.ticks = new short[capacity * VALUES_PER_TICK];
+	}
+
+	/**
+	 * Stores the positions of one tick. Ignored during a playback.
+	 * @param ballX
+	 * @param ballY
+	 * @param leftPaddleY
+	 * @param rightPaddleY
+	 */
+	public void record(double ballX, double ballY, double leftPaddleY, double rightPaddleY) {
+		if (playing) return;
+		final int i = writeIndex;
+		ticks[i]     = encode(ballX);
+		ticks[i + 1] = encode(ballY);
+		ticks[i + 2] = encode(leftPaddleY);
+		ticks[i + 3] = encode(rightPaddleY);
+		writeIndex = i + VALUES_PER_TICK == ticks.length ? 0 : i + VALUES_PER_TICK;
+		recorded++;
+	}
+
+	/**
+	 * Marks the start of a rally - the next tick recorded is the first one of the next playback.
+	 */
+	public void startRally() {
+		rallyStart = recorded;
+	}
+
+	/**
+	 * Starts to play back the current rally from its start or the oldest tick kept.
+	 * @return false if there is nothing to play back
+	 */
+	public boolean startPlayback() {
+		playStart = Math.max(rallyStart, recorded - capacity);
+		playEnd = recorded;
+		cursor = playStart;
+		playing = playEnd - playStart > 1;
+		return playing;
+	}
+
+	/**
+	 * Writes the positions at the current playback position into the state and moves the 
+	 * playback position forward.
+	 * @param step ticks to move forward - less than 1.0 for slow motion
+	 * @param state receives ball and paddle positions
+	 * @return false if the playback has reached the end - the state is not changed then
+	 */
+	public boolean next(double step, PongState state) {
+		if (!playing || cursor > playEnd - 1) {
+			playing = false;
+			return false;
+		}
+		final long tick = (long) cursor;
+		final double fraction = cursor - tick;
+		final int i = (int) (tick % capacity) * VALUES_PER_TICK;
+		// interpolate with the following tick unless this is the last one
+		final int j = tick + 1 < playEnd ? (int) ((tick + 1) % capacity) * VALUES_PER_TICK : i;
+		state.ballX = interpolate(i, j, fraction);
+		state.ballY = interpolate(i + 1, j + 1, fraction);
+		state.leftPaddleY = interpolate(i + 2, j + 2, fraction);
+		state.rightPaddleY = interpolate(i + 3, j + 3, fraction);
+		cursor += step;
+		return true;
+	}
+
+	/**
+	 * Ends a playback. Ticks recorded after this continue the recording before the playback.
+	 */
+	public void stopPlayback() {
+		playing = false;
+	}
+
+	/**
+	 * Removes all ticks.
+	 */
+	public void clear() {
+		recorded = 0;
+		writeIndex = 0;
+		rallyStart = 0;
+		playing = false;
+	}
+
+	private short encode(double position) {
+		final double clamped = Math.max(-maxPosition, Math.min(maxPosition, position));
+		// round half up - cheaper than Math.round()
+		return (short) Math.floor(clamped * scale + 0.5);
+	}
+
+	private double interpolate(int i, int j, double fraction) {
+		return (ticks[i] + (ticks[j] - ticks[i]) * fraction) / scale;
+	}
+
+	/**
+	 * @return true while a playback is running
+	 */
+	public boolean isPlaying() {
+		return playing;
+	}
+
+	/**
+	 * @return number of ticks kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return largest error of a played back position in pixels
+	 */
+	public double getPrecision() {
+		return 0.5 / scale;
+	}
+
+	/**
+	 * @return bytes used for the ticks
+	 */
+	public int getMemoryBytes() {
+		return capacity * BYTES_PER_TICK;
+	}
+
+	/**
+	 * @return number of ticks of the current playback
+	 */
+	public long getPlaybackLength() {
+		return playEnd - playStart;
+	}
+
+}
@@ -0,0 +1,195 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * PongResponseCurve - the direction of the ball after it hit a paddle, depending on where it hit.
+ *
+ * <p>
+ * The hit position is 0.0 at the center of the paddle, -1.0 at the top and 1.0 at the bottom end
+ * (a little more if only the edge of the ball touched the paddle). The curve maps it to the 
+ * outgoing angle. When the curve is created the direction vectors of the angles are computed for
+ * a dense table of hit positions, a hit only interpolates between two entries - no trigonometry
+ * while playing.
+ *
+ * <p>
+ * Curves are described by a text as in the rules file:
+ * <pre>
+ * linear                          angle = max angle * hit position (the original game)
+ * eased 2                         angle = max angle * |hit position|^2 - flat in the center
+ *                                 (the power is optional, 2 by default)
+ * piecewise -1:-70 0:0 0.5:20 1:45  points hit position:angle, linear in between 
+ * table -60 -30 0 30 60           angles for evenly spaced hit positions from -1 to 1
+ * </pre>
+ * Piecewise and table curves keep their end angles for hits beyond their first and last point.
+ * Their angles must be less than 90 degree like max_angle_degree.
+ *
+ * @author Frank Kopp
+ */
+public final class PongResponseCurve {
+
+	/**
+	 * Hit positions covered by the table - beyond the ends of the paddle by the radius of a ball
+	 * of up to a quarter of the paddle length. Hits further out get the angle at the end.
+	 */
+	public static final double HIT_RANGE = 1.5;
+
+	private static final int SEGMENTS = 1024;
+	private static final double SCALE = SEGMENTS / (2 * HIT_RANGE);
+
+	private final String spec;
+	private final DoubleUnaryOperator angle;
+	// direction for hit position -HIT_RANGE + i / SCALE - x is always positive
+	private final double[] x = new double[SEGMENTS + 1];
+	private final double[] y = new double[SEGMENTS + 1];
+
+	private PongResponseCurve(String spec, DoubleUnaryOperator angle) {
+		this.spec = spec;
+		this.angle = angle;
+		for (int i = 0; i <= SEGMENTS; i++) {
+			final double radians = Math.toRadians(angle.applyAsDouble(-HIT_RANGE + i / SCALE));
+			x[i] = Math.abs(Math.cos(radians));
+			y[i] = Math.sin(radians);
+		}
+	}
+
+	/**
+	 * Creates a curve from its description.
+	 * @param spec see class description
+	 * @param maxAngleDegree angle of a hit at the end of the paddle for linear and eased curves
+	 * @return the curve
+	 * @throws IllegalArgumentException if the description has errors
+	 */
+	public static PongResponseCurve parse(String spec, double maxAngleDegree) {
+		final String[] tokens = spec.trim().split("\\s+");
+		try {
+			switch (tokens[0].toLowerCase(Locale.ROOT)) {
+			case "linear":
+				if (tokens.length != 1) break;
+				return new PongResponseCurve("linear", h -> maxAngleDegree * h);
+			case "eased": {
+				if (tokens.length > 2) break;
+				final double power = tokens.length == 2 ? Double.parseDouble(tokens[1]) : 2.0;
+				if (!(power > 0)) break;
+				return new PongResponseCurve(spec.trim(), 
+						h -> maxAngleDegree * Math.signum(h) * Math.pow(Math.abs(h), power));
+			}
+			case "piecewise": {
+				if (tokens.length < 3) break;
+				final double[] hits = new double[tokens.length - 1];
+				final double[] angles = new double[tokens.length - 1];
+				for (int i = 1; i < tokens.length; i++) {
+					final String[] point = tokens[i].split(":");
+					if (point.length != 2) throw new IllegalArgumentException("Response curve point " + tokens[i]);
+					hits[i - 1] = Double.parseDouble(point[0]);
+					angles[i - 1] = checkAngle(Double.parseDouble(point[1]));
+					if (i > 1 && hits[i - 1] <= hits[i - 2]) {
+						throw new IllegalArgumentException("Response curve points must be ascending: " + spec);
+					}
+				}
+				return new PongResponseCurve(spec.trim(), h -> interpolate(hits, angles, h));
+			}
+			case "table": {
+				if (tokens.length < 3) break;
+				final double[] hits = new double[tokens.length - 1];
+				final double[] angles = new double[tokens.length - 1];
+				for (int i = 1; i < tokens.length; i++) {
+					hits[i - 1] = -1.0 + 2.0 * (i - 1) / (tokens.length - 2);
+					angles[i - 1] = checkAngle(Double.parseDouble(tokens[i]));
+				}
+				return new PongResponseCurve(spec.trim(), h -> interpolate(hits, angles, h));
+			}
+			default:
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Response curve: " + spec);
+	}
+
+	/**
+	 * A ball leaving the paddle at 90 degree or more would only bounce between the walls.
+	 */
+	private static double checkAngle(double angle) {
+		if (!(Math.abs(angle) < 90)) throw new IllegalArgumentException("response curve angles must be less than 90");
+		return angle;
+	}
+
+	private static double interpolate(double[] hits, double[] angles, double h) {
+		if (h <= hits[0]) return angles[0];
+		final int last = hits.length - 1;
+		if (h >= hits[last]) return angles[last];
+		int i = 1;
+		while (hits[i] < h) i++;
+		return angles[i - 1] + (angles[i] - angles[i - 1]) * (h - hits[i - 1]) / (hits[i] - hits[i - 1]);
+	}
+
+	/**
+	 * @param hitPos where the ball hit the paddle
+	 * @return horizontal part of the unit direction - always positive
+	 */
+	public double getX(double hitPos) {
+		return lookup(x, hitPos);
+	}
+
+	/**
+	 * @param hitPos where the ball hit the paddle
+	 * @return vertical part of the unit direction
+	 */
+	public double getY(double hitPos) {
+		return lookup(y, hitPos);
+	}
+
+	private static double lookup(double[] table, double hitPos) {
+		final double t = (hitPos + HIT_RANGE) * SCALE;
+		if (t <= 0) return table[0];
+		if (t >= SEGMENTS) return table[SEGMENTS];
+		final int i = (int) t;
+		return table[i] + (table[i + 1] - table[i]) * (t - i);
+	}
+
+	/**
+	 * @param hitPos where the ball hit the paddle
+	 * @return the exact angle of the curve in degree - not used while playing
+	 */
+	public double getAngle(double hitPos) {
+		return angle.applyAsDouble(Math.max(-HIT_RANGE, Math.min(HIT_RANGE, hitPos)));
+	}
+
+	/**
+	 * @return the description of the curve
+	 */
+	public String getSpec() {
+		return spec;
+	}
+
+	@Override
+	public String toString() {
+		return "PongResponseCurve " + spec;
+	}
+
+}
@@ -0,0 +1,234 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * PongRollback - rollback netcode for a match between two players on different machines.
+ *
+ * <p>
+ * Each peer runs its own {@link PongMatch} and advances it every tick with its own input and a
+ * prediction of the remote input (the last remote input received in order). The local input of
+ * each tick is sent to the other peer. When a remote input arrives which differs from the one
+ * used, the match is restored to the snapshot taken before that tick and simulated forward again
+ * with the correct inputs. Both peers end up with the same match as soon as all inputs arrived.
+ *
+ * <p>
+ * Before each tick the state of the match is saved into a preallocated ring of WINDOW snapshots
+ * of PongMatch.STATE_BYTES each, so a snapshot is a copy of about a hundred bytes and a rollback
+ * is one restore and a few ticks. Nothing is allocated while playing. A peer can not run more
+ * than WINDOW-2 ticks ahead of the remote inputs - <code>canAdvance()</code> returns false then
+ * and the caller has to wait for the other peer.
+ *
+ * @author Frank Kopp
+ */
+public class PongRollback {
+
+	// number of snapshots and inputs kept
+	public static final int WINDOW = 16;
+
+	private final PongMatch match;
+	private final boolean localIsLeft;
+
+	// the snapshot before tick t is stored in slot t % WINDOW
+	private final ByteBuffer snapshots = ByteBuffer.allocateDirect(WINDOW * PongMatch.STATE_BYTES);
+
+	// inputs of tick t are stored in slot t % WINDOW
+	private final int[] localInputs = new int[WINDOW];
+	private final int[] remoteInputs = new int[WINDOW];
+	// tick of the received remote input in each slot - -1 if the slot holds a prediction
+	private final long[] receivedTicks = new long[WINDOW];
+
+	// next tick to simulate
+	private long tick = 0;
+	// the remote inputs of all ticks before this one have been received
+	private long confirmedTick = 0;
+	// prediction for all ticks without a remote input
+	private int lastRemoteInput = 0;
+	// first tick simulated with a wrong prediction - Long.MAX_VALUE if none
+	private long rollbackTick = Long.MAX_VALUE;
+
+	// statistics
+	private long rollbacks = 0;
+	private long resimulatedTicks = 0;
+	private long maxResimulatedTicks = 0;
+	private long rollbackNanos = 0;
+	private long maxRollbackNanos = 0;
+
+	/**
+	 * @param seed of the match - has to be the same on both peers
+	 * @param localIsLeft true if the local player plays the left paddle
+	 */
+	public PongRollback(long seed, boolean localIsLeft) {
+		this.match = new PongMatch(seed);
+		this.localIsLeft = localIsLeft;
+		Arrays.fill(receivedTicks, -1);
+	}
+
+	/**
+	 * @return true if the match can advance - false if it is too far ahead of the remote inputs
+	 */
+	public boolean canAdvance() {
+		return tick - confirmedTick < WINDOW - 1;
+	}
+
+	/**
+	 * Advances the match by one tick with the given local input and the predicted remote input.
+	 * A pending rollback is done first.
+	 * @param localInput -1 up, 0 none, 1 down
+	 * @return the tick of the input - has to be sent to the other peer together with the input
+	 */
+	public long advance(int localInput) {
+		if (!canAdvance()) throw new IllegalStateException("Too far ahead of the remote inputs");
+		resolve();
+		final int slot = (int) (tick % WINDOW);
+		localInputs[slot] = localInput;
+		if (receivedTicks[slot] != tick) {
+			remoteInputs[slot] = lastRemoteInput;
+			receivedTicks[slot] = -1;
+		}
+		simulate(slot);
+		return tick++;
+	}
+
+	/**
+	 * Receives the input of the remote player for a tick. Inputs may arrive late, out of
+	 * order or twice. An input too far ahead for the ring is dropped - the sender has to send
+	 * all inputs after the last confirmed tick again until they are confirmed.
+	 * @param remoteTick
+	 * @param input
+	 */
+	public void receive(long remoteTick, int input) {
+		// a pending rollback still needs the inputs of the ticks from rollbackTick on
+		final long oldest = Math.min(confirmedTick, rollbackTick);
+		if (remoteTick < confirmedTick || remoteTick >= oldest + WINDOW) return;
+		final int slot = (int) (remoteTick % WINDOW);
+		// a tick already simulated with another input has to be simulated again
+		if (remoteTick < tick && remoteInputs[slot] != input) {
+			rollbackTick = Math.min(rollbackTick, remoteTick);
+		}
+		remoteInputs[slot] = input;
+		receivedTicks[slot] = remoteTick;
+		// move the confirmed tick over all inputs received in order
+		while (receivedTicks[(int) (confirmedTick % WINDOW)] == confirmedTick) {
+			lastRemoteInput = remoteInputs[(int) (confirmedTick % WINDOW)];
+			confirmedTick++;
+		}
+	}
+
+	/**
+	 * Does a pending rollback - restores the snapshot before the first mispredicted tick and
+	 * simulates all ticks up to the current one again.
+	 */
+	public void resolve() {
+		if (rollbackTick == Long.MAX_VALUE) return;
+		final long start = System.nanoTime();
+		final long from = rollbackTick;
+		rollbackTick = Long.MAX_VALUE;
+		match.loadState(snapshots, (int) (from % WINDOW) * PongMatch.STATE_BYTES);
+		for (long t = from; t < tick; t++) {
+			final int slot = (int) (t % WINDOW);
+			// ticks still without remote input use the newest prediction
+			if (receivedTicks[slot] != t) remoteInputs[slot] = lastRemoteInput;
+			simulate(slot);
+		}
+		final long nanos = System.nanoTime() - start;
+		rollbacks++;
+		resimulatedTicks += tick - from;
+		maxResimulatedTicks = Math.max(maxResimulatedTicks, tick - from);
+		rollbackNanos += nanos;
+		maxRollbackNanos = Math.max(maxRollbackNanos, nanos);
+	}
+
+	private void simulate(int slot) {
+		match.saveState(snapshots, slot * PongMatch.STATE_BYTES);
+		if (localIsLeft) {
+			match.setLeftInput(localInputs[slot]);
+			match.setRightInput(remoteInputs[slot]);
+		} else {
+			match.setLeftInput(remoteInputs[slot]);
+			match.setRightInput(localInputs[slot]);
+		}
+		match.tick();
+	}
+
+	/**
+	 * @return the match - its state is a prediction for all ticks after getConfirmedTick()
+	 */
+	public PongMatch getMatch() {
+		return match;
+	}
+
+	/**
+	 * @return the next tick to simulate
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the remote inputs of all ticks before this one have been received
+	 */
+	public long getConfirmedTick() {
+		return confirmedTick;
+	}
+
+	/**
+	 * @return number of rollbacks done
+	 */
+	public long getRollbacks() {
+		return rollbacks;
+	}
+
+	/**
+	 * @return number of ticks simulated again in all rollbacks
+	 */
+	public long getResimulatedTicks() {
+		return resimulatedTicks;
+	}
+
+	/**
+	 * @return most ticks simulated again in one rollback
+	 */
+	public long getMaxResimulatedTicks() {
+		return maxResimulatedTicks;
+	}
+
+	/**
+	 * @return nano seconds spent in all rollbacks
+	 */
+	public long getRollbackNanos() {
+		return rollbackNanos;
+	}
+
+	/**
+	 * @return nano seconds of the slowest rollback
+	 */
+	public long getMaxRollbackNanos() {
+		return maxRollbackNanos;
+	}
+
+}
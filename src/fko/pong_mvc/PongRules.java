@@ -0,0 +1,347 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * PongRules - the tunable values of the game: sizes, speeds and the bounce of the ball.
+ *
+ * <p>
+ * Rules are immutable. The model and headless matches read them instead of the constants of 
+ * {@link PongModel} - which are the default rules. Other rules are loaded from a text file with 
+ * one value per line, missing values keep their default:
+ * <pre>
+ * # comment
+ * playfield_width      600
+ * ball_move_increments 2.5
+ * acceleration         1.05
+ * response_curve       eased 1.5
+ * </pre>
+ * The response curve sets the angle of the ball after a paddle hit - see {@link PongResponseCurve}.
+ * Batch tools derive rule sets from each other with <code>with(key, value)</code>.
+ *
+ * @author Frank Kopp
+ */
+public final class PongRules {
+
+	// names of the values in the file - index into the values
+	private static final String[] KEYS = {
+			"playfield_width", "playfield_height", "paddle_move_steps", "ball_move_increments", 
+			"max_angle_degree", "ball_size", "paddle_length", "paddle_width", "paddle_x", 
+			"ball_ticks_per_second", "paddle_ticks_per_second", "acceleration"
+	};
+	private static final int PLAYFIELD_WIDTH = 0;
+	private static final int PLAYFIELD_HEIGHT = 1;
+	private static final int PADDLE_MOVE_STEPS = 2;
+	private static final int BALL_MOVE_INCREMENTS = 3;
+	private static final int MAX_ANGLE_DEGREE = 4;
+	private static final int BALL_SIZE = 5;
+	private static final int PADDLE_LENGTH = 6;
+	private static final int PADDLE_WIDTH = 7;
+	private static final int PADDLE_X = 8;
+	private static final int BALL_TICKS_PER_SECOND = 9;
+	private static final int PADDLE_TICKS_PER_SECOND = 10;
+	private static final int ACCELERATION = 11;
+	private static final String RESPONSE_CURVE = "response_curve";
+
+	/**
+	 * The rules of the original game
+	 */
+	public static final PongRules DEFAULT = new PongRules(new double[] {
+			PongModel.INITIAL_PLAYFIELD_WIDTH, PongModel.INITIAL_PLAYFIELD_HEIGHT, 
+			PongModel.PADDLE_MOVE_STEPS, PongModel.BALL_MOVE_INCREMENTS, PongModel.MAX_ANGLE_DEGREE,
+			PongModel.INITIAL_BALL_SIZE, PongModel.INITIAL_PADDLE_LENGTH, PongModel.INITIAL_PADDLE_WIDTH,
+			PongModel.INITIAL_PADDLE_X, PongModel.INITIAL_BALL_SPEED, PongModel.INITIAL_PADDLE_SPEED,
+			PongModel.ACCELARATION
+	}, "linear");
+
+	private final double[] values;
+	private final double ballSpeed;
+	private final PongResponseCurve responseCurve;
+
+	/**
+	 * @throws IllegalArgumentException if the response curve has errors
+	 */
+	private PongRules(double[] values, String responseCurveSpec) {
+		this.values = values;
+		this.ballSpeed = Math.sqrt(2 * values[BALL_MOVE_INCREMENTS] * values[BALL_MOVE_INCREMENTS]);
+		this.responseCurve = PongResponseCurve.parse(responseCurveSpec, values[MAX_ANGLE_DEGREE]);
+	}
+
+	/**
+	 * Loads rules from a file.
+	 * @param file
+	 * @return the rules
+	 * @throws IOException if the file cannot be read or has errors
+	 */
+	public static PongRules load(Path file) throws IOException {
+		return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses a rules text - values not in the text are taken from the default rules.
+	 * @param text
+	 * @return the rules
+	 * @throws IOException if the text has errors or the rules do not fit together
+	 */
+	public static PongRules parse(String text) throws IOException {
+		final double[] values = DEFAULT.values.clone();
+		String responseCurveSpec = DEFAULT.responseCurve.getSpec();
+		final String[] lines = text.split("\\R");
+		for (int lineNo = 0; lineNo < lines.length; lineNo++) {
+			final String line = lines[lineNo].trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			final String[] tokens = line.split("\\s+");
+			if (tokens[0].equalsIgnoreCase(RESPONSE_CURVE)) {
+				responseCurveSpec = line.substring(tokens[0].length()).trim();
+				continue;
+			}
+			final int key = indexOf(tokens[0]);
+			if (key < 0 || tokens.length != 2) {
+				throw new IOException("Rules line " + (lineNo + 1) + ": " + line);
+			}
+			try {
+				values[key] = Double.parseDouble(tokens[1]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Rules line " + (lineNo + 1) + ": " + line);
+			}
+		}
+		final String error = check(values);
+		if (error != null) throw new IOException("Rules: " + error);
+		try {
+			return new PongRules(values, responseCurveSpec);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Rules: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param key name of the value as in the file
+	 * @param value
+	 * @return new rules with the value changed
+	 * @throws IllegalArgumentException if there is no such value or the rules do not fit together 
+	 */
+	public PongRules with(String key, double value) {
+		final int index = indexOf(key);
+		if (index < 0) throw new IllegalArgumentException("Unknown rule " + key);
+		final double[] newValues = values.clone();
+		newValues[index] = value;
+		final String error = check(newValues);
+		if (error != null) throw new IllegalArgumentException(error);
+		return new PongRules(newValues, responseCurve.getSpec());
+	}
+
+	/**
+	 * @param width of the playfield
+	 * @param height of the playfield
+	 * @return new rules with the playfield size changed
+	 * @throws IllegalArgumentException if the rules do not fit the playfield
+	 */
+	public PongRules withPlayfield(double width, double height) {
+		final double[] newValues = values.clone();
+		newValues[PLAYFIELD_WIDTH] = width;
+		newValues[PLAYFIELD_HEIGHT] = height;
+		final String error = check(newValues);
+		if (error != null) throw new IllegalArgumentException(error);
+		return new PongRules(newValues, responseCurve.getSpec());
+	}
+
+	/**
+	 * @param responseCurveSpec description of the curve - see {@link PongResponseCurve}
+	 * @return new rules with the response curve changed
+	 * @throws IllegalArgumentException if the description has errors
+	 */
+	public PongRules withResponseCurve(String responseCurveSpec) {
+		return new PongRules(values, responseCurveSpec);
+	}
+
+	/**
+	 * @param key name of the value as in the file
+	 * @return the value
+	 * @throws IllegalArgumentException if there is no such value
+	 */
+	public double get(String key) {
+		final int index = indexOf(key);
+		if (index < 0) throw new IllegalArgumentException("Unknown rule " + key);
+		return values[index];
+	}
+
+	private static int indexOf(String key) {
+		for (int i = 0; i < KEYS.length; i++) {
+			if (KEYS[i].equalsIgnoreCase(key)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return null if the values fit together - a description of the problem otherwise
+	 */
+	private static String check(double[] values) {
+		for (int i = 0; i < KEYS.length; i++) {
+			if (!(values[i] > 0) || Double.isInfinite(values[i])) return KEYS[i] + " must be positive";
+		}
+		if (values[PADDLE_LENGTH] >= values[PLAYFIELD_HEIGHT]) {
+			return "paddle_length must be less than playfield_height";
+		}
+		if (2 * (values[PADDLE_X] + values[PADDLE_WIDTH] + values[BALL_SIZE]) >= values[PLAYFIELD_WIDTH]) {
+			return "paddles and ball do not fit into playfield_width";
+		}
+		if (values[MAX_ANGLE_DEGREE] >= 90) return "max_angle_degree must be less than 90";
+		if (values[ACCELERATION] < 1) return "acceleration must be at least 1";
+		return null;
+	}
+
+	/**
+	 * @return the rules as text in the format of the file
+	 */
+	public String toText() {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < KEYS.length; i++) {
+			text.append(String.format(Locale.US, "%-24s %s%n", KEYS[i], values[i]));
+		}
+		text.append(String.format(Locale.US, "%-24s %s%n", RESPONSE_CURVE, responseCurve.getSpec()));
+		return text.toString();
+	}
+
+	/**
+	 * @return width of the playfield
+	 */
+	public double getPlayfieldWidth() {
+		return values[PLAYFIELD_WIDTH];
+	}
+
+	/**
+	 * @return height of the playfield
+	 */
+	public double getPlayfieldHeight() {
+		return values[PLAYFIELD_HEIGHT];
+	}
+
+	/**
+	 * @return movement of a paddle per tick
+	 */
+	public double getPaddleMoveSteps() {
+		return values[PADDLE_MOVE_STEPS];
+	}
+
+	/**
+	 * @return horizontal and vertical movement of a served ball per tick
+	 */
+	public double getBallMoveIncrements() {
+		return values[BALL_MOVE_INCREMENTS];
+	}
+
+	/**
+	 * @return speed of the ball after a hit with an angling paddle - same as a serve
+	 */
+	public double getBallSpeed() {
+		return ballSpeed;
+	}
+
+	/**
+	 * @return largest angle of the ball after a hit at the end of an angling paddle
+	 */
+	public double getMaxAngleDegree() {
+		return values[MAX_ANGLE_DEGREE];
+	}
+
+	/**
+	 * @return radius of the ball
+	 */
+	public double getBallSize() {
+		return values[BALL_SIZE];
+	}
+
+	/**
+	 * @return length of the paddles
+	 */
+	public double getPaddleLength() {
+		return values[PADDLE_LENGTH];
+	}
+
+	/**
+	 * @return width of the paddles
+	 */
+	public double getPaddleWidth() {
+		return values[PADDLE_WIDTH];
+	}
+
+	/**
+	 * @return distance of the paddles from the side walls
+	 */
+	public double getPaddleX() {
+		return values[PADDLE_X];
+	}
+
+	/**
+	 * @return ball movements per second before any speed up
+	 */
+	public double getBallTicksPerSecond() {
+		return values[BALL_TICKS_PER_SECOND];
+	}
+
+	/**
+	 * @return paddle movements per second before any speed up
+	 */
+	public double getPaddleTicksPerSecond() {
+		return values[PADDLE_TICKS_PER_SECOND];
+	}
+
+	/**
+	 * @return direction of the ball after a paddle hit - compiled into a table
+	 */
+	public PongResponseCurve getResponseCurve() {
+		return responseCurve;
+	}
+
+	/**
+	 * @return factor of the speed up after each paddle hit
+	 */
+	public double getAcceleration() {
+		return values[ACCELERATION];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof PongRules && Arrays.equals(values, ((PongRules) obj).values)
+				&& responseCurve.getSpec().equals(((PongRules) obj).responseCurve.getSpec());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(values) * 31 + responseCurve.getSpec().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "PongRules " + Arrays.toString(values) + " " + responseCurve.getSpec();
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * PongRulesWatcher - loads a rules file again whenever it changes.
+ *
+ * <p>
+ * A daemon thread waits for changes of the folder of the file. Changed rules are passed to the
+ * listener on this thread - the listener has to hand them over to the simulation between two 
+ * ticks. Rules with errors are reported and ignored, the last good rules stay active.
+ *
+ * @author Frank Kopp
+ */
+public class PongRulesWatcher {
+
+	private final Path file;
+	private final Consumer<PongRules> listener;
+	private final WatchService watchService;
+	private final Thread thread;
+	private PongRules rules;
+
+	/**
+	 * Starts watching the file.
+	 * @param file of the rules
+	 * @param rules currently active - loaded from the file
+	 * @param listener called with the new rules after each change
+	 * @throws IOException if the folder of the file cannot be watched
+	 */
+	public PongRulesWatcher(Path file, PongRules rules, Consumer<PongRules> listener) throws IOException {
+		this.file = file.toAbsolutePath();
+		this.rules = rules;
+		this.listener = listener;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.file.getParent().register(watchService, 
+				StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		thread = new Thread(this::watch, "PongRulesWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				final WatchKey key = watchService.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (file.getFileName().equals(event.context())) changed = true;
+				}
+				key.reset();
+				if (changed) reload();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	private void reload() {
+		final PongRules newRules;
+		try {
+			newRules = PongRules.load(file);
+		} catch (IOException e) {
+			// editors may write in several steps - the next event brings the complete file 
+			Pong.minorError("Rules not changed: " + e.getMessage());
+			return;
+		}
+		if (newRules.equals(rules)) return;
+		rules = newRules;
+		listener.accept(newRules);
+	}
+
+	/**
+	 * Stops watching.
+	 */
+	public void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			Pong.minorError("Rules watcher could not be closed: " + e.getMessage());
+		}
+		thread.interrupt();
+	}
+
+}
@@ -63,20 +63,26 @@ public class PongSounds {
 		}
 	}
 
-	// to play sounds parallel
-	ExecutorService _executor = Executors.newScheduledThreadPool(3);
+	// to play sounds parallel - started when the sound is turned on for the first time
+	ExecutorService _executor = null;
 
-	// available sounds mapped by the enum
-	private Map<Clips, URL> _sounds;
+	// available sounds mapped by the enum - null until loaded in the background
+	private volatile Map<Clips, URL> _sounds = null;
 	
 	// sound on/off
-	private boolean soundOn = true;
+	private boolean soundOn = false;
 
 	/**
-	 * Create an object with all tetris sounds available 
+	 * Create an object for all pong sounds. Nothing is loaded before the sound is turned on.
 	 */
 	public PongSounds() {
-		_sounds = new HashMap<>();
+	}
+
+	/**
+	 * Resolves all sound files and initializes the sound system - on the executor.
+	 */
+	private void loadSounds() {
+		final Map<Clips, URL> sounds = new HashMap<>();
 		// for all defined values in ENUM Clips
 		// read in the Clip and store them in the Map
 		Arrays.stream(Clips.values())
@@ -85,11 +91,14 @@ public class PongSounds {
 			final URL url = Pong.class.getResource(filename);
 			// create AudioInputStream object
 			if (url != null) {
-				_sounds.put(c, url);
+				sounds.put(c, url);
 			} else {
 				Pong.criticalError("Sound file: "+filename+" cannot be loaded!");
 			}
 		});
+		// the first access loads the providers of the sound system
+		AudioSystem.getMixerInfo();
+		_sounds = sounds;
 	}
 
 	/**
@@ -98,14 +107,15 @@ public class PongSounds {
 	 */
 	public void playClip(Clips c) {
 		
-		// sound was not available
-		if (_sounds.get(c) == null || !soundOn) return;
+		// sound was not available or is not loaded yet
+		final Map<Clips, URL> sounds = _sounds;
+		if (!soundOn || sounds == null || sounds.get(c) == null) return;
 		
 		// execute in a new thread to play sound
 		_executor.execute(() -> {
 			 AudioInputStream audioIn = null;
              try {
-                 audioIn = AudioSystem.getAudioInputStream(_sounds.get(c));
+                 audioIn = AudioSystem.getAudioInputStream(sounds.get(c));
              } catch (Exception e) {
             	 e.printStackTrace();
              }
@@ -139,6 +149,9 @@ public class PongSounds {
 	}
 	public void soundOn() {
 		soundOn=true;
+		if (_executor != null) return;
+		_executor = Executors.newScheduledThreadPool(3);
+		_executor.execute(this::loadSounds);
 	}
 
 }
@@ -0,0 +1,165 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * PongSpectatorClient - receives the frames of a {@link PongSpectatorServer} and decodes them.
+ *
+ * <p>
+ * The channel is non-blocking: <code>read()</code> reads what has arrived and decodes all complete
+ * frames. Deltas are decoded against the last keyframe.
+ *
+ * @author Frank Kopp
+ */
+public class PongSpectatorClient {
+
+	private final SocketChannel channel;
+	private final PongStateCodec codec;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
+
+	private final PongState keyframe = new PongState();
+	private final PongState state = new PongState();
+	private boolean hasKeyframe = false;
+
+	private long frames = 0;
+	private long undecodable = 0;
+
+	/**
+	 * Connects to a server.
+	 * @param host
+	 * @param port
+	 * @throws IOException
+	 */
+	public PongSpectatorClient(String host, int port) throws IOException {
+		this(host, port, PongRules.DEFAULT);
+	}
+
+	/**
+	 * Connects to a server.
+	 * @param host
+	 * @param port
+	 * @param rules of the game - the same playfield size as the server's rules
+	 * @throws IOException
+	 */
+	public PongSpectatorClient(String host, int port, PongRules rules) throws IOException {
+		codec = new PongStateCodec(rules);
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.configureBlocking(false);
+	}
+
+	/**
+	 * Reads and decodes all frames which have arrived.
+	 * @return number of decoded frames - -1 if the server has closed the connection
+	 * @throws IOException
+	 */
+	public int read() throws IOException {
+		return read(null);
+	}
+
+	/**
+	 * Reads and decodes all frames which have arrived.
+	 * @param decoded gets each decoded state - the state object is reused for the next frame. May be null.
+	 * @return number of decoded frames - -1 if the server has closed the connection
+	 * @throws IOException
+	 */
+	public int read(Consumer<PongState> decoded) throws IOException {
+		if (channel.read(buffer) < 0) return -1;
+		buffer.flip();
+		int n = 0;
+		while (buffer.remaining() > 0) {
+			final int length = buffer.get(buffer.position()) & 0xFF;
+			if (buffer.remaining() < 1 + length) break;
+			buffer.get();
+			final int end = buffer.position() + length;
+			if (decode()) {
+				n++;
+				if (decoded != null) decoded.accept(state);
+			}
+			buffer.position(end);
+		}
+		buffer.compact();
+		frames += n;
+		return n;
+	}
+
+	private boolean decode() {
+		// the first byte of a keyframe is 0 (no baseline)
+		final boolean isKeyframe = buffer.get(buffer.position()) == 0;
+		if (!codec.decode(buffer, hasKeyframe ? keyframe : null, state)) {
+			undecodable++;
+			return false;
+		}
+		if (isKeyframe) {
+			keyframe.set(state);
+			hasKeyframe = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			Pong.minorError("Spectator connection could not be closed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the channel - e.g. to register it with a selector
+	 */
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return the last decoded state
+	 */
+	public PongState getState() {
+		return state;
+	}
+
+	/**
+	 * @return number of decoded frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * @return number of frames which could not be decoded (delta against a missing keyframe)
+	 */
+	public long getUndecodable() {
+		return undecodable;
+	}
+
+}
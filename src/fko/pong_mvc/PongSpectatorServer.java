@@ -0,0 +1,347 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * PongSpectatorServer - broadcasts the state of a running game to any number of spectators over TCP.
+ *
+ * <p>
+ * The game publishes its state once per tick. The server thread encodes it once with 
+ * {@link PongStateCodec} into a direct buffer and hands every spectator a read-only duplicate of this
+ * buffer - the bytes are shared, only the position and limit are per spectator. So the costs per
+ * spectator are a non-blocking write and no encoding or copying.<br>
+ * Every KEYFRAME_INTERVAL ticks a keyframe is sent, all other frames are deltas against the last 
+ * keyframe. A frame is a length byte followed by the encoded state.
+ *
+ * <p>
+ * Slow spectators do not queue frames: a spectator which has not finished writing the last frame 
+ * gets the new frame dropped. A new spectator and a spectator which missed a keyframe only get 
+ * frames again from the next keyframe on, so the client can always decode them.<br>
+ * The frames are kept in a ring of FRAME_RING buffers. A spectator still writing a frame when its
+ * buffer is reused has not made any progress for a long time and is disconnected.
+ *
+ * @see PongSpectatorClient
+ * @author Frank Kopp
+ */
+public class PongSpectatorServer {
+
+	public static final int KEYFRAME_INTERVAL = 60;
+
+	private static final int FRAME_RING = 64;
+
+	/**
+	 * A connected spectator.
+	 */
+	private static final class Spectator {
+		final SocketChannel channel;
+		// frame currently written - null if idle
+		ByteBuffer pending = null;
+		int pendingSlot = -1;
+		// tick of the keyframe the spectator has received completely - -1 if none
+		long keyframe = -1;
+		long pendingKeyframe = -1;
+
+		Spectator(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final Thread thread;
+
+	// state handed over from the game - guarded by itself
+	private final PongState published = new PongState();
+	private boolean hasPublished = false;
+
+	// owned by the server thread
+	private final PongState state = new PongState();
+	private final PongState keyframe = new PongState();
+	private final PongStateCodec codec;
+	private final ByteBuffer[] frames = new ByteBuffer[FRAME_RING];
+	// only written by the server thread, read by getFramesEncoded()
+	private volatile long frameCount = 0;
+	private long lastKeyframeTick = -1;
+
+	// statistics - only written by the server thread
+	private volatile int spectators = 0;
+	private volatile long framesSent = 0;
+	private volatile long framesDropped = 0;
+	private volatile long bytesSent = 0;
+	private volatile long encodeNanos = 0;
+
+	private volatile boolean running = true;
+
+	// size of the socket send buffer of each spectator - 0 for the system default
+	private final int sendBufferSize;
+
+	/**
+	 * Opens the server socket and starts the server thread.
+	 * @param port to listen on - 0 for any free port
+	 * @throws IOException
+	 */
+	public PongSpectatorServer(int port) throws IOException {
+		this(port, 0, PongRules.DEFAULT);
+	}
+
+	/**
+	 * Opens the server socket and starts the server thread.
+	 * @param port to listen on - 0 for any free port
+	 * @param rules of the game - spectators need to use the same playfield size
+	 * @throws IOException
+	 */
+	public PongSpectatorServer(int port, PongRules rules) throws IOException {
+		this(port, 0, rules);
+	}
+
+	/**
+	 * Opens the server socket and starts the server thread.
+	 * @param port to listen on - 0 for any free port
+	 * @param sendBufferSize socket send buffer per spectator in bytes - limits the memory used by many
+	 * spectators and how far a spectator can fall behind before frames are dropped. 0 for the system default. 
+	 * @param rules of the game - spectators need to use the same playfield size
+	 * @throws IOException
+	 */
+	public PongSpectatorServer(int port, int sendBufferSize, PongRules rules) throws IOException {
+		this.sendBufferSize = sendBufferSize;
+		this.codec = new PongStateCodec(rules);
+		for (int i = 0; i < FRAME_RING; i++) {
+			frames[i] = ByteBuffer.allocateDirect(1 + PongStateCodec.MAX_FRAME_BYTES);
+		}
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		thread = new Thread(this::run, "Spectators");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Publishes the state of the current tick. Called by the game loop - only copies the state and
+	 * wakes up the server thread. A state not sent yet is replaced.
+	 * @param s
+	 */
+	public void publish(PongState s) {
+		synchronized (published) {
+			published.set(s);
+			hasPublished = true;
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Stops the server thread and disconnects all spectators.
+	 */
+	public void close() {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (running) {
+				selector.select();
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) accept();
+					else if (key.isWritable()) write(key, (Spectator) key.attachment());
+				}
+				boolean publish;
+				synchronized (published) {
+					publish = hasPublished;
+					if (publish) state.set(published);
+					hasPublished = false;
+				}
+				if (publish) broadcast();
+			}
+		} catch (IOException e) {
+			Pong.criticalError("Spectator server failed: " + e.getMessage());
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly(key);
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				Pong.minorError("Spectator selector could not be closed: " + e.getMessage());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			if (sendBufferSize > 0) channel.socket().setSendBufferSize(sendBufferSize);
+			channel.register(selector, 0, new Spectator(channel));
+			spectators++;
+		}
+	}
+
+	/**
+	 * Encodes the current state once and starts writing it to all idle spectators.
+	 */
+	private void broadcast() {
+		final long start = System.nanoTime();
+		final int slot = (int) (frameCount++ % FRAME_RING);
+		final ByteBuffer frame = frames[slot];
+		final boolean isKeyframe = lastKeyframeTick < 0 || state.tick - lastKeyframeTick >= KEYFRAME_INTERVAL 
+				|| state.tick < lastKeyframeTick;
+		frame.clear();
+		frame.position(1);
+		final int length = codec.encode(state, isKeyframe ? null : keyframe, frame);
+		frame.put(0, (byte) length);
+		frame.flip();
+		if (isKeyframe) {
+			lastKeyframeTick = state.tick;
+			keyframe.set(state);
+			codec.quantize(keyframe);
+		}
+		final ByteBuffer shared = frame.asReadOnlyBuffer();
+		encodeNanos += System.nanoTime() - start;
+
+		for (SelectionKey key : selector.keys()) {
+			if (!(key.attachment() instanceof Spectator) || !key.isValid()) continue;
+			final Spectator spectator = (Spectator) key.attachment();
+			if (spectator.pending != null) {
+				// still busy with an older frame - drop this one, disconnect if the old frame is reused
+				if (spectator.pendingSlot == slot) closeQuietly(key);
+				else framesDropped++;
+				continue;
+			}
+			// deltas are only useful for spectators having the current keyframe
+			if (!isKeyframe && spectator.keyframe != lastKeyframeTick) {
+				framesDropped++;
+				continue;
+			}
+			spectator.pending = shared.duplicate();
+			spectator.pendingSlot = slot;
+			spectator.pendingKeyframe = isKeyframe ? state.tick : spectator.keyframe;
+			write(key, spectator);
+		}
+	}
+
+	private void write(SelectionKey key, Spectator spectator) {
+		try {
+			bytesSent += spectator.channel.write(spectator.pending);
+		} catch (IOException e) {
+			closeQuietly(key);
+			return;
+		}
+		if (spectator.pending.hasRemaining()) {
+			key.interestOps(SelectionKey.OP_WRITE);
+		} else {
+			framesSent++;
+			spectator.keyframe = spectator.pendingKeyframe;
+			spectator.pending = null;
+			spectator.pendingSlot = -1;
+			key.interestOps(0);
+		}
+	}
+
+	private void closeQuietly(SelectionKey key) {
+		if (!key.isValid()) return;
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			Pong.minorError("Spectator could not be closed: " + e.getMessage());
+		}
+		if (key.attachment() instanceof Spectator) spectators--;
+	}
+
+	/* ************************************************************
+	 * GETTER
+	 * ************************************************************/
+
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * @return number of connected spectators
+	 */
+	public int getSpectators() {
+		return spectators;
+	}
+
+	/**
+	 * @return number of frames completely written to spectators
+	 */
+	public long getFramesSent() {
+		return framesSent;
+	}
+
+	/**
+	 * @return number of frames not sent to spectators because they were too slow
+	 */
+	public long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/**
+	 * @return number of bytes written to spectators
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * @return number of frames encoded
+	 */
+	public long getFramesEncoded() {
+		return frameCount;
+	}
+
+	/**
+	 * @return time spent encoding frames in nanoseconds
+	 */
+	public long getEncodeNanos() {
+		return encodeNanos;
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+/**
+ * PongState - the visible state of a game at one tick: ball, paddles, points and status.
+ *
+ * <p>
+ * A plain mutable holder which is filled from a {@link PongModel} or a {@link PongMatch} and
+ * encoded by {@link PongStateCodec}. Instances are meant to be reused to avoid allocations.
+ *
+ * @author Frank Kopp
+ */
+public class PongState {
+
+	public long tick;
+	public double ballX;
+	public double ballY;
+	public double speedX;
+	public double speedY;
+	public double leftPaddleY;
+	public double rightPaddleY;
+	public int leftPoints;
+	public int rightPoints;
+	public boolean paused;
+	public boolean running;
+
+	/**
+	 * Copies all values from another state.
+	 * @param other
+	 */
+	public void set(PongState other) {
+		tick = other.tick;
+		ballX = other.ballX;
+		ballY = other.ballY;
+		speedX = other.speedX;
+		speedY = other.speedY;
+		leftPaddleY = other.leftPaddleY;
+		rightPaddleY = other.rightPaddleY;
+		leftPoints = other.leftPoints;
+		rightPoints = other.rightPoints;
+		paused = other.paused;
+		running = other.running;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("tick %d ball (%.2f, %.2f) speed (%.3f, %.3f) paddles %.2f %.2f points %d:%d%s%s", 
+				tick, ballX, ballY, speedX, speedY, leftPaddleY, rightPaddleY, leftPoints, rightPoints,
+				running ? " running" : "", paused ? " paused" : "");
+	}
+
+}
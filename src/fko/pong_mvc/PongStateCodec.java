@@ -0,0 +1,346 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PongStateCodec - encodes a {@link PongState} into a few bytes for the network and decodes it again.
+ *
+ * <p>
+ * Positions and speeds are quantized to a configurable precision and written with just enough bits
+ * for their range. Points use POINT_BITS bits, the status two bits.<br>
+ * A frame is either a keyframe with all values or a delta against a baseline - a state the receiver
+ * has acknowledged. For a delta each value is written as:
+ * <pre>
+ * 0                          as predicted
+ * 1 0 delta(SMALL_BITS)      small difference to the prediction (zigzag encoded)
+ * 1 1 value(all bits)        any other value
+ * </pre>
+ * The prediction is the value of the baseline - for the ball its position moved by its speed for 
+ * the ticks since the baseline, so a ball flying straight costs one bit per coordinate.<br>
+ * Frame layout (padded to a full byte):
+ * <pre>
+ * keyframe   0(8 bits) tick(32 bits) running paused values...
+ * delta      ticks since baseline(8 bits) low 8 bits of the baseline's tick running paused values...
+ * </pre>
+ *
+ * <p>
+ * The receiver gets the quantized values - encoding a decoded state again gives the same bits. 
+ * The encoder therefore quantizes the baseline the same way the receiver has it, so deltas never
+ * accumulate rounding errors.<br>
+ * Encoding and decoding write to and read from a ByteBuffer at its position without allocating -
+ * typically a reused direct buffer.
+ *
+ * @author Frank Kopp
+ */
+public class PongStateCodec {
+
+	public static final double DEFAULT_POSITION_PRECISION = 1.0 / 16;
+	public static final double DEFAULT_SPEED_PRECISION = 1.0 / 256;
+
+	// the largest frame - header, 6 values with up to 32 bits and 2 points, each with 2 flag bits
+	public static final int MAX_FRAME_BYTES = (8 + 32 + 2 + 6 * (32 + 2) + 2 * (10 + 2) + 7) / 8;
+
+	// smallest margin around the playfield for positions (the ball leaves the field on a goal)
+	private static final double POSITION_MARGIN = 64.0;
+	// largest speed in pixels per tick
+	private static final double MAX_SPEED = 16.0;
+	private static final int POINT_BITS = 10;
+	private static final int SMALL_BITS = 6;
+	private static final int MAX_BASELINE_DISTANCE = 255;
+
+	// number of quantized values of a state
+	private static final int VALUES = 8;
+
+	private final double positionPrecision;
+	private final double positionMargin;
+	private final double speedPrecision;
+	private final int xBits;
+	private final int yBits;
+	private final int speedBits;
+
+	// bits of each value and its quantized values - reused for every frame
+	private final int[] bits = new int[VALUES];
+	private final int[] current = new int[VALUES];
+	private final int[] base = new int[VALUES];
+
+	// bit writer/reader state
+	private long accumulator;
+	private int accumulated;
+
+	/**
+	 * Creates a codec with the default precision for the default rules.
+	 */
+	public PongStateCodec() {
+		this(PongRules.DEFAULT);
+	}
+
+	/**
+	 * Creates a codec with the default precision for the playfield and ball size of the rules.
+	 * @param rules
+	 */
+	public PongStateCodec(PongRules rules) {
+		this(rules.getPlayfieldWidth(), rules.getPlayfieldHeight(), 
+				Math.max(POSITION_MARGIN, 2 * (rules.getBallSize() + MAX_SPEED)),
+				DEFAULT_POSITION_PRECISION, DEFAULT_SPEED_PRECISION);
+	}
+
+	/**
+	 * @param width of the playfield
+	 * @param height of the playfield
+	 * @param positionPrecision largest error of a position after decoding is half of this
+	 * @param speedPrecision largest error of a speed after decoding is half of this
+	 */
+	public PongStateCodec(double width, double height, double positionPrecision, double speedPrecision) {
+		this(width, height, POSITION_MARGIN, positionPrecision, speedPrecision);
+	}
+
+	/**
+	 * @param width of the playfield
+	 * @param height of the playfield
+	 * @param positionMargin positions this far outside of the playfield are encoded without clamping
+	 * @param positionPrecision largest error of a position after decoding is half of this
+	 * @param speedPrecision largest error of a speed after decoding is half of this
+	 */
+	public PongStateCodec(double width, double height, double positionMargin, double positionPrecision, 
+			double speedPrecision) {
+		this.positionPrecision = positionPrecision;
+		this.positionMargin = positionMargin;
+		this.speedPrecision = speedPrecision;
+		xBits = bitsFor((width + 2 * positionMargin) / positionPrecision);
+		yBits = bitsFor((height + 2 * positionMargin) / positionPrecision);
+		speedBits = bitsFor(2 * MAX_SPEED / speedPrecision);
+		if (Math.max(xBits, Math.max(yBits, speedBits)) > 32) {
+			throw new IllegalArgumentException("Precision too high");
+		}
+		bits[0] = xBits;
+		bits[1] = yBits;
+		bits[2] = speedBits;
+		bits[3] = speedBits;
+		bits[4] = yBits;
+		bits[5] = yBits;
+		bits[6] = POINT_BITS;
+		bits[7] = POINT_BITS;
+	}
+
+	/**
+	 * Encodes a state at the position of the buffer and advances the position.
+	 * @param state to encode
+	 * @param baseline the last state acknowledged by the receiver - null for a keyframe. Also written
+	 * as keyframe if the baseline is too old.
+	 * @param out needs at least MAX_FRAME_BYTES remaining
+	 * @return number of bytes written
+	 */
+	public int encode(PongState state, PongState baseline, ByteBuffer out) {
+		final int start = out.position();
+		final long distance = baseline == null ? 0 : state.tick - baseline.tick;
+		final boolean delta = distance > 0 && distance <= MAX_BASELINE_DISTANCE;
+
+		quantize(state, current);
+		accumulator = 0;
+		accumulated = 0;
+		if (delta) {
+			write(out, (int) distance, 8);
+			write(out, (int) baseline.tick, 8);
+		} else {
+			write(out, 0, 8);
+			write(out, (int) state.tick, 32);
+		}
+		write(out, state.running ? 1 : 0, 1);
+		write(out, state.paused ? 1 : 0, 1);
+		if (delta) {
+			predict(baseline, (int) distance);
+			for (int i = 0; i < VALUES; i++) {
+				final int d = current[i] - base[i];
+				if (d == 0) {
+					write(out, 0, 1);
+				} else {
+					final int zigzag = (d << 1) ^ (d >> 31);
+					if (zigzag >>> SMALL_BITS == 0) {
+						write(out, 0b10, 2);
+						write(out, zigzag, SMALL_BITS);
+					} else {
+						write(out, 0b11, 2);
+						write(out, current[i], bits[i]);
+					}
+				}
+			}
+		} else {
+			for (int i = 0; i < VALUES; i++) {
+				write(out, current[i], bits[i]);
+			}
+		}
+		flush(out);
+		return out.position() - start;
+	}
+
+	/**
+	 * Decodes a state at the position of the buffer and advances the position.
+	 * @param in
+	 * @param baseline the state the frame was encoded against - only used for deltas
+	 * @param state receives the decoded values
+	 * @return false if the frame is a delta against a different baseline than the given one - 
+	 * the state is not changed then
+	 */
+	public boolean decode(ByteBuffer in, PongState baseline, PongState state) {
+		accumulator = 0;
+		accumulated = 0;
+		final int distance = read(in, 8);
+		final long tick;
+		if (distance > 0) {
+			final int baselineTick = read(in, 8);
+			if (baseline == null || (baseline.tick & 0xFF) != baselineTick) {
+				read(in, 2);
+				skipFrame(in);
+				return false;
+			}
+			tick = baseline.tick + distance;
+		} else {
+			tick = read(in, 32) & 0xFFFFFFFFL;
+		}
+		final boolean running = read(in, 1) == 1;
+		final boolean paused = read(in, 1) == 1;
+		if (distance > 0) {
+			predict(baseline, distance);
+			for (int i = 0; i < VALUES; i++) {
+				if (read(in, 1) == 0) {
+					current[i] = base[i];
+				} else if (read(in, 1) == 0) {
+					final int zigzag = read(in, SMALL_BITS);
+					current[i] = base[i] + ((zigzag >>> 1) ^ -(zigzag & 1));
+				} else {
+					current[i] = read(in, bits[i]);
+				}
+			}
+		} else {
+			for (int i = 0; i < VALUES; i++) {
+				current[i] = read(in, bits[i]);
+			}
+		}
+		state.tick = tick;
+		state.running = running;
+		state.paused = paused;
+		state.ballX = current[0] * positionPrecision - positionMargin;
+		state.ballY = current[1] * positionPrecision - positionMargin;
+		state.speedX = current[2] * speedPrecision - MAX_SPEED;
+		state.speedY = current[3] * speedPrecision - MAX_SPEED;
+		state.leftPaddleY = current[4] * positionPrecision - positionMargin;
+		state.rightPaddleY = current[5] * positionPrecision - positionMargin;
+		state.leftPoints = current[6];
+		state.rightPoints = current[7];
+		return true;
+	}
+
+	/**
+	 * Quantizes a state in place - the values are changed to what a receiver would decode.
+	 * @param state
+	 */
+	public void quantize(PongState state) {
+		quantize(state, current);
+		state.ballX = current[0] * positionPrecision - positionMargin;
+		state.ballY = current[1] * positionPrecision - positionMargin;
+		state.speedX = current[2] * speedPrecision - MAX_SPEED;
+		state.speedY = current[3] * speedPrecision - MAX_SPEED;
+		state.leftPaddleY = current[4] * positionPrecision - positionMargin;
+		state.rightPaddleY = current[5] * positionPrecision - positionMargin;
+		state.leftPoints = current[6];
+		state.rightPoints = current[7];
+	}
+
+	/**
+	 * @return number of bits of a keyframe (without padding)
+	 */
+	public int getKeyframeBits() {
+		int n = 32 + 8 + 2;
+		for (int b : bits) n += b;
+		return n;
+	}
+
+	/**
+	 * Quantizes the baseline into <code>base</code> and moves the ball by its speed.
+	 */
+	private void predict(PongState baseline, int distance) {
+		quantize(baseline, base);
+		final double speedX = base[2] * speedPrecision - MAX_SPEED;
+		final double speedY = base[3] * speedPrecision - MAX_SPEED;
+		base[0] += (int) Math.round(speedX * distance / positionPrecision);
+		base[1] += (int) Math.round(speedY * distance / positionPrecision);
+	}
+
+	private void quantize(PongState s, int[] q) {
+		q[0] = quantize(s.ballX + positionMargin, positionPrecision, xBits);
+		q[1] = quantize(s.ballY + positionMargin, positionPrecision, yBits);
+		q[2] = quantize(s.speedX + MAX_SPEED, speedPrecision, speedBits);
+		q[3] = quantize(s.speedY + MAX_SPEED, speedPrecision, speedBits);
+		q[4] = quantize(s.leftPaddleY + positionMargin, positionPrecision, yBits);
+		q[5] = quantize(s.rightPaddleY + positionMargin, positionPrecision, yBits);
+		q[6] = Math.min(s.leftPoints, (1 << POINT_BITS) - 1);
+		q[7] = Math.min(s.rightPoints, (1 << POINT_BITS) - 1);
+	}
+
+	private static int quantize(double value, double precision, int bits) {
+		final long q = Math.round(value / precision);
+		final long max = (1L << bits) - 1;
+		return (int) (q < 0 ? 0 : q > max ? max : q);
+	}
+
+	private static int bitsFor(double values) {
+		return 64 - Long.numberOfLeadingZeros((long) Math.ceil(values));
+	}
+
+	private void skipFrame(ByteBuffer in) {
+		for (int i = 0; i < VALUES; i++) {
+			if (read(in, 1) == 0) continue;
+			if (read(in, 1) == 0) read(in, SMALL_BITS);
+			else read(in, bits[i]);
+		}
+	}
+
+	private void write(ByteBuffer out, int value, int n) {
+		accumulator = (accumulator << n) | (value & ((1L << n) - 1));
+		accumulated += n;
+		while (accumulated >= 8) {
+			accumulated -= 8;
+			out.put((byte) (accumulator >>> accumulated));
+		}
+	}
+
+	private void flush(ByteBuffer out) {
+		if (accumulated > 0) {
+			out.put((byte) (accumulator << (8 - accumulated)));
+			accumulated = 0;
+		}
+	}
+
+	private int read(ByteBuffer in, int n) {
+		while (accumulated < n) {
+			accumulator = (accumulator << 8) | (in.get() & 0xFF);
+			accumulated += 8;
+		}
+		accumulated -= n;
+		return (int) ((accumulator >>> accumulated) & ((1L << n) - 1));
+	}
+
+}
@@ -0,0 +1,295 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+import fko.pong_mvc.PongWorld.Archetype;
+
+/**
+ * PongSystems - the systems working on the entities of a {@link PongWorld}.
+ *
+ * <p>
+ * Each system looks at all archetypes which have the components it needs and then runs linearly
+ * through their component arrays:
+ * <ul>
+ * <li>movement - POSITION and VELOCITY</li>
+ * <li>lifetime - LIFETIME, removes expired entities</li>
+ * <li>collision - BALL bounces off walls, obstacles and paddles; POWERUP is caught by paddles</li>
+ * <li>scoring - BALL leaving the playfield through the left or right wall</li>
+ * <li>rendering - POSITION and SIZE plotted into a pixel array</li>
+ * </ul>
+ * The two paddles of the players are still part of the model and are passed in by it. Everything 
+ * the systems detect is reported to a {@link Listener} so sounds, effects and points stay in the model.
+ *
+ * @author Frank Kopp
+ */
+public class PongSystems {
+
+	/**
+	 * Receives the events detected by the collision and scoring systems.
+	 */
+	public interface Listener {
+		/** a ball bounced off a wall, an obstacle or a paddle at the given position */
+		void onBounce(double x, double y);
+		/** a power-up has been caught by a paddle of the given side */
+		void onPickup(int kind, boolean left);
+		/** a ball has left the playfield - left is true if the left player scored */
+		void onScore(boolean left, double x, double y);
+	}
+
+	// colors of the rendered entities (ARGB)
+	private static final int BALL_COLOR = 0xFFFFFFFF;
+	private static final int PADDLE_COLOR = 0xFFC0C0C0;
+	private static final int[] POWERUP_COLORS = { 0xFF40C0FF, 0xFFFFC040 };
+
+	private final PongWorld world;
+	private final Listener listener;
+
+	// paddles of the current collision pass: main paddles and PADDLE entities (x0, y0, x1, y1) and side
+	private double[] paddles = new double[16];
+	private boolean[] paddleLeft = new boolean[4];
+	private int paddleCount = 0;
+
+	// direction of a ball after a paddle hit
+	private PongResponseCurve responseCurve = PongRules.DEFAULT.getResponseCurve();
+
+	/**
+	 * @param world
+	 * @param listener
+	 */
+	public PongSystems(PongWorld world, Listener listener) {
+		this.world = world;
+		this.listener = listener;
+	}
+
+	/**
+	 * @param responseCurve direction of a ball after a paddle hit
+	 */
+	public void setResponseCurve(PongResponseCurve responseCurve) {
+		this.responseCurve = responseCurve;
+	}
+
+	/**
+	 * Movement system - moves all entities with a velocity one tick.
+	 */
+	public void move() {
+		for (Archetype a : world.getArchetypes()) {
+			if (!a.has(PongWorld.POSITION | PongWorld.VELOCITY)) continue;
+			final double[] x = a.x, y = a.y, vx = a.vx, vy = a.vy;
+			final int n = a.getCount();
+			for (int i = 0; i < n; i++) {
+				x[i] += vx[i];
+				y[i] += vy[i];
+			}
+		}
+	}
+
+	/**
+	 * Lifetime system - counts down the life of entities and removes the expired ones.
+	 */
+	public void age() {
+		for (Archetype a : world.getArchetypes()) {
+			if (!a.has(PongWorld.LIFETIME)) continue;
+			final double[] life = a.life;
+			// backwards as removing moves the last row into the removed one
+			for (int i = a.getCount() - 1; i >= 0; i--) {
+				if (--life[i] <= 0) world.destroy(a.getEntity(i));
+			}
+		}
+	}
+
+	/**
+	 * Collision system - balls bounce off the top and bottom wall, obstacles and paddles, 
+	 * power-ups are caught by paddles. 
+	 * @param height of the playfield
+	 * @param level obstacles or null
+	 * @param paddleWidth
+	 * @param leftX left paddle
+	 * @param leftY
+	 * @param leftLength
+	 * @param rightX right paddle
+	 * @param rightY
+	 * @param rightLength
+	 */
+	public void collide(double height, PongLevel level, double paddleWidth, 
+			double leftX, double leftY, double leftLength, double rightX, double rightY, double rightLength) {
+
+		collectPaddles(paddleWidth, leftX, leftY, leftLength, rightX, rightY, rightLength);
+
+		for (Archetype a : world.getArchetypes()) {
+			if (a.has(PongWorld.BALL | PongWorld.POSITION | PongWorld.VELOCITY | PongWorld.SIZE)) {
+				collideBalls(a, height, level);
+			}
+			if (a.has(PongWorld.POWERUP | PongWorld.POSITION | PongWorld.SIZE)) {
+				collidePowerUps(a);
+			}
+		}
+	}
+
+	/**
+	 * Scoring system - balls leaving through the left or right wall score a point and are removed.
+	 * Anything else leaving the playfield is just removed.
+	 * @param width of the playfield
+	 */
+	public void score(double width) {
+		for (Archetype a : world.getArchetypes()) {
+			if (!a.has(PongWorld.POSITION)) continue;
+			final boolean ball = a.has(PongWorld.BALL);
+			final double[] x = a.x, y = a.y;
+			for (int i = a.getCount() - 1; i >= 0; i--) {
+				if (x[i] < 0 || x[i] > width) {
+					if (ball) listener.onScore(x[i] > width, x[i] < 0 ? 0 : width, y[i]);
+					world.destroy(a.getEntity(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rendering system - plots all entities with a position and a size into the pixel array.
+	 * @param world
+	 * @param pixels ARGB pixels, row by row
+	 * @param width of the pixel array
+	 * @param height of the pixel array
+	 */
+	public static void render(PongWorld world, int[] pixels, int width, int height) {
+		for (Archetype a : world.getArchetypes()) {
+			if (!a.has(PongWorld.POSITION | PongWorld.SIZE)) continue;
+			final double[] x = a.x, y = a.y, w = a.w, h = a.h;
+			final int n = a.getCount();
+			if (a.has(PongWorld.BALL)) {
+				for (int i = 0; i < n; i++) fillCircle(pixels, width, height, x[i], y[i], w[i], BALL_COLOR);
+			} else if (a.has(PongWorld.POWERUP)) {
+				final int[] kind = a.kind;
+				for (int i = 0; i < n; i++) {
+					fillRect(pixels, width, height, x[i], y[i], w[i], h[i], POWERUP_COLORS[kind[i]]);
+				}
+			} else {
+				for (int i = 0; i < n; i++) fillRect(pixels, width, height, x[i], y[i], w[i], h[i], PADDLE_COLOR);
+			}
+		}
+	}
+
+	private void collectPaddles(double paddleWidth, 
+			double leftX, double leftY, double leftLength, double rightX, double rightY, double rightLength) {
+		paddleCount = 0;
+		addPaddle(true, leftX, leftY, leftX + paddleWidth, leftY + leftLength);
+		addPaddle(false, rightX, rightY, rightX + paddleWidth, rightY + rightLength);
+		for (Archetype a : world.getArchetypes()) {
+			if (!a.has(PongWorld.PADDLE | PongWorld.POSITION | PongWorld.SIZE)) continue;
+			for (int i = 0; i < a.getCount(); i++) {
+				addPaddle(a.side[i] == 0, a.x[i] - a.w[i] / 2, a.y[i] - a.h[i] / 2, a.x[i] + a.w[i] / 2, a.y[i] + a.h[i] / 2);
+			}
+		}
+	}
+
+	private void addPaddle(boolean left, double x0, double y0, double x1, double y1) {
+		if (paddleCount == paddleLeft.length) {
+			paddles = Arrays.copyOf(paddles, paddles.length * 2);
+			paddleLeft = Arrays.copyOf(paddleLeft, paddleLeft.length * 2);
+		}
+		paddleLeft[paddleCount] = left;
+		final int p = paddleCount++ * 4;
+		paddles[p] = x0;
+		paddles[p + 1] = y0;
+		paddles[p + 2] = x1;
+		paddles[p + 3] = y1;
+	}
+
+	private void collideBalls(Archetype a, double height, PongLevel level) {
+		final double[] x = a.x, y = a.y, vx = a.vx, vy = a.vy, r = a.w;
+		final int n = a.getCount();
+		for (int i = 0; i < n; i++) {
+			// top and bottom wall
+			if ((y[i] - r[i] < 0 && vy[i] < 0) || (y[i] + r[i] > height && vy[i] > 0)) {
+				vy[i] = -vy[i];
+				listener.onBounce(x[i], y[i] < r[i] ? 0 : height);
+			}
+			// obstacles
+			if (level != null && level.collide(x[i], y[i], r[i])) {
+				final double nx = level.getHitNormalX();
+				final double ny = level.getHitNormalY();
+				final double vn = vx[i] * nx + vy[i] * ny;
+				if (vn < 0) {
+					vx[i] -= 2 * vn * nx;
+					vy[i] -= 2 * vn * ny;
+					listener.onBounce(x[i] - nx * r[i], y[i] - ny * r[i]);
+				}
+				x[i] += nx * level.getHitDepth();
+				y[i] += ny * level.getHitDepth();
+			}
+			// paddles - a ball moving towards a paddle's center is turned around with an angle
+			// depending on where it hit the paddle like the model's ball
+			for (int p = 0; p < paddleCount * 4; p += 4) {
+				final double x0 = paddles[p], y0 = paddles[p + 1], x1 = paddles[p + 2], y1 = paddles[p + 3];
+				if (x[i] + r[i] < x0 || x[i] - r[i] > x1 || y[i] + r[i] < y0 || y[i] - r[i] > y1) continue;
+				final double center = (x0 + x1) / 2;
+				if ((vx[i] > 0) != (x[i] < center)) continue;
+				final double hitPos = 2.0 * (((y[i] - y0) / (y1 - y0)) - 0.5);
+				final double speed = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+				vx[i] = -Math.signum(vx[i]) * speed * responseCurve.getX(hitPos);
+				vy[i] = speed * responseCurve.getY(hitPos);
+				listener.onBounce(vx[i] > 0 ? x1 : x0, y[i]);
+				break;
+			}
+		}
+	}
+
+	private void collidePowerUps(Archetype a) {
+		final double[] x = a.x, y = a.y, w = a.w, h = a.h;
+		for (int i = a.getCount() - 1; i >= 0; i--) {
+			for (int p = 0; p < paddleCount * 4; p += 4) {
+				if (x[i] + w[i] / 2 < paddles[p] || x[i] - w[i] / 2 > paddles[p + 2] 
+						|| y[i] + h[i] / 2 < paddles[p + 1] || y[i] - h[i] / 2 > paddles[p + 3]) continue;
+				listener.onPickup(a.kind[i], paddleLeft[p / 4]);
+				world.destroy(a.getEntity(i));
+				break;
+			}
+		}
+	}
+
+	private static void fillCircle(int[] pixels, int width, int height, double cx, double cy, double r, int argb) {
+		final int y0 = Math.max(0, (int) (cy - r)), y1 = Math.min(height - 1, (int) (cy + r));
+		final double r2 = r * r;
+		for (int py = y0; py <= y1; py++) {
+			final double dy = py + 0.5 - cy;
+			final double dx = Math.sqrt(Math.max(0, r2 - dy * dy));
+			final int x0 = Math.max(0, (int) (cx - dx)), x1 = Math.min(width - 1, (int) (cx + dx));
+			final int row = py * width;
+			for (int px = x0; px <= x1; px++) pixels[row + px] = argb;
+		}
+	}
+
+	private static void fillRect(int[] pixels, int width, int height, 
+			double cx, double cy, double w, double h, int argb) {
+		final int x0 = Math.max(0, (int) (cx - w / 2)), x1 = Math.min(width - 1, (int) (cx + w / 2));
+		final int y0 = Math.max(0, (int) (cy - h / 2)), y1 = Math.min(height - 1, (int) (cy + h / 2));
+		for (int py = y0; py <= y1; py++) {
+			final int row = py * width;
+			for (int px = x0; px <= x1; px++) pixels[row + px] = argb;
+		}
+	}
+
+}
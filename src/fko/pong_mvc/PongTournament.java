@@ -0,0 +1,390 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * PongTournament - plays a round-robin or single elimination tournament between registered players.
+ *
+ * <p>
+ * Matches between two {@link PongAIPlayer}s are played headless ({@link PongMatch}) in parallel on a
+ * pool of worker threads. Matches with a human player are queued for the UI which takes them with
+ * <code>nextUIMatch()</code>, plays them and reports the result with <code>reportResult()</code>.
+ * Every result updates the Elo ratings (see {@link PongEloRating}) as soon as the match is finished.
+ * The statistics of headless matches are added to the players' statistics.<br>
+ *
+ * <p>
+ * In elimination tournaments the players are seeded in the order of registration. If the number of
+ * players in a round is odd the best seeded player gets a bye. A match which reaches the maximal
+ * number of ticks is decided by points - a draw is won by the left (better seeded) player.
+ *
+ * <p>
+ * Can also be started from the command line to evaluate AI players (see <code>main()</code>).
+ *
+ * @author Frank Kopp
+ */
+public class PongTournament {
+
+	public enum Format { ROUND_ROBIN, ELIMINATION }
+
+	public static final int DEFAULT_POINTS_TO_WIN = 5;
+	// 10 minutes at the initial speed
+	public static final long DEFAULT_MAX_TICKS = 10 * 60 * (long) PongModel.INITIAL_BALL_SPEED;
+
+	/**
+	 * A match of the tournament. Finished when <code>isFinished()</code> returns true.
+	 */
+	public static class Match {
+		private final Player left;
+		private final Player right;
+		private final long seed;
+		private final CompletableFuture<Match> result = new CompletableFuture<>();
+		private volatile int leftPoints = 0;
+		private volatile int rightPoints = 0;
+		private volatile long ticks = 0;
+
+		private Match(Player left, Player right, long seed) {
+			this.left = left;
+			this.right = right;
+			this.seed = seed;
+		}
+
+		/**
+		 * @return true if both players are AI players and the match is played headless
+		 */
+		public boolean isHeadless() {
+			return left instanceof PongAIPlayer && right instanceof PongAIPlayer;
+		}
+
+		/**
+		 * @return the winner of a finished match - the left player on a draw
+		 */
+		public Player getWinner() {
+			return rightPoints > leftPoints ? right : left;
+		}
+
+		public Player getLeft() {
+			return left;
+		}
+
+		public Player getRight() {
+			return right;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public int getLeftPoints() {
+			return leftPoints;
+		}
+
+		public int getRightPoints() {
+			return rightPoints;
+		}
+
+		public long getTicks() {
+			return ticks;
+		}
+
+		public boolean isFinished() {
+			return result.isDone();
+		}
+
+		@Override
+		public String toString() {
+			return left.playerName.get() + " - " + right.playerName.get() + " " + leftPoints + ":" + rightPoints;
+		}
+	}
+
+	private final Format format;
+	private final int pointsToWin;
+	private final long maxTicks;
+	private final long seed;
+	private final int threads;
+
+	private final List<Player> players = new ArrayList<>();
+	private final PongEloRating rating = new PongEloRating();
+	private final BlockingQueue<Match> uiMatches = new LinkedBlockingQueue<>();
+	private final List<Match> finished = Collections.synchronizedList(new ArrayList<>());
+
+	private ExecutorService executor;
+	private long matchCounter = 0;
+	private PongRules rules = PongRules.DEFAULT;
+
+	/**
+	 * Creates a tournament using all available processors.
+	 * @param format
+	 * @param pointsToWin
+	 * @param seed for the serves of all matches
+	 */
+	public PongTournament(Format format, int pointsToWin, long seed) {
+		this(format, pointsToWin, DEFAULT_MAX_TICKS, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param format
+	 * @param pointsToWin
+	 * @param maxTicks maximal length of a headless match
+	 * @param seed for the serves of all matches
+	 * @param threads number of threads for headless matches
+	 */
+	public PongTournament(Format format, int pointsToWin, long maxTicks, long seed, int threads) {
+		this.format = format;
+		this.pointsToWin = pointsToWin;
+		this.maxTicks = maxTicks;
+		this.seed = seed;
+		this.threads = threads;
+	}
+
+	/**
+	 * @param rules for the headless matches - must be called before <code>run()</code>
+	 */
+	public void setRules(PongRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * @param player to take part in the tournament - must be called before <code>run()</code>
+	 */
+	public void register(Player player) {
+		players.add(player);
+	}
+
+	/**
+	 * Plays the tournament. Blocks until all matches are finished - including the matches played
+	 * in the UI.
+	 * @return all matches in the order they have been finished
+	 * @throws InterruptedException
+	 * @throws ExecutionException if a headless match failed
+	 */
+	public List<Match> run() throws InterruptedException, ExecutionException {
+		executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "PongTournament");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			switch (format) {
+			case ROUND_ROBIN: 
+				runRoundRobin(); 
+				break;
+			case ELIMINATION: 
+				runElimination(); 
+				break;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return new ArrayList<>(finished);
+	}
+
+	private void runRoundRobin() throws InterruptedException, ExecutionException {
+		List<Match> matches = new ArrayList<>();
+		for (int i = 0; i < players.size(); i++) {
+			for (int j = i + 1; j < players.size(); j++) {
+				matches.add(schedule(players.get(i), players.get(j)));
+			}
+		}
+		waitFor(matches);
+	}
+
+	private void runElimination() throws InterruptedException, ExecutionException {
+		List<Player> round = new ArrayList<>(players);
+		while (round.size() > 1) {
+			List<Player> next = new ArrayList<>();
+			int first = 0;
+			// odd number of players - best seed gets a bye
+			if (round.size() % 2 == 1) {
+				next.add(round.get(0));
+				first = 1;
+			}
+			List<Match> matches = new ArrayList<>();
+			for (int i = first, j = round.size() - 1; i < j; i++, j--) {
+				matches.add(schedule(round.get(i), round.get(j)));
+			}
+			waitFor(matches);
+			for (Match m : matches) next.add(m.getWinner());
+			round = next;
+		}
+	}
+
+	private void waitFor(List<Match> matches) throws InterruptedException, ExecutionException {
+		for (Match m : matches) m.result.get();
+	}
+
+	private Match schedule(Player left, Player right) {
+		final Match match = new Match(left, right, seed + matchCounter++);
+		if (match.isHeadless()) {
+			executor.execute(() -> {
+				try {
+					play(match);
+				} catch (RuntimeException e) {
+					match.result.completeExceptionally(e);
+				}
+			});
+		} else {
+			uiMatches.add(match);
+		}
+		return match;
+	}
+
+	/**
+	 * Plays a match between two AI players headless.
+	 * @param match
+	 */
+	private void play(Match match) {
+		final PongAIPlayer left = (PongAIPlayer) match.left;
+		final PongAIPlayer right = (PongAIPlayer) match.right;
+		final PongMatch game = new PongMatch(match.seed, rules);
+		final PongMatchStatistics statistics = new PongMatchStatistics();
+		statistics.startMatch();
+
+		while (game.getLeftPoints() < pointsToWin && game.getRightPoints() < pointsToWin 
+				&& game.getTick() < maxTicks) {
+			game.setLeftInput(left.decide(game, true));
+			game.setRightInput(right.decide(game, false));
+			game.tick();
+
+			final int events = game.getEvents();
+			if (events != 0) {
+				if ((events & PongMatch.EVENT_LEFT_HIT) != 0) statistics.onPaddleHit(true, game.getLastHitPos());
+				if ((events & PongMatch.EVENT_RIGHT_HIT) != 0) statistics.onPaddleHit(false, game.getLastHitPos());
+				if ((events & PongMatch.EVENT_GOAL_LEFT) != 0) statistics.onGoal(true);
+				if ((events & PongMatch.EVENT_GOAL_RIGHT) != 0) statistics.onGoal(false);
+			}
+			statistics.onTick(game.getTickDuration(), game.getBallCenterX(), game.getBallCenterY(),
+					game.getLeftPaddleY(), game.getRightPaddleY());
+		}
+
+		// players play in several matches at the same time
+		synchronized (left.statistics) {
+			left.statistics.merge(statistics.getLeft());
+		}
+		synchronized (right.statistics) {
+			right.statistics.merge(statistics.getRight());
+		}
+		finish(match, game.getLeftPoints(), game.getRightPoints(), game.getTick());
+	}
+
+	/**
+	 * @return the next match to be played in the UI or null if there is none at the moment
+	 */
+	public Match nextUIMatch() {
+		return uiMatches.poll();
+	}
+
+	/**
+	 * Reports the result of a match played in the UI.
+	 * @param match
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	public void reportResult(Match match, int leftPoints, int rightPoints) {
+		finish(match, leftPoints, rightPoints, 0);
+	}
+
+	private void finish(Match match, int leftPoints, int rightPoints, long ticks) {
+		if (match.isFinished()) return;
+		match.leftPoints = leftPoints;
+		match.rightPoints = rightPoints;
+		match.ticks = ticks;
+		rating.update(match.left, match.right, leftPoints, rightPoints);
+		finished.add(match);
+		match.result.complete(match);
+	}
+
+	/**
+	 * @return the Elo ratings of the players
+	 */
+	public PongEloRating getRating() {
+		return rating;
+	}
+
+	/**
+	 * @return points needed to win a match
+	 */
+	public int getPointsToWin() {
+		return pointsToWin;
+	}
+
+	/**
+	 * Runs a tournament between AI players with different parameters and prints the
+	 * best players and the time needed.<br>
+	 * Usage: <code>PongTournament [entrants] [ROUND_ROBIN|ELIMINATION] [pointsToWin] [threads] [rules file]</code>
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		final int entrants = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		final Format format = args.length > 1 ? Format.valueOf(args[1]) : Format.ROUND_ROBIN;
+		final int pointsToWin = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_POINTS_TO_WIN;
+		final int threads = args.length > 3 ? Integer.parseInt(args[3]) 
+				: Runtime.getRuntime().availableProcessors();
+
+		PongTournament tournament = new PongTournament(format, pointsToWin, DEFAULT_MAX_TICKS, 42L, threads);
+		if (args.length > 4) tournament.setRules(PongRules.load(Paths.get(args[4])));
+		for (int i = 0; i < entrants; i++) {
+			tournament.register(newBot(i));
+		}
+
+		final long start = System.nanoTime();
+		List<Match> matches = tournament.run();
+		final double seconds = (System.nanoTime() - start) / 1e9;
+
+		long ticks = 0;
+		for (Match m : matches) ticks += m.getTicks();
+		System.out.printf(Locale.US, "%d entrants, %d matches, %d ticks in %.2f s on %d threads (%.1f M ticks/s)%n",
+				entrants, matches.size(), ticks, seconds, threads, ticks / seconds / 1e6);
+		List<Player> ranking = tournament.getRating().getRanking();
+		for (int i = 0; i < Math.min(10, ranking.size()); i++) {
+			Player p = ranking.get(i);
+			System.out.printf(Locale.US, "%3d. %-12s %7.1f%n", i + 1, p.playerName.get(), 
+					tournament.getRating().getRating(p));
+		}
+	}
+
+	/**
+	 * @param i
+	 * @return an AI player with parameters varying with i
+	 */
+	private static PongAIPlayer newBot(int i) {
+		final double aimOffset = ((i % 9) - 4) / 5.0;
+		final boolean predict = (i / 9) % 2 == 0;
+		final double deadZone = 1.0 + (i / 18) % 8;
+		return new PongAIPlayer("Bot-" + i, aimOffset, predict, deadZone);
+	}
+
+}
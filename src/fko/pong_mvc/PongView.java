@@ -26,6 +26,7 @@ package fko.pong_mvc;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.BorderPane;
@@ -54,8 +55,10 @@ public class PongView {
 	private final PongModel model;
 	private final PongController controller;
 	private final BorderPane view;
+	private final PongPlayfield playfield;
 	
-	protected Text optionsText =  new Text("Options");
+	// options are drawn into an image by the playfield
+	protected ImageView optionsImage = new ImageView();
 
 	/**
 	 * Set up the Pong view.
@@ -79,8 +82,8 @@ public class PongView {
 				new BackgroundFill(Color.DARKGRAY, CornerRadii.EMPTY, Insets.EMPTY)));
 
 		// pong pane
-		PongPlayfield pongpane = new PongPlayfield(this.model , this.controller, this);
-		view.setCenter(pongpane);
+		playfield = new PongPlayfield(this.model , this.controller, this);
+		view.setCenter(playfield);
 
 		// add a two line hbox for how-to and options
 		VBox vBox = new VBox();
@@ -90,7 +93,7 @@ public class PongView {
 		Text howtoText = new Text("SPACE=Start ESC=Stop P=Pause Q=left up A=left down UP=right up DOWN=right down");
 		vBox.getChildren().add(howtoText);
 
-		vBox.getChildren().add(optionsText);
+		vBox.getChildren().add(optionsImage);
 
 		view.setBottom(vBox);
 		BorderPane.setAlignment(vBox, Pos.CENTER);
@@ -105,6 +108,20 @@ public class PongView {
 		view.getScene().setOnKeyReleased(e -> controller.handleKeyboardReleasedEvents(e));
 	}
 
+	/**
+	 * @param on true to draw ball and paddles with the dirty rectangle renderer
+	 */
+	public void setDirtyRectRendering(boolean on) {
+		playfield.setDirtyRectRendering(on);
+	}
+
+	/**
+	 * @return number of frames drawn by the playfield
+	 */
+	public long getRenderedFrames() {
+		return playfield.getRenderedFrames();
+	}
+
 	/**
 	 * Returns the main view panel
 	 * @return main view panel
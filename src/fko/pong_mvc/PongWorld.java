@@ -0,0 +1,267 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+
+/**
+ * PongWorld - an entity-component store for additional game objects like extra balls, extra paddles
+ * and power-ups.
+ *
+ * <p>
+ * Each entity has a set of components (bit mask of POSITION, VELOCITY, ...). All entities with the same
+ * set of components live in the same {@link Archetype} which stores every component in dense primitive
+ * arrays (one array per value, one row per entity). Systems (see {@link PongSystems}) iterate over
+ * the rows of all archetypes which have the components they need - linearly through the arrays.<br>
+ * New kinds of objects only need a new combination of components - no new fields in the model.
+ *
+ * <p>
+ * Entities are identified by an int handle containing the slot of the entity and a generation which
+ * is increased when a slot is reused so stale handles can be detected. Removing an entity moves
+ * the last row of its archetype into its row. Systems which remove entities therefore iterate
+ * backwards.
+ *
+ * @author Frank Kopp
+ */
+public class PongWorld {
+
+	// components
+	public static final int POSITION = 1;	// x, y (center)
+	public static final int VELOCITY = 2;	// vx, vy
+	public static final int SIZE = 4;		// w, h (balls: w = h = radius)
+	public static final int PADDLE = 8;		// side (0 left, 1 right)
+	public static final int POWERUP = 16;	// kind
+	public static final int LIFETIME = 32;	// life in ticks
+	public static final int BALL = 64;		// tag: bounces and scores
+
+	// the archetypes of the game objects
+	public static final int EXTRA_BALL = POSITION | VELOCITY | SIZE | BALL;
+	public static final int EXTRA_PADDLE = POSITION | SIZE | PADDLE | LIFETIME;
+	public static final int POWER_UP = POSITION | VELOCITY | SIZE | POWERUP;
+
+	private static final int INDEX_BITS = 20;
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+	/**
+	 * All entities with the same components. Arrays of components not in the mask are null.
+	 */
+	public static final class Archetype {
+		public final int mask;
+		int count = 0;
+
+		public double[] x, y, vx, vy, w, h, life;
+		public int[] side, kind;
+		// entity handle of each row
+		int[] entity;
+
+		private Archetype(int mask, int capacity) {
+			this.mask = mask;
+			entity = new int[capacity];
+			if (has(POSITION)) { x = new double[capacity]; y = new double[capacity]; }
+			if (has(VELOCITY)) { vx = new double[capacity]; vy = new double[capacity]; }
+			if (has(SIZE)) { w = new double[capacity]; h = new double[capacity]; }
+			if (has(LIFETIME)) life = new double[capacity];
+			if (has(PADDLE)) side = new int[capacity];
+			if (has(POWERUP)) kind = new int[capacity];
+		}
+
+		/**
+		 * @param components bit mask
+		 * @return true if the archetype has all given components
+		 */
+		public boolean has(int components) {
+			return (mask & components) == components;
+		}
+
+		/**
+		 * @return number of entities (rows)
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @param row
+		 * @return the entity handle of the row
+		 */
+		public int getEntity(int row) {
+			return entity[row];
+		}
+
+		private void grow() {
+			final int capacity = entity.length * 2;
+			entity = Arrays.copyOf(entity, capacity);
+			if (x != null) { x = Arrays.copyOf(x, capacity); y = Arrays.copyOf(y, capacity); }
+			if (vx != null) { vx = Arrays.copyOf(vx, capacity); vy = Arrays.copyOf(vy, capacity); }
+			if (w != null) { w = Arrays.copyOf(w, capacity); h = Arrays.copyOf(h, capacity); }
+			if (life != null) life = Arrays.copyOf(life, capacity);
+			if (side != null) side = Arrays.copyOf(side, capacity);
+			if (kind != null) kind = Arrays.copyOf(kind, capacity);
+		}
+
+		private void copyRow(int from, int to) {
+			entity[to] = entity[from];
+			if (x != null) { x[to] = x[from]; y[to] = y[from]; }
+			if (vx != null) { vx[to] = vx[from]; vy[to] = vy[from]; }
+			if (w != null) { w[to] = w[from]; h[to] = h[from]; }
+			if (life != null) life[to] = life[from];
+			if (side != null) side[to] = side[from];
+			if (kind != null) kind[to] = kind[from];
+		}
+	}
+
+	private Archetype[] archetypes = new Archetype[0];
+
+	// entity slots: archetype index, row and generation
+	private int[] slotArchetype = new int[64];
+	private int[] slotRow = new int[64];
+	private int[] slotGeneration = new int[64];
+	private int slots = 0;
+
+	// free slots
+	private int[] freeSlots = new int[64];
+	private int freeCount = 0;
+
+	/**
+	 * Creates an entity with the given components. Component values are set through the
+	 * archetype (see <code>getArchetypeOf(int)</code> and <code>getRow(int)</code>).
+	 * @param mask components of the entity
+	 * @return the entity's handle
+	 */
+	public int create(int mask) {
+		final int a = archetypeIndex(mask);
+		final Archetype archetype = archetypes[a];
+
+		final int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if (slots == slotArchetype.length) {
+				slotArchetype = Arrays.copyOf(slotArchetype, slots * 2);
+				slotRow = Arrays.copyOf(slotRow, slots * 2);
+				slotGeneration = Arrays.copyOf(slotGeneration, slots * 2);
+			}
+			slot = slots++;
+		}
+		if (slot > INDEX_MASK) throw new IllegalStateException("Too many entities");
+
+		if (archetype.count == archetype.entity.length) archetype.grow();
+		final int row = archetype.count++;
+		final int handle = (slotGeneration[slot] << INDEX_BITS) | slot;
+		archetype.entity[row] = handle;
+		slotArchetype[slot] = a;
+		slotRow[slot] = row;
+		return handle;
+	}
+
+	/**
+	 * Removes an entity. Ignored if the entity has already been removed.
+	 * The last entity of the archetype moves into the row of the removed entity.
+	 * @param handle
+	 */
+	public void destroy(int handle) {
+		if (!isAlive(handle)) return;
+		final int slot = handle & INDEX_MASK;
+		final Archetype archetype = archetypes[slotArchetype[slot]];
+		final int row = slotRow[slot];
+		final int last = --archetype.count;
+		if (row != last) {
+			archetype.copyRow(last, row);
+			slotRow[archetype.entity[row] & INDEX_MASK] = row;
+		}
+		slotGeneration[slot] = (slotGeneration[slot] + 1) & ((1 << (32 - INDEX_BITS - 1)) - 1);
+		if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		freeSlots[freeCount++] = slot;
+	}
+
+	/**
+	 * Removes all entities.
+	 */
+	public void clear() {
+		for (Archetype archetype : archetypes) {
+			for (int row = archetype.count - 1; row >= 0; row--) destroy(archetype.entity[row]);
+		}
+	}
+
+	/**
+	 * @param handle
+	 * @return true if the entity exists
+	 */
+	public boolean isAlive(int handle) {
+		final int slot = handle & INDEX_MASK;
+		return slot < slots && slotGeneration[slot] == handle >>> INDEX_BITS 
+				&& slotRow[slot] < archetypes[slotArchetype[slot]].count
+				&& archetypes[slotArchetype[slot]].entity[slotRow[slot]] == handle;
+	}
+
+	/**
+	 * @param handle of a live entity
+	 * @return the archetype storing the entity
+	 */
+	public Archetype getArchetypeOf(int handle) {
+		return archetypes[slotArchetype[handle & INDEX_MASK]];
+	}
+
+	/**
+	 * @param handle of a live entity
+	 * @return the row of the entity in its archetype
+	 */
+	public int getRow(int handle) {
+		return slotRow[handle & INDEX_MASK];
+	}
+
+	/**
+	 * @return all archetypes - systems iterate over the ones having the components they need
+	 */
+	public Archetype[] getArchetypes() {
+		return archetypes;
+	}
+
+	/**
+	 * @param mask
+	 * @return the archetype for the components - created if it does not exist yet
+	 */
+	public Archetype getArchetype(int mask) {
+		return archetypes[archetypeIndex(mask)];
+	}
+
+	/**
+	 * @return number of live entities
+	 */
+	public int getEntityCount() {
+		int n = 0;
+		for (Archetype archetype : archetypes) n += archetype.count;
+		return n;
+	}
+
+	private int archetypeIndex(int mask) {
+		for (int i = 0; i < archetypes.length; i++) {
+			if (archetypes[i].mask == mask) return i;
+		}
+		archetypes = Arrays.copyOf(archetypes, archetypes.length + 1);
+		archetypes[archetypes.length - 1] = new Archetype(mask, 16);
+		return archetypes.length - 1;
+	}
+
+}
@@ -0,0 +1,169 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongArenaBenchmark - cost of a tick of a {@link PongArena} with a growing number of paddles.
+ *
+ * <p>
+ * Each side of the arena is split into the same number of parts, from 1 (four players) up to 
+ * 256 per side. In the first layout each part is a goal, in the second only the middle half of 
+ * each part is a goal with walls between the goals, and the third has these goals on the left 
+ * and right side only. All paddles follow a ball. The time of <code>tick()</code> is measured 
+ * for 1 and for 32 balls, with following and with resting paddles, and compared with testing 
+ * every ball against every paddle, which is what the collision would cost without the side 
+ * index.<br>
+ * The arena is checked as well: no ball leaves the arena except through a goal - also not 
+ * through the walls between the goals - and every goal is counted. Exits with 1 if not.<br>
+ * Usage: <code>java fko.pong_mvc.PongArenaBenchmark [ticks]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongArenaBenchmark {
+
+	private static final int[] GOALS_PER_SIDE = { 1, 4, 16, 64, 256 };
+	private static final int[] BALLS = { 1, 32 };
+
+	// goals cover the sides, goals with walls between, goals on the left and right side only
+	private static final String[] LAYOUTS = { "sides", "gaps", "two sides" };
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		final PongRules rules = PongRules.DEFAULT;
+		boolean correct = true;
+		for (int layout = 0; layout < LAYOUTS.length; layout++) {
+			for (int balls : BALLS) {
+				for (int perSide : GOALS_PER_SIDE) {
+					double tickNs = 0, idleNs = 0, naiveNs = 0;
+					int goals = 0, paddles = 0;
+					for (int run = 0; run < 3; run++) {
+						final PongArena arena = createArena(rules, layout, perSide, balls);
+						final long[] result = run(arena, ticks, true);
+						tickNs = (double) result[0] / ticks;
+						goals = (int) result[1];
+						correct &= result[2] == 0;
+						final PongArena resting = createArena(rules, layout, perSide, balls);
+						final long[] idle = run(resting, ticks, false);
+						idleNs = (double) idle[0] / ticks;
+						correct &= idle[2] == 0;
+						naiveNs = naive(arena, ticks / 10) * 10.0 / ticks;
+						paddles = arena.getGoalCount();
+					}
+					System.out.printf(Locale.US, "%-9s %2d balls %4d paddles: tick %7.1f ns, paddles not moving %7.1f ns, "
+							+ "all paddles tested %8.1f ns, %6d goals%n", 
+							LAYOUTS[layout], balls, paddles, tickNs, idleNs, naiveNs, goals);
+				}
+			}
+		}
+		System.out.println("arena " + (correct ? "correct" : "WRONG"));
+		if (!correct) System.exit(1);
+	}
+
+	/**
+	 * @param layout index into LAYOUTS
+	 * @param perSide number of parts of each side
+	 */
+	private static PongArena createArena(PongRules rules, int layout, int perSide, int balls) {
+		final PongArena arena = new PongArena(42, rules, balls);
+		for (int side = 0; side < 4; side++) {
+			if (layout == 2 && (side == PongArena.TOP || side == PongArena.BOTTOM)) continue;
+			final double length = arena.getSideLength(side) / perSide;
+			// the goal is the whole part or its middle half
+			final double wall = layout == 0 ? 0 : length / 4;
+			for (int i = 0; i < perSide; i++) {
+				// four teams - one per side
+				arena.addGoal(side, i * length + wall, (i + 1) * length - wall, side);
+			}
+		}
+		return arena;
+	}
+
+	/**
+	 * @param follow false to leave the paddles where they are
+	 * @return time of all ticks in ns, number of goals, number of errors
+	 */
+	private static long[] run(PongArena arena, int ticks, boolean follow) {
+		final int balls = arena.getBallCount();
+		final double r = arena.getRules().getBallSize();
+		final double width = arena.getRules().getPlayfieldWidth(), height = arena.getRules().getPlayfieldHeight();
+		long time = 0, goals = 0, errors = 0;
+		for (int t = 0; t < ticks; t++) {
+			// every paddle follows one of the balls
+			for (int g = 0; g < arena.getGoalCount(); g++) {
+				final int b = g % balls;
+				final int side = arena.getGoalSide(g);
+				final double along = side == PongArena.TOP || side == PongArena.BOTTOM 
+						? arena.getBallX(b) : arena.getBallY(b);
+				final double delta = along - arena.getPaddlePos(g);
+				arena.setInput(g, !follow ? 0 : delta > 4 ? 1 : delta < -4 ? -1 : 0);
+			}
+			final long start = System.nanoTime();
+			arena.tick();
+			time += System.nanoTime() - start;
+			if ((arena.getEvents() & PongArena.EVENT_GOAL) != 0) goals++;
+			for (int b = 0; b < balls; b++) {
+				final double x = arena.getBallX(b), y = arena.getBallY(b);
+				if (x < -2 * r || y < -2 * r || x > width + 2 * r || y > height + 2 * r) errors++;
+			}
+		}
+		long conceded = 0;
+		for (int g = 0; g < arena.getGoalCount(); g++) conceded += arena.getConceded(g);
+		long points = 0;
+		for (int p = 0; p < arena.getPlayerCount(); p++) points += arena.getPoints(p);
+		// several balls may score in the same tick 
+		if (conceded < goals || points > conceded) errors++;
+		return new long[] { time, goals, errors };
+	}
+
+	/**
+	 * Tests every ball against every paddle once per tick like a collision without index.
+	 * @return time in ns
+	 */
+	private static long naive(PongArena arena, int ticks) {
+		final PongRules rules = arena.getRules();
+		final double r = rules.getBallSize(), front = rules.getPaddleX() + rules.getPaddleWidth();
+		int hits = 0;
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			for (int b = 0; b < arena.getBallCount(); b++) {
+				final double x = arena.getBallX(b), y = arena.getBallY(b);
+				for (int g = 0; g < arena.getGoalCount(); g++) {
+					final int side = arena.getGoalSide(g);
+					final boolean horizontal = side == PongArena.TOP || side == PongArena.BOTTOM;
+					final double along = horizontal ? x : y;
+					final double distance = side == PongArena.TOP ? y : side == PongArena.BOTTOM 
+							? rules.getPlayfieldHeight() - y : side == PongArena.LEFT ? x : rules.getPlayfieldWidth() - x;
+					final double half = arena.getPaddleLength(g) / 2;
+					if (distance - r <= front && Math.abs(along - arena.getPaddlePos(g)) < half + r) hits++;
+				}
+			}
+		}
+		final long time = System.nanoTime() - start;
+		if (hits < 0) System.out.println(hits);
+		return time;
+	}
+
+}
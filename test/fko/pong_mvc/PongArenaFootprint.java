@@ -0,0 +1,177 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+
+/**
+ * PongArenaFootprint - compares the memory and garbage collection costs of many matches held as
+ * JavaFX properties like in {@link PongModel}, as {@link PongMatch} objects and in a 
+ * {@link PongMatchArena}.
+ *
+ * <p>
+ * For each variant the matches are created and played for a few ticks, then the heap used per 
+ * match and the average time of a full collection (System.gc()) with all matches alive are
+ * measured. The properties variant only holds the state properties and players of a PongModel -
+ * a real PongModel adds two Timelines and a PongSounds with its threads on top.<br>
+ * Usage: <code>java fko.pong_mvc.PongArenaFootprint [matches] [ticks]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongArenaFootprint {
+
+	private static final int GC_RUNS = 5;
+
+	public static void main(String[] args) {
+		final int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+		System.out.printf("%d matches, %d ticks%n", matches, ticks);
+		System.out.printf("%-12s %14s %18s %12s %10s%n", "variant", "heap B/match", "off-heap B/match", 
+				"full GC ms", "ns/tick");
+
+		final long baseline = usedHeap();
+		{
+			long start = System.nanoTime();
+			final PropertyMatch[] all = new PropertyMatch[matches];
+			for (int i = 0; i < matches; i++) all[i] = new PropertyMatch(i);
+			for (int t = 0; t < ticks; t++) {
+				for (int i = 0; i < matches; i++) all[i].tick();
+			}
+			final long time = System.nanoTime() - start;
+			report("properties", all, baseline, 0, time, matches, ticks);
+		}
+		{
+			long start = System.nanoTime();
+			final PongMatch[] all = new PongMatch[matches];
+			for (int i = 0; i < matches; i++) all[i] = new PongMatch(i);
+			for (int t = 0; t < ticks; t++) {
+				for (int i = 0; i < matches; i++) all[i].tick();
+			}
+			final long time = System.nanoTime() - start;
+			report("objects", all, baseline, 0, time, matches, ticks);
+		}
+		{
+			long start = System.nanoTime();
+			final PongMatchArena arena = new PongMatchArena(matches);
+			for (int i = 0; i < matches; i++) arena.allocate(i);
+			// free and allocate again so the free-list is used
+			for (int i = 0; i < matches; i += 7) arena.free(i);
+			for (int i = 0; i < matches; i += 7) arena.allocate(i);
+			for (int t = 0; t < ticks; t++) {
+				for (int i = 0; i < matches; i++) arena.tick(i, 0, 0);
+			}
+			final long time = System.nanoTime() - start;
+			report("arena", arena, baseline, arena.getMemoryBytes(), time, matches, ticks);
+		}
+	}
+
+	private static void report(String name, Object alive, long baseline, long offHeap, long time, 
+			int matches, int ticks) {
+		final long heap = usedHeap() - baseline;
+		final long gcTime = collectionTime();
+		for (int i = 0; i < GC_RUNS; i++) System.gc();
+		final double gc = (double) (collectionTime() - gcTime) / GC_RUNS;
+		System.out.printf(Locale.US, "%-12s %14.0f %18.0f %12.1f %10.1f%n", name, (double) heap / matches, 
+				(double) offHeap / matches, gc, (double) time / matches / ticks);
+		// keep the matches alive until here
+		if (alive.hashCode() == 42) System.out.print("");
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) System.gc();
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long collectionTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += bean.getCollectionTime();
+		}
+		return time;
+	}
+
+	/**
+	 * The state of a match as PongModel holds it - without Timelines and sounds.
+	 */
+	private static class PropertyMatch {
+		final DoubleProperty playfieldWidth = new SimpleDoubleProperty(PongModel.INITIAL_PLAYFIELD_WIDTH);
+		final DoubleProperty playfieldHeight = new SimpleDoubleProperty(PongModel.INITIAL_PLAYFIELD_HEIGHT);
+		final DoubleProperty speedX = new SimpleDoubleProperty(PongModel.BALL_MOVE_INCREMENTS);
+		final DoubleProperty speedY = new SimpleDoubleProperty(PongModel.BALL_MOVE_INCREMENTS);
+		final DoubleProperty ballCenterX = new SimpleDoubleProperty();
+		final DoubleProperty ballCenterY = new SimpleDoubleProperty();
+		final DoubleProperty ballSize = new SimpleDoubleProperty(PongModel.INITIAL_BALL_SIZE);
+		final DoubleProperty leftPaddleLength = new SimpleDoubleProperty(PongModel.INITIAL_PADDLE_LENGTH);
+		final DoubleProperty leftPaddleX = new SimpleDoubleProperty();
+		final DoubleProperty leftPaddleY = new SimpleDoubleProperty();
+		final DoubleProperty rightPaddleLength = new SimpleDoubleProperty(PongModel.INITIAL_PADDLE_LENGTH);
+		final DoubleProperty rightPaddleX = new SimpleDoubleProperty();
+		final DoubleProperty rightPaddleY = new SimpleDoubleProperty();
+		final BooleanProperty leftPaddleUp = new SimpleBooleanProperty(false);
+		final BooleanProperty leftPaddleDown = new SimpleBooleanProperty(false);
+		final BooleanProperty rightPaddleUp = new SimpleBooleanProperty(false);
+		final BooleanProperty rightPaddleDown = new SimpleBooleanProperty(false);
+		final BooleanProperty gamePaused = new SimpleBooleanProperty(false);
+		final BooleanProperty gameRunning = new SimpleBooleanProperty(true);
+		final BooleanProperty soundOnOption = new SimpleBooleanProperty(false);
+		final BooleanProperty anglePaddleOption = new SimpleBooleanProperty(true);
+		final BooleanProperty recordOption = new SimpleBooleanProperty(false);
+		final BooleanProperty powerUpOption = new SimpleBooleanProperty(false);
+		final BooleanProperty replayOption = new SimpleBooleanProperty(false);
+		final BooleanProperty slowMotionOption = new SimpleBooleanProperty(false);
+		final Player playerLeft = new Player("Left");
+		final Player playerRight = new Player("Right");
+		final PongRandom random;
+
+		PropertyMatch(long seed) {
+			random = new PongRandom(seed);
+			rightPaddleX.bind(playfieldWidth.subtract(PongModel.INITIAL_PADDLE_X)
+					.subtract(PongModel.INITIAL_PADDLE_WIDTH));
+			ballCenterX.set(playfieldWidth.get() / 2);
+			ballCenterY.set(random.nextDouble() * playfieldHeight.get());
+		}
+
+		void tick() {
+			ballCenterX.set(ballCenterX.get() + speedX.get());
+			ballCenterY.set(ballCenterY.get() + speedY.get());
+			if (ballCenterY.get() < ballSize.get() || ballCenterY.get() > playfieldHeight.get() - ballSize.get()) {
+				speedY.set(-speedY.get());
+			}
+			if (ballCenterX.get() < 0 || ballCenterX.get() > playfieldWidth.get()) {
+				speedX.set(-speedX.get());
+				playerLeft.points.set(playerLeft.points.get() + 1);
+			}
+		}
+	}
+
+}
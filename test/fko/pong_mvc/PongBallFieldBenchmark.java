@@ -0,0 +1,78 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongBallFieldBenchmark - compares the grid broadphase of {@link PongBallField} with testing all
+ * pairs of balls.
+ *
+ * <p>
+ * The field grows with the number of balls so the density of balls stays the same. The naive 
+ * version is only measured up to a size where it finishes in reasonable time.<br>
+ * Usage: <code>java fko.pong_mvc.PongBallFieldBenchmark [ticks]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongBallFieldBenchmark {
+
+	private static final double RADIUS = 2.0;
+	private static final double SPEED = 2.0;
+	// area per ball - about 3% of the field is covered by balls
+	private static final double AREA_PER_BALL = 400.0;
+	private static final int NAIVE_LIMIT = 10_000;
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		final int[] sizes = { 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000 };
+
+		// warm up
+		measure(2_000, ticks, false);
+		measure(2_000, ticks, true);
+
+		System.out.printf("%8s %14s %14s %8s%n", "balls", "grid ms/tick", "naive ms/tick", "speedup");
+		for (int n : sizes) {
+			final double grid = measure(n, ticks, false);
+			final double naive = n <= NAIVE_LIMIT ? measure(n, Math.max(1, ticks / 10), true) : Double.NaN;
+			System.out.printf(Locale.US, "%8d %14.3f %14.3f %8.1f%n", n, grid, naive, naive / grid);
+		}
+	}
+
+	/**
+	 * @return milliseconds per tick
+	 */
+	private static double measure(int n, int ticks, boolean naive) {
+		final double side = Math.sqrt(n * AREA_PER_BALL);
+		final PongBallField field = new PongBallField(side * 1.5, side / 1.5, n, RADIUS);
+		field.addRandomBalls(n, SPEED, RADIUS, new PongRandom(42));
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			if (naive) field.stepNaive();
+			else field.step();
+		}
+		return (System.nanoTime() - start) / 1e6 / ticks;
+	}
+
+}
@@ -0,0 +1,156 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * PongCheckpointCrash - kills a game server process and resumes its matches from the
+ * {@link PongCheckpoint}.
+ *
+ * <p>
+ * A child process plays many matches in a {@link PongMatchArena} as fast as it can and checkpoints
+ * them every tick. The inputs of the players only depend on the slot and the tick so every match 
+ * can be played again. After a while the child is killed. The matches are restored from the file
+ * and each restored match is compared with the same match played from the start to the restored
+ * tick. Then all matches are resumed for a few ticks.<br>
+ * Usage: <code>java fko.pong_mvc.PongCheckpointCrash [matches] [ticks before the kill]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongCheckpointCrash {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("server")) {
+			server(Paths.get(args[1]), Integer.parseInt(args[2]));
+			return;
+		}
+		final int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		final int killTick = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		final Path path = Files.createTempFile("pong-checkpoint", ".bin");
+
+		// start the server and kill it after the given number of ticks
+		final Process server = new ProcessBuilder(
+				Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+				"-cp", System.getProperty("java.class.path"), PongCheckpointCrash.class.getName(),
+				"server", path.toString(), Integer.toString(matches))
+				.redirectErrorStream(true).start();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				System.out.println("server: " + line);
+				if (line.startsWith("tick " + killTick + " ")) break;
+			}
+		}
+		server.destroyForcibly().waitFor();
+		System.out.println("server killed");
+
+		// restore
+		long start = System.nanoTime();
+		final PongMatchArena arena = PongCheckpoint.restore(path);
+		final long restore = System.nanoTime() - start;
+		System.out.printf(Locale.US, "restored %d matches in %.1f ms%n", arena.getSize(), restore / 1e6);
+
+		// compare every 97th match with the match played again
+		final ByteBuffer expected = ByteBuffer.allocate(PongMatch.STATE_BYTES);
+		final ByteBuffer actual = ByteBuffer.allocate(PongMatch.STATE_BYTES);
+		long minTick = Long.MAX_VALUE;
+		long maxTick = 0;
+		int compared = 0;
+		boolean correct = arena.getSize() == matches;
+		for (int slot = 0; slot < arena.getTop(); slot++) {
+			final PongMatch restored = arena.load(slot);
+			minTick = Math.min(minTick, restored.getTick());
+			maxTick = Math.max(maxTick, restored.getTick());
+			if (slot % 97 != 0) continue;
+			restored.saveState(actual, 0);
+			final PongMatch match = new PongMatch(seed(slot));
+			for (int t = 0; t < restored.getTick(); t++) {
+				match.setLeftInput(leftInput(slot, t));
+				match.setRightInput(rightInput(slot, t));
+				match.tick();
+			}
+			match.saveState(expected, 0);
+			correct &= expected.equals(actual);
+			compared++;
+		}
+		System.out.printf("restored ticks %d to %d, %d matches compared: %s%n", minTick, maxTick, compared,
+				correct ? "correct" : "WRONG");
+
+		// resume
+		start = System.nanoTime();
+		for (int t = 0; t < 60; t++) {
+			for (int slot = 0; slot < arena.getTop(); slot++) {
+				final long tick = arena.load(slot).getTick();
+				arena.tick(slot, leftInput(slot, tick), rightInput(slot, tick));
+			}
+		}
+		System.out.printf(Locale.US, "resumed all matches for 60 ticks in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+		Files.deleteIfExists(path);
+		if (!correct) System.exit(1);
+	}
+
+	/**
+	 * The game server - plays all matches and checkpoints them until it is killed.
+	 */
+	private static void server(Path path, int matches) throws Exception {
+		final PongMatchArena arena = new PongMatchArena(matches);
+		for (int slot = 0; slot < matches; slot++) arena.allocate(seed(slot));
+		// a round through all slots each second at 60 ticks per second
+		final PongCheckpoint checkpoint = new PongCheckpoint(path, arena, Math.max(1, matches / 60));
+		long tickNanos = 0;
+		for (long tick = 0; ; tick++) {
+			final long start = System.nanoTime();
+			for (int slot = 0; slot < matches; slot++) {
+				arena.tick(slot, leftInput(slot, tick), rightInput(slot, tick));
+			}
+			tickNanos += System.nanoTime() - start;
+			checkpoint.step();
+			if ((tick + 1) % 60 == 0) {
+				System.out.printf(Locale.US, "tick %d matches %.2f ms/tick, checkpoint %.3f ms/tick (max %.3f ms), round %d%n",
+						tick + 1, tickNanos / 1e6 / (tick + 1), checkpoint.getStepNanos() / 1e6 / checkpoint.getSteps(),
+						checkpoint.getMaxStepNanos() / 1e6, checkpoint.getRound());
+			}
+		}
+	}
+
+	private static long seed(int slot) {
+		return slot * 7919L + 1;
+	}
+
+	private static int leftInput(int slot, long tick) {
+		return (int) ((slot + tick / 20) % 3) - 1;
+	}
+
+	private static int rightInput(int slot, long tick) {
+		return (int) ((slot * 5 + tick / 30) % 3) - 1;
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * PongDirtyRectBenchmark - compares the {@link PongDirtyRenderer} with a renderer clearing, 
+ * drawing and uploading the whole frame.
+ *
+ * <p>
+ * Ball and paddles are driven by a headless {@link PongMatch} of two AI players and scaled to the
+ * screen size. A short trail of particles follows the ball. The upload to the graphics card is 
+ * simulated by copying the uploaded rectangles into a texture array. Every 10 frames the 
+ * texture of the dirty renderer is compared with the one of the full renderer.<br>
+ * Usage: <code>java fko.pong_mvc.PongDirtyRectBenchmark [frames]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongDirtyRectBenchmark {
+
+	private static final int[][] SCREENS = { { 600, 400 }, { 1920, 1080 }, { 3840, 2160 } };
+	private static final int TRAIL = 8;
+	private static final int WHITE = 0xFFFFFFFF;
+
+	public static void main(String[] args) {
+		final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+		for (int[] screen : SCREENS) {
+			final int width = screen[0], height = screen[1];
+			final PongDirtyRenderer full = new PongDirtyRenderer(width, height);
+			full.setFullRedraw(true);
+			final PongDirtyRenderer dirty = new PongDirtyRenderer(width, height);
+			final int[] fullTexture = new int[width * height];
+			final int[] dirtyTexture = new int[width * height];
+			long fullTime = 0, dirtyTime = 0;
+			for (int run = 0; run < 3; run++) {
+				// same match for both - warm up twice
+				fullTime = run(full, fullTexture, frames, null, null);
+				dirtyTime = run(dirty, dirtyTexture, frames, null, null);
+			}
+			final boolean correct = run(new PongDirtyRenderer(width, height), new int[width * height], frames / 10,
+					new PongDirtyRenderer(width, height), new int[width * height]) == 0;
+			final double fullNs = (double) fullTime / frames, dirtyNs = (double) dirtyTime / frames;
+			System.out.printf(Locale.US, "%dx%d: full %.0f px %.1f us, dirty %.0f px %.1f us per frame "
+					+ "(%.1f%% of the pixels, %.1fx faster)%n",
+					width, height, (double) full.getUploadedPixels() / (3 * frames), fullNs / 1e3,
+					(double) dirty.getUploadedPixels() / (3 * frames), dirtyNs / 1e3,
+					100.0 * dirty.getUploadedPixels() / full.getUploadedPixels(), fullNs / dirtyNs);
+			for (int hz : new int[] { 144, 240 }) {
+				final double budget = 1e9 / hz;
+				System.out.printf(Locale.US, "    %d Hz: full %.1f%%, dirty %.2f%% of the frame budget%n",
+						hz, 100 * fullNs / budget, 100 * dirtyNs / budget);
+			}
+			System.out.println("    textures " + (correct ? "identical" : "DIFFERENT"));
+		}
+	}
+
+	/**
+	 * Plays frames with the renderer. If a second renderer is given it runs the same frames with
+	 * full redraws and the textures are compared every 10 frames.
+	 * @return time in ns or number of differing frames when comparing
+	 */
+	private static long run(PongDirtyRenderer renderer, int[] texture, int frames, 
+			PongDirtyRenderer reference, int[] referenceTexture) {
+		final int width = renderer.getWidth();
+		final int height = renderer.getHeight();
+		final double sx = width / PongModel.INITIAL_PLAYFIELD_WIDTH;
+		final double sy = height / PongModel.INITIAL_PLAYFIELD_HEIGHT;
+		final PongMatch match = new PongMatch(42);
+		final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer right = new PongAIPlayer("Right", -0.2, false, 40.0);
+		final double[] trailX = new double[TRAIL], trailY = new double[TRAIL];
+		if (reference != null) reference.setFullRedraw(true);
+		long differences = 0;
+		final long start = System.nanoTime();
+		for (int f = 0; f < frames; f++) {
+			match.setLeftInput(left.decide(match, true));
+			match.setRightInput(right.decide(match, false));
+			match.tick();
+			trailX[f % TRAIL] = match.getBallCenterX() * sx;
+			trailY[f % TRAIL] = match.getBallCenterY() * sy;
+			frame(renderer, texture, match, sx, sy, trailX, trailY);
+			if (reference != null) {
+				frame(reference, referenceTexture, match, sx, sy, trailX, trailY);
+				if (f % 10 == 0 && !Arrays.equals(texture, referenceTexture)) differences++;
+			}
+		}
+		return reference != null ? differences : System.nanoTime() - start;
+	}
+
+	private static void frame(PongDirtyRenderer renderer, int[] texture, PongMatch match, 
+			double sx, double sy, double[] trailX, double[] trailY) {
+		final int width = renderer.getWidth(), height = renderer.getHeight();
+		final double paddleWidth = PongModel.INITIAL_PADDLE_WIDTH * sx;
+		final double paddleLength = match.getPaddleLength() * sy;
+		renderer.beginFrame();
+		renderer.setCircle(PongDirtyRenderer.BALL, 
+				match.getBallCenterX() * sx, match.getBallCenterY() * sy, match.getBallSize() * sy, WHITE);
+		renderer.setRect(PongDirtyRenderer.LEFT_PADDLE, match.getLeftPaddleFront() * sx - paddleWidth,
+				match.getLeftPaddleY() * sy, paddleWidth, paddleLength, WHITE);
+		renderer.setRect(PongDirtyRenderer.RIGHT_PADDLE, match.getRightPaddleFront() * sx, 
+				match.getRightPaddleY() * sy, paddleWidth, paddleLength, WHITE);
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+		for (int i = 0; i < TRAIL; i++) {
+			x0 = Math.min(x0, trailX[i]);
+			y0 = Math.min(y0, trailY[i]);
+			x1 = Math.max(x1, trailX[i] + 2);
+			y1 = Math.max(y1, trailY[i] + 2);
+		}
+		renderer.setLayerBounds((int) x0, (int) y0, (int) Math.ceil(x1), (int) Math.ceil(y1));
+		final int[] pixels = renderer.prepare();
+		for (int i = 0; i < TRAIL; i++) {
+			final int px = (int) trailX[i], py = (int) trailY[i];
+			if (px < 0 || py < 0 || px >= width - 1 || py >= height - 1) continue;
+			final int offset = py * width + px;
+			final int argb = (0x20 * (i + 1) << 24) | 0xFFD040;
+			pixels[offset] = argb;
+			pixels[offset + 1] = argb;
+			pixels[offset + width] = argb;
+			pixels[offset + width + 1] = argb;
+		}
+		final int n = renderer.finish();
+		// upload
+		for (int i = 0; i < n; i++) {
+			final int x = renderer.getDirtyX(i), y = renderer.getDirtyY(i);
+			final int w = renderer.getDirtyWidth(i), h = renderer.getDirtyHeight(i);
+			for (int row = y; row < y + h; row++) {
+				System.arraycopy(pixels, row * width + x, texture, row * width + x, w);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongIntegrateBenchmark - compares the simple loop moving the balls of a {@link PongBallField} with
+ * the SIMD friendly loops and checks that both produce identical results.
+ *
+ * <p>
+ * Only the movement and the wall reflections are measured (no collisions between balls).<br>
+ * Usage: <code>java fko.pong_mvc.PongIntegrateBenchmark [ticks]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongIntegrateBenchmark {
+
+	private static final double RADIUS = 2.0;
+	private static final double SPEED = 2.0;
+	private static final double AREA_PER_BALL = 400.0;
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		final int[] sizes = { 1_000, 100_000, 1_000_000 };
+
+		// warm up both loops
+		for (int i = 0; i < 5; i++) {
+			measure(createField(100_000, false), ticks);
+			measure(createField(100_000, true), ticks);
+		}
+
+		System.out.printf("%9s %16s %16s %8s %10s%n", "balls", "scalar ns/ball", "vector ns/ball", "speedup", "identical");
+		for (int n : sizes) {
+			final int t = Math.max(10, (int) ((long) ticks * 100_000 / n));
+			final PongBallField scalar = createField(n, false);
+			final PongBallField vector = createField(n, true);
+			final double s = measure(scalar, t) / n;
+			final double v = measure(vector, t) / n;
+			System.out.printf(Locale.US, "%9d %16.3f %16.3f %8.2f %10s%n", n, s, v, s / v, identical(scalar, vector));
+		}
+	}
+
+	private static PongBallField createField(int n, boolean vectorized) {
+		final double side = Math.sqrt(n * AREA_PER_BALL);
+		final PongBallField field = new PongBallField(side * 1.5, side / 1.5, n, RADIUS);
+		field.addRandomBalls(n, SPEED, RADIUS, new PongRandom(42));
+		field.setVectorized(vectorized);
+		return field;
+	}
+
+	/**
+	 * @return nanoseconds per tick
+	 */
+	private static double measure(PongBallField field, int ticks) {
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			field.move();
+		}
+		return (double) (System.nanoTime() - start) / ticks;
+	}
+
+	private static boolean identical(PongBallField a, PongBallField b) {
+		if (a.getLeftGoals() != b.getLeftGoals() || a.getRightGoals() != b.getRightGoals()) return false;
+		for (int i = 0; i < a.getCount(); i++) {
+			if (a.getX(i) != b.getX(i) || a.getY(i) != b.getY(i) 
+					|| a.getVX(i) != b.getVX(i) || a.getVY(i) != b.getVY(i)) return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+
+/**
+ * PongPointerBenchmark - cost of mouse events per paddle tick for different mouse polling rates.
+ *
+ * <p>
+ * Direct: every event sets the paddle position property, which is bound to the paddle node 
+ * like in the playfield. Coalesced: every event only stores its sample in a {@link PongPointer},
+ * the property is set once per tick with the bounded step of the keyboard. The mouse sweeps 
+ * up and down the playfield. The largest movement of the paddle per tick is reported as well.<br>
+ * Usage: <code>java fko.pong_mvc.PongPointerBenchmark [ticks]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongPointerBenchmark {
+
+	private static final int[] POLLING_RATES = { 125, 1000, 8000 };
+	private static final double HEIGHT = PongModel.INITIAL_PLAYFIELD_HEIGHT;
+	private static final double LENGTH = PongModel.INITIAL_PADDLE_LENGTH;
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		for (int hz : POLLING_RATES) {
+			final int eventsPerTick = (int) (hz / PongModel.INITIAL_PADDLE_SPEED + 0.5);
+			double direct = 0, coalesced = 0;
+			double directMax = 0, coalescedMax = 0;
+			for (int run = 0; run < 3; run++) {
+				final double[] result = new double[2];
+				direct = run(ticks, eventsPerTick, false, result);
+				directMax = result[0];
+				coalesced = run(ticks, eventsPerTick, true, result);
+				coalescedMax = result[0];
+			}
+			System.out.printf(Locale.US, "%4d Hz (%3d events per tick): direct %7.1f ns, coalesced %6.1f ns per tick, "
+					+ "max paddle move %.1f / %.1f px per tick%n", 
+					hz, eventsPerTick, direct, coalesced, directMax, coalescedMax);
+		}
+	}
+
+	/**
+	 * @return ns per tick - result[0] is the largest movement of the paddle in a tick
+	 */
+	private static double run(int ticks, int eventsPerTick, boolean coalesce, double[] result) {
+		final DoubleProperty paddleY = new SimpleDoubleProperty(HEIGHT / 2 - LENGTH / 2);
+		// the node of the paddle
+		final DoubleProperty nodeY = new SimpleDoubleProperty();
+		nodeY.bind(paddleY);
+		final PongPointer pointer = new PongPointer();
+		pointer.capture(HEIGHT / 2);
+		// one second of samples sweeping the playfield twice
+		final double[] samples = new double[eventsPerTick * 60];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = HEIGHT / 2 + HEIGHT / 2 * Math.sin(i * 4 * Math.PI / samples.length);
+		}
+		double maxMove = 0;
+		int event = 0;
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			final double before = nodeY.get();
+			for (int e = 0; e < eventsPerTick; e++) {
+				final double y = samples[event];
+				if (++event == samples.length) event = 0;
+				if (coalesce) {
+					pointer.sample(y);
+				} else {
+					// same as setLeftPaddleY()
+					double top = y - LENGTH / 2;
+					if (top < 0) top = 0;
+					else if (top + LENGTH > HEIGHT) top = HEIGHT - LENGTH;
+					paddleY.set(top);
+					nodeY.get();
+				}
+			}
+			if (coalesce) paddleY.set(pointer.step(paddleY.get(), LENGTH, PongModel.PADDLE_MOVE_STEPS, HEIGHT));
+			maxMove = Math.max(maxMove, Math.abs(nodeY.get() - before));
+		}
+		final long time = System.nanoTime() - start;
+		result[0] = maxMove;
+		return (double) time / ticks;
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongReplayBenchmark - measures the cost of recording a tick into a {@link PongReplay} compared 
+ * to the tick of a headless {@link PongMatch} and to the frame budget.
+ *
+ * <p>
+ * A match of two AI players is played with and without recording every tick. After each goal the
+ * rally is played back in slow motion and compared with the positions of the match.<br>
+ * Usage: <code>java fko.pong_mvc.PongReplayBenchmark [ticks] [seconds kept]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongReplayBenchmark {
+
+	private static final double FRAME_NS = 1e9 / PongModel.INITIAL_BALL_SPEED;
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		final double seconds = args.length > 1 ? Double.parseDouble(args[1]) : PongReplay.DEFAULT_SECONDS;
+
+		final PongReplay replay = new PongReplay(seconds, PongModel.INITIAL_BALL_SPEED);
+		System.out.printf(Locale.US, "%.1f seconds kept: %d ticks, %d bytes%n", 
+				seconds, replay.getCapacity(), replay.getMemoryBytes());
+
+		for (int run = 0; run < 3; run++) {
+			final long plain = play(ticks, null);
+			final long recording = play(ticks, replay);
+			final long record = recordOnly(ticks, replay);
+			if (run == 2) {
+				System.out.printf(Locale.US, "match tick %.1f ns, with recording %.1f ns, record alone %.2f ns "
+						+ "(%.6f%% of a %.1f ms tick)%n", 
+						(double) plain / ticks, (double) recording / ticks, (double) record / ticks, 
+						100.0 * record / ticks / FRAME_NS, FRAME_NS / 1e6);
+			}
+		}
+		System.out.println("playback " + (checkPlayback(replay) ? "correct" : "WRONG"));
+	}
+
+	private static long play(int ticks, PongReplay replay) {
+		final PongMatch match = new PongMatch(42);
+		final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer right = new PongAIPlayer("Right", -0.2, false, 40.0);
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			match.setLeftInput(left.decide(match, true));
+			match.setRightInput(right.decide(match, false));
+			match.tick();
+			if (replay != null) {
+				replay.record(match.getBallCenterX(), match.getBallCenterY(), 
+						match.getLeftPaddleY(), match.getRightPaddleY());
+			}
+		}
+		final long time = System.nanoTime() - start;
+		// keep the match alive
+		if (match.getTick() != ticks) throw new IllegalStateException();
+		return time;
+	}
+
+	private static long recordOnly(int ticks, PongReplay replay) {
+		final long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			replay.record(t & 511, t & 255, t & 127, t & 63);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Plays rallies and compares each recorded tick played back at full speed and the ticks of 
+	 * a slow motion playback with the match.
+	 */
+	private static boolean checkPlayback(PongReplay replay) {
+		final PongMatch match = new PongMatch(7);
+		final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer right = new PongAIPlayer("Right", -0.2, false, 40.0);
+		final double[] positions = new double[replay.getCapacity() * 4];
+		final PongState state = new PongState();
+		replay.clear();
+		replay.startRally();
+		int goals = 0;
+		long rallyTicks = 0;
+		while (goals < 20) {
+			match.setLeftInput(left.decide(match, true));
+			match.setRightInput(right.decide(match, false));
+			match.tick();
+			// the match serves in the same tick - record the ball where it left the field
+			double ballX = match.getBallCenterX();
+			double ballY = match.getBallCenterY();
+			final boolean goal = (match.getEvents() & (PongMatch.EVENT_GOAL_LEFT | PongMatch.EVENT_GOAL_RIGHT)) != 0;
+			if (goal) ballX = (match.getEvents() & PongMatch.EVENT_GOAL_LEFT) != 0 ? 1000 : -1000;
+			replay.record(ballX, ballY, match.getLeftPaddleY(), match.getRightPaddleY());
+			final int i = (int) (rallyTicks++ % replay.getCapacity()) * 4;
+			positions[i] = ballX;
+			positions[i + 1] = ballY;
+			positions[i + 2] = match.getLeftPaddleY();
+			positions[i + 3] = match.getRightPaddleY();
+			if (!goal) continue;
+			goals++;
+
+			// full speed - every tick as recorded (within 1/32 pixel)
+			if (!replay.startPlayback()) return false;
+			final long first = rallyTicks - replay.getPlaybackLength();
+			for (long t = first; t < rallyTicks; t++) {
+				if (!replay.next(1.0, state)) return false;
+				final int j = (int) (t % replay.getCapacity()) * 4;
+				if (Math.abs(state.ballX - positions[j]) > 1.0 / 64 || Math.abs(state.ballY - positions[j + 1]) > 1.0 / 64
+						|| Math.abs(state.leftPaddleY - positions[j + 2]) > 1.0 / 64
+						|| Math.abs(state.rightPaddleY - positions[j + 3]) > 1.0 / 64) return false;
+			}
+			if (replay.next(1.0, state)) return false;
+
+			// slow motion - 1/step frames per tick
+			replay.startPlayback();
+			long frames = 0;
+			while (replay.next(PongModel.REPLAY_SLOW_MOTION, state)) frames++;
+			if (Math.abs(frames - (replay.getPlaybackLength() - 1) / PongModel.REPLAY_SLOW_MOTION) > 2) return false;
+
+			replay.startRally();
+			rallyTicks = 0;
+		}
+		return true;
+	}
+
+}
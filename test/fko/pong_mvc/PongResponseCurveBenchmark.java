@@ -0,0 +1,103 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+
+/**
+ * PongResponseCurveBenchmark - accuracy and speed of the {@link PongResponseCurve} tables compared
+ * to computing the direction with <code>toRadians()</code>, <code>sin()</code> and <code>cos()</code>
+ * on each paddle hit.
+ *
+ * <p>
+ * For each kind of curve the largest difference between the interpolated and the exact direction
+ * is printed. Then a million balls with random hit positions and speeds are bounced off a paddle
+ * like in <code>PongSystems</code>, once with trigonometry and once with the linear curve.<br>
+ * Usage: <code>java fko.pong_mvc.PongResponseCurveBenchmark [balls]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongResponseCurveBenchmark {
+
+	private static final String[] CURVES = {
+			"linear", "eased 2", "piecewise -1:-70 -0.2:-10 0.2:10 1:70", "table -63.4 -56.3 -45 -26.6 0 26.6 45 56.3 63.4"
+	};
+
+	public static void main(String[] args) {
+		final int balls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		final PongRandom random = new PongRandom(42);
+
+		for (String spec : CURVES) {
+			final PongResponseCurve curve = PongResponseCurve.parse(spec, PongModel.MAX_ANGLE_DEGREE);
+			double maxError = 0;
+			for (int i = 0; i < 1_000_000; i++) {
+				final double hitPos = (random.nextDouble() * 2 - 1) * PongResponseCurve.HIT_RANGE;
+				final double radians = Math.toRadians(curve.getAngle(hitPos));
+				maxError = Math.max(maxError, Math.abs(curve.getX(hitPos) - Math.abs(Math.cos(radians))));
+				maxError = Math.max(maxError, Math.abs(curve.getY(hitPos) - Math.sin(radians)));
+			}
+			System.out.printf(Locale.US, "%-48s max error %.2e%n", spec, maxError);
+		}
+
+		final double[] hitPos = new double[balls];
+		final double[] vx = new double[balls], vy = new double[balls];
+		for (int i = 0; i < balls; i++) {
+			hitPos[i] = (random.nextDouble() * 2 - 1) * 1.15;
+			vx[i] = 1 + random.nextDouble() * 3;
+			vy[i] = random.nextDouble() * 4 - 2;
+		}
+		final PongResponseCurve linear = PongRules.DEFAULT.getResponseCurve();
+		double trig = 0, table = 0;
+		for (int run = 0; run < 10; run++) {
+			long start = System.nanoTime();
+			bounceTrig(hitPos, vx, vy);
+			trig = (double) (System.nanoTime() - start) / balls;
+			start = System.nanoTime();
+			bounceTable(linear, hitPos, vx, vy);
+			table = (double) (System.nanoTime() - start) / balls;
+		}
+		double check = 0;
+		for (int i = 0; i < balls; i++) check += vx[i] + vy[i];
+		System.out.printf(Locale.US, "%d balls bounced: trigonometry %.1f ns, table %.1f ns per ball (%.1fx) [%.1f]%n", 
+				balls, trig, table, trig / table, check);
+	}
+
+	private static void bounceTrig(double[] hitPos, double[] vx, double[] vy) {
+		for (int i = 0; i < hitPos.length; i++) {
+			final double angle = Math.toRadians(PongModel.MAX_ANGLE_DEGREE * hitPos[i]);
+			final double speed = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+			vx[i] = -Math.signum(vx[i]) * Math.abs(speed * Math.cos(angle));
+			vy[i] = speed * Math.sin(angle);
+		}
+	}
+
+	private static void bounceTable(PongResponseCurve curve, double[] hitPos, double[] vx, double[] vy) {
+		for (int i = 0; i < hitPos.length; i++) {
+			final double speed = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+			vx[i] = -Math.signum(vx[i]) * speed * curve.getX(hitPos[i]);
+			vy[i] = speed * curve.getY(hitPos[i]);
+		}
+	}
+
+}
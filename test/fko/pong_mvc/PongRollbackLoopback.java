@@ -0,0 +1,163 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * PongRollbackLoopback - plays a match between two {@link PongRollback} peers in one process 
+ * over a simulated network with latency and jitter.
+ *
+ * <p>
+ * Both peers run at 60 ticks per second of virtual time. Each AI player decides on its own 
+ * (predicted) match and the input is delivered to the other peer after the latency plus a random 
+ * jitter, so inputs arrive late and out of order. A peer which is too far ahead waits a frame.
+ * At the end all inputs are delivered and both peers must have exactly the same state as a 
+ * reference match played with the real inputs. Without a latency given a low and a high jitter
+ * are played - the high jitter delivers many inputs too early for the input ring. Exits with 1 
+ * if a peer differs.<br>
+ * Usage: <code>java fko.pong_mvc.PongRollbackLoopback [ticks] [latency ms] [jitter ms]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongRollbackLoopback {
+
+	private static final double FRAME_MS = 1000.0 / 60;
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 36000;
+		boolean ok;
+		if (args.length > 1) {
+			ok = play(ticks, Double.parseDouble(args[1]), args.length > 2 ? Double.parseDouble(args[2]) : 30);
+		} else {
+			ok = play(ticks, 50, 30);
+			ok &= play(ticks, 100, 400);
+		}
+		if (!ok) System.exit(1);
+	}
+
+	/**
+	 * @return true if both peers ended with the state of the reference match
+	 */
+	private static boolean play(int ticks, double latency, double jitter) {
+		final long seed = 42;
+		final PongRollback left = new PongRollback(seed, true);
+		final PongRollback right = new PongRollback(seed, false);
+		final PongAIPlayer leftAI = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer rightAI = new PongAIPlayer("Right", -0.2, false, 40.0);
+		// angled paddles so rallies end in goals and the serves use the random generator
+		left.getMatch().setAnglePaddle(true);
+		right.getMatch().setAnglePaddle(true);
+
+		// the real inputs of both players
+		final int[] leftInputs = new int[ticks];
+		final int[] rightInputs = new int[ticks];
+		// messages in flight - tick and arrival time for each direction
+		final Random random = new Random(seed);
+		final double[] toRight = new double[ticks];
+		final double[] toLeft = new double[ticks];
+
+		double now = 0;
+		long stalls = 0;
+		while (left.getTick() < ticks || right.getTick() < ticks) {
+			deliver(right, leftInputs, toRight, left.getTick(), now);
+			deliver(left, rightInputs, toLeft, right.getTick(), now);
+			if (left.getTick() < ticks) {
+				if (left.canAdvance()) {
+					left.resolve();
+					final int input = leftAI.decide(left.getMatch(), true);
+					final int t = (int) left.advance(input);
+					leftInputs[t] = input;
+					toRight[t] = now + latency + random.nextDouble() * jitter;
+				} else stalls++;
+			}
+			if (right.getTick() < ticks) {
+				if (right.canAdvance()) {
+					right.resolve();
+					final int input = rightAI.decide(right.getMatch(), false);
+					final int t = (int) right.advance(input);
+					rightInputs[t] = input;
+					toLeft[t] = now + latency + random.nextDouble() * jitter;
+				} else stalls++;
+			}
+			now += FRAME_MS;
+		}
+		// inputs dropped as too early are sent again until all are confirmed
+		while (left.getConfirmedTick() < ticks || right.getConfirmedTick() < ticks) {
+			deliver(right, leftInputs, toRight, ticks, Double.MAX_VALUE);
+			deliver(left, rightInputs, toLeft, ticks, Double.MAX_VALUE);
+			left.resolve();
+			right.resolve();
+		}
+
+		// reference match with the real inputs
+		final PongMatch reference = new PongMatch(seed);
+		reference.setAnglePaddle(true);
+		for (int t = 0; t < ticks; t++) {
+			reference.setLeftInput(leftInputs[t]);
+			reference.setRightInput(rightInputs[t]);
+			reference.tick();
+		}
+		final boolean leftOk = sameState(reference, left.getMatch());
+		final boolean rightOk = sameState(reference, right.getMatch());
+
+		System.out.printf(Locale.US, "%d ticks, latency %.0f ms, jitter %.0f ms, %d stalled frames%n",
+				ticks, latency, jitter, stalls);
+		System.out.printf(Locale.US, "score %d:%d, left peer %s, right peer %s%n",
+				reference.getLeftPoints(), reference.getRightPoints(),
+				leftOk ? "identical" : "DIFFERENT", rightOk ? "identical" : "DIFFERENT");
+		report("left ", left);
+		report("right", right);
+		return leftOk && rightOk;
+	}
+
+	/**
+	 * Delivers all inputs sent before <code>sent</code> which have arrived at <code>now</code>.
+	 */
+	private static void deliver(PongRollback peer, int[] inputs, double[] arrival, long sent, double now) {
+		for (long t = peer.getConfirmedTick(); t < sent; t++) {
+			if (arrival[(int) t] <= now) peer.receive(t, inputs[(int) t]);
+		}
+	}
+
+	private static boolean sameState(PongMatch a, PongMatch b) {
+		final ByteBuffer bufferA = ByteBuffer.allocate(PongMatch.STATE_BYTES);
+		final ByteBuffer bufferB = ByteBuffer.allocate(PongMatch.STATE_BYTES);
+		a.saveState(bufferA, 0);
+		b.saveState(bufferB, 0);
+		return bufferA.equals(bufferB);
+	}
+
+	private static void report(String name, PongRollback peer) {
+		final long n = Math.max(1, peer.getRollbacks());
+		System.out.printf(Locale.US,
+				"%s: %d rollbacks, %.1f ticks avg, %d ticks max, %.1f us avg, %.1f us max (%.2f%% of a frame)%n",
+				name, peer.getRollbacks(), (double) peer.getResimulatedTicks() / n,
+				peer.getMaxResimulatedTicks(), peer.getRollbackNanos() / 1e3 / n,
+				peer.getMaxRollbackNanos() / 1e3, peer.getMaxRollbackNanos() / 1e4 / FRAME_MS);
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PongRulesSweep - plays headless matches of two AI players over a grid of rules and shows how
+ * the hot reload of a rules file reaches a running match.
+ *
+ * <p>
+ * Sweep: for each acceleration and maximal angle the same match is played with rules derived by
+ * <code>with()</code> and the average length of a rally in seconds is printed.<br>
+ * Hot reload: a match runs on its own thread and takes new rules from the watcher between two
+ * ticks. The rules file is changed and the time until the match plays with the new rules is 
+ * printed.<br>
+ * Usage: <code>java fko.pong_mvc.PongRulesSweep [ticks per match]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongRulesSweep {
+
+	private static final double[] ACCELERATIONS = { 1.0, 1.05, 1.1, 1.2 };
+	private static final double[] MAX_ANGLES = { 30, 45, 60, 75 };
+
+	public static void main(String[] args) throws Exception {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		sweep(ticks);
+		hotReload();
+	}
+
+	private static void sweep(int ticks) {
+		System.out.printf(Locale.US, "seconds per goal, %d ticks per match%naccel. ", ticks);
+		for (double angle : MAX_ANGLES) System.out.printf(Locale.US, "%7.0f deg", angle);
+		System.out.println();
+		final long start = System.nanoTime();
+		for (double acceleration : ACCELERATIONS) {
+			System.out.printf(Locale.US, "%5.2f ", acceleration);
+			for (double angle : MAX_ANGLES) {
+				final PongRules rules = PongRules.DEFAULT
+						.with("acceleration", acceleration).with("max_angle_degree", angle);
+				final PongMatch match = new PongMatch(42, rules);
+				final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+				final PongAIPlayer right = new PongAIPlayer("Right", -0.2, false, 40.0);
+				double seconds = 0;
+				for (int t = 0; t < ticks; t++) {
+					match.setLeftInput(left.decide(match, true));
+					match.setRightInput(right.decide(match, false));
+					match.tick();
+					seconds += match.getTickDuration();
+				}
+				final int goals = match.getLeftPoints() + match.getRightPoints();
+				System.out.printf(Locale.US, "%11.1f", goals == 0 ? Double.NaN : seconds / goals);
+			}
+			System.out.println();
+		}
+		System.out.printf(Locale.US, "%d matches in %.2f s%n", 
+				ACCELERATIONS.length * MAX_ANGLES.length, (System.nanoTime() - start) / 1e9);
+	}
+
+	private static void hotReload() throws Exception {
+		final Path file = Files.createTempFile("pong", ".rules");
+		try {
+			Files.write(file, PongRules.DEFAULT.toText().getBytes(StandardCharsets.UTF_8));
+			final PongRules loaded = PongRules.load(file);
+			System.out.println("rules file " + (loaded.equals(PongRules.DEFAULT) ? "read back" : "DIFFERENT"));
+
+			// the match thread swaps the rules between two ticks
+			final AtomicReference<PongRules> pending = new AtomicReference<>();
+			final PongRulesWatcher watcher = new PongRulesWatcher(file, loaded, pending::set);
+			final PongMatch match = new PongMatch(42, loaded);
+			final long[] swapped = new long[1];
+			final Thread thread = new Thread(() -> {
+				final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+				final PongAIPlayer right = new PongAIPlayer("Right", -0.2, false, 40.0);
+				while (swapped[0] == 0) {
+					final PongRules rules = pending.getAndSet(null);
+					if (rules != null) {
+						match.setRules(rules);
+						swapped[0] = System.nanoTime();
+					}
+					match.setLeftInput(left.decide(match, true));
+					match.setRightInput(right.decide(match, false));
+					match.tick();
+				}
+			});
+			thread.start();
+
+			Thread.sleep(200);
+			final long written = System.nanoTime();
+			Files.write(file, "# faster\nball_move_increments 3\npaddle_length 40\n".getBytes(StandardCharsets.UTF_8));
+			thread.join(30_000);
+			watcher.close();
+			if (swapped[0] == 0) {
+				System.out.println("hot reload: NOT SEEN within 30 s");
+				System.exit(1);
+			}
+			System.out.printf(Locale.US, "hot reload: match plays with paddle length %.0f after %.0f ms%n", 
+					match.getPaddleLength(), (swapped[0] - written) / 1e6);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
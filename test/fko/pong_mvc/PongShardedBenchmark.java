@@ -0,0 +1,106 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PongShardedBenchmark - measures the parallel step of {@link PongBallField} with a growing number
+ * of threads and checks that the results do not depend on the number of threads.
+ *
+ * <p>
+ * For each number of threads the same field is simulated, the goals are added to two players and a
+ * checksum over all positions and velocities is printed - all rows have to show the same checksum 
+ * and points. Each number of threads runs twice and only the second run is timed, so the JIT has 
+ * compiled the step at full size before the first time is taken.<br>
+ * Usage: <code>java fko.pong_mvc.PongShardedBenchmark [balls] [ticks] [max threads]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongShardedBenchmark {
+
+	private static final double RADIUS = 2.0;
+	private static final double SPEED = 2.0;
+	private static final double AREA_PER_BALL = 400.0;
+
+	public static void main(String[] args) {
+		final int balls = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		final int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) 
+				: Math.max(4, Runtime.getRuntime().availableProcessors());
+
+		System.out.printf("%d balls, %d ticks, %d cores%n", balls, ticks, Runtime.getRuntime().availableProcessors());
+
+		System.out.printf("%8s %12s %8s %18s %10s %10s%n", "threads", "ms/tick", "speedup", "checksum", "left", "right");
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			// the first run at full size warms up - only the second is timed
+			run(balls, ticks, threads);
+			final Result r = run(balls, ticks, threads);
+			if (threads == 1) single = r.msPerTick;
+			System.out.printf(Locale.US, "%8d %12.3f %8.2f %18x %10d %10d%n", 
+					threads, r.msPerTick, single / r.msPerTick, r.checksum, r.left, r.right);
+		}
+	}
+
+	private static final class Result {
+		double msPerTick;
+		long checksum;
+		int left;
+		int right;
+	}
+
+	private static Result run(int balls, int ticks, int threads) {
+		final double side = Math.sqrt(balls * AREA_PER_BALL);
+		final PongBallField field = new PongBallField(side * 1.5, side / 1.5, balls, RADIUS);
+		field.addRandomBalls(balls, SPEED, RADIUS, new PongRandom(42));
+		final Player left = new Player("Left");
+		final Player right = new Player("Right");
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		final Result r = new Result();
+		try {
+			final long start = System.nanoTime();
+			for (int t = 0; t < ticks; t++) {
+				field.step(pool);
+				field.scoreGoals(left, right);
+			}
+			r.msPerTick = (System.nanoTime() - start) / 1e6 / ticks;
+		} finally {
+			pool.shutdown();
+		}
+		long h = 17;
+		for (int i = 0; i < field.getCount(); i++) {
+			h = h * 31 + Double.doubleToLongBits(field.getX(i));
+			h = h * 31 + Double.doubleToLongBits(field.getY(i));
+			h = h * 31 + Double.doubleToLongBits(field.getVX(i));
+			h = h * 31 + Double.doubleToLongBits(field.getVY(i));
+		}
+		r.checksum = h ^ field.getCollisions();
+		r.left = left.points.get();
+		r.right = right.points.get();
+		return r;
+	}
+
+}
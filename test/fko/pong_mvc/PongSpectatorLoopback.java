@@ -0,0 +1,161 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * PongSpectatorLoopback - runs a {@link PongSpectatorServer} with many spectators over loopback.
+ *
+ * <p>
+ * A match of two AI players is published at a fixed tick rate. All spectators read on one thread
+ * and check every decoded state against the quantized state of the match at that tick. Some 
+ * spectators never read (stalled) and must get frames dropped and finally be disconnected 
+ * without slowing down the others. Exits with 1 if a spectator decodes a wrong state.<br>
+ * Usage: <code>java fko.pong_mvc.PongSpectatorLoopback [spectators] [ticks] [ticks per second] [stalled]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongSpectatorLoopback {
+
+	public static void main(String[] args) throws Exception {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+		final int rate = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+		final int stalledCount = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+		// the states the spectators have to see
+		final PongStateCodec codec = new PongStateCodec();
+		final PongState[] expected = new PongState[ticks + 1];
+		final PongMatch match = new PongMatch(7);
+		final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer right = new PongAIPlayer("Right", -0.2, true, 2.0);
+		for (int t = 0; t <= ticks; t++) {
+			expected[t] = new PongState();
+			match.getState(expected[t]);
+			codec.quantize(expected[t]);
+			match.setLeftInput(left.decide(match, true));
+			match.setRightInput(right.decide(match, false));
+			match.tick();
+		}
+
+		final PongSpectatorServer server = new PongSpectatorServer(0, 4096, PongRules.DEFAULT);
+		final List<PongSpectatorClient> clients = new ArrayList<>();
+		final Selector selector = Selector.open();
+		for (int i = 0; i < count; i++) {
+			final PongSpectatorClient client = new PongSpectatorClient("localhost", server.getPort());
+			client.getChannel().register(selector, SelectionKey.OP_READ, client);
+			clients.add(client);
+		}
+		// stalled spectators with a small receive buffer which never read
+		final List<SocketChannel> stalled = new ArrayList<>();
+		for (int i = 0; i < stalledCount; i++) {
+			final SocketChannel channel = SocketChannel.open();
+			channel.socket().setReceiveBufferSize(1024);
+			channel.connect(new InetSocketAddress("localhost", server.getPort()));
+			stalled.add(channel);
+		}
+		while (server.getSpectators() < count + stalledCount) Thread.sleep(10);
+
+		// spectators read and check on their own thread
+		// only used by the reader thread - read after joining it
+		final long[] checked = new long[2];
+		final Consumer<PongState> check = s -> {
+			if (s.tick >= 0 && s.tick <= ticks && same(s, expected[(int) s.tick])) checked[0]++;
+			else checked[1]++;
+		};
+		final Thread reader = new Thread(() -> {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					selector.select(100);
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						final PongSpectatorClient client = (PongSpectatorClient) key.attachment();
+						if (client.read(check) < 0) {
+							key.cancel();
+						}
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Spectator clients");
+		reader.start();
+
+		// the game loop
+		final long interval = rate > 0 ? 1_000_000_000L / rate : 0;
+		final long start = System.nanoTime();
+		long publishNanos = 0;
+		for (int t = 0; t <= ticks; t++) {
+			final long p = System.nanoTime();
+			server.publish(expected[t]);
+			publishNanos += System.nanoTime() - p;
+			final long next = start + (t + 1) * interval;
+			while (System.nanoTime() < next) Thread.sleep(0, 200_000);
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		Thread.sleep(500);
+		reader.interrupt();
+		reader.join();
+
+		long frames = 0;
+		long undecodable = 0;
+		for (PongSpectatorClient client : clients) {
+			frames += client.getFrames();
+			undecodable += client.getUndecodable();
+		}
+		System.out.printf(Locale.US, "spectators %d (+%d stalled), ticks %d in %.1f s%n", 
+				count, stalledCount, ticks + 1, seconds);
+		System.out.printf(Locale.US, "server: encoded %d frames (%.0f ns each), sent %d frames, %d bytes, dropped %d, "
+				+ "still connected %d%n", server.getFramesEncoded(), 
+				(double) server.getEncodeNanos() / server.getFramesEncoded(), server.getFramesSent(), 
+				server.getBytesSent(), server.getFramesDropped(), server.getSpectators());
+		System.out.printf(Locale.US, "game loop: %.0f ns per publish%n", (double) publishNanos / (ticks + 1));
+		System.out.printf(Locale.US, "spectators: %d frames decoded (%.1f per spectator), %d undecodable, "
+				+ "%d states correct, %d wrong%n", frames, (double) frames / count, undecodable, checked[0], checked[1]);
+
+		server.close();
+		for (PongSpectatorClient client : clients) client.close();
+		for (SocketChannel channel : stalled) channel.close();
+		if (checked[1] > 0) System.exit(1);
+	}
+
+	private static boolean same(PongState a, PongState b) {
+		return a.tick == b.tick && a.ballX == b.ballX && a.ballY == b.ballY && a.speedX == b.speedX
+				&& a.speedY == b.speedY && a.leftPaddleY == b.leftPaddleY && a.rightPaddleY == b.rightPaddleY
+				&& a.leftPoints == b.leftPoints && a.rightPoints == b.rightPoints;
+	}
+
+}
@@ -0,0 +1,105 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * PongStartupBenchmark - measures the startup time of the UI and the headless launcher, each 
+ * without and with an AppCDS archive (see target create_cds_archives in makejar.xml).
+ *
+ * <p>
+ * Each launch is a new JVM with the class path of this benchmark - which has to be the class path
+ * the archives have been created with. The UI is started with <code>--startup-report=exit</code>
+ * and reports the time from the start of the JVM to its first frame. The headless launcher runs a
+ * tournament of two bots - its time is the wall time of the process.<br>
+ * Usage: <code>java fko.pong_mvc.PongStartupBenchmark [runs] [ui archive|-] [headless archive|-]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongStartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		final String uiArchive = args.length > 1 && !args[1].equals("-") ? args[1] : null;
+		final String headlessArchive = args.length > 2 && !args[2].equals("-") ? args[2] : null;
+
+		System.out.printf("%-10s %-10s %10s %10s %10s%n", "launcher", "archive", "min ms", "median ms", "max ms");
+		measure("ui", null, runs, true, "fko.pong_mvc.Pong", "--startup-report=exit");
+		if (uiArchive != null) measure("ui", uiArchive, runs, true, "fko.pong_mvc.Pong", "--startup-report=exit");
+		measure("headless", null, runs, false, "fko.pong_mvc.PongTournament", "2");
+		if (headlessArchive != null) measure("headless", headlessArchive, runs, false, "fko.pong_mvc.PongTournament", "2");
+	}
+
+	private static void measure(String name, String archive, int runs, boolean firstFrame, String... mainAndArgs) 
+			throws Exception {
+		final long[] times = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			times[i] = launch(archive, firstFrame, mainAndArgs);
+			if (times[i] < 0) {
+				System.out.printf("%-10s %-10s failed - no first frame (display available?)%n", name, 
+						archive == null ? "none" : "cds");
+				return;
+			}
+		}
+		Arrays.sort(times);
+		System.out.printf(Locale.US, "%-10s %-10s %10d %10d %10d%n", name, archive == null ? "none" : "cds", 
+				times[0], times[runs / 2], times[runs - 1]);
+	}
+
+	/**
+	 * @return the time to the first frame or the wall time of the process in ms - -1 if the 
+	 * first frame was not reported
+	 */
+	private static long launch(String archive, boolean firstFrame, String... mainAndArgs) throws Exception {
+		final List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (archive != null) command.add("-XX:SharedArchiveFile=" + archive);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.addAll(Arrays.asList(mainAndArgs));
+
+		final long start = System.nanoTime();
+		final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		long result = -1;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("first frame after ")) {
+					result = Long.parseLong(line.replaceAll("\\D", ""));
+				}
+			}
+		}
+		process.waitFor();
+		final long wall = (System.nanoTime() - start) / 1_000_000;
+		return firstFrame ? result : wall;
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong_mvc;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * PongStateCodecBenchmark - measures the size of the frames of {@link PongStateCodec} and the time
+ * to encode and decode them.
+ *
+ * <p>
+ * A match of two AI players is played and every tick is encoded as keyframe and as delta against 
+ * a baseline a few ticks old (like the last state acknowledged by a receiver with some latency).
+ * All frames are decoded again and compared with the quantized state.<br>
+ * Usage: <code>java fko.pong_mvc.PongStateCodecBenchmark [ticks] [ack delay]</code>
+ *
+ * @author Frank Kopp
+ */
+public class PongStateCodecBenchmark {
+
+	public static void main(String[] args) {
+		final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		final int ackDelay = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+		// states of the match - the receiver acknowledges ackDelay ticks late
+		final PongState[] states = playMatch(ticks);
+		final PongStateCodec codec = new PongStateCodec();
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(ticks * PongStateCodec.MAX_FRAME_BYTES);
+		final PongState decoded = new PongState();
+		final PongState expected = new PongState();
+
+		System.out.printf("%d ticks, keyframe %d bits%n", ticks, codec.getKeyframeBits());
+		System.out.printf("%10s %12s %12s %12s %10s%n", "frames", "bytes/tick", "encode ns", "decode ns", "correct");
+		for (int run = 0; run < 3; run++) {
+			for (int mode = 0; mode < 2; mode++) {
+				final boolean delta = mode == 1;
+				buffer.clear();
+				long start = System.nanoTime();
+				for (int t = 0; t < ticks; t++) {
+					codec.encode(states[t], delta ? baseline(states, t, ackDelay) : null, buffer);
+				}
+				final long encode = System.nanoTime() - start;
+				final int bytes = buffer.position();
+
+				buffer.flip();
+				boolean correct = true;
+				start = System.nanoTime();
+				for (int t = 0; t < ticks; t++) {
+					correct &= codec.decode(buffer, delta ? baseline(states, t, ackDelay) : null, decoded);
+				}
+				final long decode = System.nanoTime() - start;
+
+				// compare outside of the measurement
+				buffer.rewind();
+				for (int t = 0; t < ticks && correct; t++) {
+					codec.decode(buffer, delta ? baseline(states, t, ackDelay) : null, decoded);
+					expected.set(states[t]);
+					codec.quantize(expected);
+					correct = same(expected, decoded);
+				}
+				if (run == 2) {
+					System.out.printf(Locale.US, "%10s %12.2f %12.1f %12.1f %10s%n", delta ? "delta" : "keyframe", 
+							(double) bytes / ticks, (double) encode / ticks, (double) decode / ticks, correct);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the quantized state acknowledged at tick t - the receiver only knows decoded states
+	 */
+	private static PongState baseline(PongState[] states, int t, int ackDelay) {
+		return t >= ackDelay ? states[t - ackDelay] : null;
+	}
+
+	private static PongState[] playMatch(int ticks) {
+		final PongStateCodec codec = new PongStateCodec();
+		final PongMatch match = new PongMatch(42);
+		final PongAIPlayer left = new PongAIPlayer("Left", 0.3, true, 2.0);
+		final PongAIPlayer right = new PongAIPlayer("Right", -0.2, true, 2.0);
+		final PongState[] states = new PongState[ticks];
+		for (int t = 0; t < ticks; t++) {
+			match.setLeftInput(left.decide(match, true));
+			match.setRightInput(right.decide(match, false));
+			match.tick();
+			states[t] = new PongState();
+			match.getState(states[t]);
+			// baselines are what the receiver has decoded
+			codec.quantize(states[t]);
+		}
+		return states;
+	}
+
+	private static boolean same(PongState a, PongState b) {
+		return a.tick == b.tick && a.ballX == b.ballX && a.ballY == b.ballY && a.speedX == b.speedX
+				&& a.speedY == b.speedY && a.leftPaddleY == b.leftPaddleY && a.rightPaddleY == b.rightPaddleY
+				&& a.leftPoints == b.leftPoints && a.rightPoints == b.rightPoints 
+				&& a.paused == b.paused && a.running == b.running;
+	}
+
+}